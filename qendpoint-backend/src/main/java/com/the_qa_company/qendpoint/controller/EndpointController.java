@@ -175,6 +175,15 @@ public class EndpointController {
 		throw new IllegalArgumentException("no stream field");
 	}
 
+	@PostMapping("/changeset")
+	public ResponseEntity<Sparql.ChangesetResult> changeset(HttpServletRequest request) throws IOException {
+		try {
+			return ResponseEntity.status(HttpStatus.OK).body(sparql.applyChangeset(request.getInputStream()));
+		} catch (EndpointStoreInputException e) {
+			throw new ServerWebInputException(e.getMessage());
+		}
+	}
+
 	@GetMapping("/merge")
 	public ResponseEntity<Sparql.MergeRequestResult> mergeStore() {
 		return ResponseEntity.status(HttpStatus.OK).body(sparql.askForAMerge());
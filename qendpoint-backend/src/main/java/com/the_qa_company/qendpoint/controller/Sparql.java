@@ -75,6 +75,8 @@ public class Sparql {
 
 	public record LoadFileResult(boolean loaded) {}
 
+	public record ChangesetResult(long statements) {}
+
 	private static final Logger logger = LoggerFactory.getLogger(Sparql.class);
 	private static final SimpleDateFormat FORMAT = new SimpleDateFormat("yyyyMMdd-HHmmss");
 
@@ -446,6 +448,23 @@ public class Sparql {
 		}
 	}
 
+	/**
+	 * apply a changeset to the store, see
+	 * {@link SparqlRepository#applyChangeset(InputStream)} for the format
+	 *
+	 * @param input changeset stream
+	 * @return result
+	 * @throws IOException read exception
+	 */
+	public ChangesetResult applyChangeset(InputStream input) throws IOException {
+		waitLoading(1);
+		try {
+			return new ChangesetResult(sparqlRepository.applyChangeset(input));
+		} finally {
+			completeQuery();
+		}
+	}
+
 	public LoadFileResult loadFile(InputStream input, String filename) throws IOException {
 		// wait previous loading
 		waitLoading(0);
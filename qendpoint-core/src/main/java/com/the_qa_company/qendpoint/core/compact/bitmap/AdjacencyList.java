@@ -20,6 +20,7 @@
 package com.the_qa_company.qendpoint.core.compact.bitmap;
 
 import com.the_qa_company.qendpoint.core.compact.sequence.Sequence;
+import com.the_qa_company.qendpoint.core.compact.sequence.SequenceEliasFano;
 import com.the_qa_company.qendpoint.core.exceptions.NotFoundException;
 
 /**
@@ -41,6 +42,10 @@ public class AdjacencyList {
 			throw new IllegalArgumentException("Adjacency list bitmap and array should have the same size "
 					+ array.getNumberOfElements() + "!=" + bitmap.getNumBits());
 		}
+		if (array instanceof SequenceEliasFano eliasFano) {
+			// the values are shifted by the list offsets
+			eliasFano.setLists(bitmap);
+		}
 	}
 
 	/**
@@ -149,6 +154,19 @@ public class AdjacencyList {
 		return array.get(pos);
 	}
 
+	/**
+	 * Get the elements of a range of positions
+	 *
+	 * @param start position of the first element
+	 * @param dst   array to write the elements
+	 * @param len   maximum number of elements
+	 * @return number of elements written
+	 * @see Sequence#get(long, long[], int)
+	 */
+	public final int get(long start, long[] dst, int len) {
+		return array.get(start, dst, len);
+	}
+
 	public final long getNumberOfElements() {
 		return array.getNumberOfElements();
 	}
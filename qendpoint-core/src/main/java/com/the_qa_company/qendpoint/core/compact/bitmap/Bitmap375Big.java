@@ -37,6 +37,10 @@ import java.nio.file.Path;
  * limitation in size.
  * <p>
  * index -&gt; O(n) rank1 -&gt; O(1) select1 -&gt; O(log log n)
+ * <p>
+ * The superblocks of every 1024-th one and zero are sampled to bound the
+ * binary search of the selects, the sampling can be disabled with the
+ * "disableSelectIndex" system property.
  *
  * @author mario.arias
  */
@@ -45,6 +49,7 @@ public class Bitmap375Big extends Bitmap64Big {
 	private static final Logger logger = LoggerFactory.getLogger(Bitmap375Big.class);
 
 	public static final boolean oldBinarySearch;
+	public static final boolean selectIndex;
 
 	static {
 		// check if the system property "useOldBinarySeearch" is set to true
@@ -57,6 +62,9 @@ public class Bitmap375Big extends Bitmap64Big {
 			oldBinarySearch = false;
 		}
 
+		// check if the system property "disableSelectIndex" is set to true
+		String disableSelectIndex = System.getProperty("disableSelectIndex");
+		selectIndex = disableSelectIndex == null || !disableSelectIndex.equalsIgnoreCase("true");
 	}
 
 	/**
@@ -118,6 +126,10 @@ public class Bitmap375Big extends Bitmap64Big {
 
 	// Constants
 	private static final int BLOCKS_PER_SUPER = 4;
+	/**
+	 * number of ones (or zeros) between two samples of the select index
+	 */
+	private static final long SELECT_SAMPLE = 1024;
 
 	// Variables
 	private long pop;
@@ -125,8 +137,13 @@ public class Bitmap375Big extends Bitmap64Big {
 	private LongArray blocks;
 	private boolean indexUpToDate;
 	private final boolean useDiskSuperIndex;
+	// superblock of every SELECT_SAMPLE-th one/zero, null without select index
+	private LongArray selectSamples1;
+	private LongArray selectSamples0;
 	private final CloseSuppressPath superBlocksPath;
 	private final CloseSuppressPath blocksPath;
+	private final CloseSuppressPath selectSamples1Path;
+	private final CloseSuppressPath selectSamples0Path;
 
 	protected Bitmap375Big(LongArray words, Path location, boolean useDiskSuperIndex) {
 		super(words);
@@ -135,15 +152,20 @@ public class Bitmap375Big extends Bitmap64Big {
 			CloseSuppressPath path = CloseSuppressPath.of(location);
 			this.superBlocksPath = path.resolveSibling(path.getFileName() + ".sb");
 			this.blocksPath = path.resolveSibling(path.getFileName() + ".bp");
+			this.selectSamples1Path = path.resolveSibling(path.getFileName() + ".ss1");
+			this.selectSamples0Path = path.resolveSibling(path.getFileName() + ".ss0");
 		} else {
 			this.superBlocksPath = null;
 			this.blocksPath = null;
+			this.selectSamples1Path = null;
+			this.selectSamples0Path = null;
 		}
 		getCloser().with((Closeable) this::closeObject);
 	}
 
 	private void closeObject() throws IOException {
-		Closer.closeAll(superBlocks, superBlocksPath, blocks, blocksPath);
+		Closer.closeAll(superBlocks, superBlocksPath, blocks, blocksPath, selectSamples1, selectSamples1Path,
+				selectSamples0, selectSamples0Path);
 	}
 
 	/**
@@ -163,7 +185,8 @@ public class Bitmap375Big extends Bitmap64Big {
 	public void updateIndex() {
 		trimToSize();
 		try {
-			Closer.closeAll(superBlocks, blocks, superBlocksPath, blocksPath);
+			Closer.closeAll(superBlocks, blocks, superBlocksPath, blocksPath, selectSamples1, selectSamples1Path,
+					selectSamples0, selectSamples0Path);
 		} catch (IOException e) {
 			// ignore
 		}
@@ -199,10 +222,61 @@ public class Bitmap375Big extends Bitmap64Big {
 			blockIndex++;
 		}
 		pop = countSuperBlock + countBlock;
+		if (selectIndex) {
+			updateSelectIndex();
+		} else {
+			selectSamples1 = null;
+			selectSamples0 = null;
+		}
 		indexUpToDate = true;
 		superBlocks.recalculateEstimatedValueLocation();
 	}
 
+	private LongArray createSelectSamples(CloseSuppressPath path, long size) {
+		long superBlockCount = superBlocks.length();
+		if (useDiskSuperIndex && size > 0) {
+			return superBlockCount > Integer.MAX_VALUE ? SimpleSplitLongArray.int64ArrayDisk(path, size)
+					: SimpleSplitLongArray.int32ArrayDisk(path, size);
+		}
+		return superBlockCount > Integer.MAX_VALUE ? SimpleSplitLongArray.int64Array(size)
+				: SimpleSplitLongArray.int32Array(size);
+	}
+
+	/**
+	 * sample the superblock of every {@link #SELECT_SAMPLE}-th one and zero,
+	 * to search the superblock of a select in the superblocks between two
+	 * samples
+	 */
+	private void updateSelectIndex() {
+		long superBlockCount = superBlocks.length();
+		long zeros = numbits - pop;
+		selectSamples1 = createSelectSamples(selectSamples1Path, pop == 0 ? 0 : (pop - 1) / SELECT_SAMPLE + 1);
+		selectSamples0 = createSelectSamples(selectSamples0Path, zeros <= 0 ? 0 : (zeros - 1) / SELECT_SAMPLE + 1);
+
+		long sample1 = 0;
+		long sample0 = 0;
+		for (long superBlockIndex = 0; superBlockIndex < superBlockCount; superBlockIndex++) {
+			// ones and zeros before the end of this superblock
+			long ones;
+			long zerosEnd;
+			if (superBlockIndex + 1 < superBlockCount) {
+				ones = superBlocks.get(superBlockIndex + 1);
+				zerosEnd = (superBlockIndex + 1) * BLOCKS_PER_SUPER * W - ones;
+			} else {
+				ones = pop;
+				zerosEnd = zeros;
+			}
+			// the sample k is the superblock of the (k * SELECT_SAMPLE + 1)-th
+			// bit
+			while (sample1 < selectSamples1.length() && sample1 * SELECT_SAMPLE + 1 <= ones) {
+				selectSamples1.set(sample1++, superBlockIndex);
+			}
+			while (sample0 < selectSamples0.length() && sample0 * SELECT_SAMPLE + 1 <= zerosEnd) {
+				selectSamples0.set(sample0++, superBlockIndex);
+			}
+		}
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * @see hdt.compact.bitmap.Bitmap#access(long)
@@ -282,7 +356,16 @@ public class Bitmap375Big extends Bitmap64Big {
 		}
 
 		// Search superblock (binary Search)
-		long superBlockIndex = binarySearch0(superBlocks, 0, superBlocks.length(), x);
+		long superBlockIndex;
+		if (selectSamples0 != null && x > 0) {
+			// the superblock is between the samples of x
+			long sample = (x - 1) / SELECT_SAMPLE;
+			long end = sample + 1 < selectSamples0.length() ? selectSamples0.get(sample + 1) + 1
+					: superBlocks.length();
+			superBlockIndex = binarySearch0(superBlocks, selectSamples0.get(sample), end, x);
+		} else {
+			superBlockIndex = binarySearch0(superBlocks, 0, superBlocks.length(), x);
+		}
 		if (superBlockIndex < 0) {
 			// Not found exactly, gives the position where it should be inserted
 			superBlockIndex = -superBlockIndex - 2;
@@ -345,7 +428,16 @@ public class Bitmap375Big extends Bitmap64Big {
 			return 0;
 		}
 		// Search superblock (binary Search)
-		long superBlockIndex = oldBinarySearch ? binarySearch(superBlocks, x) : binarySearchNew(superBlocks, x);
+		long superBlockIndex;
+		if (selectSamples1 != null && x > 0) {
+			// the superblock is between the samples of x
+			long sample = (x - 1) / SELECT_SAMPLE;
+			long end = sample + 1 < selectSamples1.length() ? selectSamples1.get(sample + 1) + 1
+					: superBlocks.length();
+			superBlockIndex = binarySearch(superBlocks, selectSamples1.get(sample), end, x);
+		} else {
+			superBlockIndex = oldBinarySearch ? binarySearch(superBlocks, x) : binarySearchNew(superBlocks, x);
+		}
 
 		// If there is a run of many zeros, two correlative superblocks may have
 		// the same value,
@@ -405,8 +497,13 @@ public class Bitmap375Big extends Bitmap64Big {
 	public long getRealSizeBytes() {
 		updateIndex();
 
-		return super.getRealSizeBytes() + blocks.length() * blocks.sizeOf() / 8
+		long size = super.getRealSizeBytes() + blocks.length() * blocks.sizeOf() / 8
 				+ superBlocks.length() * superBlocks.sizeOf() / 8;
+		if (selectSamples1 != null) {
+			size += selectSamples1.length() * selectSamples1.sizeOf() / 8
+					+ selectSamples0.length() * selectSamples0.sizeOf() / 8;
+		}
+		return size;
 	}
 
 	/*
@@ -466,7 +563,20 @@ public class Bitmap375Big extends Bitmap64Big {
 	 */
 
 	public static long binarySearch(LongArray arr, long val) {
-		long min = 0, max = arr.length(), mid;
+		return binarySearch(arr, 0, arr.length(), val);
+	}
+
+	/**
+	 * binary search val index into a range of arr
+	 *
+	 * @param arr       arr
+	 * @param fromIndex start index (inclusive)
+	 * @param toIndex   max index (exclusive)
+	 * @param val       val
+	 * @return index
+	 */
+	public static long binarySearch(LongArray arr, long fromIndex, long toIndex, long val) {
+		long min = fromIndex, max = toIndex, mid;
 
 		while (min + 1 < max) {
 			mid = (min + max) / 2;
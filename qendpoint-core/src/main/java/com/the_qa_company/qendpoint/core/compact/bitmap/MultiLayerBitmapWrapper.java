@@ -61,6 +61,19 @@ public class MultiLayerBitmapWrapper implements MultiLayerBitmap, Closeable {
 		return handle.access(graphs * position + layer);
 	}
 
+	/**
+	 * find the first position with a bit set in one of its layers, the bits of
+	 * the positions are stored together, so it only reads the words of the
+	 * handle with {@link Bitmap#selectNext1(long)}
+	 *
+	 * @param position start position (inclusive)
+	 * @return the position, -1 if no bit is set after the start position
+	 */
+	public long selectNextPosition1(long position) {
+		long bit = handle.selectNext1(graphs * position);
+		return bit == -1 ? -1 : bit / graphs;
+	}
+
 	@Override
 	public long rank1(long layer, long position) {
 		throw new NotImplementedException();
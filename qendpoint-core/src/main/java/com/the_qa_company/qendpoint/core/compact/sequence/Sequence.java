@@ -47,6 +47,38 @@ public interface Sequence extends Closeable {
 	 */
 	long get(long position);
 
+	/**
+	 * Gets the elements of a range of positions, the implementations should
+	 * decode the elements faster than with {@link #get(long)}
+	 *
+	 * @param start the position of the first element
+	 * @param dst   the array to write the elements, from its index 0
+	 * @param len   the maximum number of elements to get
+	 * @return the number of elements written, lower than len if the end of the
+	 *         sequence is reached
+	 */
+	default int get(long start, long[] dst, int len) {
+		if (start < 0) {
+			throw new IndexOutOfBoundsException(start + " < 0");
+		}
+		int count = (int) Math.max(0, Math.min(len, getNumberOfElements() - start));
+		for (int i = 0; i < count; i++) {
+			dst[i] = get(start + i);
+		}
+		return count;
+	}
+
+	/**
+	 * Create a cursor to read the elements sequentially, the cursor reads the
+	 * elements by blocks with {@link #get(long, long[], int)}
+	 *
+	 * @param start the position of the first element to read
+	 * @return cursor
+	 */
+	default SequenceCursor cursor(long start) {
+		return new SequenceCursor(this, start);
+	}
+
 	/**
 	 * Gets the total number of elements in the array
 	 *
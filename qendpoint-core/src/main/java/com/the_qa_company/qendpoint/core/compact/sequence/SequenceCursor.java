@@ -0,0 +1,93 @@
+package com.the_qa_company.qendpoint.core.compact.sequence;
+
+import java.util.NoSuchElementException;
+
+/**
+ * Cursor to read a {@link Sequence} sequentially, the elements are decoded by
+ * blocks with {@link Sequence#get(long, long[], int)}. The cursor isn't thread
+ * safe and shouldn't be used if the sequence is modified.
+ */
+public class SequenceCursor {
+	/**
+	 * default number of elements decoded at once
+	 */
+	public static final int DEFAULT_BUFFER_SIZE = 1024;
+
+	private final Sequence sequence;
+	private final long[] buffer;
+	private long bufferStart;
+	private int bufferCount;
+	private int index;
+
+	/**
+	 * create a cursor
+	 *
+	 * @param sequence sequence to read
+	 * @param start    position of the first element to read
+	 */
+	public SequenceCursor(Sequence sequence, long start) {
+		this(sequence, start, DEFAULT_BUFFER_SIZE);
+	}
+
+	/**
+	 * create a cursor
+	 *
+	 * @param sequence   sequence to read
+	 * @param start      position of the first element to read
+	 * @param bufferSize number of elements decoded at once
+	 */
+	public SequenceCursor(Sequence sequence, long start, int bufferSize) {
+		if (bufferSize <= 0) {
+			throw new IllegalArgumentException("The buffer size should be positive: " + bufferSize);
+		}
+		this.sequence = sequence;
+		this.buffer = new long[bufferSize];
+		seek(start);
+	}
+
+	/**
+	 * @return if the cursor has another element
+	 */
+	public boolean hasNext() {
+		return index < bufferCount || getPosition() < sequence.getNumberOfElements();
+	}
+
+	/**
+	 * @return the next element
+	 * @throws NoSuchElementException if the end of the sequence is reached
+	 */
+	public long next() {
+		if (index == bufferCount) {
+			bufferStart += bufferCount;
+			index = 0;
+			bufferCount = sequence.get(bufferStart, buffer, buffer.length);
+			if (bufferCount == 0) {
+				throw new NoSuchElementException();
+			}
+		}
+		return buffer[index++];
+	}
+
+	/**
+	 * @return the position of the next element
+	 */
+	public long getPosition() {
+		return bufferStart + index;
+	}
+
+	/**
+	 * move the cursor, the decoded elements are kept if the position is in the
+	 * current block
+	 *
+	 * @param position the position of the next element to read
+	 */
+	public void seek(long position) {
+		if (position >= bufferStart && position <= bufferStart + bufferCount) {
+			index = (int) (position - bufferStart);
+		} else {
+			bufferStart = position;
+			bufferCount = 0;
+			index = 0;
+		}
+	}
+}
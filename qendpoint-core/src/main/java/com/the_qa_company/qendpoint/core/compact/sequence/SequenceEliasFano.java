@@ -0,0 +1,405 @@
+package com.the_qa_company.qendpoint.core.compact.sequence;
+
+import com.the_qa_company.qendpoint.core.compact.bitmap.Bitmap;
+import com.the_qa_company.qendpoint.core.compact.bitmap.Bitmap375Big;
+import com.the_qa_company.qendpoint.core.compact.bitmap.Bitmap64Big;
+import com.the_qa_company.qendpoint.core.compact.bitmap.BitmapFactory;
+import com.the_qa_company.qendpoint.core.compact.bitmap.ModifiableBitmap;
+import com.the_qa_company.qendpoint.core.compact.integer.VByte;
+import com.the_qa_company.qendpoint.core.exceptions.CRCException;
+import com.the_qa_company.qendpoint.core.exceptions.IllegalFormatException;
+import com.the_qa_company.qendpoint.core.exceptions.NotImplementedException;
+import com.the_qa_company.qendpoint.core.hdt.HDTVocabulary;
+import com.the_qa_company.qendpoint.core.listener.ProgressListener;
+import com.the_qa_company.qendpoint.core.util.BitUtil;
+import com.the_qa_company.qendpoint.core.util.crc.CRC8;
+import com.the_qa_company.qendpoint.core.util.crc.CRCInputStream;
+import com.the_qa_company.qendpoint.core.util.crc.CRCOutputStream;
+import com.the_qa_company.qendpoint.core.util.io.Closer;
+import com.the_qa_company.qendpoint.core.util.io.CountInputStream;
+import org.apache.commons.io.file.PathUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+
+/**
+ * Elias-Fano compressed sequence of the sorted adjacency lists of the bitmap
+ * triples.
+ * <p>
+ * Each list is shifted by the last value of the previous list, the shifted
+ * values are increasing over the whole sequence and are written with
+ * Elias-Fano: the low bits of each value in a {@link SequenceLog64Big} and the
+ * high bits as unary gaps in a bitmap. A value is read without decoding the
+ * other values with a select on the high bits, its list offset is the shifted
+ * value at the end of the previous list.
+ * <p>
+ * The list boundaries aren't stored by the sequence, they are the bitmap of
+ * the adjacency list, set with {@link #setLists(Bitmap)} before reading the
+ * sequence. A value of a list of k values costs about
+ * {@code 2 + log2(maxId / (k + 1))} bits, with short lists of distant ids, like
+ * the objects of most datasets, the sequence is bigger than a
+ * {@link SequenceLog64}, {@link #estimateSize(Sequence, Bitmap)} can be used to
+ * choose the smaller type.
+ */
+public class SequenceEliasFano implements Sequence {
+	/**
+	 * number of values read at once while encoding
+	 */
+	private static final int BUFFER_SIZE = 4096;
+
+	/**
+	 * sizes of the Elias-Fano encoding of a sequence
+	 *
+	 * @param numbits    number of bits of the max value
+	 * @param numentries number of values
+	 * @param universe   last shifted value, -1 if the shifted values are
+	 *                   overflowing
+	 */
+	private record Frame(int numbits, long numentries, long universe) {
+		int lowBits() {
+			long ratio = numentries == 0 ? 0 : universe / numentries;
+			return ratio == 0 ? 0 : BitUtil.log2(ratio) - 1;
+		}
+
+		long highBits() {
+			return numentries == 0 ? 0 : numentries + (universe >>> lowBits()) + 1;
+		}
+
+		long size() {
+			if (universe < 0) {
+				return Long.MAX_VALUE;
+			}
+			return SequenceLog64Big.numBytesFor(lowBits(), numentries) + Bitmap64Big.numBytes(highBits());
+		}
+	}
+
+	private static Frame frame(Sequence seq, Bitmap lists) {
+		long numentries = seq.getNumberOfElements();
+		long[] buffer = new long[BUFFER_SIZE];
+		long maxValue = 0;
+		long offset = 0;
+		long shifted = 0;
+		for (long start = 0; start < numentries; start += BUFFER_SIZE) {
+			int len = seq.get(start, buffer, BUFFER_SIZE);
+			for (int i = 0; i < len; i++) {
+				maxValue = Math.max(maxValue, buffer[i]);
+				try {
+					shifted = Math.addExact(offset, buffer[i]);
+				} catch (ArithmeticException e) {
+					return new Frame(BitUtil.log2(maxValue), numentries, -1);
+				}
+				if (lists.access(start + i)) {
+					// end of the list
+					offset = shifted;
+				}
+			}
+		}
+		return new Frame(BitUtil.log2(maxValue), numentries, shifted);
+	}
+
+	/**
+	 * create a compressed copy of a sequence
+	 *
+	 * @param seq   sequence
+	 * @param lists bitmap of the adjacency lists of the sequence, set at the
+	 *              last value of each list
+	 * @return compressed sequence
+	 * @throws IllegalArgumentException if the shifted values are overflowing
+	 */
+	public static SequenceEliasFano of(Sequence seq, Bitmap lists) {
+		SequenceEliasFano eliasFano = new SequenceEliasFano();
+		try {
+			eliasFano.encode(seq, lists, null);
+		} catch (IOException e) {
+			// memory parts
+			throw new AssertionError(e);
+		}
+		return eliasFano;
+	}
+
+	/**
+	 * compute the size of a sequence once compressed, without compressing it
+	 *
+	 * @param seq   sequence
+	 * @param lists bitmap of the adjacency lists of the sequence
+	 * @return size in bytes, comparable to {@link Sequence#size()},
+	 *         {@link Long#MAX_VALUE} if the sequence can't be compressed
+	 */
+	public static long estimateSize(Sequence seq, Bitmap lists) {
+		return frame(seq, lists).size();
+	}
+
+	/**
+	 * compress a sequence and save it, the compressed parts are written on
+	 * disk instead of memory
+	 *
+	 * @param seq      sequence
+	 * @param lists    bitmap of the adjacency lists of the sequence
+	 * @param workDir  directory for the compressed parts, deleted after the
+	 *                 save
+	 * @param output   output
+	 * @param listener listener
+	 * @throws IOException write exception
+	 */
+	public static void save(Sequence seq, Bitmap lists, Path workDir, OutputStream output,
+			ProgressListener listener) throws IOException {
+		Files.createDirectories(workDir);
+		try {
+			SequenceEliasFano eliasFano = new SequenceEliasFano();
+			try {
+				eliasFano.encode(seq, lists, workDir);
+				eliasFano.save(output, listener);
+			} finally {
+				eliasFano.close();
+			}
+		} finally {
+			PathUtils.deleteDirectory(workDir);
+		}
+	}
+
+	private int numbits;
+	private long numentries;
+	private int lowBits;
+	private Sequence low;
+	private Bitmap high;
+	private Bitmap lists;
+
+	public SequenceEliasFano() {
+		low = new SequenceLog64Big();
+		high = Bitmap375Big.memory(0);
+	}
+
+	/**
+	 * map a sequence written by {@link #save(OutputStream, ProgressListener)},
+	 * the high bits are loaded in memory like the bitmaps of the triples
+	 *
+	 * @param in input, at the start of the sequence
+	 * @param f  file of the input
+	 * @throws IOException read exception
+	 */
+	public SequenceEliasFano(CountInputStream in, File f) throws IOException {
+		readHeader(in);
+		low = new SequenceLog64Map(in, f);
+		high = BitmapFactory.createBitmap(in);
+		high.load(in, ProgressListener.ignore());
+	}
+
+	/**
+	 * set the bitmap of the adjacency lists of the sequence, required to read
+	 * the values
+	 *
+	 * @param lists bitmap, set at the last value of each list
+	 */
+	public void setLists(Bitmap lists) {
+		this.lists = lists;
+	}
+
+	private void encode(Sequence seq, Bitmap lists, Path workDir) throws IOException {
+		Frame frame = frame(seq, lists);
+		if (frame.universe() < 0) {
+			throw new IllegalArgumentException("The shifted values of the sequence are overflowing");
+		}
+		numentries = frame.numentries();
+		numbits = frame.numbits();
+		lowBits = frame.lowBits();
+
+		// the parts are set before being written, closed by close() on error
+		try {
+			Closer.closeAll(this.low, this.high);
+		} finally {
+			this.low = null;
+			this.high = null;
+		}
+		int lowNumbits = Math.max(1, lowBits);
+		long lowEntries = lowBits == 0 ? 0 : numentries;
+		DynamicSequence low;
+		ModifiableBitmap high;
+		if (workDir == null) {
+			low = new SequenceLog64Big(lowNumbits, lowEntries, true);
+			this.low = low;
+			high = Bitmap375Big.memory(frame.highBits());
+		} else {
+			low = new SequenceLog64BigDisk(workDir.resolve("low"), lowNumbits, lowEntries, true);
+			this.low = low;
+			high = Bitmap64Big.disk(workDir.resolve("high"), frame.highBits());
+		}
+		this.high = high;
+
+		long[] buffer = new long[BUFFER_SIZE];
+		long lowMask = BitUtil.maxVal(lowBits);
+		long offset = 0;
+		for (long start = 0; start < numentries; start += BUFFER_SIZE) {
+			int len = seq.get(start, buffer, BUFFER_SIZE);
+			for (int i = 0; i < len; i++) {
+				long index = start + i;
+				long shifted = offset + buffer[i];
+				if (lowBits != 0) {
+					low.set(index, shifted & lowMask);
+				}
+				high.set((shifted >>> lowBits) + index, true);
+				if (lists.access(index)) {
+					offset = shifted;
+				}
+			}
+		}
+		if (high instanceof Bitmap375Big bitmap) {
+			bitmap.updateIndex();
+		}
+		this.lists = lists;
+	}
+
+	private void readHeader(InputStream input) throws IOException {
+		CRCInputStream in = new CRCInputStream(input, new CRC8());
+
+		int type = in.read();
+		if (type != SequenceFactory.TYPE_SEQELIASFANO) {
+			throw new IllegalFormatException("Trying to read an EliasFano sequence but the data is not EliasFano");
+		}
+		numbits = in.read();
+		lowBits = in.read();
+		numentries = VByte.decode(in);
+
+		if (!in.readCRCAndCheck()) {
+			throw new CRCException("CRC Error while reading EliasFano header.");
+		}
+
+		if (numbits > 64 || lowBits > 64) {
+			throw new IllegalFormatException("EliasFano cannot deal with more than 64bit per entry");
+		}
+	}
+
+	/**
+	 * shifted value of a position
+	 *
+	 * @param position position
+	 * @param highPos  position of the high bits of the value
+	 * @return value shifted by the offset of its list
+	 */
+	private long shifted(long position, long highPos) {
+		long value = (highPos - position) << lowBits;
+		if (lowBits != 0) {
+			value |= low.get(position);
+		}
+		return value;
+	}
+
+	private long shifted(long position) {
+		return shifted(position, high.select1(position + 1));
+	}
+
+	/**
+	 * @param position position
+	 * @return shifted value at the end of the list before the position
+	 */
+	private long listOffset(long position) {
+		if (lists == null) {
+			throw new IllegalStateException("The lists of the sequence aren't set");
+		}
+		long list = lists.rank1(position - 1);
+		return list == 0 ? 0 : shifted(lists.select1(list));
+	}
+
+	@Override
+	public void add(Iterator<Long> elements) {
+		// the lists are required to encode the values
+		throw new NotImplementedException();
+	}
+
+	@Override
+	public long get(long position) {
+		if (position < 0 || position >= numentries) {
+			throw new IndexOutOfBoundsException(position + " < 0 || " + position + " >= " + numentries);
+		}
+		return shifted(position) - listOffset(position);
+	}
+
+	@Override
+	public int get(long start, long[] dst, int len) {
+		if (start < 0) {
+			throw new IndexOutOfBoundsException(start + " < 0");
+		}
+		int count = (int) Math.max(0, Math.min(len, numentries - start));
+		if (count == 0) {
+			return 0;
+		}
+		// read the offset and the first high bits once, the next ones are
+		// the next set bits
+		long offset = listOffset(start);
+		long highPos = high.select1(start + 1);
+		for (int k = 0; k < count; k++) {
+			long position = start + k;
+			if (k != 0) {
+				highPos = high.selectNext1(highPos + 1);
+			}
+			long shifted = shifted(position, highPos);
+			dst[k] = shifted - offset;
+			if (lists.access(position)) {
+				offset = shifted;
+			}
+		}
+		return count;
+	}
+
+	@Override
+	public long getNumberOfElements() {
+		return numentries;
+	}
+
+	@Override
+	public long size() {
+		return low.size() + high.getSizeBytes();
+	}
+
+	@Override
+	public int sizeOf() {
+		return numbits;
+	}
+
+	@Override
+	public void save(OutputStream output, ProgressListener listener) throws IOException {
+		CRCOutputStream out = new CRCOutputStream(output, new CRC8());
+
+		out.write(SequenceFactory.TYPE_SEQELIASFANO);
+		out.write(numbits);
+		out.write(lowBits);
+		VByte.encode(out, numentries);
+
+		out.writeCRC();
+
+		low.save(output, listener);
+		high.save(output, listener);
+	}
+
+	@Override
+	public void load(InputStream input, ProgressListener listener) throws IOException {
+		readHeader(input);
+		SequenceLog64Big low = new SequenceLog64Big();
+		low.load(input, listener);
+		Bitmap high = BitmapFactory.createBitmap(input);
+		high.load(input, listener);
+		Closer.closeAll(this.low, this.high);
+		this.low = low;
+		this.high = high;
+	}
+
+	@Override
+	public String getType() {
+		return HDTVocabulary.SEQ_TYPE_ELIAS_FANO;
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			Closer.closeAll(low, high);
+		} finally {
+			low = null;
+			high = null;
+			lists = null;
+		}
+	}
+}
@@ -35,6 +35,7 @@ public class SequenceFactory {
 	public static final byte TYPE_SEQLOG = 1;
 	public static final byte TYPE_SEQ32 = 2;
 	public static final byte TYPE_SEQ64 = 3;
+	public static final byte TYPE_SEQELIASFANO = 4;
 
 	private SequenceFactory() {
 	}
@@ -48,6 +49,8 @@ public class SequenceFactory {
 			return new SequenceInt64();
 		} else if (name.equals(HDTVocabulary.SEQ_TYPE_LOG)) {
 			return new SequenceLog64Big();
+		} else if (name.equals(HDTVocabulary.SEQ_TYPE_ELIAS_FANO)) {
+			return new SequenceEliasFano();
 		}
 		return new SequenceLog64Big();
 	}
@@ -63,6 +66,8 @@ public class SequenceFactory {
 			return new SequenceInt32();
 		case TYPE_SEQ64:
 			return new SequenceLog64Big();
+		case TYPE_SEQELIASFANO:
+			return new SequenceEliasFano();
 		default:
 			throw new IllegalFormatException("Implementation not found for Sequence with code " + type);
 		}
@@ -75,6 +80,8 @@ public class SequenceFactory {
 		switch (type) {
 		case TYPE_SEQLOG:
 			return new SequenceLog64Map(input, f);
+		case TYPE_SEQELIASFANO:
+			return new SequenceEliasFano(input, f);
 		case TYPE_SEQ32:
 //			return new SequenceInt32();
 		case TYPE_SEQ64:
@@ -29,6 +29,7 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
 
 public class SequenceLog64BigDisk implements DynamicSequence, Closeable {
@@ -196,6 +197,46 @@ public class SequenceLog64BigDisk implements DynamicSequence, Closeable {
 		return getField(data, numbits, position);
 	}
 
+	@Override
+	public int get(long start, long[] dst, int len) {
+		if (start < 0) {
+			throw new IndexOutOfBoundsException(start + " < 0");
+		}
+		int count = (int) Math.max(0, Math.min(len, numentries - start));
+		if (numbits == 0) {
+			Arrays.fill(dst, 0, count, 0);
+			return count;
+		}
+		if (count == 0) {
+			return 0;
+		}
+
+		// unpack the values word by word instead of searching the words of
+		// each value
+		long mask = numbits == W ? -1L : (1L << numbits) - 1;
+		long bitPos = start * numbits;
+		long i = bitPos / W;
+		int j = (int) (bitPos % W);
+		long word = data.get(i);
+		for (int k = 0; k < count; k++) {
+			if (j == W) {
+				word = data.get(++i);
+				j = 0;
+			}
+			if (j + numbits <= W) {
+				dst[k] = (word >>> j) & mask;
+				j += numbits;
+			} else {
+				// the value is split between 2 words
+				long next = data.get(++i);
+				dst[k] = ((word >>> j) | (next << (W - j))) & mask;
+				word = next;
+				j += numbits - W;
+			}
+		}
+		return count;
+	}
+
 	@Override
 	public void set(long position, long value) {
 		if (value < 0 || value > maxvalue) {
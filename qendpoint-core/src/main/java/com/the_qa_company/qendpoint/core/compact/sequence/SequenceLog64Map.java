@@ -46,6 +46,7 @@ import java.nio.ByteOrder;
 import java.nio.channels.FileChannel;
 import java.nio.channels.FileChannel.MapMode;
 import java.nio.file.Paths;
+import java.util.Arrays;
 import java.util.Iterator;
 
 /**
@@ -206,6 +207,46 @@ public class SequenceLog64Map implements Sequence, Closeable {
 		return result;
 	}
 
+	@Override
+	public int get(long start, long[] dst, int len) {
+		if (start < 0) {
+			throw new IndexOutOfBoundsException(start + " < 0");
+		}
+		int count = (int) Math.max(0, Math.min(len, numentries - start));
+		if (numbits == 0) {
+			Arrays.fill(dst, 0, count, 0);
+			return count;
+		}
+		if (count == 0) {
+			return 0;
+		}
+
+		// unpack the values word by word instead of searching the words of
+		// each value
+		long mask = numbits == W ? -1L : (1L << numbits) - 1;
+		long bitPos = start * numbits;
+		long i = bitPos / W;
+		int j = (int) (bitPos % W);
+		long word = getWord(i);
+		for (int k = 0; k < count; k++) {
+			if (j == W) {
+				word = getWord(++i);
+				j = 0;
+			}
+			if (j + numbits <= W) {
+				dst[k] = (word >>> j) & mask;
+				j += numbits;
+			} else {
+				// the value is split between 2 words
+				long next = getWord(++i);
+				dst[k] = ((word >>> j) | (next << (W - j))) & mask;
+				word = next;
+				j += numbits - W;
+			}
+		}
+		return count;
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * @see hdt.triples.array.Stream#getNumberOfElements()
@@ -0,0 +1,245 @@
+package com.the_qa_company.qendpoint.core.dictionary.impl;
+
+import com.the_qa_company.qendpoint.core.dictionary.Dictionary;
+import com.the_qa_company.qendpoint.core.dictionary.DictionarySection;
+import com.the_qa_company.qendpoint.core.enums.RDFNodeType;
+import com.the_qa_company.qendpoint.core.enums.TripleComponentRole;
+import com.the_qa_company.qendpoint.core.header.Header;
+import com.the_qa_company.qendpoint.core.util.concurrent.ClockCache;
+import com.the_qa_company.qendpoint.core.util.string.PrefixesStorage;
+
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Dictionary caching the {@link #idToString(long, TripleComponentRole)} and
+ * {@link #stringToId(CharSequence, TripleComponentRole)} results of another
+ * dictionary, the cache can be shared by concurrent readers.
+ * <p>
+ * The cache is bounded by the estimated size in bytes of its entries, half for
+ * each direction. The strings are returned as {@link String}.
+ * <p>
+ * The wrapped dictionary isn't closed with this dictionary, it stays owned by
+ * its HDT.
+ */
+public class CachedDictionary implements Dictionary {
+	/**
+	 * estimated size of an entry without its string, in bytes
+	 */
+	private static final long ENTRY_SIZE = 128;
+
+	private record StringKey(String str, TripleComponentRole role) {}
+
+	private static long stringSize(String str) {
+		return ENTRY_SIZE + 2L * str.length();
+	}
+
+	private final Dictionary dictionary;
+	private final ClockCache<Long, String> idToStringCache;
+	private final ClockCache<StringKey, Long> stringToIdCache;
+
+	/**
+	 * create a cached dictionary
+	 *
+	 * @param dictionary dictionary to cache
+	 * @param maxSize    maximum size of the cache in bytes
+	 */
+	public CachedDictionary(Dictionary dictionary, long maxSize) {
+		this.dictionary = dictionary;
+		long directionSize = Math.max(1, maxSize / 2);
+		idToStringCache = new ClockCache<>(directionSize, (id, str) -> stringSize(str));
+		stringToIdCache = new ClockCache<>(directionSize, (key, id) -> stringSize(key.str()));
+	}
+
+	/**
+	 * @return the cached dictionary
+	 */
+	public Dictionary getDictionary() {
+		return dictionary;
+	}
+
+	/**
+	 * @return the cache of the {@link #idToString(long, TripleComponentRole)}
+	 *         results, to read its metrics
+	 */
+	public ClockCache<Long, String> getIdToStringCache() {
+		return idToStringCache;
+	}
+
+	/**
+	 * @return the cache of the
+	 *         {@link #stringToId(CharSequence, TripleComponentRole)} results, to
+	 *         read its metrics
+	 */
+	public ClockCache<?, Long> getStringToIdCache() {
+		return stringToIdCache;
+	}
+
+	@Override
+	public CharSequence idToString(long id, TripleComponentRole position) {
+		// the ids of the roles are in different sections
+		return idToStringCache.get((id << 2) | position.ordinal(), key -> {
+			CharSequence str = dictionary.idToString(id, position);
+			return str == null ? null : str.toString();
+		});
+	}
+
+	@Override
+	public long stringToId(CharSequence str, TripleComponentRole position) {
+		if (str == null || str.isEmpty()) {
+			return dictionary.stringToId(str, position);
+		}
+		// the missing strings are cached too, the dictionary is read only
+		return stringToIdCache.get(new StringKey(str.toString(), position),
+				key -> dictionary.stringToId(key.str(), key.role()));
+	}
+
+	@Override
+	public Iterator<? extends CharSequence> stringIterator(TripleComponentRole role, boolean includeShared) {
+		return dictionary.stringIterator(role, includeShared);
+	}
+
+	@Override
+	public CharSequence dataTypeOfId(long id) {
+		return dictionary.dataTypeOfId(id);
+	}
+
+	@Override
+	public CharSequence languageOfId(long id) {
+		return dictionary.languageOfId(id);
+	}
+
+	@Override
+	public RDFNodeType nodeTypeOfId(TripleComponentRole role, long id) {
+		return dictionary.nodeTypeOfId(role, id);
+	}
+
+	@Override
+	public boolean supportsNodeTypeOfId() {
+		return dictionary.supportsNodeTypeOfId();
+	}
+
+	@Override
+	public boolean supportsDataTypeOfId() {
+		return dictionary.supportsDataTypeOfId();
+	}
+
+	@Override
+	public boolean supportsLanguageOfId() {
+		return dictionary.supportsLanguageOfId();
+	}
+
+	@Override
+	public boolean isMultiSectionDictionary() {
+		return dictionary.isMultiSectionDictionary();
+	}
+
+	@Override
+	public boolean isPrefixDictionary() {
+		return dictionary.isPrefixDictionary();
+	}
+
+	@Override
+	public boolean supportGraphs() {
+		return dictionary.supportGraphs();
+	}
+
+	@Override
+	public long getNumberOfElements() {
+		return dictionary.getNumberOfElements();
+	}
+
+	@Override
+	public long size() {
+		return dictionary.size();
+	}
+
+	@Override
+	public long getNsubjects() {
+		return dictionary.getNsubjects();
+	}
+
+	@Override
+	public long getNpredicates() {
+		return dictionary.getNpredicates();
+	}
+
+	@Override
+	public long getNobjects() {
+		return dictionary.getNobjects();
+	}
+
+	@Override
+	public long getNgraphs() {
+		return dictionary.getNgraphs();
+	}
+
+	@Override
+	public long getNAllObjects() {
+		return dictionary.getNAllObjects();
+	}
+
+	@Override
+	public long getNshared() {
+		return dictionary.getNshared();
+	}
+
+	@Override
+	public DictionarySection getSubjects() {
+		return dictionary.getSubjects();
+	}
+
+	@Override
+	public DictionarySection getPredicates() {
+		return dictionary.getPredicates();
+	}
+
+	@Override
+	public DictionarySection getObjects() {
+		return dictionary.getObjects();
+	}
+
+	@Override
+	public DictionarySection getGraphs() {
+		return dictionary.getGraphs();
+	}
+
+	@Override
+	public Map<? extends CharSequence, DictionarySection> getAllObjects() {
+		return dictionary.getAllObjects();
+	}
+
+	@Override
+	public DictionarySection getShared() {
+		return dictionary.getShared();
+	}
+
+	@Override
+	public void populateHeader(Header header, String rootNode) {
+		dictionary.populateHeader(header, rootNode);
+	}
+
+	@Override
+	public PrefixesStorage getPrefixesStorage(boolean ignoreMapping) {
+		return dictionary.getPrefixesStorage(ignoreMapping);
+	}
+
+	@Override
+	public void setPrefixMapping(boolean mapping) {
+		dictionary.setPrefixMapping(mapping);
+		// the strings depend on the mapping
+		idToStringCache.clear();
+		stringToIdCache.clear();
+	}
+
+	@Override
+	public String getType() {
+		return dictionary.getType();
+	}
+
+	@Override
+	public void close() {
+		idToStringCache.clear();
+		stringToIdCache.clear();
+	}
+}
@@ -113,6 +113,7 @@ public class HDTVocabulary {
 	public static final String SEQ_TYPE_LOG = HDT_SEQ_BASE + "Log>";
 	public static final String SEQ_TYPE_HUFFMAN = HDT_SEQ_BASE + "Huffman>";
 	public static final String SEQ_TYPE_WAVELET = HDT_SEQ_BASE + "Wavelet>";
+	public static final String SEQ_TYPE_ELIAS_FANO = HDT_SEQ_BASE + "EliasFano>";
 
 	// Bitmaps
 	public static final String BITMAP_TYPE_PLAIN = HDT_BITMAP_BASE + "Plain>";
@@ -639,7 +639,7 @@ public class HDTImpl extends HDTBase<HeaderPrivate, DictionaryPrivate, TriplesPr
 			}
 			BitmapTriplesIteratorCat it = new BitmapTriplesIteratorCat(hdt1.getTriples(), hdt2.getTriples(),
 					dictionaryCat);
-			BitmapTriplesCat bitmapTriplesCat = new BitmapTriplesCat(location);
+			BitmapTriplesCat bitmapTriplesCat = new BitmapTriplesCat(location, spec);
 			bitmapTriplesCat.cat(it, listener);
 			profiler.popSection();
 		}
@@ -722,7 +722,7 @@ public class HDTImpl extends HDTBase<HeaderPrivate, DictionaryPrivate, TriplesPr
 			}
 			BitmapTriplesIteratorCat it = new BitmapTriplesIteratorCat(hdt1.getTriples(), hdt2.getTriples(),
 					dictionaryCat);
-			BitmapTriplesCat bitmapTriplesCat = new BitmapTriplesCat(location);
+			BitmapTriplesCat bitmapTriplesCat = new BitmapTriplesCat(location, spec);
 			bitmapTriplesCat.cat(it, listener);
 			profiler.popSection();
 		}
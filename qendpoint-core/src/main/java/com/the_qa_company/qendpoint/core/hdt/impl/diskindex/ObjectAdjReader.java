@@ -3,16 +3,21 @@ package com.the_qa_company.qendpoint.core.hdt.impl.diskindex;
 import com.the_qa_company.qendpoint.core.util.io.compress.Pair;
 import com.the_qa_company.qendpoint.core.compact.bitmap.Bitmap;
 import com.the_qa_company.qendpoint.core.compact.sequence.Sequence;
+import com.the_qa_company.qendpoint.core.compact.sequence.SequenceCursor;
 import com.the_qa_company.qendpoint.core.iterator.utils.FetcherIterator;
 
 public class ObjectAdjReader extends FetcherIterator<Pair> {
-	private final Sequence seqZ, seqY;
+	private final Sequence seqZ;
+	private final SequenceCursor cursorZ, cursorY;
 	private final Bitmap bitmapZ;
 	private long indexY, indexZ;
+	private long predicate;
+	private boolean readPredicate = true;
 
 	public ObjectAdjReader(Sequence seqZ, Sequence seqY, Bitmap bitmapZ) {
 		this.seqZ = seqZ;
-		this.seqY = seqY;
+		this.cursorZ = seqZ.cursor(0);
+		this.cursorY = seqY.cursor(0);
 		this.bitmapZ = bitmapZ;
 	}
 
@@ -22,15 +27,21 @@ public class ObjectAdjReader extends FetcherIterator<Pair> {
 			return null;
 		}
 
+		if (readPredicate) {
+			predicate = cursorY.next();
+			readPredicate = false;
+		}
+
 		Pair pair = new Pair();
 		// create a pair object
-		pair.object = seqZ.get(indexZ);
+		pair.object = cursorZ.next();
 		pair.predicatePosition = indexY;
-		pair.predicate = seqY.get(indexY);
+		pair.predicate = predicate;
 
 		// shift to the next predicate if required
 		if (bitmapZ.access(indexZ++)) {
 			indexY++;
+			readPredicate = true;
 		}
 		return pair;
 	}
@@ -5,6 +5,7 @@ import com.the_qa_company.qendpoint.core.enums.TripleComponentOrder;
 import com.the_qa_company.qendpoint.core.exceptions.NotImplementedException;
 import com.the_qa_company.qendpoint.core.triples.IteratorTripleID;
 import com.the_qa_company.qendpoint.core.triples.TripleID;
+import com.the_qa_company.qendpoint.core.triples.TripleIDBatch;
 
 public class GraphFilteringTripleId implements IteratorTripleID {
 	private final IteratorTripleID iterator;
@@ -96,6 +97,32 @@ public class GraphFilteringTripleId implements IteratorTripleID {
 		return newVal;
 	}
 
+	@Override
+	public int nextBatch(TripleIDBatch batch) {
+		if (next != null) {
+			// a triple was already read by hasNext()
+			return IteratorTripleID.super.nextBatch(batch);
+		}
+		long[] graphs = batch.getGraphs();
+		while (iterator.nextBatch(batch) != 0) {
+			int size = 0;
+			for (int i = 0; i < batch.size(); i++) {
+				long g = graphs[i];
+				for (long graphId : graphIds) {
+					if (graphId == g) {
+						batch.move(i, size++);
+						break;
+					}
+				}
+			}
+			if (size != 0) {
+				batch.setSize(size);
+				return size;
+			}
+		}
+		return 0;
+	}
+
 	@Override
 	public void remove() {
 		throw new NotImplementedException();
@@ -444,6 +444,22 @@ public class HDTOptionsKeys {
 	@Key(type = Key.Type.PATH, desc = "Disk location for the " + BITMAPTRIPLES_SEQUENCE_DISK + " option")
 	public static final String BITMAPTRIPLES_SEQUENCE_DISK_LOCATION = "bitmaptriples.sequence.disk.location";
 
+	/**
+	 * Number of workers to generate the object and predicate indexes, default
+	 * to the number of processors
+	 */
+	@Key(type = Key.Type.NUMBER, desc = "Number of workers to generate the object and predicate indexes")
+	public static final String BITMAPTRIPLES_INDEX_WORKERS = "bitmaptriples.index.workers";
+
+	/**
+	 * Memory in bytes used by the count tables of the workers generating the
+	 * object and predicate indexes, default to 50% of the available memory,
+	 * the number of workers is reduced if the tables don't fit. Not used with
+	 * the {@link #BITMAPTRIPLES_SEQUENCE_DISK} option, the tables are on disk.
+	 */
+	@Key(type = Key.Type.NUMBER, desc = "Memory in bytes used by the count tables of the index workers")
+	public static final String BITMAPTRIPLES_INDEX_MEMORY = "bitmaptriples.index.memory";
+
 	/**
 	 * Bitmap type for the Y bitmap, default
 	 * {@link HDTVocabulary#BITMAP_TYPE_PLAIN}
@@ -460,16 +476,26 @@ public class HDTOptionsKeys {
 
 	/**
 	 * Sequence type for the Y sequence, default
-	 * {@link HDTVocabulary#SEQ_TYPE_LOG}
-	 */
-	@Key(type = Key.Type.STRING, desc = "Sequence type for the Y sequence, default " + HDTVocabulary.SEQ_TYPE_LOG)
+	 * {@link HDTVocabulary#SEQ_TYPE_LOG}, {@link HDTVocabulary#SEQ_TYPE_ELIAS_FANO}
+	 * to compress the adjacency lists with Elias-Fano. The Elias-Fano sequence
+	 * is only written if it is smaller than the log sequence, with short lists
+	 * of distant ids the log sequence is kept and a warning is logged
+	 */
+	@Key(type = Key.Type.STRING, desc = "Sequence type for the Y sequence, default " + HDTVocabulary.SEQ_TYPE_LOG
+			+ ", " + HDTVocabulary.SEQ_TYPE_ELIAS_FANO
+			+ " to compress the adjacency lists, only used if smaller than the log sequence")
 	public static final String BITMAPTRIPLES_SEQ_Y = "seq.y";
 
 	/**
 	 * Sequence type for the Z sequence, default
-	 * {@link HDTVocabulary#SEQ_TYPE_LOG}
-	 */
-	@Key(type = Key.Type.STRING, desc = "Sequence type for the Z sequence, default " + HDTVocabulary.SEQ_TYPE_LOG)
+	 * {@link HDTVocabulary#SEQ_TYPE_LOG}, {@link HDTVocabulary#SEQ_TYPE_ELIAS_FANO}
+	 * to compress the adjacency lists with Elias-Fano. The Elias-Fano sequence
+	 * is only written if it is smaller than the log sequence, with short lists
+	 * of distant ids the log sequence is kept and a warning is logged
+	 */
+	@Key(type = Key.Type.STRING, desc = "Sequence type for the Z sequence, default " + HDTVocabulary.SEQ_TYPE_LOG
+			+ ", " + HDTVocabulary.SEQ_TYPE_ELIAS_FANO
+			+ " to compress the adjacency lists, only used if smaller than the log sequence")
 	public static final String BITMAPTRIPLES_SEQ_Z = "seq.z";
 
 	/**
@@ -552,6 +578,20 @@ public class HDTOptionsKeys {
 	@Key(type = Key.Type.BOOLEAN, desc = "Allow old other indexes, default false")
 	public static final String BITMAPTRIPLES_INDEX_ALLOW_OLD_OTHERS = "bitmaptriples.index.allowOldOthers";
 
+	/**
+	 * Number of workers to sort the triples of the other indexes, default to
+	 * the value of {@link #BITMAPTRIPLES_DISK_WORKER_KEY}
+	 */
+	@Key(type = Key.Type.NUMBER, desc = "Number of workers to sort the triples of the other indexes")
+	public static final String BITMAPTRIPLES_INDEX_OTHERS_WORKERS = "bitmaptriples.index.others.workers";
+
+	/**
+	 * Memory in bytes used by the chunks to sort the triples of the other
+	 * indexes, shared by the workers, default to 85% of the available memory
+	 */
+	@Key(type = Key.Type.NUMBER, desc = "Memory in bytes used to sort the triples of the other indexes")
+	public static final String BITMAPTRIPLES_INDEX_OTHERS_MEMORY = "bitmaptriples.index.others.memory";
+
 	@Key(type = Key.Type.BOOLEAN, desc = "No FoQ index generation default false")
 	public static final String BITMAPTRIPLES_INDEX_NO_FOQ = "bitmaptriples.index.noFoQ";
 
@@ -103,4 +103,21 @@ public interface IteratorTripleID extends Iterator<TripleID> {
 	default boolean isLastTriplePositionBoundToOrder() {
 		return false;
 	}
+
+	/**
+	 * Fill a batch with the next triples of the iterator, the batch is cleared
+	 * before. The iterator can be used with {@link #next()} after this call.
+	 *
+	 * @param batch batch to fill
+	 * @return the number of triples read, 0 if the iterator is finished
+	 */
+	default int nextBatch(TripleIDBatch batch) {
+		batch.clear();
+		boolean readPositions = batch.isReadPositions();
+		while (!batch.isFull() && hasNext()) {
+			TripleID triple = next();
+			batch.add(triple, readPositions ? getLastTriplePosition() : 0);
+		}
+		return batch.size();
+	}
 }
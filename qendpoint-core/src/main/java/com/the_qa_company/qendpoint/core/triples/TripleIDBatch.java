@@ -0,0 +1,218 @@
+package com.the_qa_company.qendpoint.core.triples;
+
+import com.the_qa_company.qendpoint.core.enums.TripleComponentRole;
+
+/**
+ * Block of triples read with {@link IteratorTripleID#nextBatch(TripleIDBatch)},
+ * the components are stored in columns.
+ */
+public class TripleIDBatch {
+	/**
+	 * default number of triples of a batch
+	 */
+	public static final int DEFAULT_CAPACITY = 1024;
+
+	private final long[] subjects;
+	private final long[] predicates;
+	private final long[] objects;
+	private final long[] graphs;
+	private final long[] positions;
+	private final boolean readPositions;
+	private int limit;
+	private int size;
+
+	/**
+	 * create a batch with the default capacity, reading the positions
+	 */
+	public TripleIDBatch() {
+		this(DEFAULT_CAPACITY, true);
+	}
+
+	/**
+	 * create a batch
+	 *
+	 * @param capacity      maximum number of triples in the batch
+	 * @param readPositions read the positions of the triples, the positions
+	 *                      are 0 if false, the positions are described by
+	 *                      {@link IteratorTripleID#getLastTriplePosition()}
+	 */
+	public TripleIDBatch(int capacity, boolean readPositions) {
+		if (capacity <= 0) {
+			throw new IllegalArgumentException("capacity should be positive: " + capacity);
+		}
+		subjects = new long[capacity];
+		predicates = new long[capacity];
+		objects = new long[capacity];
+		graphs = new long[capacity];
+		positions = new long[capacity];
+		this.readPositions = readPositions;
+		limit = capacity;
+	}
+
+	/**
+	 * set the number of triples read with the next batches, used to read
+	 * small batches first and grow them
+	 *
+	 * @param limit maximum number of triples, between 1 and
+	 *              {@link #maxCapacity()}
+	 */
+	public void setLimit(int limit) {
+		if (limit <= 0 || limit > maxCapacity()) {
+			throw new IllegalArgumentException("Invalid limit " + limit + " for a batch of capacity " + maxCapacity());
+		}
+		if (limit < size) {
+			throw new IllegalArgumentException("Can't set the limit " + limit + " under the size " + size);
+		}
+		this.limit = limit;
+	}
+
+	/**
+	 * remove all the triples of the batch
+	 */
+	public void clear() {
+		size = 0;
+	}
+
+	/**
+	 * add a triple
+	 *
+	 * @param subject   subject id
+	 * @param predicate predicate id
+	 * @param object    object id
+	 * @param graph     graph id, 0 for a triple
+	 * @param position  position of the triple
+	 */
+	public void add(long subject, long predicate, long object, long graph, long position) {
+		subjects[size] = subject;
+		predicates[size] = predicate;
+		objects[size] = object;
+		graphs[size] = graph;
+		positions[size] = position;
+		size++;
+	}
+
+	/**
+	 * add a triple
+	 *
+	 * @param triple   triple
+	 * @param position position of the triple
+	 */
+	public void add(TripleID triple, long position) {
+		add(triple.getSubject(), triple.getPredicate(), triple.getObject(), triple.isQuad() ? triple.getGraph() : 0,
+				position);
+	}
+
+	/**
+	 * copy a triple of the batch to another index, used with
+	 * {@link #setSize(int)} to filter the batch in place
+	 *
+	 * @param from index of the triple to move
+	 * @param to   index to move the triple to
+	 */
+	public void move(int from, int to) {
+		subjects[to] = subjects[from];
+		predicates[to] = predicates[from];
+		objects[to] = objects[from];
+		graphs[to] = graphs[from];
+		positions[to] = positions[from];
+	}
+
+	/**
+	 * set the number of triples, used after writing the columns or filtering
+	 * the batch
+	 *
+	 * @param size new size
+	 */
+	public void setSize(int size) {
+		if (size < 0 || size > capacity()) {
+			throw new IllegalArgumentException("Invalid size " + size + " for a batch of capacity " + capacity());
+		}
+		this.size = size;
+	}
+
+	/**
+	 * get the column of a role
+	 *
+	 * @param role role
+	 * @return column
+	 */
+	public long[] getColumn(TripleComponentRole role) {
+		return switch (role) {
+		case SUBJECT -> subjects;
+		case PREDICATE -> predicates;
+		case OBJECT -> objects;
+		case GRAPH -> graphs;
+		};
+	}
+
+	/**
+	 * @return if the batch is full
+	 */
+	public boolean isFull() {
+		return size >= limit;
+	}
+
+	/**
+	 * @return the number of triples
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return the maximum number of triples, the limit of the batch
+	 */
+	public int capacity() {
+		return limit;
+	}
+
+	/**
+	 * @return the size of the columns
+	 */
+	public int maxCapacity() {
+		return subjects.length;
+	}
+
+	/**
+	 * @return if the positions of the triples should be read
+	 */
+	public boolean isReadPositions() {
+		return readPositions;
+	}
+
+	public long[] getSubjects() {
+		return subjects;
+	}
+
+	public long[] getPredicates() {
+		return predicates;
+	}
+
+	public long[] getObjects() {
+		return objects;
+	}
+
+	public long[] getGraphs() {
+		return graphs;
+	}
+
+	public long[] getPositions() {
+		return positions;
+	}
+
+	/**
+	 * read a triple of the batch
+	 *
+	 * @param index  index of the triple
+	 * @param triple triple to fill
+	 * @return triple
+	 */
+	public TripleID get(int index, TripleID triple) {
+		if (graphs[index] != 0) {
+			triple.setAll(subjects[index], predicates[index], objects[index], graphs[index]);
+		} else {
+			triple.setAll(subjects[index], predicates[index], objects[index]);
+		}
+		return triple;
+	}
+}
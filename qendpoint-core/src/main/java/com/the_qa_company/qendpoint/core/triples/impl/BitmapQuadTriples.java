@@ -174,9 +174,10 @@ public class BitmapQuadTriples extends BitmapTriples {
 		vectorY.aggressiveTrimToSize();
 		vectorZ.trimToSize();
 
-		// Assign local variables to BitmapTriples Object
-		seqY = vectorY;
-		seqZ = vectorZ;
+		// Assign local variables to BitmapTriples Object, the sequences
+		// created with the options are telling the type to use
+		seqY = convertSequence(vectorY, bitY, seqY);
+		seqZ = convertSequence(vectorZ, bitZ, seqZ);
 		bitmapY = bitY;
 		bitmapZ = bitZ;
 
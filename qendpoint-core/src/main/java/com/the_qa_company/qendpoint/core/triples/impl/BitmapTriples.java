@@ -26,6 +26,8 @@ import com.the_qa_company.qendpoint.core.compact.bitmap.ModifiableBitmap;
 import com.the_qa_company.qendpoint.core.compact.bitmap.MultiLayerBitmap;
 import com.the_qa_company.qendpoint.core.compact.sequence.DynamicSequence;
 import com.the_qa_company.qendpoint.core.compact.sequence.Sequence;
+import com.the_qa_company.qendpoint.core.compact.sequence.SequenceCursor;
+import com.the_qa_company.qendpoint.core.compact.sequence.SequenceEliasFano;
 import com.the_qa_company.qendpoint.core.compact.sequence.SequenceFactory;
 import com.the_qa_company.qendpoint.core.compact.sequence.SequenceLog64;
 import com.the_qa_company.qendpoint.core.compact.sequence.SequenceLog64Big;
@@ -56,7 +58,9 @@ import com.the_qa_company.qendpoint.core.triples.TripleID;
 import com.the_qa_company.qendpoint.core.triples.TriplesPrivate;
 import com.the_qa_company.qendpoint.core.util.BitUtil;
 import com.the_qa_company.qendpoint.core.util.StopWatch;
+import com.the_qa_company.qendpoint.core.util.concurrent.ExceptionThread;
 import com.the_qa_company.qendpoint.core.util.concurrent.KWayMerger;
+import com.the_qa_company.qendpoint.core.util.concurrent.StripedSyncSeq;
 import com.the_qa_company.qendpoint.core.util.io.CloseSuppressPath;
 import com.the_qa_company.qendpoint.core.util.io.Closer;
 import com.the_qa_company.qendpoint.core.util.io.CountInputStream;
@@ -72,6 +76,7 @@ import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
 import java.nio.channels.FileChannel;
 import java.nio.file.Files;
@@ -81,12 +86,14 @@ import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Comparator;
+import java.util.EnumMap;
 import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.function.LongUnaryOperator;
 import java.util.stream.Collectors;
 
 /**
@@ -269,9 +276,10 @@ public class BitmapTriples implements TriplesPrivate, BitmapTriplesIndex {
 		vectorY.aggressiveTrimToSize();
 		vectorZ.trimToSize();
 
-		// Assign local variables to BitmapTriples Object
-		seqY = vectorY;
-		seqZ = vectorZ;
+		// Assign local variables to BitmapTriples Object, the sequences
+		// created with the options are telling the type to use
+		seqY = convertSequence(vectorY, bitY, seqY);
+		seqZ = convertSequence(vectorZ, bitZ, seqZ);
 		bitmapY = bitY;
 		bitmapZ = bitZ;
 
@@ -285,6 +293,74 @@ public class BitmapTriples implements TriplesPrivate, BitmapTriplesIndex {
 		isClosed = false;
 	}
 
+	/**
+	 * convert a loaded sequence into the type of the sequence created with the
+	 * options
+	 *
+	 * @param vector loaded sequence, closed if converted
+	 * @param lists  bitmap of the adjacency lists of the sequence
+	 * @param type   sequence created with the options, can be null, closed
+	 * @return sequence to use
+	 */
+	static Sequence convertSequence(DynamicSequence vector, Bitmap lists, Sequence type) {
+		if (type == null || type == vector) {
+			return vector;
+		}
+		IOUtil.closeQuietly(type);
+		if (!useEliasFano(type.getType(), vector, lists)) {
+			return vector;
+		}
+		SequenceEliasFano eliasFano = SequenceEliasFano.of(vector, lists);
+		IOUtil.closeQuietly(vector);
+		return eliasFano;
+	}
+
+	/**
+	 * test if a sequence should be compressed with Elias-Fano, the encoding is
+	 * bigger than the sequence with short adjacency lists of distant ids, the
+	 * sequence is then kept and the fallback is logged
+	 *
+	 * @param type   sequence type of the options, can be null
+	 * @param vector sequence
+	 * @param lists  bitmap of the adjacency lists of the sequence
+	 * @return if the sequence should be converted to {@link SequenceEliasFano}
+	 */
+	static boolean useEliasFano(String type, Sequence vector, Bitmap lists) {
+		if (!HDTVocabulary.SEQ_TYPE_ELIAS_FANO.equals(type)) {
+			return false;
+		}
+		long size = SequenceEliasFano.estimateSize(vector, lists);
+		if (size >= vector.size()) {
+			log.warn("The {} sequence would use {} bytes instead of {} bytes, keeping the {} sequence", type,
+					size == Long.MAX_VALUE ? "too many" : size, vector.size(), vector.getType());
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * save a sequence written by a disk writer with the type of the options,
+	 * the compressed sequence is written on disk
+	 *
+	 * @param vector   sequence
+	 * @param lists    bitmap of the adjacency lists of the sequence, null if
+	 *                 the type isn't {@link HDTVocabulary#SEQ_TYPE_ELIAS_FANO}
+	 * @param type     sequence type of the options, can be null
+	 * @param workDir  directory to compress the sequence, deleted after the
+	 *                 save
+	 * @param output   output
+	 * @param listener listener
+	 * @throws IOException write exception
+	 */
+	static void saveSequence(Sequence vector, Bitmap lists, String type, Path workDir, OutputStream output,
+			ProgressListener listener) throws IOException {
+		if (lists != null && useEliasFano(type, vector, lists)) {
+			SequenceEliasFano.save(vector, lists, workDir, output, listener);
+		} else {
+			vector.save(output, listener);
+		}
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * @see hdt.triples.Triples#load(hdt.triples.TempTriples,
@@ -699,9 +775,10 @@ public class BitmapTriples implements TriplesPrivate, BitmapTriplesIndex {
 			long size = Math.max(seqY.getNumberOfElements(), 1);
 			long block = size < 10 ? 1 : size / 10;
 
+			SequenceCursor cursorY = seqY.cursor(0);
 			for (long i = 0; i < seqY.getNumberOfElements(); i++) {
 				// Read value
-				long val = seqY.get(i);
+				long val = cursorY.next();
 
 				if (i % block == 0) {
 					listener.notifyProgress(i / (block / 10f), "writing predCount " + i + "/" + size);
@@ -727,7 +804,7 @@ public class BitmapTriples implements TriplesPrivate, BitmapTriplesIndex {
 		log.info("Index generated in {}", global.stopAndShow());
 	}
 
-	private void createIndexObjectMemoryEfficient() throws IOException {
+	private void createIndexObjectMemoryEfficient(HDTOptions spec) throws IOException {
 		Path diskLocation;
 		if (diskSequence) {
 			diskLocation = diskSequenceLocation.createOrGetPath();
@@ -738,150 +815,57 @@ public class BitmapTriples implements TriplesPrivate, BitmapTriplesIndex {
 		StopWatch global = new StopWatch();
 		StopWatch st = new StopWatch();
 
-		// Count the number of appearances of each object
-		long maxCount = 0;
-		long numDifferentObjects = 0;
-		long numReservedObjects = 8192;
 		ModifiableBitmap bitmapIndex = null;
 		DynamicSequence predCount = null;
 		DynamicSequence objectArray = null;
 
 		try {
-			try (DynamicSequence objectCount = createSequence64(diskLocation, "objectCount",
-					BitUtil.log2(seqZ.getNumberOfElements()), numReservedObjects)) {
-				for (long i = 0; i < seqZ.getNumberOfElements(); i++) {
-					long val = seqZ.get(i);
-					if (val == 0) {
-						throw new RuntimeException("ERROR: There is a zero value in the Z level.");
-					}
-					if (numReservedObjects < val) {
-						while (numReservedObjects < val) {
-							numReservedObjects <<= 1;
-						}
-						objectCount.resize(numReservedObjects);
-					}
-					if (numDifferentObjects < val) {
-						numDifferentObjects = val;
-					}
-
-					long count = objectCount.get(val - 1) + 1;
-					maxCount = Math.max(count, maxCount);
-					objectCount.set(val - 1, count);
-				}
-				log.info("Count Objects in {} Max was: {}", st.stopAndShow(), maxCount);
+			int workers = ParallelCountingSort.getWorkers(this, spec, seqZ);
+			try (ParallelCountingSort sort = new ParallelCountingSort(this, diskLocation, "objectIndex", seqZ,
+					workers)) {
+				// Count the number of appearances of each object
+				sort.count();
+				sort.computeOffsets();
+				log.info("Count Objects in {} with {} worker(s)", st.stopAndShow(), workers);
 				st.reset();
 
 				// Calculate bitmap that separates each object sublist.
 				bitmapIndex = createBitmap375(diskLocation, "bitmapIndex", seqZ.getNumberOfElements());
-				long tmpCount = 0;
-				for (long i = 0; i < numDifferentObjects; i++) {
-					tmpCount += objectCount.get(i);
-					bitmapIndex.set(tmpCount - 1, true);
-				}
-				bitmapIndex.set(seqZ.getNumberOfElements() - 1, true);
+				sort.fillBitmap(bitmapIndex);
 				log.info("Bitmap in {}", st.stopAndShow());
-			}
-			st.reset();
-
-			objectArray = createSequence64(diskLocation, "objectArray", BitUtil.log2(seqY.getNumberOfElements()),
-					seqZ.getNumberOfElements(), true);
-			objectArray.resize(seqZ.getNumberOfElements());
-
-			// Copy each object reference to its position
-			try (DynamicSequence objectInsertedCount = createSequence64(diskLocation, "objectInsertedCount",
-					BitUtil.log2(maxCount), numDifferentObjects)) {
-				objectInsertedCount.resize(numDifferentObjects);
+				st.reset();
 
-				for (long i = 0; i < seqZ.getNumberOfElements(); i++) {
-					long objectValue = seqZ.get(i);
-					long posY = i > 0 ? bitmapZ.rank1(i - 1) : 0;
+				objectArray = createSequence64(diskLocation, "objectArray", BitUtil.log2(seqY.getNumberOfElements()),
+						seqZ.getNumberOfElements(), true);
 
-					long insertBase = objectValue == 1 ? 0 : bitmapIndex.select1(objectValue - 1) + 1;
-					long insertOffset = objectInsertedCount.get(objectValue - 1);
-					objectInsertedCount.set(objectValue - 1, insertOffset + 1);
+				// Copy each object reference to its position, the position in
+				// Y is the number of Y lists ended before the Z position
+				sort.distribute(objectArray, start -> new LongUnaryOperator() {
+					private long posY = start > 0 ? bitmapZ.rank1(start - 1) : 0;
 
-					objectArray.set(insertBase + insertOffset, posY);
-				}
+					@Override
+					public long applyAsLong(long i) {
+						long current = posY;
+						if (bitmapZ.access(i)) {
+							posY++;
+						}
+						return current;
+					}
+				});
 				log.info("Object references in {}", st.stopAndShow());
 			}
 			st.reset();
 
-			long object = 1;
-			long first = 0;
-			long last = bitmapIndex.selectNext1(first) + 1;
-			do {
-				long listLen = last - first;
-
-				// Sublists of one element do not need to be sorted.
-
-				// Hard-coded size 2 for speed (They are quite common).
-				if (listLen == 2) {
-					long aPos = objectArray.get(first);
-					long a = seqY.get(aPos);
-					long bPos = objectArray.get(first + 1);
-					long b = seqY.get(bPos);
-					if (a > b) {
-						objectArray.set(first, bPos);
-						objectArray.set(first + 1, aPos);
-					}
-				} else if (listLen > 2) {
-					class Pair {
-						Long valueY;
-						Long positionY;
-
-						@Override
-						public String toString() {
-							return String.format("%d %d", valueY, positionY);
-						}
-					}
-
-					// FIXME: Sort directly without copying?
-					ArrayList<Pair> list = new ArrayList<>((int) listLen);
-
-					// Create temporary list of (position, predicate)
-					for (long i = first; i < last; i++) {
-						Pair p = new Pair();
-						p.positionY = objectArray.get(i);
-						p.valueY = seqY.get(p.positionY);
-						list.add(p);
-					}
-
-					// Sort
-					list.sort((Pair o1, Pair o2) -> {
-						if (o1.valueY.equals(o2.valueY)) {
-							return o1.positionY.compareTo(o2.positionY);
-						}
-						return o1.valueY.compareTo(o2.valueY);
-					});
-
-					// Copy back
-					for (long i = first; i < last; i++) {
-						Pair pair = list.get((int) (i - first));
-						objectArray.set(i, pair.positionY);
-					}
-				}
-
-				first = last;
-				last = bitmapIndex.selectNext1(first) + 1;
-				object++;
-			} while (object <= numDifferentObjects);
-
+			sortObjectSublists(objectArray, bitmapIndex, workers);
 			log.info("Sort object sublists in {}", st.stopAndShow());
 			st.reset();
 
 			// Count predicates
 			predCount = createSequence64(diskLocation, "predCount", BitUtil.log2(seqY.getNumberOfElements()), 0);
-			for (long i = 0; i < seqY.getNumberOfElements(); i++) {
-				// Read value
-				long val = seqY.get(i);
-
-				// Grow if necessary
-				if (predCount.getNumberOfElements() < val) {
-					predCount.resize(val);
-				}
-
-				// Increment
-				predCount.set(val - 1, predCount.get(val - 1) + 1);
+			try (ParallelCountingSort sort = new ParallelCountingSort(this, diskLocation, "predCount", seqY,
+					ParallelCountingSort.getWorkers(this, spec, seqY))) {
+				sort.count();
+				sort.writeCounts(predCount);
 			}
 			predCount.trimToSize();
 			log.info("Count predicates in {}", st.stopAndShow());
@@ -916,6 +900,103 @@ public class BitmapTriples implements TriplesPrivate, BitmapTriplesIndex {
 		log.info("Index generated in {}", global.stopAndShow());
 	}
 
+	/**
+	 * sort the object sublists by predicate, the sublists are split between
+	 * the workers
+	 *
+	 * @param objectArray object references
+	 * @param bitmapIndex bitmap of the ends of the sublists
+	 * @param workers     number of workers
+	 * @throws IOException sort exception
+	 */
+	private void sortObjectSublists(DynamicSequence objectArray, Bitmap bitmapIndex, int workers)
+			throws IOException {
+		long size = objectArray.getNumberOfElements();
+		// start each worker at the start of a sublist
+		long[] starts = new long[workers + 1];
+		for (int w = 1; w < workers; w++) {
+			long position = size / workers * w;
+			starts[w] = position == 0 ? 0 : bitmapIndex.selectNext1(position - 1) + 1;
+		}
+		starts[workers] = size;
+
+		// the sublists of 2 workers can share a word of the sequence
+		StripedSyncSeq syncArray = new StripedSyncSeq(objectArray);
+		ExceptionThread.ExceptionRunnable[] runnables = new ExceptionThread.ExceptionRunnable[workers];
+		for (int w = 0; w < workers; w++) {
+			long start = starts[w];
+			long end = starts[w + 1];
+			runnables[w] = () -> {
+				long first = start;
+				while (first < end) {
+					long last = bitmapIndex.selectNext1(first) + 1;
+					sortObjectSublist(syncArray, first, last);
+					first = last;
+				}
+			};
+		}
+		try {
+			ExceptionThread.async("BitmapTriplesSortObjectSublists", runnables).startAll().joinAndCrashIfRequired();
+		} catch (ExceptionThread.ExceptionThreadException e) {
+			IOUtil.throwIOOrRuntime(e.getCause());
+		} catch (InterruptedException e) {
+			throw new InterruptedIOException(e.getMessage());
+		}
+	}
+
+	private void sortObjectSublist(StripedSyncSeq objectArray, long first, long last) {
+		long listLen = last - first;
+
+		// Sublists of one element do not need to be sorted.
+
+		// Hard-coded size 2 for speed (They are quite common).
+		if (listLen == 2) {
+			long aPos = objectArray.get(first);
+			long a = seqY.get(aPos);
+			long bPos = objectArray.get(first + 1);
+			long b = seqY.get(bPos);
+			if (a > b) {
+				objectArray.set(first, bPos);
+				objectArray.set(first + 1, aPos);
+			}
+		} else if (listLen > 2) {
+			class Pair {
+				Long valueY;
+				Long positionY;
+
+				@Override
+				public String toString() {
+					return String.format("%d %d", valueY, positionY);
+				}
+			}
+
+			// FIXME: Sort directly without copying?
+			ArrayList<Pair> list = new ArrayList<>((int) listLen);
+
+			// Create temporary list of (position, predicate)
+			for (long i = first; i < last; i++) {
+				Pair p = new Pair();
+				p.positionY = objectArray.get(i);
+				p.valueY = seqY.get(p.positionY);
+				list.add(p);
+			}
+
+			// Sort
+			list.sort((Pair o1, Pair o2) -> {
+				if (o1.valueY.equals(o2.valueY)) {
+					return o1.positionY.compareTo(o2.positionY);
+				}
+				return o1.valueY.compareTo(o2.valueY);
+			});
+
+			// Copy back
+			for (long i = first; i < last; i++) {
+				Pair pair = list.get((int) (i - first));
+				objectArray.set(i, pair.positionY);
+			}
+		}
+	}
+
 	private void createIndexObjects() {
 		class Pair {
 			int valueY;
@@ -1094,6 +1175,40 @@ public class BitmapTriples implements TriplesPrivate, BitmapTriplesIndex {
 		return tripleID;
 	}
 
+	/**
+	 * find the position of a triple in the index of an order, the inverse of
+	 * {@link #findTriple(long, TripleID)} for this index, the position is read
+	 * with the adjacency lists of the index without creating an iterator
+	 *
+	 * @param triple triple in the SPO order, without wildcard, the graph is
+	 *               ignored
+	 * @param order  order of the index
+	 * @return position of the triple in the index, -1 if the triple isn't in
+	 *         the index or if the index isn't loaded
+	 */
+	public long findTriplePosition(TripleID triple, TripleComponentOrder order) {
+		if (isClosed) {
+			throw new IllegalStateException("Cannot search on BitmapTriples if it's already closed");
+		}
+		BitmapTriplesIndex idx = order == this.order ? this : indexes.get(order);
+		if (idx == null) {
+			return -1;
+		}
+		TripleID reordered = new TripleID(triple.getSubject(), triple.getPredicate(), triple.getObject());
+		TripleOrderConvert.swapComponentOrder(reordered, TripleComponentOrder.SPO, order);
+
+		AdjacencyList listY = idx.getAdjacencyListY();
+		long x = reordered.getSubject();
+		if (x <= 0 || x > listY.countListsX() || reordered.getPredicate() <= 0 || reordered.getObject() <= 0) {
+			return -1;
+		}
+		long posY = listY.find(x - 1, reordered.getPredicate());
+		if (posY == -1) {
+			return -1;
+		}
+		return idx.getAdjacencyListZ().find(posY, reordered.getObject());
+	}
+
 	@Override
 	public List<TripleComponentOrder> getTripleComponentOrder(TripleID pattern) {
 		if (isClosed) {
@@ -1370,21 +1485,38 @@ public class BitmapTriples implements TriplesPrivate, BitmapTriplesIndex {
 			}
 		}
 
+		// the orders without an index sharing their subject are sorted with one
+		// read of the triples, the other orders can avoid sorting the subject
+		// layer
+		Map<TripleComponentOrder, Path> toSort = new EnumMap<>(TripleComponentOrder.class);
+		for (TripleComponentOrder order : toReIndex) {
+			TripleComponentOrder sibling = getSubjectSiblingOrder(order);
+			if (sibling != this.order && !indexes.containsKey(sibling) && !toSort.containsKey(sibling)) {
+				toSort.put(order, BitmapTriplesIndexFile.getIndexPath(fileLocation, order));
+			}
+		}
+
+		if (!toSort.isEmpty()) {
+			StopWatch sw = new StopWatch();
+			log.debug("generate other idxs {}->{}", this.order, toSort.keySet());
+			BitmapTriplesIndexFile.generateIndexes(this, toSort, spec, mListener);
+			log.debug("end generate other idxs {}->{} in {}", this.order, toSort.keySet(), sw.stopAndShow());
+
+			for (Map.Entry<TripleComponentOrder, Path> e : toSort.entrySet()) {
+				loadGeneratedIndex(e.getKey(), e.getValue(), allowOldOthers);
+			}
+		}
+
 		for (TripleComponentOrder order : toReIndex) {
+			if (toSort.containsKey(order)) {
+				continue; // already generated
+			}
 			Path subIndexPath = BitmapTriplesIndexFile.getIndexPath(fileLocation, order);
 
 			// (re)generate the file
 
 			// check if we can avoid sorting the subject layer
-			BitmapTriplesIndex origin = switch (order) {
-			case SPO -> indexes.get(TripleComponentOrder.SOP);
-			case SOP -> indexes.get(TripleComponentOrder.SPO);
-			case POS -> indexes.get(TripleComponentOrder.PSO);
-			case PSO -> indexes.get(TripleComponentOrder.POS);
-			case OSP -> indexes.get(TripleComponentOrder.OPS);
-			case OPS -> indexes.get(TripleComponentOrder.OSP);
-			default -> throw new IllegalArgumentException("Invalid order: " + order);
-			};
+			BitmapTriplesIndex origin = indexes.get(getSubjectSiblingOrder(order));
 			if (origin == null) {
 				origin = this; // use bitmaptriples by default
 			}
@@ -1394,19 +1526,36 @@ public class BitmapTriples implements TriplesPrivate, BitmapTriplesIndex {
 			BitmapTriplesIndexFile.generateIndex(this, origin, subIndexPath, order, spec, mListener);
 			log.debug("end generate other idx {}->{} in {}", origin.getOrder(), order, sw.stopAndShow());
 
-			try (FileChannel channel = FileChannel.open(subIndexPath, StandardOpenOption.READ)) {
-				// load from the path...
-				BitmapTriplesIndex idx = BitmapTriplesIndexFile.map(subIndexPath, channel, this, allowOldOthers);
-				BitmapTriplesIndex old = indexes.put(order, idx);
-				indexesMask |= order.mask;
-				if (old != null) {
-					log.warn("an index is using a bad order old:{} cur:{} new:{} after exception", old.getOrder(),
-							order, idx.getOrder());
-				}
-				IOUtil.closeQuietly(old); // should be null?
-			} catch (NoSuchFileException ex2) {
-				throw new IOException("index not generated", ex2);
+			loadGeneratedIndex(order, subIndexPath, allowOldOthers);
+		}
+	}
+
+	private static TripleComponentOrder getSubjectSiblingOrder(TripleComponentOrder order) {
+		return switch (order) {
+		case SPO -> TripleComponentOrder.SOP;
+		case SOP -> TripleComponentOrder.SPO;
+		case POS -> TripleComponentOrder.PSO;
+		case PSO -> TripleComponentOrder.POS;
+		case OSP -> TripleComponentOrder.OPS;
+		case OPS -> TripleComponentOrder.OSP;
+		default -> throw new IllegalArgumentException("Invalid order: " + order);
+		};
+	}
+
+	private void loadGeneratedIndex(TripleComponentOrder order, Path subIndexPath, boolean allowOldOthers)
+			throws IOException {
+		try (FileChannel channel = FileChannel.open(subIndexPath, StandardOpenOption.READ)) {
+			// load from the path...
+			BitmapTriplesIndex idx = BitmapTriplesIndexFile.map(subIndexPath, channel, this, allowOldOthers);
+			BitmapTriplesIndex old = indexes.put(order, idx);
+			indexesMask |= order.mask;
+			if (old != null) {
+				log.warn("an index is using a bad order old:{} cur:{} new:{} after exception", old.getOrder(), order,
+						idx.getOrder());
 			}
+			IOUtil.closeQuietly(old); // should be null?
+		} catch (NoSuchFileException ex2) {
+			throw new IOException("index not generated", ex2);
 		}
 	}
 
@@ -25,6 +25,8 @@ import com.the_qa_company.qendpoint.core.hdt.HDTVocabulary;
 import com.the_qa_company.qendpoint.core.listener.ProgressListener;
 import com.the_qa_company.qendpoint.core.options.ControlInfo;
 import com.the_qa_company.qendpoint.core.options.ControlInformation;
+import com.the_qa_company.qendpoint.core.options.HDTOptions;
+import com.the_qa_company.qendpoint.core.options.HDTOptionsKeys;
 import com.the_qa_company.qendpoint.core.triples.IteratorTripleID;
 import com.the_qa_company.qendpoint.core.triples.TripleID;
 import com.the_qa_company.qendpoint.core.util.BitUtil;
@@ -38,9 +40,19 @@ import com.the_qa_company.qendpoint.core.util.listener.ListenerUtil;
 public class BitmapTriplesCat {
 
 	private final String location;
+	private final HDTOptions spec;
 
 	public BitmapTriplesCat(String location) {
+		this(location, HDTOptions.empty());
+	}
+
+	/**
+	 * @param location location of the files
+	 * @param spec     options, used to read the sequence types
+	 */
+	public BitmapTriplesCat(String location, HDTOptions spec) {
 		this.location = location;
+		this.spec = spec;
 	}
 
 	public void cat(IteratorTripleID it, ProgressListener listener) throws IOException {
@@ -128,8 +140,10 @@ public class BitmapTriplesCat {
 			IntermediateListener iListener = new IntermediateListener(listener);
 			bitY.save(bos, iListener);
 			bitZ.save(bos, iListener);
-			vectorY.save(bos, iListener);
-			vectorZ.save(bos, iListener);
+			BitmapTriples.saveSequence(vectorY, bitY, spec.get(HDTOptionsKeys.BITMAPTRIPLES_SEQ_Y),
+					Paths.get(location + "vectorYEliasFano"), bos, iListener);
+			BitmapTriples.saveSequence(vectorZ, bitZ, spec.get(HDTOptionsKeys.BITMAPTRIPLES_SEQ_Z),
+					Paths.get(location + "vectorZEliasFano"), bos, iListener);
 		} finally {
 			IOUtil.closeAll(vectorY, vectorZ);
 		}
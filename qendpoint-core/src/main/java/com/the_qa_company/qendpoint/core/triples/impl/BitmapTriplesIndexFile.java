@@ -12,6 +12,7 @@ import com.the_qa_company.qendpoint.core.compact.sequence.SequenceLog64BigDisk;
 import com.the_qa_company.qendpoint.core.enums.TripleComponentOrder;
 import com.the_qa_company.qendpoint.core.exceptions.IllegalFormatException;
 import com.the_qa_company.qendpoint.core.exceptions.SignatureIOException;
+import com.the_qa_company.qendpoint.core.hdt.impl.HDTDiskImporter;
 import com.the_qa_company.qendpoint.core.iterator.utils.AsyncIteratorFetcher;
 import com.the_qa_company.qendpoint.core.iterator.utils.ExceptionIterator;
 import com.the_qa_company.qendpoint.core.iterator.utils.MapIterator;
@@ -21,6 +22,7 @@ import com.the_qa_company.qendpoint.core.options.HDTOptions;
 import com.the_qa_company.qendpoint.core.options.HDTOptionsKeys;
 import com.the_qa_company.qendpoint.core.triples.TripleID;
 import com.the_qa_company.qendpoint.core.util.BitUtil;
+import com.the_qa_company.qendpoint.core.util.concurrent.ExceptionThread;
 import com.the_qa_company.qendpoint.core.util.concurrent.KWayMerger;
 import com.the_qa_company.qendpoint.core.util.io.CloseMappedByteBuffer;
 import com.the_qa_company.qendpoint.core.util.io.CloseSuppressPath;
@@ -42,6 +44,8 @@ import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
 
 import static java.lang.String.format;
 
@@ -146,20 +150,10 @@ public class BitmapTriplesIndexFile implements BitmapTriplesIndex {
 		return new BitmapTriplesIndexFile(seqY, seqZ, bitY, bitZ, order);
 	}
 
-	/**
-	 * Generate an index in a particular destination
-	 *
-	 * @param bitmapTriples bitmap triples container
-	 * @param origin        triples to convert
-	 * @param destination   destination path
-	 * @param order         order to build
-	 * @param spec          ixd spec
-	 * @param mtlistener    listener
-	 * @throws IOException ioe
-	 */
-	public static void generateIndex(BitmapTriples bitmapTriples, BitmapTriplesIndex origin, Path destination,
-			TripleComponentOrder order, HDTOptions spec, MultiThreadListener mtlistener) throws IOException {
-		MultiThreadListener listener = MultiThreadListener.ofNullable(mtlistener);
+	private record SortConfig(Path diskLocation, int workers, long chunkSize, int k, int bufferSize) {}
+
+	private static SortConfig readSortConfig(BitmapTriples bitmapTriples, HDTOptions spec, boolean multiOrders)
+			throws IOException {
 		Path diskLocation;
 		if (bitmapTriples.diskSequence) {
 			diskLocation = bitmapTriples.diskSequenceLocation.createOrGetPath();
@@ -168,12 +162,27 @@ public class BitmapTriplesIndexFile implements BitmapTriplesIndex {
 		}
 		int workers = (int) spec.getInt(HDTOptionsKeys.BITMAPTRIPLES_DISK_WORKER_KEY,
 				Runtime.getRuntime()::availableProcessors);
+		if (multiOrders) {
+			workers = (int) spec.getInt(HDTOptionsKeys.BITMAPTRIPLES_INDEX_OTHERS_WORKERS, workers);
+		}
 		// check and set default values if required
 		if (workers <= 0) {
 			throw new IllegalArgumentException("Number of workers should be positive!");
 		}
-		long chunkSize = spec.getInt(HDTOptionsKeys.BITMAPTRIPLES_DISK_CHUNK_SIZE_KEY,
-				() -> BitmapTriples.getMaxChunkSizeDiskIndex(workers));
+		long chunkSize;
+		if (multiOrders) {
+			long memory = spec.getInt(HDTOptionsKeys.BITMAPTRIPLES_INDEX_OTHERS_MEMORY,
+					() -> (long) (HDTDiskImporter.getAvailableMemory() * 0.85));
+			if (memory <= 0) {
+				throw new IllegalArgumentException("The sort memory should be positive!");
+			}
+			// each worker is sorting a chunk
+			chunkSize = memory / workers;
+		} else {
+			int chunkWorkers = workers;
+			chunkSize = spec.getInt(HDTOptionsKeys.BITMAPTRIPLES_DISK_CHUNK_SIZE_KEY,
+					() -> BitmapTriples.getMaxChunkSizeDiskIndex(chunkWorkers));
+		}
 		if (chunkSize < 0) {
 			throw new IllegalArgumentException("Negative chunk size!");
 		}
@@ -184,8 +193,9 @@ public class BitmapTriplesIndexFile implements BitmapTriplesIndex {
 		} else {
 			maxFileOpened = (int) maxFileOpenedLong;
 		}
+		int kwayWorkers = workers;
 		long kwayLong = spec.getInt(HDTOptionsKeys.BITMAPTRIPLES_DISK_KWAY_KEY,
-				() -> Math.max(1, BitUtil.log2(maxFileOpened / workers)));
+				() -> Math.max(1, BitUtil.log2(maxFileOpened / kwayWorkers)));
 		int k;
 		if (kwayLong <= 0 || kwayLong > Integer.MAX_VALUE) {
 			throw new IllegalArgumentException("kway can't be negative!");
@@ -200,18 +210,32 @@ public class BitmapTriplesIndexFile implements BitmapTriplesIndex {
 		} else {
 			bufferSize = (int) bufferSizeLong;
 		}
+		return new SortConfig(diskLocation, workers, chunkSize, k, bufferSize);
+	}
+
+	/**
+	 * Generate an index in a particular destination
+	 *
+	 * @param bitmapTriples bitmap triples container
+	 * @param origin        triples to convert
+	 * @param destination   destination path
+	 * @param order         order to build
+	 * @param spec          ixd spec
+	 * @param mtlistener    listener
+	 * @throws IOException ioe
+	 */
+	public static void generateIndex(BitmapTriples bitmapTriples, BitmapTriplesIndex origin, Path destination,
+			TripleComponentOrder order, HDTOptions spec, MultiThreadListener mtlistener) throws IOException {
+		MultiThreadListener listener = MultiThreadListener.ofNullable(mtlistener);
+		SortConfig config = readSortConfig(bitmapTriples, spec, false);
 
 		try (CloseSuppressPath workDir = CloseSuppressPath
-				.of(diskLocation.resolve("triplesort-" + order.name().toLowerCase()))) {
+				.of(config.diskLocation().resolve("triplesort-" + order.name().toLowerCase()))) {
 			workDir.mkdirs();
 			workDir.closeWithDeleteRecurse();
 
 			TripleComponentOrder oldOrder = origin.getOrder();
 			ExceptionIterator<TripleID, IOException> sortedIds = null;
-			ModifiableBitmap bitY = null;
-			ModifiableBitmap bitZ = null;
-			DynamicSequence seqY = null;
-			DynamicSequence seqZ = null;
 			try {
 				boolean useFastSort = oldOrder.getSubjectMapping() == order.getSubjectMapping()
 						&& spec.getBoolean("debug.bitmaptriples.allowFastSort", true);
@@ -243,7 +267,8 @@ public class BitmapTriplesIndexFile implements BitmapTriplesIndex {
 					sortedIds = new DiskTriplesReorderSorter(workDir,
 							new AsyncIteratorFetcher<>(new MapIterator<>(
 									new BitmapTriplesIterator(origin, new TripleID()), TripleID::clone)),
-							listener, bufferSize, chunkSize, k, oldOrder, order).sort(workers);
+							listener, config.bufferSize(), config.chunkSize(), config.k(), oldOrder, order)
+							.sort(config.workers());
 
 					logTriple = new TripleID(ss, ps, os);
 
@@ -253,134 +278,215 @@ public class BitmapTriplesIndexFile implements BitmapTriplesIndex {
 
 				// System.out.println(logTriple);
 
-				int ySize = (int) logTriple.getPredicate();
-				int zSize = (int) logTriple.getObject();
-
-				long count = bitmapTriples.getNumberOfElements();
 				workDir.mkdirs();
 				workDir.closeWithDeleteRecurse();
-				bitY = Bitmap64Big.disk(workDir.resolve("bity"), count);
-				bitZ = Bitmap64Big.disk(workDir.resolve("bitZ"), count);
+				writeIndex(bitmapTriples, sortedIds, (int) logTriple.getPredicate(), (int) logTriple.getObject(),
+						destination, order, workDir, listener,
+						oldOrder + " -> " + order + (useFastSort ? " [fast]" : " [un]"));
+			} catch (Throwable t) {
+				try {
+					Closer.closeAll(sortedIds);
+				} catch (Exception ex) {
+					t.addSuppressed(ex);
+				} catch (Throwable t2) {
+					t2.addSuppressed(t);
+					throw t2;
+				}
+				throw t;
+			}
+			Closer.closeAll(sortedIds);
+
+		} catch (InterruptedException e) {
+			throw new InterruptedIOException(e.getMessage());
+		} catch (KWayMerger.KWayMergerException e) {
+			throw new IOException(e);
+		}
+	}
 
-				origin.getSeqY().sizeOf();
+	/**
+	 * Generate multiple indexes with one read of the triples, the triples are
+	 * sorted in all the orders at the same time with the
+	 * {@link DiskTriplesMultiReorderSorter}, then the indexes are written in
+	 * parallel.
+	 *
+	 * @param bitmapTriples bitmap triples container
+	 * @param destinations  destination path of each order to build
+	 * @param spec          ixd spec
+	 * @param mtlistener    listener
+	 * @throws IOException ioe
+	 */
+	public static void generateIndexes(BitmapTriples bitmapTriples, Map<TripleComponentOrder, Path> destinations,
+			HDTOptions spec, MultiThreadListener mtlistener) throws IOException {
+		if (destinations.isEmpty()) {
+			return;
+		}
+		MultiThreadListener listener = MultiThreadListener.ofNullable(mtlistener);
+		SortConfig config = readSortConfig(bitmapTriples, spec, true);
+		List<TripleComponentOrder> orders = List.copyOf(destinations.keySet());
 
-				seqY = new SequenceLog64BigDisk(workDir.resolve("seqy"), ySize, count, false, true);
-				seqZ = new SequenceLog64BigDisk(workDir.resolve("seqz"), zSize, count, false, true);
+		try (CloseSuppressPath workDir = CloseSuppressPath.of(config.diskLocation().resolve("triplesort-multi"))) {
+			workDir.mkdirs();
+			workDir.closeWithDeleteRecurse();
 
-				long lastX = 0;
-				long lastY = 0;
-				long lastZ = 0;
+			TripleComponentOrder oldOrder = bitmapTriples.getOrder();
+			int ss = BitUtil.log2(bitmapTriples.getBitmapY().countOnes());
+			int ps = bitmapTriples.getSeqY().sizeOf();
+			int os = bitmapTriples.getSeqZ().sizeOf();
+
+			AsyncIteratorFetcher<TripleID> triples = new AsyncIteratorFetcher<>(
+					new MapIterator<>(new BitmapTriplesIterator(bitmapTriples, new TripleID()), TripleID::clone));
+			DiskTriplesMultiReorderSorter sorter = new DiskTriplesMultiReorderSorter(workDir.resolve("sort"), triples,
+					listener, config.bufferSize(), config.chunkSize(), config.k(), oldOrder, orders);
+			Map<TripleComponentOrder, ExceptionIterator<TripleID, IOException>> sortedIds = sorter
+					.sort(config.workers());
+			try {
+				// one writer per order, the indexes are written on disk
+				ExceptionThread.async("BitmapTriplesIndexWriter", orders.stream().map(order -> {
+					ExceptionThread.ExceptionRunnable writer = () -> {
+						TripleID logTriple = new TripleID(ss, ps, os);
+						// we swap the order to find the new allocation numbits
+						TripleOrderConvert.swapComponentOrder(logTriple, oldOrder, order);
+
+						CloseSuppressPath orderDir = workDir.resolve("index-" + order.name().toLowerCase());
+						orderDir.mkdirs();
+						writeIndex(bitmapTriples, sortedIds.get(order), (int) logTriple.getPredicate(),
+								(int) logTriple.getObject(), destinations.get(order), order, orderDir, listener,
+								oldOrder + " -> " + order + " [multi]");
+					};
+					return writer;
+				}).toArray(ExceptionThread.ExceptionRunnable[]::new)).startAll().joinAndCrashIfRequired();
+			} catch (ExceptionThread.ExceptionThreadException e) {
+				IOUtil.throwIOOrRuntime(e.getCause());
+			} finally {
+				Closer.closeAll(sortedIds);
+			}
+		} catch (InterruptedException e) {
+			throw new InterruptedIOException(e.getMessage());
+		} catch (KWayMerger.KWayMergerException e) {
+			throw new IOException(e);
+		}
+	}
 
-				// filling index
+	private static void writeIndex(BitmapTriples bitmapTriples, ExceptionIterator<TripleID, IOException> sortedIds,
+			int ySize, int zSize, Path destination, TripleComponentOrder order, CloseSuppressPath workDir,
+			MultiThreadListener listener, String desc) throws IOException {
+		ModifiableBitmap bitY = null;
+		ModifiableBitmap bitZ = null;
+		DynamicSequence seqY = null;
+		DynamicSequence seqZ = null;
+		try {
+			long count = bitmapTriples.getNumberOfElements();
+			bitY = Bitmap64Big.disk(workDir.resolve("bity"), count);
+			bitZ = Bitmap64Big.disk(workDir.resolve("bitZ"), count);
+
+			seqY = new SequenceLog64BigDisk(workDir.resolve("seqy"), ySize, count, false, true);
+			seqZ = new SequenceLog64BigDisk(workDir.resolve("seqz"), zSize, count, false, true);
+
+			long lastX = 0;
+			long lastY = 0;
+			long lastZ = 0;
+
+			// filling index
+
+			long x, y, z;
+			TripleID tid = null;
+			long numTriples = 0;
+			try {
+				while (sortedIds.hasNext()) {
+					tid = sortedIds.next();
 
-				long x, y, z;
-				TripleID tid = null;
-				long numTriples = 0;
-				try {
-					while (sortedIds.hasNext()) {
-						tid = sortedIds.next();
+					x = tid.getSubject();
+					y = tid.getPredicate();
+					z = tid.getObject();
 
-						x = tid.getSubject();
-						y = tid.getPredicate();
-						z = tid.getObject();
+					if (x == 0 || y == 0 || z == 0) {
+						throw new IllegalFormatException("None of the components of a triple can be null");
+					}
 
-						if (x == 0 || y == 0 || z == 0) {
-							throw new IllegalFormatException("None of the components of a triple can be null");
+					if (numTriples == 0) {
+						seqY.append(y);
+						seqZ.append(z);
+					} else if (lastX != x) {
+						if (x != lastX + 1) {
+							throw new IllegalFormatException("Upper level must be increasing and correlative: " + x
+									+ " != " + lastX + " + " + 1 + " for " + tid);
 						}
 
-						if (numTriples == 0) {
-							seqY.append(y);
-							seqZ.append(z);
-						} else if (lastX != x) {
-							if (x != lastX + 1) {
-								throw new IllegalFormatException("Upper level must be increasing and correlative: " + x
-										+ " != " + lastX + " + " + 1 + " for " + tid);
-							}
-
-							// X changed
-							bitY.append(true);
-							seqY.append(y);
-
-							bitZ.append(true);
-							seqZ.append(z);
-						} else if (y != lastY) {
-							if (y < lastY) {
-								throw new IllegalFormatException(
-										"Middle level must be increasing for each parent. " + tid);
-							}
-
-							// Y changed
-							bitY.append(false);
-							seqY.append(y);
-
-							bitZ.append(true);
-							seqZ.append(z);
-						} else {
-							if (z < lastZ) {
-								throw new IllegalFormatException(
-										"Lower level must be increasing for each parent. " + tid);
-							}
-
-							// Z changed
-							bitZ.append(false);
-							seqZ.append(z);
+						// X changed
+						bitY.append(true);
+						seqY.append(y);
+
+						bitZ.append(true);
+						seqZ.append(z);
+					} else if (y != lastY) {
+						if (y < lastY) {
+							throw new IllegalFormatException("Middle level must be increasing for each parent. " + tid);
 						}
 
-						lastX = x;
-						lastY = y;
-						lastZ = z;
+						// Y changed
+						bitY.append(false);
+						seqY.append(y);
 
-						ListenerUtil.notifyCond(listener, "Converting to BitmapTriples", numTriples, numTriples, count);
-						numTriples++;
+						bitZ.append(true);
+						seqZ.append(z);
+					} else {
+						if (z < lastZ) {
+							throw new IllegalFormatException("Lower level must be increasing for each parent. " + tid);
+						}
+
+						// Z changed
+						bitZ.append(false);
+						seqZ.append(z);
 					}
-				} catch (RuntimeException e) {
-					throw new IOException("Error when compressing triples " + tid + " " + oldOrder + " -> " + order
-							+ (useFastSort ? " [fast]" : " [un]"), e);
-				}
 
-				if (numTriples > 0) {
-					bitY.append(true);
-					bitZ.append(true);
+					lastX = x;
+					lastY = y;
+					lastZ = z;
+
+					ListenerUtil.notifyCond(listener, "Converting to BitmapTriples", numTriples, numTriples, count);
+					numTriples++;
 				}
+			} catch (RuntimeException e) {
+				throw new IOException("Error when compressing triples " + tid + " " + desc, e);
+			}
 
-				assert numTriples == bitmapTriples.getNumberOfElements();
+			if (numTriples > 0) {
+				bitY.append(true);
+				bitZ.append(true);
+			}
 
-				seqY.aggressiveTrimToSize();
-				seqZ.trimToSize();
+			assert numTriples == bitmapTriples.getNumberOfElements();
 
-				// saving the index
-				try (BufferedOutputStream output = new BufferedOutputStream(Files.newOutputStream(destination))) {
-					output.write(MAGIC);
-					IOUtil.writeLong(output, signature(bitmapTriples));
+			seqY.aggressiveTrimToSize();
+			seqZ.trimToSize();
 
-					IOUtil.writeSizedString(output, order.name(), listener);
+			// saving the index
+			try (BufferedOutputStream output = new BufferedOutputStream(Files.newOutputStream(destination))) {
+				output.write(MAGIC);
+				IOUtil.writeLong(output, signature(bitmapTriples));
 
-					seqY.save(output, listener);
-					bitY.save(output, listener);
+				IOUtil.writeSizedString(output, order.name(), listener);
 
-					seqZ.save(output, listener);
-					bitZ.save(output, listener);
+				seqY.save(output, listener);
+				bitY.save(output, listener);
 
-					// no need for CRC I guess?
-				}
-			} catch (Throwable t) {
-				try {
-					Closer.closeAll(sortedIds, bitY, bitZ, seqY, seqZ);
-				} catch (Exception ex) {
-					t.addSuppressed(ex);
-				} catch (Throwable t2) {
-					t2.addSuppressed(t);
-					throw t2;
-				}
-				throw t;
-			}
-			Closer.closeAll(sortedIds, bitY, bitZ, seqY, seqZ);
+				seqZ.save(output, listener);
+				bitZ.save(output, listener);
 
-		} catch (InterruptedException e) {
-			throw new InterruptedIOException(e.getMessage());
-		} catch (KWayMerger.KWayMergerException e) {
-			throw new IOException(e);
+				// no need for CRC I guess?
+			}
+		} catch (Throwable t) {
+			try {
+				Closer.closeAll(bitY, bitZ, seqY, seqZ);
+			} catch (Exception ex) {
+				t.addSuppressed(ex);
+			} catch (Throwable t2) {
+				t2.addSuppressed(t);
+				throw t2;
+			}
+			throw t;
 		}
+		Closer.closeAll(bitY, bitZ, seqY, seqZ);
 	}
 
 	private final Sequence seqY, seqZ;
@@ -23,12 +23,17 @@ import com.the_qa_company.qendpoint.core.enums.ResultEstimationType;
 import com.the_qa_company.qendpoint.core.enums.TripleComponentOrder;
 import com.the_qa_company.qendpoint.core.iterator.SuppliableIteratorTripleID;
 import com.the_qa_company.qendpoint.core.triples.TripleID;
+import com.the_qa_company.qendpoint.core.triples.TripleIDBatch;
 import com.the_qa_company.qendpoint.core.compact.bitmap.AdjacencyList;
 
 /**
  * @author mario.arias
  */
 public class BitmapTriplesIterator implements SuppliableIteratorTripleID {
+	/**
+	 * maximum number of Z values decoded at once by next()
+	 */
+	private static final int BUFFER_Z_SIZE = 128;
 
 	protected final BitmapTriplesIndex idx;
 	protected final TripleID pattern, returnTriple;
@@ -42,6 +47,11 @@ public class BitmapTriplesIterator implements SuppliableIteratorTripleID {
 
 	protected final TripleComponentOrder order;
 
+	// Z values decoded by block, the buffer contains the positions
+	// [bufferZStart, bufferZEnd[
+	private long[] bufferZ;
+	private long bufferZStart, bufferZEnd;
+
 	protected BitmapTriplesIterator(BitmapTriplesIndex idx, TripleID pattern, boolean search,
 			TripleComponentOrder order) {
 		this.idx = idx;
@@ -93,6 +103,8 @@ public class BitmapTriplesIterator implements SuppliableIteratorTripleID {
 
 		// ((BitSequence375)triples.bitmapZ).dump();
 
+		bufferZ = null;
+		bufferZStart = bufferZEnd = 0;
 		findRange();
 		goToStart();
 	}
@@ -154,13 +166,28 @@ public class BitmapTriplesIterator implements SuppliableIteratorTripleID {
 		return posZ < maxZ;
 	}
 
+	private long getZ(long pos) {
+		if (pos < bufferZStart || pos >= bufferZEnd) {
+			if (bufferZ == null) {
+				bufferZ = new long[(int) Math.min(BUFFER_Z_SIZE, Math.max(1, maxZ - minZ))];
+			}
+			bufferZStart = pos;
+			bufferZEnd = pos + adjZ.get(pos, bufferZ, (int) Math.min(bufferZ.length, maxZ - pos));
+			if (pos >= bufferZEnd) {
+				// outside the range
+				return adjZ.get(pos);
+			}
+		}
+		return bufferZ[(int) (pos - bufferZStart)];
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * @see hdt.iterator.IteratorTripleID#next()
 	 */
 	@Override
 	public TripleID next() {
-		z = adjZ.get(posZ);
+		z = getZ(posZ);
 		if (posZ == nextZ) {
 			posY++;
 			y = adjY.get(posY);
@@ -181,6 +208,46 @@ public class BitmapTriplesIterator implements SuppliableIteratorTripleID {
 		return returnTriple;
 	}
 
+	@Override
+	public int nextBatch(TripleIDBatch batch) {
+		long[] xs = batch.getColumn(order.getSubjectMapping());
+		long[] ys = batch.getColumn(order.getPredicateMapping());
+		long[] zs = batch.getColumn(order.getObjectMapping());
+		long[] graphs = batch.getGraphs();
+		long[] positions = batch.getPositions();
+		int count = (int) Math.min(batch.capacity(), maxZ - posZ);
+
+		// decode the Z values of the batch at once
+		adjZ.get(posZ, zs, count);
+		for (int i = 0; i < count; i++) {
+			z = zs[i];
+			if (posZ == nextZ) {
+				posY++;
+				y = adjY.get(posY);
+				nextZ = adjZ.findNext(nextZ) + 1;
+
+				if (posY == nextY) {
+					x++;
+					nextY = adjY.findNext(nextY) + 1;
+				}
+			}
+			xs[i] = x;
+			ys[i] = y;
+			graphs[i] = 0;
+			positions[i] = posZ;
+			posZ++;
+		}
+
+		if (count > 0) {
+			// keep the state of next() for the last triple
+			posZ--;
+			updateOutput();
+			posZ++;
+		}
+		batch.setSize(count);
+		return count;
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * @see hdt.iterator.IteratorTripleID#hasPrevious()
@@ -22,6 +22,7 @@ import com.the_qa_company.qendpoint.core.enums.ResultEstimationType;
 import com.the_qa_company.qendpoint.core.enums.TripleComponentOrder;
 import com.the_qa_company.qendpoint.core.iterator.SuppliableIteratorTripleID;
 import com.the_qa_company.qendpoint.core.triples.TripleID;
+import com.the_qa_company.qendpoint.core.triples.TripleIDBatch;
 import com.the_qa_company.qendpoint.core.compact.bitmap.AdjacencyList;
 
 /**
@@ -112,6 +113,50 @@ public class BitmapTriplesIteratorYFOQ implements SuppliableIteratorTripleID {
 		return returnTriple;
 	}
 
+	@Override
+	public int nextBatch(TripleIDBatch batch) {
+		long[] xs = batch.getColumn(triples.order.getSubjectMapping());
+		long[] ys = batch.getColumn(triples.order.getPredicateMapping());
+		long[] zs = batch.getColumn(triples.order.getObjectMapping());
+		long[] graphs = batch.getGraphs();
+		long[] positions = batch.getPositions();
+		int capacity = batch.capacity();
+		int count = 0;
+
+		while (count < capacity && hasNext()) {
+			if (posZ > nextZ) {
+				numOccurrence++;
+				posY = triples.predicateIndex.getOccurrence(predBase, numOccurrence);
+
+				posZ = prevZ = adjZ.find(posY);
+				nextZ = adjZ.last(posY);
+
+				x = adjY.findListIndex(posY) + 1;
+				y = adjY.get(posY);
+			}
+			// read the whole list of the current y
+			long end = Math.min(nextZ + 1, posZ + capacity - count);
+			for (; posZ < end; posZ++) {
+				z = adjZ.get(posZ);
+				xs[count] = x;
+				ys[count] = y;
+				zs[count] = z;
+				graphs[count] = 0;
+				positions[count] = posZ;
+				count++;
+			}
+		}
+
+		if (count > 0) {
+			// keep the state of next() for the last triple
+			posZ--;
+			updateOutput();
+			posZ++;
+		}
+		batch.setSize(count);
+		return count;
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * @see hdt.iterator.IteratorTripleID#hasPrevious()
@@ -24,6 +24,7 @@ import com.the_qa_company.qendpoint.core.enums.TripleComponentOrder;
 import com.the_qa_company.qendpoint.core.iterator.SuppliableIteratorTripleID;
 import com.the_qa_company.qendpoint.core.iterator.TriplePositionSupplier;
 import com.the_qa_company.qendpoint.core.triples.TripleID;
+import com.the_qa_company.qendpoint.core.triples.TripleIDBatch;
 import com.the_qa_company.qendpoint.core.compact.bitmap.AdjacencyList;
 
 /**
@@ -159,6 +160,49 @@ public class BitmapTriplesIteratorZFOQ implements SuppliableIteratorTripleID {
 		return returnTriple;
 	}
 
+	@Override
+	public int nextBatch(TripleIDBatch batch) {
+		long[] xs = batch.getColumn(triples.order.getSubjectMapping());
+		long[] ys = batch.getColumn(triples.order.getPredicateMapping());
+		long[] zs = batch.getColumn(triples.order.getObjectMapping());
+		long[] graphs = batch.getGraphs();
+		long[] positions = batch.getPositions();
+		boolean readPositions = batch.isReadPositions();
+		int count = (int) Math.max(0, Math.min(batch.capacity(), maxIndex - posIndex + 1));
+
+		// the z component only changes at the end of the lists of the index
+		long nextZIndex = -1;
+		for (int i = 0; i < count; i++) {
+			long posY = adjIndex.get(posIndex);
+
+			if (patZ != 0) {
+				z = patZ;
+			} else if (posIndex > nextZIndex) {
+				z = adjIndex.findListIndex(posIndex) + 1;
+				nextZIndex = adjIndex.last(z - 1);
+			}
+			y = patY != 0 ? patY : adjY.get(posY);
+			x = adjY.findListIndex(posY) + 1;
+
+			xs[i] = x;
+			ys[i] = y;
+			zs[i] = z;
+			graphs[i] = 0;
+			// the position requires a search in the z list
+			positions[i] = readPositions ? triples.adjZ.find(posY, z) : 0;
+			posIndex++;
+		}
+
+		if (count > 0) {
+			// keep the state of next() for the last triple
+			posIndex--;
+			updateOutput();
+			posIndex++;
+		}
+		batch.setSize(count);
+		return count;
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * @see hdt.iterator.IteratorTripleID#hasPrevious()
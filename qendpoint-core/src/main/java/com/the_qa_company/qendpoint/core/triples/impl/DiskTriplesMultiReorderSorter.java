@@ -0,0 +1,211 @@
+package com.the_qa_company.qendpoint.core.triples.impl;
+
+import com.the_qa_company.qendpoint.core.enums.TripleComponentOrder;
+import com.the_qa_company.qendpoint.core.iterator.utils.AsyncIteratorFetcher;
+import com.the_qa_company.qendpoint.core.iterator.utils.ExceptionIterator;
+import com.the_qa_company.qendpoint.core.iterator.utils.SizeFetcher;
+import com.the_qa_company.qendpoint.core.listener.MultiThreadListener;
+import com.the_qa_company.qendpoint.core.triples.TripleID;
+import com.the_qa_company.qendpoint.core.util.ParallelSortableArrayList;
+import com.the_qa_company.qendpoint.core.util.concurrent.KWayMerger;
+import com.the_qa_company.qendpoint.core.util.io.CloseSuppressPath;
+import com.the_qa_company.qendpoint.core.util.io.Closer;
+import com.the_qa_company.qendpoint.core.util.io.IOUtil;
+import com.the_qa_company.qendpoint.core.util.io.compress.CompressTripleMergeIterator;
+import com.the_qa_company.qendpoint.core.util.io.compress.CompressTripleReader;
+import com.the_qa_company.qendpoint.core.util.io.compress.CompressTripleWriter;
+
+import java.io.IOException;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Version of the {@link DiskTriplesReorderSorter} sorting the triples in
+ * multiple orders with one read of the triples. Each chunk is a directory
+ * containing one sorted file per order.
+ */
+public class DiskTriplesMultiReorderSorter implements KWayMerger.KWayMergerImpl<TripleID, SizeFetcher<TripleID>> {
+	/**
+	 * estimated memory used by a triple in a chunk, with its reference and
+	 * the sort buffer
+	 */
+	public static final long TRIPLE_MEMORY_SIZE = 80;
+
+	private final CloseSuppressPath baseFileName;
+	private final AsyncIteratorFetcher<TripleID> source;
+	private final MultiThreadListener listener;
+	private final int bufferSize;
+	private final long chunkSize;
+	private final int k;
+	private final TripleComponentOrder oldOrder;
+	private final List<TripleComponentOrder> newOrders;
+	private final AtomicLong read = new AtomicLong();
+
+	/**
+	 * create the sorter
+	 *
+	 * @param baseFileName work directory
+	 * @param source       triples to sort
+	 * @param listener     listener
+	 * @param bufferSize   size of the file buffers
+	 * @param chunkSize    memory of a chunk, in bytes
+	 * @param k            number of chunks merged at once
+	 * @param oldOrder     order of the source triples
+	 * @param newOrders    orders to sort the triples into
+	 */
+	public DiskTriplesMultiReorderSorter(CloseSuppressPath baseFileName, AsyncIteratorFetcher<TripleID> source,
+			MultiThreadListener listener, int bufferSize, long chunkSize, int k, TripleComponentOrder oldOrder,
+			List<TripleComponentOrder> newOrders) {
+		if (newOrders.isEmpty()) {
+			throw new IllegalArgumentException("No order to sort");
+		}
+		this.source = source;
+		this.listener = MultiThreadListener.ofNullable(listener);
+		this.baseFileName = baseFileName;
+		this.bufferSize = bufferSize;
+		this.chunkSize = chunkSize;
+		this.k = k;
+		this.oldOrder = oldOrder;
+		this.newOrders = List.copyOf(newOrders);
+	}
+
+	private static CloseSuppressPath orderFile(CloseSuppressPath chunk, TripleComponentOrder order) {
+		return chunk.resolve(order.name().toLowerCase());
+	}
+
+	@Override
+	public void createChunk(SizeFetcher<TripleID> flux, CloseSuppressPath output)
+			throws KWayMerger.KWayMergerException {
+		ParallelSortableArrayList<TripleID> pairs = new ParallelSortableArrayList<>(TripleID[].class);
+
+		TripleID tid;
+		// loading the pairs
+		listener.notifyProgress(10, "reading triple part 0");
+		while ((tid = flux.get()) != null) {
+			pairs.add(tid);
+			long r = read.incrementAndGet();
+			if (r % 1_000_000 == 0) {
+				listener.notifyProgress(10, "reading triple part " + r);
+			}
+		}
+
+		try {
+			output.closeWithDeleteRecurse();
+			output.mkdirs();
+
+			// the triples are converted from an order to the next one, so we
+			// don't need a copy of the chunk for each order
+			TripleComponentOrder current = oldOrder;
+			for (TripleComponentOrder order : newOrders) {
+				for (int i = 0; i < pairs.size(); i++) {
+					TripleOrderConvert.swapComponentOrder(pairs.get(i), current, order);
+				}
+				current = order;
+
+				// sort the pairs
+				pairs.parallelSort(TripleID::compareTo);
+
+				// write the result on disk
+				try (CompressTripleWriter w = new CompressTripleWriter(
+						orderFile(output, order).openOutputStream(bufferSize), false)) {
+					for (int i = 0; i < pairs.size(); i++) {
+						w.appendTriple(pairs.get(i));
+					}
+				}
+				listener.notifyProgress(100,
+						"writing completed " + pairs.size() + " " + output.getFileName() + " " + order);
+			}
+		} catch (IOException e) {
+			throw new KWayMerger.KWayMergerException("Can't write chunk", e);
+		}
+	}
+
+	@Override
+	public void mergeChunks(List<CloseSuppressPath> inputs, CloseSuppressPath output)
+			throws KWayMerger.KWayMergerException {
+		try {
+			output.closeWithDeleteRecurse();
+			output.mkdirs();
+			for (TripleComponentOrder order : newOrders) {
+				listener.notifyProgress(0, "merging triples " + output.getFileName() + " " + order);
+				CompressTripleReader[] readers = new CompressTripleReader[inputs.size()];
+				long count = 0;
+				try {
+					for (int i = 0; i < inputs.size(); i++) {
+						readers[i] = new CompressTripleReader(
+								orderFile(inputs.get(i), order).openInputStream(bufferSize));
+					}
+
+					// use spo because we are writing xyz
+					ExceptionIterator<TripleID, IOException> it = CompressTripleMergeIterator.buildOfTree(readers,
+							TripleComponentOrder.SPO);
+					try (CompressTripleWriter w = new CompressTripleWriter(
+							orderFile(output, order).openOutputStream(bufferSize), false)) {
+						while (it.hasNext()) {
+							w.appendTriple(it.next());
+							count++;
+						}
+					}
+				} finally {
+					IOUtil.closeAll(readers);
+				}
+				listener.notifyProgress(100, "triples merged " + output.getFileName() + " " + order + " " + count);
+			}
+			// delete old chunks
+			IOUtil.closeAll(inputs);
+		} catch (IOException e) {
+			throw new KWayMerger.KWayMergerException(e);
+		}
+	}
+
+	@Override
+	public SizeFetcher<TripleID> newStopFlux(Supplier<TripleID> flux) {
+		return SizeFetcher.of(flux, p -> TRIPLE_MEMORY_SIZE, chunkSize);
+	}
+
+	/**
+	 * sort the triples
+	 *
+	 * @param workers number of workers
+	 * @return the sorted triples of each order, the readers should be closed,
+	 *         the files are deleted with the work directory
+	 * @throws InterruptedException           interruption
+	 * @throws IOException                    io exception
+	 * @throws KWayMerger.KWayMergerException merge exception
+	 */
+	public Map<TripleComponentOrder, ExceptionIterator<TripleID, IOException>> sort(int workers)
+			throws InterruptedException, IOException, KWayMerger.KWayMergerException {
+		listener.notifyProgress(0, "Triple sort asked in " + baseFileName.toAbsolutePath() + " for " + newOrders);
+		KWayMerger<TripleID, SizeFetcher<TripleID>> merger = new KWayMerger<>(baseFileName, source, this,
+				Math.max(1, workers - 1), k);
+		merger.start();
+		// wait for the workers to merge the chunks
+		Optional<CloseSuppressPath> sections = merger.waitResult();
+		Map<TripleComponentOrder, ExceptionIterator<TripleID, IOException>> sorted = new EnumMap<>(
+				TripleComponentOrder.class);
+		if (sections.isEmpty()) {
+			for (TripleComponentOrder order : newOrders) {
+				sorted.put(order, ExceptionIterator.empty());
+			}
+			return sorted;
+		}
+		CloseSuppressPath path = sections.get();
+		try {
+			for (TripleComponentOrder order : newOrders) {
+				sorted.put(order, new CompressTripleReader(orderFile(path, order).openInputStream(bufferSize)));
+			}
+		} catch (Throwable t) {
+			try {
+				Closer.closeAll(sorted, path);
+			} catch (Throwable t2) {
+				t.addSuppressed(t2);
+			}
+			throw t;
+		}
+		return sorted;
+	}
+}
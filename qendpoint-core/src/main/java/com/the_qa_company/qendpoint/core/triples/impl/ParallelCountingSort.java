@@ -0,0 +1,294 @@
+package com.the_qa_company.qendpoint.core.triples.impl;
+
+import com.the_qa_company.qendpoint.core.compact.bitmap.ModifiableBitmap;
+import com.the_qa_company.qendpoint.core.compact.sequence.DynamicSequence;
+import com.the_qa_company.qendpoint.core.compact.sequence.Sequence;
+import com.the_qa_company.qendpoint.core.compact.sequence.SequenceCursor;
+import com.the_qa_company.qendpoint.core.hdt.impl.HDTDiskImporter;
+import com.the_qa_company.qendpoint.core.options.HDTOptions;
+import com.the_qa_company.qendpoint.core.options.HDTOptionsKeys;
+import com.the_qa_company.qendpoint.core.util.BitUtil;
+import com.the_qa_company.qendpoint.core.util.concurrent.ExceptionThread;
+import com.the_qa_company.qendpoint.core.util.concurrent.StripedSyncSeq;
+import com.the_qa_company.qendpoint.core.util.io.Closer;
+import com.the_qa_company.qendpoint.core.util.io.IOUtil;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Path;
+import java.util.function.LongFunction;
+import java.util.function.LongUnaryOperator;
+
+/**
+ * Counting sort of the indexes of a sequence by their values, split between
+ * workers to create the object and predicate indexes of the
+ * {@link BitmapTriples}.
+ * <p>
+ * The sequence is split into one range per worker, each worker is counting the
+ * values of its range in its own table. The tables are then converted into the
+ * position of the first index of each value for each worker, so the workers
+ * can distribute the indexes of their ranges without sharing a counter. The
+ * tables are created with
+ * {@link BitmapTriples#createSequence64(Path, String, int, long)}, so they are
+ * on disk with the disk sequence option.
+ */
+class ParallelCountingSort implements Closeable {
+	/**
+	 * initial number of values of a table
+	 */
+	private static final long INITIAL_VALUES = 8192;
+	/**
+	 * alignment of the value ranges of the workers, 64 values are using full
+	 * words, so 2 workers are never writing the same word of a table
+	 */
+	private static final long VALUE_ALIGNMENT = 64;
+
+	/**
+	 * get the number of workers to sort a sequence, the workers are limited
+	 * by the memory of their tables if they aren't on disk
+	 *
+	 * @param triples triples creating the tables
+	 * @param spec    options
+	 * @param values  sequence to sort
+	 * @return number of workers
+	 */
+	static int getWorkers(BitmapTriples triples, HDTOptions spec, Sequence values) {
+		long workers = spec.getInt(HDTOptionsKeys.BITMAPTRIPLES_INDEX_WORKERS,
+				Runtime.getRuntime()::availableProcessors);
+		if (workers <= 0) {
+			throw new IllegalArgumentException("Number of workers should be positive!");
+		}
+		long size = values.getNumberOfElements();
+		if (!triples.isUsingDiskSequence()) {
+			long memory = spec.getInt(HDTOptionsKeys.BITMAPTRIPLES_INDEX_MEMORY,
+					() -> (long) (HDTDiskImporter.getAvailableMemory() * 0.5));
+			// the values are using at most sizeOf bits
+			long maxValue = BitUtil.maxVal(Math.min(values.sizeOf(), 62));
+			long tableSize = Math.max(1, maxValue / 8 * BitUtil.log2(size));
+			workers = Math.min(workers, memory / tableSize);
+		}
+		return (int) Math.max(1, Math.min(workers, size));
+	}
+
+	@FunctionalInterface
+	private interface WorkerTask {
+		void run(int worker) throws IOException;
+	}
+
+	private final BitmapTriples triples;
+	private final Path diskLocation;
+	private final String name;
+	private final Sequence values;
+	private final int workers;
+	private final long[] starts;
+	private final DynamicSequence[] tables;
+	private long numValues;
+
+	/**
+	 * create the sort
+	 *
+	 * @param triples      triples creating the tables
+	 * @param diskLocation location of the disk tables, null if the triples
+	 *                     aren't using disk sequences
+	 * @param name         name of the sort, used for the tables and the
+	 *                     threads
+	 * @param values       sequence to sort, the values should be positive
+	 * @param workers      number of workers
+	 */
+	ParallelCountingSort(BitmapTriples triples, Path diskLocation, String name, Sequence values, int workers) {
+		this.triples = triples;
+		this.diskLocation = diskLocation;
+		this.name = name;
+		this.values = values;
+		this.workers = workers;
+		long size = values.getNumberOfElements();
+		starts = new long[workers + 1];
+		for (int w = 0; w <= workers; w++) {
+			starts[w] = size / workers * w + Math.min(w, size % workers);
+		}
+		tables = new DynamicSequence[workers];
+	}
+
+	/**
+	 * @return the number of values, the max value of the sequence
+	 */
+	long getNumValues() {
+		return numValues;
+	}
+
+	/**
+	 * count the values of the ranges of the workers
+	 *
+	 * @throws IOException count exception
+	 */
+	void count() throws IOException {
+		int bits = BitUtil.log2(values.getNumberOfElements());
+		for (int w = 0; w < workers; w++) {
+			tables[w] = triples.createSequence64(diskLocation, name + "Count" + w, bits, INITIAL_VALUES);
+		}
+		long[] maxValues = new long[workers];
+		run("Count", worker -> {
+			DynamicSequence table = tables[worker];
+			long max = 0;
+			SequenceCursor cursor = values.cursor(starts[worker]);
+			for (long i = starts[worker]; i < starts[worker + 1]; i++) {
+				long value = cursor.next();
+				if (value == 0) {
+					throw new IllegalArgumentException("There is a zero value in the sequence at index " + i);
+				}
+				if (table.getNumberOfElements() < value) {
+					long reserved = table.getNumberOfElements();
+					while (reserved < value) {
+						reserved <<= 1;
+					}
+					table.resize(reserved);
+				}
+				max = Math.max(max, value);
+				table.set(value - 1, table.get(value - 1) + 1);
+			}
+			maxValues[worker] = max;
+		});
+		numValues = 0;
+		for (long max : maxValues) {
+			numValues = Math.max(numValues, max);
+		}
+		for (DynamicSequence table : tables) {
+			table.resize(numValues);
+		}
+	}
+
+	/**
+	 * write the number of indexes of each value, {@link #count()} should be
+	 * called before
+	 *
+	 * @param counts sequence to write the counts, resized to the number of
+	 *               values
+	 * @throws IOException write exception
+	 */
+	void writeCounts(DynamicSequence counts) throws IOException {
+		counts.resize(numValues);
+		run("WriteCounts", worker -> {
+			for (long v = valueStart(worker); v < valueStart(worker + 1); v++) {
+				long count = 0;
+				for (DynamicSequence table : tables) {
+					count += table.get(v);
+				}
+				counts.set(v, count);
+			}
+		});
+	}
+
+	/**
+	 * convert the counts of the tables into the position of the first index
+	 * of each value for each worker, {@link #count()} should be called before
+	 *
+	 * @throws IOException convert exception
+	 */
+	void computeOffsets() throws IOException {
+		// number of indexes of each value range
+		long[] rangeCounts = new long[workers + 1];
+		run("RangeCounts", worker -> {
+			long count = 0;
+			for (long v = valueStart(worker); v < valueStart(worker + 1); v++) {
+				for (DynamicSequence table : tables) {
+					count += table.get(v);
+				}
+			}
+			rangeCounts[worker + 1] = count;
+		});
+		for (int w = 1; w <= workers; w++) {
+			rangeCounts[w] += rangeCounts[w - 1];
+		}
+		run("Offsets", worker -> {
+			long offset = rangeCounts[worker];
+			for (long v = valueStart(worker); v < valueStart(worker + 1); v++) {
+				for (DynamicSequence table : tables) {
+					long count = table.get(v);
+					table.set(v, offset);
+					offset += count;
+				}
+			}
+		});
+	}
+
+	/**
+	 * set the last index of each value in a bitmap, {@link #computeOffsets()}
+	 * should be called before and {@link #distribute(DynamicSequence, LongFunction)}
+	 * after
+	 *
+	 * @param bitmap bitmap
+	 */
+	void fillBitmap(ModifiableBitmap bitmap) {
+		if (numValues == 0) {
+			return;
+		}
+		// the first table is containing the start of each value
+		SequenceCursor cursor = tables[0].cursor(1);
+		for (long v = 1; v < numValues; v++) {
+			bitmap.set(cursor.next() - 1, true);
+		}
+		bitmap.set(values.getNumberOfElements() - 1, true);
+	}
+
+	/**
+	 * write the indexes of the sequence sorted by value, stable for the
+	 * indexes of the same value, {@link #computeOffsets()} should be called
+	 * before
+	 *
+	 * @param output output sequence, resized to the size of the sequence
+	 * @param mapper function to create the mapper of the index written in
+	 *               the output for a range, called with the start of the
+	 *               range before starting the workers, the created mapper is
+	 *               called with the increasing indexes of the range
+	 * @throws IOException write exception
+	 */
+	void distribute(DynamicSequence output, LongFunction<LongUnaryOperator> mapper) throws IOException {
+		output.resize(values.getNumberOfElements());
+		LongUnaryOperator[] mappers = new LongUnaryOperator[workers];
+		for (int w = 0; w < workers; w++) {
+			mappers[w] = mapper.apply(starts[w]);
+		}
+		StripedSyncSeq syncOutput = new StripedSyncSeq(output);
+		run("Distribute", worker -> {
+			DynamicSequence table = tables[worker];
+			LongUnaryOperator workerMapper = mappers[worker];
+			SequenceCursor cursor = values.cursor(starts[worker]);
+			for (long i = starts[worker]; i < starts[worker + 1]; i++) {
+				long value = cursor.next();
+				long position = table.get(value - 1);
+				table.set(value - 1, position + 1);
+				syncOutput.set(position, workerMapper.applyAsLong(i));
+			}
+		});
+	}
+
+	private long valueStart(int worker) {
+		if (worker == workers) {
+			return numValues;
+		}
+		long rangeSize = (numValues / workers + VALUE_ALIGNMENT - 1) / VALUE_ALIGNMENT * VALUE_ALIGNMENT;
+		return Math.min(numValues, rangeSize * worker);
+	}
+
+	private void run(String task, WorkerTask workerTask) throws IOException {
+		ExceptionThread.ExceptionRunnable[] runnables = new ExceptionThread.ExceptionRunnable[workers];
+		for (int w = 0; w < workers; w++) {
+			int worker = w;
+			runnables[w] = () -> workerTask.run(worker);
+		}
+		try {
+			ExceptionThread.async("ParallelCountingSort" + task + "-" + name, runnables).startAll()
+					.joinAndCrashIfRequired();
+		} catch (ExceptionThread.ExceptionThreadException e) {
+			IOUtil.throwIOOrRuntime(e.getCause());
+		} catch (InterruptedException e) {
+			throw new InterruptedIOException(e.getMessage());
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		Closer.closeAll((Object) tables);
+	}
+}
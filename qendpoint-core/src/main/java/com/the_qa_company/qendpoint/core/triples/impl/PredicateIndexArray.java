@@ -5,6 +5,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.nio.file.Path;
+import java.util.function.LongUnaryOperator;
 
 import com.the_qa_company.qendpoint.core.compact.sequence.DynamicSequence;
 import com.the_qa_company.qendpoint.core.compact.sequence.Sequence;
@@ -20,7 +21,6 @@ import com.the_qa_company.qendpoint.core.compact.bitmap.BitmapFactory;
 import com.the_qa_company.qendpoint.core.compact.bitmap.ModifiableBitmap;
 import com.the_qa_company.qendpoint.core.util.io.Closer;
 import com.the_qa_company.qendpoint.core.util.io.CountInputStream;
-import com.the_qa_company.qendpoint.core.util.io.IOUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -82,89 +82,44 @@ class PredicateIndexArray implements PredicateIndex {
 		} else {
 			diskLocation = null;
 		}
-		ModifiableBitmap bitmap;
-
-		DynamicSequence predCount = triples.createSequence64(diskLocation, "predicateIndexPredCount",
-				BitUtil.log2(triples.getSeqY().getNumberOfElements()), triples.getSeqY().getNumberOfElements());
+		Sequence seqY = triples.getSeqY();
+		int workers = ParallelCountingSort.getWorkers(triples, specIndex, seqY);
+		ModifiableBitmap bitmap = null;
+		DynamicSequence array = null;
 		try {
-			long maxCount = 0;
-			for (long i = 0; i < triples.getSeqY().getNumberOfElements(); i++) {
-				// Read value
-				long val = triples.getSeqY().get(i);
-
-				// Grow if necessary
-				if (predCount.getNumberOfElements() < val) {
-					predCount.resize(val);
+			try (ParallelCountingSort sort = new ParallelCountingSort(triples, diskLocation, "predicateIndex", seqY,
+					workers)) {
+				// count the predicates and compute the start of each predicate
+				// for each worker
+				sort.count();
+				sort.computeOffsets();
+				if (listener != null) {
+					listener.notifyProgress(33, "Counted appearances of " + sort.getNumValues() + " predicates with "
+							+ workers + " worker(s)");
 				}
 
-				// Increment
-				long count = predCount.get(val - 1) + 1;
-				maxCount = Math.max(count, maxCount);
-				predCount.set(val - 1, count);
-
-				if (listener != null && i % 1_000_000 == 0) {
-					listener.notifyProgress((float) (i * 100 / triples.getSeqY().getNumberOfElements()),
-							"Counting appearances of predicates " + i + " / "
-									+ triples.getSeqY().getNumberOfElements());
+				// Convert predicate count to bitmap
+				bitmap = triples.createBitmap375(diskLocation, "predicateIndexBitmap", seqY.getNumberOfElements());
+				sort.fillBitmap(bitmap);
+				log.info("Predicate Bitmap in {}", st.stopAndShow());
+				if (listener != null) {
+					listener.notifyProgress(66, "Predicate Bitmap in " + st);
 				}
-			}
-			predCount.aggressiveTrimToSize();
-
-			// Convert predicate count to bitmap
-			bitmap = triples.createBitmap375(diskLocation, "predicateIndexBitmap",
-					triples.getSeqY().getNumberOfElements());
-			long tempCountPred = 0;
-			for (long i = 0; i < predCount.getNumberOfElements(); i++) {
-				tempCountPred += predCount.get(i);
-				bitmap.set(tempCountPred - 1, true);
-				if (listener != null && i % 1_000_000 == 0) {
-					listener.notifyProgress((float) (i * 100 / predCount.getNumberOfElements()),
-							"Creating Predicate bitmap " + i + " / " + triples.getSeqY().getNumberOfElements());
+				st.reset();
+
+				// Create predicate index
+				array = triples.createSequence64(diskLocation, "predicateIndexArray",
+						BitUtil.log2(seqY.getNumberOfElements()), seqY.getNumberOfElements());
+				sort.distribute(array, start -> LongUnaryOperator.identity());
+			} catch (Throwable t) {
+				try {
+					throw t;
+				} finally {
+					Closer.closeAll(bitmap, array);
 				}
 			}
-			bitmap.set(triples.getSeqY().getNumberOfElements() - 1, true);
-			log.info("Predicate Bitmap in {}", st.stopAndShow());
-			if (listener != null) {
-				listener.notifyProgress(100, "Predicate Bitmap in " + st);
-			}
-			st.reset();
-		} finally {
-			IOUtil.closeQuietly(predCount);
-		}
-
-		// Create predicate index
-		DynamicSequence array = triples.createSequence64(diskLocation, "predicateIndexArray",
-				BitUtil.log2(triples.getSeqY().getNumberOfElements()), triples.getSeqY().getNumberOfElements());
-		try {
-			array.resize(triples.getSeqY().getNumberOfElements());
-
-			DynamicSequence insertArray = triples.createSequence64(diskLocation, "predicateIndexInsertArray",
-					BitUtil.log2(triples.getSeqY().getNumberOfElements()), bitmap.countOnes());
-			try {
-				insertArray.resize(bitmap.countOnes());
-				for (long i = 0; i < triples.getSeqY().getNumberOfElements(); i++) {
-					long predicateValue = triples.getSeqY().get(i);
-
-					long insertBase = predicateValue == 1 ? 0 : bitmap.select1(predicateValue - 1) + 1;
-					long insertOffset = insertArray.get(predicateValue - 1);
-					insertArray.set(predicateValue - 1, insertOffset + 1);
-
-					array.set(insertBase + insertOffset, i);
-
-					if (listener != null && i % 1_000_000 == 0) {
-						listener.notifyProgress((float) (i * 100 / triples.getSeqY().getNumberOfElements()),
-								"Generating predicate references");
-					}
-				}
-			} finally {
-				IOUtil.closeQuietly(insertArray);
-			}
-		} catch (Throwable t) {
-			try {
-				throw t;
-			} finally {
-				IOUtil.closeQuietly(array);
-			}
+		} catch (IOException e) {
+			throw new RuntimeException("Can't generate the predicate index", e);
 		}
 		try {
 			Closer.closeAll(this.array, this.bitmap);
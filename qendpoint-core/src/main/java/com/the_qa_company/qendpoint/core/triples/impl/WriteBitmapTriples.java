@@ -1,6 +1,8 @@
 package com.the_qa_company.qendpoint.core.triples.impl;
 
+import com.the_qa_company.qendpoint.core.compact.bitmap.Bitmap64Big;
 import com.the_qa_company.qendpoint.core.compact.bitmap.EmptyBitmap;
+import com.the_qa_company.qendpoint.core.compact.bitmap.ModifiableBitmap;
 import com.the_qa_company.qendpoint.core.compact.bitmap.ModifiableMultiLayerBitmap;
 import com.the_qa_company.qendpoint.core.compact.bitmap.MultiRoaringBitmap;
 import com.the_qa_company.qendpoint.core.dictionary.Dictionary;
@@ -45,6 +47,11 @@ public class WriteBitmapTriples implements TriplesPrivate {
 	private long numTriples;
 	private final AppendableWriteBitmap bitY, bitZ;
 	private final CloseSuppressPath seqY, seqZ, triples;
+	// sequence types of the options
+	private final String seqTypeY, seqTypeZ;
+	// readable copies of the bitmaps to encode the Elias-Fano sequences, null
+	// for the other types
+	private final ModifiableBitmap listsY, listsZ;
 	private SequenceLog64BigDisk vectorY, vectorZ;
 	private ModifiableMultiLayerBitmap quadInfoAG;
 
@@ -67,6 +74,10 @@ public class WriteBitmapTriples implements TriplesPrivate {
 		bitZ = new AppendableWriteBitmap(triples.resolve("bitmapZ"), bufferSize);
 		seqY = triples.resolve("seqY");
 		seqZ = triples.resolve("seqZ");
+		seqTypeY = spec.get(HDTOptionsKeys.BITMAPTRIPLES_SEQ_Y);
+		seqTypeZ = spec.get(HDTOptionsKeys.BITMAPTRIPLES_SEQ_Z);
+		listsY = createLists(seqTypeY, triples.resolve("listsY"));
+		listsZ = createLists(seqTypeZ, triples.resolve("listsZ"));
 
 		if (quads < 0) {
 			quadInfoAG = EmptyBitmap.of(0, 0);
@@ -86,8 +97,8 @@ public class WriteBitmapTriples implements TriplesPrivate {
 		IntermediateListener iListener = new IntermediateListener(listener);
 		bitY.save(output, iListener);
 		bitZ.save(output, iListener);
-		vectorY.save(output, iListener);
-		vectorZ.save(output, iListener);
+		BitmapTriples.saveSequence(vectorY, listsY, seqTypeY, triples.resolve("seqYEliasFano"), output, iListener);
+		BitmapTriples.saveSequence(vectorZ, listsZ, seqTypeZ, triples.resolve("seqZEliasFano"), output, iListener);
 
 		if (quadInfoAG != null) {
 			// quads
@@ -264,10 +275,10 @@ public class WriteBitmapTriples implements TriplesPrivate {
 							"Upper level must be increasing and correlative. " + x + " != " + lastX + "+ 1");
 				}
 				// X changed
-				bitY.append(true);
+				appendY(true);
 				vectorY.append(y);
 
-				bitZ.append(true);
+				appendZ(true);
 				vectorZ.append(z);
 			} else if (y != lastY) {
 				if (y < lastY) {
@@ -276,10 +287,10 @@ public class WriteBitmapTriples implements TriplesPrivate {
 				}
 
 				// Y changed
-				bitY.append(false);
+				appendY(false);
 				vectorY.append(y);
 
-				bitZ.append(true);
+				appendZ(true);
 				vectorZ.append(z);
 			} else {
 				if (z < lastZ) {
@@ -288,7 +299,7 @@ public class WriteBitmapTriples implements TriplesPrivate {
 				}
 
 				// Z changed
-				bitZ.append(false);
+				appendZ(false);
 				vectorZ.append(z);
 			}
 
@@ -300,8 +311,8 @@ public class WriteBitmapTriples implements TriplesPrivate {
 		}
 
 		if (numTriples > 0) {
-			bitY.append(true);
-			bitZ.append(true);
+			appendY(true);
+			appendZ(true);
 		}
 
 		vectorY.aggressiveTrimToSize();
@@ -315,7 +326,28 @@ public class WriteBitmapTriples implements TriplesPrivate {
 
 	@Override
 	public void close() throws IOException {
-		Closer.closeAll(bitY, bitZ, vectorY, seqY, vectorZ, seqZ, quadInfoAG, triples);
+		Closer.closeAll(bitY, bitZ, listsY, listsZ, vectorY, seqY, vectorZ, seqZ, quadInfoAG, triples);
+	}
+
+	private static ModifiableBitmap createLists(String seqType, Path location) {
+		if (!HDTVocabulary.SEQ_TYPE_ELIAS_FANO.equals(seqType)) {
+			return null;
+		}
+		return Bitmap64Big.disk(location, Long.SIZE);
+	}
+
+	private void appendY(boolean value) {
+		bitY.append(value);
+		if (listsY != null) {
+			listsY.append(value);
+		}
+	}
+
+	private void appendZ(boolean value) {
+		bitZ.append(value);
+		if (listsZ != null) {
+			listsZ.append(value);
+		}
 	}
 
 	public class BitmapTriplesAppender {
@@ -349,10 +381,10 @@ public class WriteBitmapTriples implements TriplesPrivate {
 							"Upper level must be increasing and correlative. " + x + " != " + lastX + "+ 1");
 				}
 				// X changed
-				bitY.append(true);
+				appendY(true);
 				vectorY.append(y);
 
-				bitZ.append(true);
+				appendZ(true);
 				vectorZ.append(z);
 			} else if (y != lastY) {
 				if (y < lastY) {
@@ -361,10 +393,10 @@ public class WriteBitmapTriples implements TriplesPrivate {
 				}
 
 				// Y changed
-				bitY.append(false);
+				appendY(false);
 				vectorY.append(y);
 
-				bitZ.append(true);
+				appendZ(true);
 				vectorZ.append(z);
 			} else {
 				if (z < lastZ) {
@@ -373,7 +405,7 @@ public class WriteBitmapTriples implements TriplesPrivate {
 				}
 
 				// Z changed
-				bitZ.append(false);
+				appendZ(false);
 				vectorZ.append(z);
 			}
 
@@ -387,8 +419,8 @@ public class WriteBitmapTriples implements TriplesPrivate {
 
 		public void done() {
 			if (numTriples > 0) {
-				bitY.append(true);
-				bitZ.append(true);
+				appendY(true);
+				appendZ(true);
 			}
 
 			vectorY.aggressiveTrimToSize();
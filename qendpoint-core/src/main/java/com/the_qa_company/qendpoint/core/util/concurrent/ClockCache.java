@@ -0,0 +1,291 @@
+package com.the_qa_company.qendpoint.core.util.concurrent;
+
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.ToLongBiFunction;
+
+/**
+ * Concurrent cache bounded by the weight of its entries, the entries are
+ * evicted with the CLOCK algorithm.
+ * <p>
+ * A read doesn't lock, it only marks its entry as referenced. The new entries
+ * are added at the end of the clock queue, when the cache is too heavy, one of
+ * the writers removes the entries from the start of the queue, an entry
+ * referenced since the last pass is given a second chance. The other writers
+ * don't wait for the eviction.
+ * <p>
+ * A replaced entry stays in the queue until the clock reaches it, the queue
+ * is cleaned when it has more replaced entries than entries in the cache.
+ *
+ * @param <K> key type
+ * @param <V> value type
+ */
+public class ClockCache<K, V> {
+	private static final class Entry<K, V> {
+		private final K key;
+		private final V value;
+		private final long weight;
+		private volatile boolean referenced;
+
+		private Entry(K key, V value, long weight) {
+			this.key = key;
+			this.value = value;
+			this.weight = weight;
+		}
+	}
+
+	private final ConcurrentHashMap<K, Entry<K, V>> map = new ConcurrentHashMap<>();
+	private final ConcurrentLinkedQueue<Entry<K, V>> clock = new ConcurrentLinkedQueue<>();
+	private final ReentrantLock evictionLock = new ReentrantLock();
+	private final AtomicLong weight = new AtomicLong();
+	// replaced entries still in the clock queue
+	private final AtomicLong stale = new AtomicLong();
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+	private final long maxWeight;
+	private final ToLongBiFunction<? super K, ? super V> weigher;
+
+	/**
+	 * create a cache
+	 *
+	 * @param maxWeight maximum weight of the entries
+	 * @param weigher   weight of an entry, for example its size in bytes
+	 */
+	public ClockCache(long maxWeight, ToLongBiFunction<? super K, ? super V> weigher) {
+		if (maxWeight <= 0) {
+			throw new IllegalArgumentException("maxWeight should be positive: " + maxWeight);
+		}
+		this.maxWeight = maxWeight;
+		this.weigher = Objects.requireNonNull(weigher, "weigher can't be null!");
+	}
+
+	/**
+	 * get a value of the cache
+	 *
+	 * @param key key
+	 * @return value, null if the key isn't in the cache
+	 */
+	public V get(K key) {
+		Entry<K, V> entry = map.get(key);
+		if (entry == null) {
+			misses.increment();
+			return null;
+		}
+		if (!entry.referenced) {
+			entry.referenced = true;
+		}
+		hits.increment();
+		return entry.value;
+	}
+
+	/**
+	 * get a value of the cache or load it, if the key was loaded at the same
+	 * time by another thread, the value of the other thread is returned
+	 *
+	 * @param key    key
+	 * @param loader function to load the value, the null values aren't
+	 *               cached
+	 * @return value
+	 */
+	public V get(K key, Function<? super K, ? extends V> loader) {
+		V value = get(key);
+		if (value == null) {
+			value = loader.apply(key);
+			if (value != null) {
+				value = putIfAbsent(key, value);
+			}
+		}
+		return value;
+	}
+
+	/**
+	 * put a value in the cache, a value heavier than the maximum weight isn't
+	 * cached
+	 *
+	 * @param key   key
+	 * @param value value
+	 */
+	public void put(K key, V value) {
+		put(key, value, false);
+	}
+
+	/**
+	 * put a value in the cache if the key isn't already in it, a value
+	 * heavier than the maximum weight isn't cached
+	 *
+	 * @param key   key
+	 * @param value value
+	 * @return the value of the cache, value if the key wasn't in the cache
+	 */
+	public V putIfAbsent(K key, V value) {
+		return put(key, value, true);
+	}
+
+	private V put(K key, V value, boolean onlyIfAbsent) {
+		long entryWeight = weigher.applyAsLong(key, value);
+		if (entryWeight > maxWeight) {
+			return value;
+		}
+		Entry<K, V> entry = new Entry<>(key, value, entryWeight);
+		Entry<K, V> old;
+		if (onlyIfAbsent) {
+			old = map.putIfAbsent(key, entry);
+			if (old != null) {
+				old.referenced = true;
+				return old.value;
+			}
+		} else {
+			old = map.put(key, entry);
+		}
+		clock.offer(entry);
+		if (old == null) {
+			weight.addAndGet(entryWeight);
+		} else {
+			weight.addAndGet(entryWeight - old.weight);
+			// the old entry is dropped when the clock reaches it, clean the
+			// queue if the cache is often replaced without eviction
+			if (stale.incrementAndGet() > map.size()) {
+				removeStale();
+			}
+		}
+		if (weight.get() > maxWeight) {
+			evict();
+		}
+		return value;
+	}
+
+	private void removeStale() {
+		if (!evictionLock.tryLock()) {
+			// another writer is evicting
+			return;
+		}
+		try {
+			stale.set(0);
+			clock.removeIf(entry -> map.get(entry.key) != entry);
+		} finally {
+			evictionLock.unlock();
+		}
+	}
+
+	private void evict() {
+		if (!evictionLock.tryLock()) {
+			// another writer is evicting
+			return;
+		}
+		try {
+			// bound the second chances if the entries are read during the pass
+			long secondChances = 2L * map.size() + 1;
+			while (weight.get() > maxWeight) {
+				Entry<K, V> entry = clock.poll();
+				if (entry == null) {
+					break;
+				}
+				if (map.get(entry.key) != entry) {
+					// replaced
+					stale.decrementAndGet();
+					continue;
+				}
+				if (entry.referenced && secondChances-- > 0) {
+					entry.referenced = false;
+					clock.offer(entry);
+					continue;
+				}
+				if (map.remove(entry.key, entry)) {
+					weight.addAndGet(-entry.weight);
+					evictions.increment();
+				}
+			}
+		} finally {
+			evictionLock.unlock();
+		}
+	}
+
+	/**
+	 * remove all the entries of the cache, the metrics are kept
+	 */
+	public void clear() {
+		evictionLock.lock();
+		try {
+			Entry<K, V> entry;
+			while ((entry = clock.poll()) != null) {
+				if (map.remove(entry.key, entry)) {
+					weight.addAndGet(-entry.weight);
+				}
+			}
+			stale.set(0);
+		} finally {
+			evictionLock.unlock();
+		}
+	}
+
+	/**
+	 * @return the number of entries
+	 */
+	public int size() {
+		return map.size();
+	}
+
+	/**
+	 * @return the number of entries in the clock queue, with the replaced
+	 *         entries not yet removed
+	 */
+	int getQueueSize() {
+		return clock.size();
+	}
+
+	/**
+	 * @return the weight of the entries
+	 */
+	public long getWeight() {
+		return weight.get();
+	}
+
+	/**
+	 * @return the maximum weight of the entries
+	 */
+	public long getMaxWeight() {
+		return maxWeight;
+	}
+
+	/**
+	 * @return the number of reads finding their key
+	 */
+	public long getHits() {
+		return hits.sum();
+	}
+
+	/**
+	 * @return the number of reads without their key
+	 */
+	public long getMisses() {
+		return misses.sum();
+	}
+
+	/**
+	 * @return the number of evicted entries
+	 */
+	public long getEvictions() {
+		return evictions.sum();
+	}
+
+	/**
+	 * @return the ratio of the reads finding their key, 0 without read
+	 */
+	public double getHitRate() {
+		long hits = getHits();
+		long total = hits + getMisses();
+		return total == 0 ? 0 : (double) hits / total;
+	}
+
+	@Override
+	public String toString() {
+		return "ClockCache{size=" + size() + ", weight=" + getWeight() + "/" + maxWeight + ", hits=" + getHits()
+				+ ", misses=" + getMisses() + ", evictions=" + getEvictions() + "}";
+	}
+}
@@ -0,0 +1,58 @@
+package com.the_qa_company.qendpoint.core.util.concurrent;
+
+import com.the_qa_company.qendpoint.core.compact.sequence.DynamicSequence;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Version of {@link SyncSeq} to write the indexes of a {@link DynamicSequence}
+ * from multiple threads. The values of a packed sequence are sharing their
+ * words, so a set is only synchronized with the sets of the same words, by
+ * using a lock per group of words.
+ * <p>
+ * The gets aren't synchronized, an index shouldn't be read while another
+ * thread is writing it.
+ */
+public class StripedSyncSeq implements Closeable {
+	private static final int LOCKS = 1 << 10;
+
+	private final DynamicSequence seq;
+	private final int numbits;
+	private final Object[] locks = new Object[LOCKS];
+
+	public StripedSyncSeq(DynamicSequence seq) {
+		this.seq = seq;
+		this.numbits = seq.sizeOf();
+		for (int i = 0; i < locks.length; i++) {
+			locks[i] = new Object();
+		}
+	}
+
+	public long get(long index) {
+		return seq.get(index);
+	}
+
+	public void set(long index, long value) {
+		long bitPos = index * numbits;
+		int first = (int) ((bitPos >>> 6) & (LOCKS - 1));
+		int last = (int) (((bitPos + numbits - 1) >>> 6) & (LOCKS - 1));
+		if (first == last) {
+			synchronized (locks[first]) {
+				seq.set(index, value);
+			}
+		} else {
+			// the value is on 2 words, always lock the lower lock first
+			synchronized (locks[Math.min(first, last)]) {
+				synchronized (locks[Math.max(first, last)]) {
+					seq.set(index, value);
+				}
+			}
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		seq.close();
+	}
+}
@@ -188,6 +188,35 @@ public class BitSequence375Test {
 		}
 	}
 
+	@Test
+	public void testSelectRuns() {
+		// runs of ones and zeros longer than the select samples
+		long size = 200_000;
+		Bitmap375Big runs = Bitmap375Big.memory(size);
+		Random r = new Random(42);
+		long i = 0;
+		boolean value = false;
+		while (i < size) {
+			long run = 1 + r.nextInt(r.nextBoolean() ? 10 : 5000);
+			for (long j = 0; j < run && i < size; j++, i++) {
+				runs.set(i, value);
+			}
+			value = !value;
+		}
+		runs.updateIndex();
+
+		long ones = 0;
+		long zeros = 0;
+		for (long k = 0; k < size; k++) {
+			if (runs.access(k)) {
+				assertEquals("Select1 wrong", k, runs.select1(++ones));
+			} else {
+				assertEquals("Select0 wrong", k, runs.select0(++zeros));
+			}
+		}
+		assertEquals(ones, runs.countOnes());
+	}
+
 	@Test
 	public void testSelectNext1() {
 		for (long i = 0; i < bitseq.getNumBits(); i++) {
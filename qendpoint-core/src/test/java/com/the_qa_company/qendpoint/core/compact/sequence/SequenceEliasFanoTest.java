@@ -0,0 +1,219 @@
+package com.the_qa_company.qendpoint.core.compact.sequence;
+
+import com.the_qa_company.qendpoint.core.compact.bitmap.AdjacencyList;
+import com.the_qa_company.qendpoint.core.compact.bitmap.Bitmap375Big;
+import com.the_qa_company.qendpoint.core.exceptions.NotImplementedException;
+import com.the_qa_company.qendpoint.core.util.BitUtil;
+import com.the_qa_company.qendpoint.core.util.io.CountInputStream;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+
+public class SequenceEliasFanoTest {
+	@Rule
+	public TemporaryFolder tempDir = TemporaryFolder.builder().assureDeletion().build();
+
+	/**
+	 * sorted adjacency lists and their bitmap, set at the end of each list
+	 */
+	private record Lists(SequenceLog64Big seq, Bitmap375Big bitmap) implements AutoCloseable {
+		@Override
+		public void close() throws IOException {
+			try {
+				seq.close();
+			} finally {
+				bitmap.close();
+			}
+		}
+	}
+
+	/**
+	 * create sorted lists of values
+	 *
+	 * @param elements number of values
+	 * @param maxValue max value
+	 * @param maxSize  max size of a list
+	 * @param maxGap   max gap between 2 values of a list
+	 * @return lists
+	 */
+	private static Lists sortedLists(long elements, long maxValue, int maxSize, long maxGap) {
+		SequenceLog64Big seq = new SequenceLog64Big(BitUtil.log2(maxValue), elements);
+		Bitmap375Big bitmap = Bitmap375Big.memory(elements);
+		Random rnd = new Random(42);
+		while (seq.getNumberOfElements() < elements) {
+			long value = 1 + rnd.nextLong(maxValue);
+			int size = (int) Math.min(1 + rnd.nextInt(maxSize), elements - seq.getNumberOfElements());
+			for (int i = 0; i < size && value <= maxValue; i++) {
+				if (i != 0) {
+					bitmap.append(false);
+				}
+				seq.append(value);
+				value += 1 + rnd.nextLong(maxGap);
+			}
+			bitmap.append(true);
+		}
+		return new Lists(seq, bitmap);
+	}
+
+	private static void assertSequenceEquals(Sequence expected, Sequence actual) {
+		long size = expected.getNumberOfElements();
+		Assert.assertEquals(size, actual.getNumberOfElements());
+		for (long i = 0; i < size; i++) {
+			Assert.assertEquals("bad value at " + i, expected.get(i), actual.get(i));
+		}
+
+		long[] buffer = new long[300];
+		for (long start = 0; start <= size; start += 97) {
+			int count = actual.get(start, buffer, buffer.length);
+			Assert.assertEquals(Math.min(buffer.length, size - start), count);
+			for (int i = 0; i < count; i++) {
+				Assert.assertEquals("bad bulk value at " + (start + i), expected.get(start + i), buffer[i]);
+			}
+		}
+	}
+
+	private void saveLoadTest(Lists lists) throws IOException {
+		Path root = tempDir.newFolder().toPath();
+		Path file = root.resolve("test.seq");
+		try (SequenceEliasFano eliasFano = SequenceEliasFano.of(lists.seq(), lists.bitmap())) {
+			assertSequenceEquals(lists.seq(), eliasFano);
+
+			try (OutputStream out = Files.newOutputStream(file)) {
+				eliasFano.save(out, null);
+			}
+		}
+
+		try (InputStream in = new BufferedInputStream(Files.newInputStream(file));
+				Sequence loaded = SequenceFactory.createStream(in)) {
+			Assert.assertTrue(loaded instanceof SequenceEliasFano);
+			loaded.load(in, null);
+			// the lists are set by the adjacency list
+			new AdjacencyList(loaded, lists.bitmap());
+			assertSequenceEquals(lists.seq(), loaded);
+		}
+
+		try (CountInputStream in = new CountInputStream(new BufferedInputStream(Files.newInputStream(file)));
+				Sequence mapped = SequenceFactory.createStream(in, file.toFile())) {
+			Assert.assertTrue(mapped instanceof SequenceEliasFano);
+			((SequenceEliasFano) mapped).setLists(lists.bitmap());
+			assertSequenceEquals(lists.seq(), mapped);
+		}
+	}
+
+	@Test
+	public void longListsTest() throws IOException {
+		try (Lists lists = sortedLists(10_000, 1_000_000, 1000, 100)) {
+			saveLoadTest(lists);
+		}
+	}
+
+	@Test
+	public void shortListsTest() throws IOException {
+		try (Lists lists = sortedLists(10_000, 1_000_000, 3, 100_000)) {
+			saveLoadTest(lists);
+		}
+	}
+
+	@Test
+	public void singleListTest() throws IOException {
+		try (Lists lists = sortedLists(1_000, 1_000_000_000L, 1_000, 1_000_000)) {
+			saveLoadTest(lists);
+		}
+	}
+
+	@Test
+	public void denseListsTest() throws IOException {
+		// the shifted values are smaller than the number of values, no low bits
+		try (Lists lists = sortedLists(10_000, 1_000, 1_000, 1)) {
+			saveLoadTest(lists);
+		}
+	}
+
+	@Test
+	public void emptyTest() throws IOException {
+		try (Lists lists = new Lists(new SequenceLog64Big(), Bitmap375Big.memory(0))) {
+			saveLoadTest(lists);
+		}
+	}
+
+	@Test
+	public void estimateSizeTest() throws IOException {
+		try (Lists lists = sortedLists(10_000, 1_000_000, 1000, 100);
+				SequenceEliasFano eliasFano = SequenceEliasFano.of(lists.seq(), lists.bitmap())) {
+			Assert.assertEquals(eliasFano.size(), SequenceEliasFano.estimateSize(lists.seq(), lists.bitmap()));
+		}
+		try (Lists lists = sortedLists(10_000, 1_000_000, 3, 100_000);
+				SequenceEliasFano eliasFano = SequenceEliasFano.of(lists.seq(), lists.bitmap())) {
+			Assert.assertEquals(eliasFano.size(), SequenceEliasFano.estimateSize(lists.seq(), lists.bitmap()));
+		}
+	}
+
+	@Test
+	public void overflowTest() throws IOException {
+		try (Lists lists = new Lists(new SequenceLog64Big(63, 3), Bitmap375Big.memory(3))) {
+			for (int i = 0; i < 3; i++) {
+				lists.seq().append(Long.MAX_VALUE / 2);
+				lists.bitmap().append(true);
+			}
+			Assert.assertEquals(Long.MAX_VALUE, SequenceEliasFano.estimateSize(lists.seq(), lists.bitmap()));
+			Assert.assertThrows(IllegalArgumentException.class,
+					() -> SequenceEliasFano.of(lists.seq(), lists.bitmap()));
+		}
+	}
+
+	@Test
+	public void addTest() throws IOException {
+		try (SequenceEliasFano eliasFano = new SequenceEliasFano()) {
+			Assert.assertThrows(NotImplementedException.class, () -> eliasFano.add(List.of(1L, 2L).iterator()));
+		}
+	}
+
+	@Test
+	public void diskSaveTest() throws IOException {
+		Path root = tempDir.newFolder().toPath();
+		Path workDir = root.resolve("work");
+		Path file = root.resolve("test.seq");
+		try (Lists lists = sortedLists(10_000, 1_000_000, 1000, 100)) {
+			try (OutputStream out = Files.newOutputStream(file)) {
+				SequenceEliasFano.save(lists.seq(), lists.bitmap(), workDir, out, null);
+			}
+			Assert.assertFalse(Files.exists(workDir));
+
+			try (InputStream in = new BufferedInputStream(Files.newInputStream(file));
+					Sequence loaded = SequenceFactory.createStream(in)) {
+				Assert.assertTrue(loaded instanceof SequenceEliasFano);
+				loaded.load(in, null);
+				((SequenceEliasFano) loaded).setLists(lists.bitmap());
+				assertSequenceEquals(lists.seq(), loaded);
+			}
+		}
+	}
+
+	@Test
+	public void shortListsSizeTest() throws IOException {
+		// Z sequence of short lists of distant ids, the list offsets are
+		// close to the max id and the sequence is bigger than the log sequence
+		try (Lists lists = sortedLists(100_000, 10_000_000, 2, 100_000)) {
+			long estimate = SequenceEliasFano.estimateSize(lists.seq(), lists.bitmap());
+			Assert.assertTrue(estimate + " < " + lists.seq().size(), estimate >= lists.seq().size());
+		}
+	}
+
+	@Test
+	public void compressionTest() throws IOException {
+		try (Lists lists = sortedLists(100_000, 10_000_000, 100, 1_000);
+				SequenceEliasFano eliasFano = SequenceEliasFano.of(lists.seq(), lists.bitmap())) {
+			Assert.assertTrue(eliasFano.size() + " >= " + lists.seq().size(), eliasFano.size() < lists.seq().size());
+		}
+	}
+}
@@ -8,6 +8,8 @@ import org.junit.runner.RunWith;
 import org.junit.runners.Parameterized;
 
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.Arrays;
 import java.util.Collection;
@@ -98,6 +100,61 @@ public class SequenceTest {
 		sequenceTest(32, 10_000L, true);
 	}
 
+	private static void assertBulkGet(Sequence sequence) {
+		long size = sequence.getNumberOfElements();
+		long[] buffer = new long[100];
+		for (long start = 0; start <= size; start += 37) {
+			int count = sequence.get(start, buffer, buffer.length);
+			Assert.assertEquals(Math.min(buffer.length, size - start), count);
+			for (int i = 0; i < count; i++) {
+				Assert.assertEquals("bad value at " + (start + i), sequence.get(start + i), buffer[i]);
+			}
+		}
+
+		SequenceCursor cursor = new SequenceCursor(sequence, 0, 7);
+		for (long i = 0; i < size; i++) {
+			Assert.assertTrue(cursor.hasNext());
+			Assert.assertEquals(i, cursor.getPosition());
+			Assert.assertEquals(sequence.get(i), cursor.next());
+		}
+		Assert.assertFalse(cursor.hasNext());
+
+		cursor.seek(size / 2);
+		Assert.assertEquals(sequence.get(size / 2), cursor.next());
+		cursor.seek(3);
+		Assert.assertEquals(sequence.get(3), cursor.next());
+	}
+
+	private void bulkGetTest(int bits) throws IOException {
+		long maxMask = (~0L) >>> (Long.SIZE - bits);
+		long elements = 1_000;
+
+		Path p = tempDir.newFolder().toPath();
+		try (DynamicSequence actual = sequenceGenerator.bld.generate(p.resolve("test.seq").toString(), bits,
+				elements)) {
+			Random rnd = new Random(42);
+			for (long i = 0; i < elements; i++) {
+				actual.append((rnd.nextLong() >>> 1) & maxMask);
+			}
+			assertBulkGet(actual);
+
+			Path mapped = p.resolve("test.map");
+			try (OutputStream out = Files.newOutputStream(mapped)) {
+				actual.save(out, null);
+			}
+			try (SequenceLog64Map map = new SequenceLog64Map(mapped.toFile())) {
+				assertBulkGet(map);
+			}
+		}
+	}
+
+	@Test
+	public void bulkGetTest() throws IOException {
+		for (int bits : new int[] { 1, 7, 13, 32, 33, 63, 64 }) {
+			bulkGetTest(bits);
+		}
+	}
+
 	private static class SequenceGenerator {
 		final String name;
 		final SequenceGeneratorBuilder bld;
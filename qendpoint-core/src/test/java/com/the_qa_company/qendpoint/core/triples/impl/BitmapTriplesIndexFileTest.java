@@ -23,6 +23,7 @@ import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
+import java.util.List;
 
 import static org.junit.Assert.*;
 
@@ -162,4 +163,39 @@ public class BitmapTriplesIndexFileTest extends AbstractMapMemoryTest {
 
 		PathUtils.deleteDirectory(root);
 	}
+
+	@Test
+	public void genMultiOrderTest() throws IOException, ParserException {
+		Path root = tempDir.newFolder().toPath();
+
+		HDTOptions spec = HDTOptions.of(HDTOptionsKeys.BITMAPTRIPLES_INDEX_OTHERS, "sop,ops,osp,pos,pso",
+				HDTOptionsKeys.BITMAPTRIPLES_INDEX_NO_FOQ, true, HDTOptionsKeys.BITMAPTRIPLES_INDEX_OTHERS_WORKERS, 3,
+				// small chunks to merge them
+				HDTOptionsKeys.BITMAPTRIPLES_INDEX_OTHERS_MEMORY,
+				3 * 1000 * DiskTriplesMultiReorderSorter.TRIPLE_MEMORY_SIZE);
+		Path hdtPath = root.resolve("temp.hdt");
+
+		LargeFakeDataSetStreamSupplier supplier = LargeFakeDataSetStreamSupplier.createSupplierWithMaxTriples(10000, 10)
+				.withMaxLiteralSize(50).withMaxElementSplit(20);
+
+		supplier.createAndSaveFakeHDT(spec, hdtPath);
+
+		// generate the indexes
+		HDTManager.mapIndexedHDT(hdtPath, spec, ProgressListener.ignore()).close();
+
+		// compare them with the indexes sorted one by one
+		HDTOptions specSingle = HDTOptions.of("debug.bitmaptriples.allowFastSort", false);
+		try (HDT hdt = HDTManager.mapHDT(hdtPath)) {
+			BitmapTriples triples = (BitmapTriples) hdt.getTriples();
+			for (TripleComponentOrder order : List.of(TripleComponentOrder.SOP, TripleComponentOrder.OPS,
+					TripleComponentOrder.OSP, TripleComponentOrder.POS, TripleComponentOrder.PSO)) {
+				Path expected = root.resolve("expected-" + order.name().toLowerCase() + ".idx");
+				BitmapTriplesIndexFile.generateIndex(triples, triples, expected, order, specSingle, null);
+				assertBitmapTriplesIndexFileEquals(hdtPath, expected,
+						BitmapTriplesIndexFile.getIndexPath(hdtPath, order));
+			}
+		}
+
+		PathUtils.deleteDirectory(root);
+	}
 }
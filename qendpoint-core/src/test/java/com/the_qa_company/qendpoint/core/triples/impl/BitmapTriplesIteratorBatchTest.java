@@ -0,0 +1,83 @@
+package com.the_qa_company.qendpoint.core.triples.impl;
+
+import com.the_qa_company.qendpoint.core.enums.RDFNotation;
+import com.the_qa_company.qendpoint.core.exceptions.ParserException;
+import com.the_qa_company.qendpoint.core.hdt.HDT;
+import com.the_qa_company.qendpoint.core.hdt.HDTManager;
+import com.the_qa_company.qendpoint.core.options.HDTSpecification;
+import com.the_qa_company.qendpoint.core.triples.IteratorTripleID;
+import com.the_qa_company.qendpoint.core.triples.TripleID;
+import com.the_qa_company.qendpoint.core.triples.TripleIDBatch;
+import com.the_qa_company.qendpoint.core.triples.impl.utils.HDTTestUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+public class BitmapTriplesIteratorBatchTest {
+	@Rule
+	public TemporaryFolder tempDir = TemporaryFolder.builder().assureDeletion().build();
+
+	private static void assertBatchEquals(HDT hdt, TripleID pattern, boolean readPositions) {
+		List<TripleID> expected = new ArrayList<>();
+		List<Long> expectedPositions = new ArrayList<>();
+		IteratorTripleID it = hdt.getTriples().search(pattern);
+		while (it.hasNext()) {
+			expected.add(it.next().clone());
+			expectedPositions.add(it.getLastTriplePosition());
+		}
+
+		List<TripleID> actual = new ArrayList<>();
+		List<Long> actualPositions = new ArrayList<>();
+		IteratorTripleID it2 = hdt.getTriples().search(pattern);
+		TripleIDBatch batch = new TripleIDBatch(3, readPositions);
+		// grow the batches like the store iterators
+		batch.setLimit(1);
+		while (it2.nextBatch(batch) != 0) {
+			assertTrue(batch.size() <= batch.capacity());
+			for (int i = 0; i < batch.size(); i++) {
+				actual.add(batch.get(i, new TripleID()));
+				actualPositions.add(batch.getPositions()[i]);
+			}
+			batch.setLimit(Math.min(batch.maxCapacity(), batch.capacity() + 1));
+		}
+
+		assertEquals("triples of " + pattern, expected, actual);
+		if (readPositions) {
+			assertEquals("positions of " + pattern, expectedPositions, actualPositions);
+		}
+	}
+
+	@Test
+	public void batchTest() throws IOException, ParserException {
+		File f = new File(tempDir.newFolder(), "test.nt");
+		InputStream ntFile = getClass().getClassLoader().getResourceAsStream("example_triplePosition.nt");
+		assertNotNull("ntFile can't be null", ntFile);
+		Files.copy(ntFile, f.toPath());
+
+		try (HDT hdt = HDTManager.indexedHDT(HDTManager.generateHDT(f.getAbsolutePath(), HDTTestUtils.BASE_URI,
+				RDFNotation.NTRIPLES, new HDTSpecification(), null), null)) {
+			IteratorTripleID all = hdt.getTriples().searchAll();
+			all.next();
+			all.next();
+			TripleID t = all.next().clone();
+
+			for (int mask = 0; mask < 8; mask++) {
+				TripleID pattern = new TripleID((mask & 4) != 0 ? t.getSubject() : 0,
+						(mask & 2) != 0 ? t.getPredicate() : 0, (mask & 1) != 0 ? t.getObject() : 0);
+				assertBatchEquals(hdt, pattern, true);
+				assertBatchEquals(hdt, pattern, false);
+			}
+		}
+	}
+}
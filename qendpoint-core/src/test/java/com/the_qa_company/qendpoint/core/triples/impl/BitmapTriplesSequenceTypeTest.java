@@ -0,0 +1,141 @@
+package com.the_qa_company.qendpoint.core.triples.impl;
+
+import com.the_qa_company.qendpoint.core.compact.bitmap.Bitmap;
+import com.the_qa_company.qendpoint.core.compact.sequence.Sequence;
+import com.the_qa_company.qendpoint.core.compact.sequence.SequenceEliasFano;
+import com.the_qa_company.qendpoint.core.exceptions.NotFoundException;
+import com.the_qa_company.qendpoint.core.exceptions.ParserException;
+import com.the_qa_company.qendpoint.core.hdt.HDT;
+import com.the_qa_company.qendpoint.core.hdt.HDTManager;
+import com.the_qa_company.qendpoint.core.hdt.HDTVocabulary;
+import com.the_qa_company.qendpoint.core.options.HDTOptions;
+import com.the_qa_company.qendpoint.core.options.HDTOptionsKeys;
+import com.the_qa_company.qendpoint.core.triples.IteratorTripleString;
+import com.the_qa_company.qendpoint.core.triples.TripleString;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class BitmapTriplesSequenceTypeTest {
+	private static final String EX = "http://ex.org/";
+
+	@Rule
+	public TemporaryFolder tempDir = TemporaryFolder.builder().assureDeletion().build();
+
+	/**
+	 * triples with one object by subject and predicate, the objects are
+	 * distant in the dictionary like in most datasets
+	 */
+	private static List<TripleString> shortLists() {
+		List<TripleString> triples = new ArrayList<>();
+		Random rnd = new Random(42);
+		for (int s = 0; s < 2000; s++) {
+			int predicates = 1 + rnd.nextInt(4);
+			for (int p = 0; p < predicates; p++) {
+				triples.add(new TripleString(EX + "s" + s, EX + "p" + p, EX + "o" + rnd.nextInt(50_000)));
+			}
+		}
+		return triples;
+	}
+
+	/**
+	 * triples with long lists of close objects
+	 */
+	private static List<TripleString> longLists() {
+		List<TripleString> triples = new ArrayList<>();
+		for (int s = 0; s < 4; s++) {
+			for (int o = 0; o < 3000; o++) {
+				triples.add(new TripleString(EX + "s" + s, EX + "p", EX + "o%05d".formatted(s * 1000 + o)));
+			}
+		}
+		return triples;
+	}
+
+	private static Sequence seqZ(HDT hdt) {
+		return ((BitmapTriples) hdt.getTriples()).getSeqZ();
+	}
+
+	private static Bitmap bitmapZ(HDT hdt) {
+		return ((BitmapTriples) hdt.getTriples()).getBitmapZ();
+	}
+
+	private static List<String> read(HDT hdt) throws NotFoundException {
+		List<String> triples = new ArrayList<>();
+		IteratorTripleString it = hdt.search("", "", "");
+		while (it.hasNext()) {
+			triples.add(it.next().toString());
+		}
+		return triples;
+	}
+
+	private HDTOptions spec() throws IOException {
+		return HDTOptions.of(HDTOptionsKeys.BITMAPTRIPLES_SEQ_Z, HDTVocabulary.SEQ_TYPE_ELIAS_FANO,
+				HDTOptionsKeys.LOADER_DISK_LOCATION_KEY, tempDir.newFolder().getAbsolutePath());
+	}
+
+	@Test
+	public void shortListsTest() throws IOException, ParserException {
+		List<TripleString> triples = shortLists();
+		try (HDT hdt = HDTManager.generateHDT(triples.iterator(), EX, HDTOptions.of(), null)) {
+			// measured on the Z sequence, the lists are too short for the
+			// offsets to be smaller than the ids
+			Sequence seq = seqZ(hdt);
+			long estimate = SequenceEliasFano.estimateSize(seq, bitmapZ(hdt));
+			assertTrue(estimate + " < " + seq.size(), estimate >= seq.size());
+		}
+		try (HDT hdt = HDTManager.generateHDT(triples.iterator(), EX, spec(), null)) {
+			assertNotEquals(HDTVocabulary.SEQ_TYPE_ELIAS_FANO, seqZ(hdt).getType());
+		}
+		try (HDT hdt = HDTManager.generateHDTDisk(triples.iterator(), EX, spec(), null)) {
+			assertNotEquals(HDTVocabulary.SEQ_TYPE_ELIAS_FANO, seqZ(hdt).getType());
+		}
+	}
+
+	@Test
+	public void longListsTest() throws IOException, ParserException, NotFoundException {
+		List<TripleString> triples = longLists();
+		List<String> expected;
+		try (HDT hdt = HDTManager.generateHDT(triples.iterator(), EX, HDTOptions.of(), null)) {
+			expected = read(hdt);
+		}
+		try (HDT hdt = HDTManager.generateHDT(triples.iterator(), EX, spec(), null)) {
+			assertEquals(HDTVocabulary.SEQ_TYPE_ELIAS_FANO, seqZ(hdt).getType());
+			assertEquals(expected, read(hdt));
+		}
+		try (HDT hdt = HDTManager.generateHDT(triples.iterator(), EX, HDTOptions.of(), null)) {
+			Sequence seq = seqZ(hdt);
+			long estimate = SequenceEliasFano.estimateSize(seq, bitmapZ(hdt));
+			assertTrue(estimate + " >= " + seq.size(), estimate < seq.size());
+		}
+		try (HDT hdt = HDTManager.generateHDTDisk(triples.iterator(), EX, spec(), null)) {
+			assertEquals(HDTVocabulary.SEQ_TYPE_ELIAS_FANO, seqZ(hdt).getType());
+			assertEquals(expected, read(hdt));
+		}
+
+		// cat
+		Path root = tempDir.newFolder().toPath();
+		Path hdt1 = root.resolve("hdt1.hdt");
+		Path hdt2 = root.resolve("hdt2.hdt");
+		try (HDT hdt = HDTManager.generateHDT(triples.subList(0, 6000).iterator(), EX, HDTOptions.of(), null)) {
+			hdt.saveToHDT(hdt1);
+		}
+		try (HDT hdt = HDTManager.generateHDT(triples.subList(6000, triples.size()).iterator(), EX,
+				HDTOptions.of(), null)) {
+			hdt.saveToHDT(hdt2);
+		}
+		try (HDT hdt = HDTManager.catHDT(root.resolve("cat"), hdt1, hdt2, spec(), null)) {
+			assertEquals(HDTVocabulary.SEQ_TYPE_ELIAS_FANO, seqZ(hdt).getType());
+			assertEquals(expected, read(hdt));
+		}
+	}
+}
@@ -201,6 +201,10 @@ public class BitmapTriplesTest {
 		public String dict;
 
 		public void diskBitmapIndexTest(boolean map, boolean disk) throws IOException, ParserException {
+			diskBitmapIndexTest(map, disk, 0);
+		}
+
+		public void diskBitmapIndexTest(boolean map, boolean disk, int workers) throws IOException, ParserException {
 			Path root = tempDir.newFolder().toPath();
 
 			Path hdt1Path = root.resolve("hdt1.hdt");
@@ -231,6 +235,9 @@ public class BitmapTriplesTest {
 							HDTOptionsKeys.BITMAPTRIPLES_SEQUENCE_DISK_LOCATION,
 							root.resolve("indexdir").toAbsolutePath());
 				}
+				if (workers > 0) {
+					optDisk.set(HDTOptionsKeys.BITMAPTRIPLES_INDEX_WORKERS, workers);
+				}
 
 				try (ByteArrayOutputStream indexDisk = new ByteArrayOutputStream();
 						ByteArrayOutputStream indexDefault = new ByteArrayOutputStream()) {
@@ -297,6 +304,21 @@ public class BitmapTriplesTest {
 		public void memBitmapLoadIndexedTest() throws IOException, ParserException {
 			diskBitmapIndexTest(false, false);
 		}
+
+		@Test
+		public void diskBitmapParallelIndexedTest() throws IOException, ParserException {
+			diskBitmapIndexTest(false, true, 7);
+		}
+
+		@Test
+		public void memBitmapParallelIndexedTest() throws IOException, ParserException {
+			diskBitmapIndexTest(false, false, 7);
+		}
+
+		@Test
+		public void memBitmapSingleWorkerIndexedTest() throws IOException, ParserException {
+			diskBitmapIndexTest(false, false, 1);
+		}
 	}
 
 	@Ignore("Hand tests")
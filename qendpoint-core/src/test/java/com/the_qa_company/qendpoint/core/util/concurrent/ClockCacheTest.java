@@ -0,0 +1,95 @@
+package com.the_qa_company.qendpoint.core.util.concurrent;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ClockCacheTest {
+	@Test
+	public void evictionTest() {
+		ClockCache<Integer, String> cache = new ClockCache<>(10, (k, v) -> v.length());
+
+		cache.put(1, "aaaa");
+		cache.put(2, "bbbb");
+		assertEquals(8, cache.getWeight());
+
+		// second chance for 1
+		assertEquals("aaaa", cache.get(1));
+		cache.put(3, "cccc");
+
+		assertEquals(2, cache.size());
+		assertEquals(8, cache.getWeight());
+		assertEquals("aaaa", cache.get(1));
+		assertNull(cache.get(2));
+		assertEquals("cccc", cache.get(3));
+		assertEquals(1, cache.getEvictions());
+		assertEquals(3, cache.getHits());
+		assertEquals(1, cache.getMisses());
+
+		// too heavy
+		cache.put(4, "dddddddddddd");
+		assertNull(cache.get(4));
+
+		// replace
+		cache.put(3, "cc");
+		assertEquals(6, cache.getWeight());
+		assertEquals("cc", cache.get(3));
+
+		assertEquals("eee", cache.get(5, k -> "eee"));
+		assertEquals(9, cache.getWeight());
+
+		cache.clear();
+		assertEquals(0, cache.size());
+		assertEquals(0, cache.getWeight());
+	}
+
+	@Test
+	public void replaceTest() {
+		ClockCache<Integer, String> cache = new ClockCache<>(1000, (k, v) -> v.length());
+
+		for (int i = 0; i < 10_000; i++) {
+			cache.put(i % 10, "v" + i);
+		}
+		assertEquals(10, cache.size());
+		// the replaced entries don't stay in the queue without eviction
+		assertTrue(cache.getQueueSize() + " entries in the queue", cache.getQueueSize() <= 2 * cache.size() + 1);
+		assertEquals("v9999", cache.get(9));
+
+		// the first loaded value is kept
+		assertEquals("v9999", cache.putIfAbsent(9, "other"));
+		assertEquals("v9999", cache.get(9, k -> "other"));
+		assertEquals("new", cache.putIfAbsent(10, "new"));
+		assertEquals(11, cache.size());
+	}
+
+	@Test
+	public void concurrentTest() throws InterruptedException {
+		ClockCache<Integer, String> cache = new ClockCache<>(1000, (k, v) -> 10);
+
+		List<Thread> threads = new ArrayList<>();
+		for (int t = 0; t < 8; t++) {
+			int seed = t;
+			threads.add(new Thread(() -> {
+				for (int i = 0; i < 10_000; i++) {
+					int key = (i * 31 + seed) % 500;
+					assertEquals("v" + key, cache.get(key, k -> "v" + k));
+				}
+			}));
+		}
+		for (Thread thread : threads) {
+			thread.start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+
+		assertTrue(cache.getWeight() <= cache.getMaxWeight() + 8 * 10);
+		assertEquals(cache.size() * 10L, cache.getWeight());
+		assertEquals(80_000, cache.getHits() + cache.getMisses());
+	}
+}
@@ -11,6 +11,7 @@ import com.the_qa_company.qendpoint.utils.rdf.*;
 import com.the_qa_company.qendpoint.utils.sail.SourceSailConnectionWrapper;
 import jakarta.json.Json;
 import jakarta.json.stream.JsonGenerator;
+import org.eclipse.rdf4j.model.Model;
 import org.eclipse.rdf4j.model.Namespace;
 import org.eclipse.rdf4j.model.Statement;
 import org.eclipse.rdf4j.model.util.Values;
@@ -33,9 +34,13 @@ import org.eclipse.rdf4j.sail.lucene.LuceneSail;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.io.OutputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.*;
@@ -440,6 +445,18 @@ public class SparqlRepository {
 		return null;
 	}
 
+	/**
+	 * get the serializer to stream the results from the HDT ids
+	 *
+	 * @param connection connection
+	 * @return serializer, null if the connection isn't a qEndpoint connection
+	 *         or if the serializer is disabled
+	 */
+	private static HDTValueSerializer getValueSerializer(RepositoryConnection connection) {
+		EndpointStoreConnection epCo = getTimeoutEndpointConnection(connection);
+		return epCo == null ? null : epCo.getGeneration().getValueSerializer();
+	}
+
 	private void writeExplanation(com.fasterxml.jackson.core.JsonGenerator jg, Explanation explanation)
 			throws IOException {
 		jg.writeFieldName("plan");
@@ -626,7 +643,13 @@ public class SparqlRepository {
 								() -> new EndpointStoreInputException("accept formats not supported: " + acceptHeader));
 						mimeSetter.accept(format.getDefaultMIMEType());
 						TupleQueryResultHandler writer;
-						if (TupleQueryResultFormat.JSON.equals(format)) {
+						HDTValueSerializer serializer = getValueSerializer(connection);
+						if (serializer != null && TupleQueryResultFormat.TSV.equals(format)) {
+							writer = new HDTSPARQLResultsTSVWriter(out, serializer);
+						} else if (serializer != null && TupleQueryResultFormat.JSON.equals(format)
+								&& !epConn.hasConfig(EndpointStore.QUERY_CONFIG_FETCH_QUERY_PLAN)) {
+							writer = new HDTSPARQLResultsJSONWriter(out, serializer);
+						} else if (TupleQueryResultFormat.JSON.equals(format)) {
 							writer = new QEPSPARQLResultsJSONWriter(out);
 						} else {
 							writer = TupleQueryResultWriterRegistry.getInstance().get(format).orElseThrow()
@@ -727,7 +750,13 @@ public class SparqlRepository {
 						RDFFormat format = FormatUtils.getRDFWriterFormat(acceptHeader).orElseThrow(
 								() -> new EndpointStoreInputException("accept formats not supported: " + acceptHeader));
 						mimeSetter.accept(format.getDefaultMIMEType());
-						RDFHandler handler = Rio.createWriter(format, out);
+						HDTValueSerializer serializer = getValueSerializer(connection);
+						RDFHandler handler;
+						if (serializer != null && RDFFormat.NTRIPLES.equals(format)) {
+							handler = new HDTNTriplesWriter(out, serializer);
+						} else {
+							handler = Rio.createWriter(format, out);
+						}
 						if (compiledSail.getOptions().isDebugShowCount()) {
 							handler = new RDFHandlerCounter(handler);
 						}
@@ -876,6 +905,90 @@ public class SparqlRepository {
 		logger.info("NT file loaded in {}", timeWatch.stopAndShow());
 	}
 
+	/**
+	 * apply a changeset, each line is a N-Quads statement prefixed by
+	 * {@code A} to add it or by {@code D} to delete it, the empty lines and
+	 * the lines starting with {@code #} are ignored. The changeset is applied
+	 * in one transaction, rolled back if a line can't be applied. It is parsed
+	 * in batches of {@link CompiledSailOptions#getRdf4jSplitUpdate()} lines,
+	 * the deletes of a batch are applied before its inserts.
+	 *
+	 * @param inputStream changeset stream
+	 * @return the number of statements read
+	 * @throws IOException read exception
+	 */
+	public long applyChangeset(InputStream inputStream) throws IOException {
+		StopWatch timeWatch = new StopWatch();
+		BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8));
+
+		StringBuilder inserts = new StringBuilder();
+		StringBuilder deletes = new StringBuilder();
+		long total = 0;
+		int batch = 0;
+		int updates = getOptions().getRdf4jSplitUpdate();
+		try (SailRepositoryConnection connection = getConnection()) {
+			connection.begin();
+			try {
+				String line;
+				while ((line = reader.readLine()) != null) {
+					line = line.strip();
+					if (line.isEmpty() || line.charAt(0) == '#') {
+						continue;
+					}
+					StringBuilder buffer = switch (line.charAt(0)) {
+					case 'A' -> inserts;
+					case 'D' -> deletes;
+					default -> throw new EndpointStoreInputException(
+							"Bad changeset line, should start with A or D: " + line);
+					};
+					buffer.append(line, 1, line.length()).append('\n');
+					total++;
+					if (++batch >= updates) {
+						applyChangesetBatch(connection, deletes, inserts);
+						batch = 0;
+					}
+				}
+				applyChangesetBatch(connection, deletes, inserts);
+				connection.commit();
+			} catch (Throwable t) {
+				try {
+					connection.rollback();
+				} catch (Throwable t2) {
+					t.addSuppressed(t2);
+				}
+				throw t;
+			}
+		}
+
+		logger.info("changeset of {} statements applied in {}", total, timeWatch.stopAndShow());
+		return total;
+	}
+
+	private void applyChangesetBatch(SailRepositoryConnection connection, StringBuilder deletes,
+			StringBuilder inserts) {
+		if (deletes.isEmpty() && inserts.isEmpty()) {
+			return;
+		}
+		Model deleteModel;
+		Model insertModel;
+		try {
+			deleteModel = Rio.parse(new StringReader(deletes.toString()), "", RDFFormat.NQUADS);
+			insertModel = Rio.parse(new StringReader(inserts.toString()), "", RDFFormat.NQUADS);
+		} catch (RDFParseException | IOException e) {
+			throw new EndpointStoreInputException("Can't parse changeset", e);
+		}
+		deletes.setLength(0);
+		inserts.setLength(0);
+
+		EndpointStoreConnection endpointConnection = getTimeoutEndpointConnection(connection);
+		if (endpointConnection != null) {
+			endpointConnection.applyChangeset(deleteModel, insertModel);
+		} else {
+			connection.remove(deleteModel);
+			connection.add(insertModel);
+		}
+	}
+
 	/**
 	 * add default prefixes
 	 *
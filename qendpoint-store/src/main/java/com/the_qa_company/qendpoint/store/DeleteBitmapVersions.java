@@ -0,0 +1,281 @@
+package com.the_qa_company.qendpoint.store;
+
+import com.the_qa_company.qendpoint.core.compact.bitmap.MultiLayerBitmapWrapper;
+import com.the_qa_company.qendpoint.core.enums.TripleComponentOrder;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Versions of the HDT delete bitmaps, used to give a snapshot of the deletes to
+ * the readers without locking the writers.
+ * <p>
+ * The delete bitmaps only get new bits, so only the recent deletes need a
+ * version. A writer records its deletes as pending before setting them in the
+ * bitmap, they are only visible to its own reads until it publishes them with
+ * a new version. A reader pins the current version with a {@link Snapshot} and
+ * ignores the deletes of newer versions. The versions older than all the pinned
+ * snapshots are forgotten, the bitmap alone is enough to read them.
+ * <p>
+ * A snapshot is reference counted, a transaction and each of its open
+ * iterations hold a reference, the version stays pinned until the last one is
+ * closed.
+ * <p>
+ * The bitmaps are replaced at the end of a merge with a new instance, the
+ * readers of the previous {@link EndpointStoreGeneration} keep the old one. The
+ * versions of an order are cleared with {@link #clear(TripleComponentOrder)}.
+ */
+public class DeleteBitmapVersions {
+	/**
+	 * read snapshot of the delete bitmaps
+	 */
+	public final class Snapshot implements AutoCloseable {
+		private final long version;
+		private final long pendingMarker;
+		// guarded by the versions
+		private int references = 1;
+
+		private Snapshot(long version, long writer) {
+			this.version = version;
+			this.pendingMarker = pendingMarker(writer);
+		}
+
+		/**
+		 * @return the version pinned by this snapshot
+		 */
+		public long getVersion() {
+			return version;
+		}
+
+		/**
+		 * add a reference to this snapshot, the version is released after all
+		 * the references are closed
+		 *
+		 * @return this snapshot
+		 * @throws IllegalStateException if the snapshot is already released
+		 */
+		public Snapshot retain() {
+			DeleteBitmapVersions.this.retain(this);
+			return this;
+		}
+
+		/**
+		 * close a reference to this snapshot
+		 */
+		@Override
+		public void close() {
+			release(this);
+		}
+	}
+
+	/**
+	 * delete published with a version
+	 *
+	 * @param order order of the bitmap
+	 * @param index index of the bit in the bitmap
+	 */
+	private record Delete(int order, long index) {}
+
+	/**
+	 * deletes published with the same version
+	 *
+	 * @param version version
+	 * @param deletes deletes
+	 */
+	private record Publication(long version, List<Delete> deletes) {}
+
+	private static long pendingMarker(long writer) {
+		return -writer - 1;
+	}
+
+	/**
+	 * version of the deletes, by order and bitmap index, a negative value is a
+	 * pending delete
+	 */
+	private final Map<Long, Long>[] recent;
+	/**
+	 * pending deletes by writer, a list is only used by its writer
+	 */
+	private final Map<Long, List<Delete>> pending = new ConcurrentHashMap<>();
+	// publications still in the recent maps, by version, guarded by this
+	private final ArrayDeque<Publication> publications = new ArrayDeque<>();
+	// guarded by this
+	private long version;
+	// number of snapshots by pinned version, guarded by this
+	private final TreeMap<Long, Integer> pinned = new TreeMap<>();
+
+	@SuppressWarnings("unchecked")
+	public DeleteBitmapVersions() {
+		TripleComponentOrder[] orders = TripleComponentOrder.values();
+		recent = new Map[orders.length];
+		for (int i = 0; i < orders.length; i++) {
+			recent[i] = new ConcurrentHashMap<>();
+		}
+	}
+
+	/**
+	 * pin the current version
+	 *
+	 * @param writer id of the writer reading with this snapshot, its pending
+	 *               deletes are visible
+	 * @return snapshot, should be closed after usage
+	 */
+	public synchronized Snapshot createSnapshot(long writer) {
+		Snapshot snapshot = new Snapshot(version, writer);
+		pinned.merge(version, 1, Integer::sum);
+		return snapshot;
+	}
+
+	private synchronized void retain(Snapshot snapshot) {
+		if (snapshot.references == 0) {
+			throw new IllegalStateException("retain of a released snapshot");
+		}
+		snapshot.references++;
+	}
+
+	private synchronized void release(Snapshot snapshot) {
+		if (snapshot.references == 0) {
+			return;
+		}
+		if (--snapshot.references != 0) {
+			return;
+		}
+		pinned.computeIfPresent(snapshot.version, (v, count) -> count == 1 ? null : count - 1);
+		collect();
+	}
+
+	/**
+	 * record a pending delete, must be called before setting the bit in the
+	 * bitmap
+	 *
+	 * @param order  order of the bitmap
+	 * @param index  index of the bit in the bitmap
+	 * @param writer id of the writer
+	 */
+	public void markPending(TripleComponentOrder order, long index, long writer) {
+		recent[order.ordinal()].put(index, pendingMarker(writer));
+		pending.computeIfAbsent(writer, w -> new ArrayList<>()).add(new Delete(order.ordinal(), index));
+	}
+
+	/**
+	 * publish the pending deletes of a writer in a new version, only the
+	 * deletes of the writer are read
+	 *
+	 * @param writer id of the writer
+	 */
+	public void publish(long writer) {
+		List<Delete> deletes = pending.remove(writer);
+		if (deletes == null || deletes.isEmpty()) {
+			return;
+		}
+		Long marker = pendingMarker(writer);
+		synchronized (this) {
+			Long newVersion = version + 1;
+			for (Delete delete : deletes) {
+				recent[delete.order()].replace(delete.index(), marker, newVersion);
+			}
+			version = newVersion;
+			publications.addLast(new Publication(newVersion, deletes));
+			collect();
+		}
+	}
+
+	// called from a synchronized block
+	private void collect() {
+		long minPinned = pinned.isEmpty() ? Long.MAX_VALUE : pinned.firstKey();
+		while (!publications.isEmpty() && publications.peekFirst().version() <= minPinned) {
+			Publication publication = publications.pollFirst();
+			Long publicationVersion = publication.version();
+			for (Delete delete : publication.deletes()) {
+				recent[delete.order()].remove(delete.index(), publicationVersion);
+			}
+		}
+	}
+
+	/**
+	 * forget the versions of an order, to call when its bitmap is replaced
+	 *
+	 * @param order order
+	 */
+	public void clear(TripleComponentOrder order) {
+		// the pending and published lists only remove their own versions
+		recent[order.ordinal()].clear();
+	}
+
+	/**
+	 * test if a triple is deleted in a snapshot
+	 *
+	 * @param snapshot snapshot, null to read the latest deletes
+	 * @param bitmap   delete bitmap of the order
+	 * @param order    order of the bitmap
+	 * @param layer    layer of the triple
+	 * @param position position of the triple in the order
+	 * @return if the triple is deleted
+	 */
+	public boolean isDeleted(Snapshot snapshot, MultiLayerBitmapWrapper bitmap, TripleComponentOrder order,
+			long layer, long position) {
+		if (!bitmap.access(layer, position)) {
+			return false;
+		}
+		if (snapshot == null) {
+			return true;
+		}
+		Map<Long, Long> map = recent[order.ordinal()];
+		if (map.isEmpty()) {
+			return true;
+		}
+		Long v = map.get(bitmap.getLayersCount() * position + layer);
+		if (v == null) {
+			// old delete
+			return true;
+		}
+		return isVisible(snapshot, v);
+	}
+
+	private static boolean isVisible(Snapshot snapshot, long v) {
+		if (v < 0) {
+			return v == snapshot.pendingMarker;
+		}
+		return v <= snapshot.version;
+	}
+
+	/**
+	 * count the deletes of an order already set in the bitmap but not visible
+	 * in a snapshot
+	 *
+	 * @param snapshot snapshot
+	 * @param order    order of the bitmap
+	 * @return number of hidden deletes
+	 */
+	public long countHidden(Snapshot snapshot, TripleComponentOrder order) {
+		long count = 0;
+		for (long v : recent[order.ordinal()].values()) {
+			if (!isVisible(snapshot, v)) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * @return the current version
+	 */
+	public synchronized long getVersion() {
+		return version;
+	}
+
+	/**
+	 * @return the number of deletes with a version
+	 */
+	public long getRecentDeletes() {
+		long count = 0;
+		for (Map<Long, Long> map : recent) {
+			count += map.size();
+		}
+		return count;
+	}
+}
@@ -177,10 +177,11 @@ public class EndpointFiles {
 	}
 
 	/**
-	 * @return the temp triples file
+	 * @return the log of the triples deleted while merging
 	 */
-	public String getTempTriples(boolean graph) {
-		return locationNative + (graph ? "tempTriples.nq" : "tempTriples.nt");
+	@ParsedStringValue("nativeStore.tempDeleteLog")
+	public String getTempDeleteLog() {
+		return locationNative + "tempDeletes.log";
 	}
 
 	/**
@@ -223,6 +224,14 @@ public class EndpointFiles {
 		return getHDTIndexV11(locationHdt, hdtIndexName);
 	}
 
+	/**
+	 * @return the join statistics of the HDT file
+	 */
+	@ParsedStringValue("hdt.statistics")
+	public String getHDTStatistics() {
+		return locationHdt + hdtIndexName + ".stats";
+	}
+
 	public List<String> getHDTIndexNames() {
 		return getHDTIndexNames(locationHdt, hdtIndexName);
 	}
@@ -300,13 +309,6 @@ public class EndpointFiles {
 		return this.locationHdt + "triples-delete-" + order.name().toLowerCase() + "-cpy.arr";
 	}
 
-	/**
-	 * @return the temp RDF delete file
-	 */
-	public String getRDFTempOutput(boolean graph) {
-		return locationHdt + (graph ? "temp.nq" : "temp.nt");
-	}
-
 	/**
 	 * @return the temp HDT file
 	 */
@@ -323,4 +325,65 @@ public class EndpointFiles {
 		return locationHdt + "previous_merge";
 	}
 
+	/**
+	 * @return the file listing the delta HDT layers of a tiered store
+	 */
+	@ParsedStringValue("store.layers")
+	public String getHDTLayersFile() {
+		return locationHdt + "layers";
+	}
+
+	/**
+	 * @param id the layer id
+	 * @return the HDT file of a delta layer
+	 */
+	public String getHDTLayer(long id) {
+		return locationHdt + hdtIndexName + ".layer" + id + ".hdt";
+	}
+
+	/**
+	 * @param id the layer id
+	 * @return the HDT index files of a delta layer
+	 */
+	public List<String> getHDTLayerNames(long id) {
+		return getHDTIndexNames(locationHdt, hdtIndexName + ".layer" + id + ".hdt");
+	}
+
+	/**
+	 * @return the HDT file of the delta layer being created by a tiered merge
+	 */
+	@ParsedStringValue("store.newLayer")
+	public String getHDTNewLayer() {
+		return locationHdt + hdtIndexName + ".layer.new.hdt";
+	}
+
+	/**
+	 * @return the HDT file of the delta layer being created by a layer
+	 *         compaction
+	 */
+	@ParsedStringValue("store.compactLayer")
+	public String getHDTCompactLayer() {
+		return locationHdt + hdtIndexName + ".layer.compact.hdt";
+	}
+
+	/**
+	 * @param id the layer id
+	 * @return the delete triple
+	 *         {@link com.the_qa_company.qendpoint.utils.BitArrayDisk} file of a
+	 *         delta layer
+	 */
+	public String getLayerDeleteArr(long id) {
+		return this.locationHdt + "triples-delete-layer" + id + ".arr";
+	}
+
+	/**
+	 * @param id the layer id
+	 * @return the copy delete triple
+	 *         {@link com.the_qa_company.qendpoint.utils.BitArrayDisk} file of a
+	 *         delta layer
+	 */
+	public String getLayerDeleteCopyArr(long id) {
+		return this.locationHdt + "triples-delete-layer" + id + "-cpy.arr";
+	}
+
 }
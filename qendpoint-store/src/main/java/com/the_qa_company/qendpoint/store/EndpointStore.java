@@ -1,9 +1,9 @@
 package com.the_qa_company.qendpoint.store;
 
 import com.the_qa_company.qendpoint.core.compact.bitmap.ModifiableMultiLayerBitmap;
-import com.the_qa_company.qendpoint.core.compact.bitmap.MultiLayerBitmap;
 import com.the_qa_company.qendpoint.core.compact.bitmap.MultiLayerBitmapWrapper;
 import com.the_qa_company.qendpoint.core.dictionary.Dictionary;
+import com.the_qa_company.qendpoint.core.dictionary.impl.CachedDictionary;
 import com.the_qa_company.qendpoint.core.enums.TripleComponentOrder;
 import com.the_qa_company.qendpoint.core.enums.TripleComponentRole;
 import com.the_qa_company.qendpoint.core.exceptions.ParserException;
@@ -11,15 +11,16 @@ import com.the_qa_company.qendpoint.core.hdt.HDT;
 import com.the_qa_company.qendpoint.core.hdt.HDTManager;
 import com.the_qa_company.qendpoint.core.options.HDTOptions;
 import com.the_qa_company.qendpoint.core.options.HDTOptionsKeys;
-import com.the_qa_company.qendpoint.core.triples.IteratorTripleID;
 import com.the_qa_company.qendpoint.core.triples.TripleID;
 import com.the_qa_company.qendpoint.core.triples.TripleString;
 import com.the_qa_company.qendpoint.core.util.io.Closer;
 import com.the_qa_company.qendpoint.model.EndpointStoreValueFactory;
 import com.the_qa_company.qendpoint.model.HDTValue;
 import com.the_qa_company.qendpoint.utils.BitArrayDisk;
+import com.the_qa_company.qendpoint.utils.CachedDictionaryHDT;
 import com.the_qa_company.qendpoint.utils.CloseSafeHDT;
-import org.apache.commons.io.FileUtils;
+import com.the_qa_company.qendpoint.utils.DeltaPatternFilter;
+import com.the_qa_company.qendpoint.utils.rdf.HDTValueSerializer;
 import org.apache.commons.io.file.PathUtils;
 import org.eclipse.rdf4j.common.concurrent.locks.Lock;
 import org.eclipse.rdf4j.common.concurrent.locks.LockManager;
@@ -28,17 +29,10 @@ import org.eclipse.rdf4j.model.IRI;
 import org.eclipse.rdf4j.model.Resource;
 import org.eclipse.rdf4j.model.Statement;
 import org.eclipse.rdf4j.model.Value;
-import org.eclipse.rdf4j.query.GraphQueryResult;
-import org.eclipse.rdf4j.query.QueryResults;
+import org.eclipse.rdf4j.model.impl.SimpleValueFactory;
 import org.eclipse.rdf4j.repository.RepositoryConnection;
 import org.eclipse.rdf4j.repository.RepositoryResult;
 import org.eclipse.rdf4j.repository.sail.SailRepository;
-import org.eclipse.rdf4j.rio.RDFFormat;
-import org.eclipse.rdf4j.rio.RDFParser;
-import org.eclipse.rdf4j.rio.Rio;
-import org.eclipse.rdf4j.rio.helpers.BasicParserSettings;
-import org.eclipse.rdf4j.rio.nquads.NQuadsWriter;
-import org.eclipse.rdf4j.rio.ntriples.NTriplesWriter;
 import org.eclipse.rdf4j.sail.NotifyingSail;
 import org.eclipse.rdf4j.sail.NotifyingSailConnection;
 import org.eclipse.rdf4j.sail.Sail;
@@ -50,23 +44,26 @@ import org.eclipse.rdf4j.sail.nativerdf.NativeStore;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.BufferedOutputStream;
+import java.io.Closeable;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.time.LocalTime;
+import java.util.ArrayList;
 import java.util.EnumSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 public class EndpointStore extends AbstractNotifyingSail {
 	/**
@@ -89,18 +86,173 @@ public class EndpointStore extends AbstractNotifyingSail {
 	 * enable the merge join, default true
 	 */
 	public static final String OPTION_QENDPOINT_MERGE_JOIN = "qendpoint.mergejoin";
+	/**
+	 * maximum number of delta statements sorted in memory for an ordered read
+	 * of the merge join, the bigger deltas are sorted in temporary files,
+	 * default 100000
+	 */
+	public static final String OPTION_QENDPOINT_MERGE_JOIN_SORT_CHUNK = "qendpoint.mergejoin.sortchunk";
+	/**
+	 * default number of delta statements sorted in memory
+	 */
+	public static final long DEFAULT_MERGE_JOIN_SORT_CHUNK = 100_000;
+	/**
+	 * evaluate the joins of triple patterns answered only by the HDT over the
+	 * HDT ids, default false
+	 */
+	public static final String OPTION_QENDPOINT_ID_JOIN = "qendpoint.idjoin";
 	/**
 	 * disable delete bitmaps, default false
 	 */
 	public static final String OPTION_QENDPOINT_DELETE_DISABLE = "qendpoint.delete.disable";
+	/**
+	 * write the merged delta into a new HDT layer instead of rewriting the base
+	 * HDT, default false
+	 */
+	public static final String OPTION_QENDPOINT_MERGE_TIERED = "qendpoint.merge.tiered";
+	/**
+	 * size ratio between two consecutive layers before compacting them, default
+	 * 4
+	 */
+	public static final String OPTION_QENDPOINT_MERGE_TIERED_RATIO = "qendpoint.merge.tiered.ratio";
+	/**
+	 * max number of layers before compacting them, default 8
+	 */
+	public static final String OPTION_QENDPOINT_MERGE_TIERED_MAX_LAYERS = "qendpoint.merge.tiered.maxlayers";
+	/**
+	 * size ratio between the base HDT and the layers before folding the layers
+	 * into the base HDT, default 10
+	 */
+	public static final String OPTION_QENDPOINT_MERGE_TIERED_MAX_RATIO = "qendpoint.merge.tiered.maxratio";
+	/**
+	 * size in bits of the (s,p), (p,o), (s,o) pattern filter over the delta
+	 * stores, 0 to disable it, default 0
+	 */
+	public static final String OPTION_QENDPOINT_DELTA_PATTERN_FILTER = "qendpoint.delta.patternfilter";
+	/**
+	 * policy of the automatic merge, {@link #MERGE_POLICY_THRESHOLD} or
+	 * {@link #MERGE_POLICY_ADAPTIVE}, default {@link #MERGE_POLICY_THRESHOLD}
+	 */
+	public static final String OPTION_QENDPOINT_MERGE_POLICY = "qendpoint.merge.policy";
+	/**
+	 * merge once the delta reaches the threshold
+	 */
+	public static final String MERGE_POLICY_THRESHOLD = "threshold";
+	/**
+	 * merge depending on the delta size, the delta searches, the deletes, the
+	 * update rate and the time of day, see {@link MergeScheduler}
+	 */
+	public static final String MERGE_POLICY_ADAPTIVE = "adaptive";
+	/**
+	 * minimum delta size ratio of the threshold before an adaptive merge,
+	 * default 0.1
+	 */
+	public static final String OPTION_QENDPOINT_MERGE_ADAPTIVE_MIN_RATIO = "qendpoint.merge.adaptive.minratio";
+	/**
+	 * delta size ratio of the threshold forcing an adaptive merge, even during
+	 * a query peak, default 2
+	 */
+	public static final String OPTION_QENDPOINT_MERGE_ADAPTIVE_MAX_DEFER = "qendpoint.merge.adaptive.maxdefer";
+	/**
+	 * ratio between the recent and the long search rates to consider that the
+	 * store is in a query peak, default 2
+	 */
+	public static final String OPTION_QENDPOINT_MERGE_ADAPTIVE_PEAK_RATIO = "qendpoint.merge.adaptive.peakratio";
+	/**
+	 * weight of the HDT delete ratio in the adaptive merge pressure, default 1
+	 */
+	public static final String OPTION_QENDPOINT_MERGE_ADAPTIVE_DELETE_WEIGHT = "qendpoint.merge.adaptive.deleteweight";
+	/**
+	 * time in seconds used to project the delta size with the update rate,
+	 * default 300
+	 */
+	public static final String OPTION_QENDPOINT_MERGE_ADAPTIVE_LOOKAHEAD = "qendpoint.merge.adaptive.lookahead";
+	/**
+	 * hours of the day preferred for the adaptive merges, format start-end
+	 * (e.g. 1-6), default none
+	 */
+	public static final String OPTION_QENDPOINT_MERGE_ADAPTIVE_QUIET_HOURS = "qendpoint.merge.adaptive.quiethours";
+	/**
+	 * size in bytes of the pending deletes of the merge delete log before they
+	 * are committed without waiting for a flush, default 1MB
+	 */
+	public static final String OPTION_QENDPOINT_MERGE_DELETE_LOG_GROUP_SIZE = "qendpoint.merge.deletelog.groupsize";
+	/**
+	 * compute the join statistics of the HDT for the query optimizer, the
+	 * statistics are computed during the merges, or in background if they are
+	 * missing at startup, default true
+	 */
+	public static final String OPTION_QENDPOINT_JOIN_STATISTICS = "qendpoint.joinstats";
+	/**
+	 * maximum number of characteristic sets kept in the join statistics,
+	 * default 10000
+	 */
+	public static final String OPTION_QENDPOINT_JOIN_STATISTICS_MAX_SETS = "qendpoint.joinstats.maxsets";
+	/**
+	 * number of triple patterns in the cardinality estimate cache of the HDT,
+	 * 0 to disable the cache, default 10000
+	 */
+	public static final String OPTION_QENDPOINT_CARDINALITY_CACHE_SIZE = "qendpoint.cardinality.cachesize";
+	/**
+	 * size in bytes of the dictionary cache shared by the queries to read the
+	 * HDT values, 0 to disable the cache, default 64MB
+	 */
+	public static final String OPTION_QENDPOINT_DICTIONARY_CACHE_SIZE = "qendpoint.dictionary.cachesize";
+	/**
+	 * default size of the dictionary cache, in bytes
+	 */
+	public static final long DEFAULT_DICTIONARY_CACHE_SIZE = 64L * 1024 * 1024;
+	/**
+	 * size in bytes of the cache of the serialized HDT terms used to stream
+	 * the query results, 0 to write the results with the RDF4J writers,
+	 * default 16MB
+	 */
+	public static final String OPTION_QENDPOINT_SERIALIZER_CACHE_SIZE = "qendpoint.serializer.cachesize";
+	/**
+	 * default size of the serialized terms cache, in bytes
+	 */
+	public static final long DEFAULT_SERIALIZER_CACHE_SIZE = 16L * 1024 * 1024;
+	/**
+	 * number of optimized query plans in the plan cache, the plans are shared
+	 * by the executions of the same query, 0 to disable the cache, default
+	 * 1000
+	 */
+	public static final String OPTION_QENDPOINT_QUERY_PLAN_CACHE_SIZE = "qendpoint.plancache.size";
+	/**
+	 * size in bytes of the query result cache, the results are invalidated
+	 * when the store is updated, 0 to disable the cache, default 0
+	 */
+	public static final String OPTION_QENDPOINT_RESULT_CACHE_SIZE = "qendpoint.resultcache.size";
+	/**
+	 * maximum size in bytes of a result in the query result cache, default 1MB
+	 */
+	public static final String OPTION_QENDPOINT_RESULT_CACHE_MAX_RESULT_SIZE = "qendpoint.resultcache.maxresult";
 	private static final AtomicLong ENDPOINT_DEBUG_ID_GEN = new AtomicLong();
 	private static final Logger logger = LoggerFactory.getLogger(EndpointStore.class);
+	// extension of the replaced delta stores, followed by the generation id
+	private static final String OLD_STORE_EXT = ".old-";
 	private final long debugId;
 	// HDT file containing the data
 	private CloseSafeHDT hdt;
+	// HDT used by the values, with a dictionary cache if enabled
+	private volatile CloseSafeHDT valueHdt;
+	// serializer of the HDT values for the query results, null if disabled
+	private volatile HDTValueSerializer valueSerializer;
 	// specs of the HDT file
 	private HDTOptions spec;
 	private HDTConverter hdtConverter;
+	// join statistics of the HDT, null if disabled
+	private volatile HDTJoinStatistics joinStatistics;
+	// thread computing the missing join statistics of the HDT, null if none
+	private volatile Thread joinStatisticsThread;
+	private volatile boolean joinStatisticsCancelled;
+	// cardinality estimates of the HDT patterns, replaced with the HDT
+	private volatile HDTCardinalityCache cardinalityCache;
+	// optimized plans with the HDT ids, replaced with the HDT, null if disabled
+	private volatile QueryPlanCache queryPlanCache;
+	// query results with the HDT values, replaced with the HDT, null if
+	// disabled
+	private volatile QueryResultCache queryResultCache;
 
 	// some cached information about the HDT store
 	private HDTProps hdtProps;
@@ -118,6 +270,12 @@ public class EndpointStore extends AbstractNotifyingSail {
 	// FIXME: is this needed?
 	private final MultiLayerBitmapWrapper.MultiLayerModBitmapWrapper[] tempdeleteBitMap = new MultiLayerBitmapWrapper.MultiLayerModBitmapWrapper[TripleComponentOrder
 			.values().length];
+	// translation of the temp deletes for the new HDT, guarded by
+	// tempdeleteBitMap
+	private MergeDeleteArrayBuilder deleteArrayBuilder;
+	// number of bits set in the SPO delete bitmap, counted when the bitmap is
+	// replaced and maintained by the connections after that
+	private final AtomicLong deletedTriplesCount = new AtomicLong();
 	// setting to put the delete map only in memory, i.e don't write to disk
 	private final boolean inMemDeletes;
 	private final boolean loadIntoMemory;
@@ -128,6 +286,8 @@ public class EndpointStore extends AbstractNotifyingSail {
 	private BitArrayDisk bitX;
 	private BitArrayDisk bitY;
 	private BitArrayDisk bitZ;
+	// filter over the id pairs used in the rdf4j delta store, null if disabled
+	private DeltaPatternFilter deltaPatternFilter;
 
 	// marks if store A or store B is used
 	public boolean switchStore = false;
@@ -143,10 +303,16 @@ public class EndpointStore extends AbstractNotifyingSail {
 
 	// threshold above which the merge process is starting
 	private int threshold;
+	// policy of the automatic merge
+	private final MergeScheduler mergeScheduler;
 
 	EndpointStoreValueFactory valueFactory;
 
-	private NTriplesWriter rdfWriterTempTriples;
+	// versions of the recent deletes, for the read snapshots, replaced with
+	// the delete bitmaps
+	private volatile DeleteBitmapVersions deleteVersions = new DeleteBitmapVersions();
+	// log of the triples deleted while merging
+	private MergeDeleteLog tempDeleteLog;
 
 	// lock manager for the merge thread
 	public final LockManager lockToPreventNewConnections;
@@ -166,6 +332,14 @@ public class EndpointStore extends AbstractNotifyingSail {
 	private final AtomicReference<EndpointStoreDump> dump = new AtomicReference<>();
 	private final AtomicBoolean dumping = new AtomicBoolean();
 	private final EnumSet<TripleComponentOrder> validOrders;
+	// delta HDT layers written by the tiered merges
+	private final EndpointStoreLayers layers;
+	// generation read by the new connections
+	private final AtomicReference<EndpointStoreGeneration> generation = new AtomicReference<>();
+	private final AtomicLong generationIdGen = new AtomicLong();
+	// resources replaced since the last published generation, guarded by
+	// this list
+	private final List<Closeable> retiredResources = new ArrayList<>();
 
 	public void deleteNativeLocks() throws IOException {
 		// remove lock files of a hard shutdown (SAIL is already locked by
@@ -188,10 +362,13 @@ public class EndpointStore extends AbstractNotifyingSail {
 		validOrders = getHDTSpec().getEnumSet(HDTOptionsKeys.BITMAPTRIPLES_INDEX_OTHERS, TripleComponentOrder.class);
 		validOrders.add(TripleComponentOrder.SPO); // we need at least SPO
 
+		mergeScheduler = new MergeScheduler(spec);
+
 		debugId = ENDPOINT_DEBUG_ID_GEN.incrementAndGet();
 		EndpointStoreUtils.openEndpoint(this);
 		this.endpointFiles = files;
 		this.loadIntoMemory = loadIntoMemory;
+		this.layers = new EndpointStoreLayers(this);
 		this.mergeRunnable = new MergeRunnable(this);
 		logger.info("CHECK IF A PREVIOUS MERGE WAS STOPPED");
 		Optional<MergeRunnable.MergeThread<?>> mergeThread = mergeRunnable.createRestartThread();
@@ -222,6 +399,8 @@ public class EndpointStore extends AbstractNotifyingSail {
 
 		File dataDir1 = new File(getEndpointFiles().getNativeStoreA());
 		File dataDir2 = new File(getEndpointFiles().getNativeStoreB());
+		deleteOldStores(dataDir1.toPath());
+		deleteOldStores(dataDir2.toPath());
 		Files.createDirectories(dataDir1.toPath());
 		Files.createDirectories(dataDir2.toPath());
 		Files.createDirectories(Path.of(getEndpointFiles().getLocationNative()));
@@ -238,7 +417,6 @@ public class EndpointStore extends AbstractNotifyingSail {
 		this.nativeStoreB.init();
 		checkWhichStore();
 		resetHDT(hdt, false);
-		this.valueFactory = new EndpointStoreValueFactory(hdt);
 		this.threshold = 100000;
 
 		this.inMemDeletes = inMemDeletes;
@@ -251,6 +429,8 @@ public class EndpointStore extends AbstractNotifyingSail {
 		this.locksNotify = new LockManager();
 
 		initDeleteArray();
+		layers.load();
+		publishGeneration();
 
 		// initialize the count of the triples
 		mergeThread.ifPresent(thread -> {
@@ -274,6 +454,101 @@ public class EndpointStore extends AbstractNotifyingSail {
 		return new NativeStore(dataDir, "spoc,posc,cosp");
 	}
 
+	/**
+	 * delete the delta stores replaced before a shutdown, they weren't
+	 * released by their readers
+	 *
+	 * @param dataDir the datadir of the store
+	 * @throws IOException delete exception
+	 */
+	private static void deleteOldStores(Path dataDir) throws IOException {
+		Path parent = dataDir.toAbsolutePath().getParent();
+		if (parent == null || !Files.exists(parent)) {
+			return;
+		}
+		String prefix = dataDir.getFileName() + OLD_STORE_EXT;
+		List<Path> oldStores;
+		try (Stream<Path> files = Files.list(parent)) {
+			oldStores = files.filter(f -> f.getFileName().toString().startsWith(prefix)).toList();
+		}
+		for (Path old : oldStores) {
+			PathUtils.deleteDirectory(old);
+		}
+	}
+
+	/**
+	 * @return the current generation of the store, without reference
+	 */
+	public EndpointStoreGeneration getGeneration() {
+		return generation.get();
+	}
+
+	/**
+	 * acquire a reference of the current generation, it should be released
+	 * with {@link EndpointStoreGeneration#close()}
+	 *
+	 * @return generation
+	 */
+	public EndpointStoreGeneration acquireGeneration() {
+		while (true) {
+			EndpointStoreGeneration current = generation.get();
+			if (current.retain()) {
+				return current;
+			}
+			// replaced and released between the get and the retain
+		}
+	}
+
+	/**
+	 * close a replaced resource after the last reader of the current
+	 * generation
+	 *
+	 * @param resource the resource
+	 */
+	void retire(Closeable resource) {
+		synchronized (retiredResources) {
+			retiredResources.add(resource);
+		}
+	}
+
+	/**
+	 * mark the current generation as replaced, called before replacing its
+	 * resources
+	 */
+	void markGenerationReplaced() {
+		generation.get().markReplaced();
+	}
+
+	/**
+	 * publish a new generation with the current state of the store, the
+	 * resources retired since the last one are closed after the last reader
+	 * of the previous generation
+	 */
+	void publishGeneration() {
+		EndpointStoreGeneration old;
+		List<Closeable> retired;
+		synchronized (generation) {
+			EndpointStoreGeneration next = new EndpointStoreGeneration(this, generationIdGen.incrementAndGet());
+			old = generation.getAndSet(next);
+			synchronized (retiredResources) {
+				retired = new ArrayList<>(retiredResources);
+				retiredResources.clear();
+			}
+			if (old == null) {
+				try {
+					Closer.closeAll(retired);
+				} catch (IOException e) {
+					logger.warn("Can't close the retired resources", e);
+				}
+				return;
+			}
+			logger.debug("Generation {} replaced by {}", old.getId(), next.getId());
+		}
+		old.retire(retired);
+		// release the reference of the store
+		old.close();
+	}
+
 	public EndpointStore(Path location) throws IOException {
 		this(new EndpointFiles(location));
 	}
@@ -312,21 +587,21 @@ public class EndpointStore extends AbstractNotifyingSail {
 
 	public void reloadBitX() throws IOException {
 		if (this.bitX != null) {
-			bitX.close();
+			retire(bitX);
 		}
 		this.bitX = new BitArrayDisk(hdt.getDictionary().getNsubjects(), endpointFiles.getHDTBitX());
 	}
 
 	public void reloadBitY() throws IOException {
 		if (this.bitY != null) {
-			bitY.close();
+			retire(bitY);
 		}
 		this.bitY = new BitArrayDisk(hdt.getDictionary().getNpredicates(), endpointFiles.getHDTBitY());
 	}
 
 	public void reloadBitZ() throws IOException {
 		if (this.bitZ != null) {
-			bitZ.close();
+			retire(bitZ);
 		}
 		this.bitZ = new BitArrayDisk(hdt.getDictionary().getNobjects() - hdt.getDictionary().getNshared(),
 				endpointFiles.getHDTBitZ());
@@ -336,25 +611,202 @@ public class EndpointStore extends AbstractNotifyingSail {
 		reloadBitX();
 		reloadBitY();
 		reloadBitZ();
+		long filterSize = spec.getInt(OPTION_QENDPOINT_DELTA_PATTERN_FILTER, 0);
+		this.deltaPatternFilter = filterSize > 0 ? new DeltaPatternFilter(filterSize) : null;
 		// if the bitmaps have not been initialized with the native store
 		if (this.bitX.countOnes() == 0 && this.bitY.countOnes() == 0 && this.bitZ.countOnes() == 0) {
 			initBitmaps();
+		} else if (this.deltaPatternFilter != null) {
+			initDeltaPatternFilter();
 		}
 	}
 
 	public void resetHDT(HDT hdt, boolean closeOld) throws IOException {
+		// the statistics of the old HDT aren't required anymore
+		stopJoinStatistics();
 		if (closeOld && this.hdt != null) {
-			try {
-				this.hdt.close();
-			} catch (IOException e) {
-				e.printStackTrace();
-			}
+			// closed after the last reader of the current generation
+			retire(this.hdt);
 		}
 		this.setHdt(hdt);
 		this.setHdtProps(new HDTProps(hdt));
 		initNativeStoreDictionary();
-		this.setValueFactory(new EndpointStoreValueFactory(hdt));
+		long dictionaryCacheSize = spec.getInt(OPTION_QENDPOINT_DICTIONARY_CACHE_SIZE, DEFAULT_DICTIONARY_CACHE_SIZE);
+		this.valueHdt = dictionaryCacheSize > 0 ? new CachedDictionaryHDT(this.hdt, dictionaryCacheSize) : this.hdt;
+		this.setValueFactory(new EndpointStoreValueFactory(valueHdt));
+		long serializerCacheSize = spec.getInt(OPTION_QENDPOINT_SERIALIZER_CACHE_SIZE, DEFAULT_SERIALIZER_CACHE_SIZE);
+		this.valueSerializer = serializerCacheSize > 0 ? new HDTValueSerializer(this.hdt, serializerCacheSize) : null;
 		this.hdtConverter = new HDTConverter(this);
+		this.joinStatistics = loadJoinStatistics(hdt);
+		this.cardinalityCache = new HDTCardinalityCache(hdt, joinStatistics,
+				(int) spec.getInt(OPTION_QENDPOINT_CARDINALITY_CACHE_SIZE, HDTCardinalityCache.DEFAULT_SIZE));
+		int queryPlanCacheSize = (int) spec.getInt(OPTION_QENDPOINT_QUERY_PLAN_CACHE_SIZE, QueryPlanCache.DEFAULT_SIZE);
+		this.queryPlanCache = queryPlanCacheSize > 0 ? new QueryPlanCache(queryPlanCacheSize) : null;
+		long resultCacheSize = spec.getInt(OPTION_QENDPOINT_RESULT_CACHE_SIZE, 0);
+		this.queryResultCache = resultCacheSize > 0 ? new QueryResultCache(resultCacheSize, spec.getInt(
+				OPTION_QENDPOINT_RESULT_CACHE_MAX_RESULT_SIZE, QueryResultCache.DEFAULT_MAX_RESULT_SIZE)) : null;
+		if (joinStatistics == null && isJoinStatisticsEnabled()) {
+			// don't block the startup
+			computeJoinStatisticsAsync(hdt);
+		}
+	}
+
+	private boolean isJoinStatisticsEnabled() {
+		return spec.getBoolean(OPTION_QENDPOINT_JOIN_STATISTICS, true);
+	}
+
+	/**
+	 * compute and save the join statistics of an HDT, the statistics are
+	 * loaded when the HDT is set with {@link #resetHDT(HDT, boolean)}
+	 *
+	 * @param hdt the HDT
+	 * @return the statistics, null if disabled
+	 * @throws IOException write exception
+	 */
+	public HDTJoinStatistics computeJoinStatistics(HDT hdt) throws IOException {
+		if (!isJoinStatisticsEnabled()) {
+			return null;
+		}
+		// the statistics of the current HDT are replaced by these ones
+		stopJoinStatistics();
+		return computeJoinStatistics(hdt, () -> false);
+	}
+
+	private HDTJoinStatistics computeJoinStatistics(HDT hdt, BooleanSupplier cancelled) throws IOException {
+		logger.info("Compute the join statistics");
+		HDTJoinStatistics stats = HDTJoinStatistics.compute(hdt,
+				(int) spec.getInt(OPTION_QENDPOINT_JOIN_STATISTICS_MAX_SETS, HDTJoinStatistics.DEFAULT_MAX_SETS),
+				cancelled);
+		stats.save(Path.of(endpointFiles.getHDTStatistics()));
+		return stats;
+	}
+
+	/**
+	 * compute the join statistics of the current HDT in background, the joins
+	 * are estimated without them until they are computed
+	 *
+	 * @param hdt the current HDT
+	 */
+	private void computeJoinStatisticsAsync(HDT hdt) {
+		joinStatisticsCancelled = false;
+		Thread thread = new Thread(() -> {
+			try {
+				HDTJoinStatistics stats = computeJoinStatistics(hdt, () -> joinStatisticsCancelled);
+				if (joinStatisticsCancelled || this.hdt != hdt) {
+					return;
+				}
+				this.joinStatistics = stats;
+				this.cardinalityCache = new HDTCardinalityCache(hdt, stats,
+						(int) spec.getInt(OPTION_QENDPOINT_CARDINALITY_CACHE_SIZE, HDTCardinalityCache.DEFAULT_SIZE));
+				// the cached plans were optimized without the statistics
+				// the cache is shared with the connections of the current
+				// generation
+				QueryPlanCache planCache = this.queryPlanCache;
+				if (planCache != null) {
+					planCache.clear();
+				}
+				logger.info("Join statistics computed");
+			} catch (CancellationException e) {
+				logger.debug("Join statistics computation cancelled");
+			} catch (IOException | RuntimeException e) {
+				logger.warn("Can't compute the join statistics, the joins will be estimated without them", e);
+			}
+		}, "JoinStatistics");
+		thread.setDaemon(true);
+		joinStatisticsThread = thread;
+		thread.start();
+	}
+
+	/**
+	 * stop the background computation of the join statistics, if any
+	 */
+	private void stopJoinStatistics() {
+		Thread thread = joinStatisticsThread;
+		if (thread == null) {
+			return;
+		}
+		// not interrupted, it would close the channels of the HDT
+		joinStatisticsCancelled = true;
+		try {
+			thread.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new SailException(e);
+		}
+		joinStatisticsThread = null;
+	}
+
+	private HDTJoinStatistics loadJoinStatistics(HDT hdt) {
+		if (!isJoinStatisticsEnabled()) {
+			return null;
+		}
+		Path file = Path.of(endpointFiles.getHDTStatistics());
+		try {
+			if (Files.exists(file)) {
+				HDTJoinStatistics stats = HDTJoinStatistics.load(file);
+				if (stats.isComputedFor(hdt)) {
+					return stats;
+				}
+			}
+			// not computed during a merge, computed in background after the
+			// HDT is set
+			return null;
+		} catch (IOException | RuntimeException e) {
+			logger.warn("Can't load the join statistics, the joins will be estimated without them", e);
+			return null;
+		}
+	}
+
+	/**
+	 * @return the join statistics of the HDT, null if they are disabled or not
+	 *         computed yet
+	 */
+	public HDTJoinStatistics getJoinStatistics() {
+		return joinStatistics;
+	}
+
+	/**
+	 * @return the HDT to create the values, its dictionary can be a cache of
+	 *         the HDT dictionary
+	 */
+	public HDT getValueHdt() {
+		return valueHdt;
+	}
+
+	/**
+	 * @return the dictionary cache of the values, null if disabled
+	 */
+	public CachedDictionary getDictionaryCache() {
+		return valueHdt instanceof CachedDictionaryHDT cached ? cached.getCachedDictionary() : null;
+	}
+
+	/**
+	 * @return the serializer of the HDT values to stream the query results,
+	 *         null if disabled
+	 */
+	public HDTValueSerializer getValueSerializer() {
+		return valueSerializer;
+	}
+
+	/**
+	 * @return the cardinality estimates cache of the HDT
+	 */
+	public HDTCardinalityCache getCardinalityCache() {
+		return cardinalityCache;
+	}
+
+	/**
+	 * @return the cache of the optimized query plans, null if disabled
+	 */
+	public QueryPlanCache getQueryPlanCache() {
+		return queryPlanCache;
+	}
+
+	/**
+	 * @return the cache of the query results, null if disabled
+	 */
+	public QueryResultCache getQueryResultCache() {
+		return queryResultCache;
 	}
 
 	/**
@@ -471,8 +923,18 @@ public class EndpointStore extends AbstractNotifyingSail {
 	 * @return sailstore
 	 */
 	public SailStore getCurrentSailStore() {
+		return getSailStore(getChangingStore());
+	}
+
+	/**
+	 * force access to the store of a sail via reflection, the library does
+	 * not allow directly since the method is protected
+	 *
+	 * @param sail the sail
+	 * @return sailstore
+	 */
+	static SailStore getSailStore(Sail sail) {
 		try {
-			Sail sail = getChangingStore();
 			Method method = sail.getClass().getDeclaredMethod("getSailStore");
 			method.setAccessible(true);
 			return (SailStore) method.invoke(sail);
@@ -503,12 +965,21 @@ public class EndpointStore extends AbstractNotifyingSail {
 					mergerThread.closeDebugAndJoin();
 				}
 			} finally {
+				stopJoinStatistics();
 				try {
 					try {
-						Closer.closeAll(hdt, bitX, bitY, bitZ, deleteBitMap);
+						List<Closeable> retired;
+						synchronized (retiredResources) {
+							retired = new ArrayList<>(retiredResources);
+							retiredResources.clear();
+						}
+						// the connections are closed, only the store holds the
+						// generation
+						EndpointStoreGeneration current = generation.getAndSet(null);
+						Closer.closeAll(current, retired, hdt, bitX, bitY, bitZ, deleteBitMap, layers);
 					} finally {
-						if (rdfWriterTempTriples != null) {
-							rdfWriterTempTriples.getWriter().close();
+						if (tempDeleteLog != null) {
+							tempDeleteLog.close();
 						}
 					}
 				} finally {
@@ -595,25 +1066,35 @@ public class EndpointStore extends AbstractNotifyingSail {
 	}
 
 	/**
-	 * shutdown, clear the data and recreate the changing store
+	 * clear the data and recreate the changing store, the old store is
+	 * deleted after the last reader of the current generation
 	 */
 	public void regenChangingStore() throws IOException {
-		Sail changingStore = getChangingStore();
-		changingStore.shutDown();
-		File store = changingStore.getDataDir();
-		FileUtils.deleteDirectory(store);
-		setChangingStore(createStore(store));
+		setChangingStore(regenStore(getChangingStore()));
 	}
 
 	/**
-	 * shutdown, clear the data and recreate the changing store
+	 * clear the data and recreate the freezed store, the old store is deleted
+	 * after the last reader of the current generation
 	 */
 	public void regenFreezedStore() throws IOException {
-		Sail freezedStore = getFreezedStoreStore();
-		freezedStore.shutDown();
-		File store = freezedStore.getDataDir();
-		FileUtils.deleteDirectory(store);
-		setFreezedStoreStore(createStore(store));
+		setFreezedStoreStore(regenStore(getFreezedStoreStore()));
+	}
+
+	private AbstractNotifyingSail regenStore(Sail store) throws IOException {
+		File dataDir = store.getDataDir();
+		Path old = dataDir.toPath().resolveSibling(dataDir.getName() + OLD_STORE_EXT + getGeneration().getId());
+		// the readers of the current generation keep reading the moved store
+		// with its open files
+		Files.move(dataDir.toPath(), old);
+		retire(() -> {
+			try {
+				store.shutDown();
+			} finally {
+				PathUtils.deleteDirectory(old);
+			}
+		});
+		return createStore(dataDir);
 	}
 
 	public boolean isMerging() {
@@ -644,6 +1125,21 @@ public class EndpointStore extends AbstractNotifyingSail {
 		return deleteBitMap[order.ordinal()];
 	}
 
+	/**
+	 * @return the versions of the delete bitmaps
+	 */
+	public DeleteBitmapVersions getDeleteVersions() {
+		return deleteVersions;
+	}
+
+	/**
+	 * @return the filter over the id pairs used in the delta store, null if
+	 *         disabled
+	 */
+	DeltaPatternFilter getDeltaPatternFilter() {
+		return deltaPatternFilter;
+	}
+
 	public MultiLayerBitmapWrapper.MultiLayerModBitmapWrapper[] getDeleteBitMaps() {
 		return deleteBitMap;
 	}
@@ -651,6 +1147,11 @@ public class EndpointStore extends AbstractNotifyingSail {
 	public void setDeleteBitMap(TripleComponentOrder order,
 			MultiLayerBitmapWrapper.MultiLayerModBitmapWrapper deleteBitMap) {
 		this.deleteBitMap[order.ordinal()] = deleteBitMap;
+		if (order == TripleComponentOrder.SPO) {
+			countDeletedTriples();
+		}
+		// the positions of the new bitmap don't match the old versions
+		deleteVersions.clear(order);
 		// logger.info("set deletebitmap for order {}: delete?: {}", order,
 		// deleteBitMap.getMaxNumBits() == 0);
 	}
@@ -661,12 +1162,36 @@ public class EndpointStore extends AbstractNotifyingSail {
 		}
 	}
 
+	/**
+	 * count the bits of the SPO delete bitmap, can be long, should only be
+	 * called when the bitmap is replaced or after a bulk update
+	 */
+	private void countDeletedTriples() {
+		MultiLayerBitmapWrapper.MultiLayerModBitmapWrapper bitmap = getDeleteBitMap(TripleComponentOrder.SPO);
+		deletedTriplesCount.set(bitmap == null ? 0 : bitmap.getHandle().countOnes());
+	}
+
+	/**
+	 * notify that a new triple of the HDT was marked as deleted in the SPO
+	 * delete bitmap
+	 */
+	void notifyTripleDeleted() {
+		deletedTriplesCount.incrementAndGet();
+	}
+
+	/**
+	 * @return the number of HDT triples marked as deleted
+	 */
+	public long getDeletedTriplesCount() {
+		return deletedTriplesCount.get();
+	}
+
 	public ModifiableMultiLayerBitmap getTempDeleteBitMap(TripleComponentOrder order) {
 		return tempdeleteBitMap[order.ordinal()];
 	}
 
-	public NTriplesWriter getRdfWriterTempTriples() {
-		return rdfWriterTempTriples;
+	public MergeDeleteLog getTempDeleteLog() {
+		return tempDeleteLog;
 	}
 
 	/*
@@ -695,150 +1220,86 @@ public class EndpointStore extends AbstractNotifyingSail {
 	 */
 	public void initTempDump(boolean isRestarting) {
 		try {
-			boolean graph = this.hdt.getDictionary().supportGraphs();
-			File file = new File(endpointFiles.getTempTriples(graph));
-			if (!file.exists()) {
-				Files.createFile(file.toPath());
+			if (this.tempDeleteLog != null) {
+				this.tempDeleteLog.close();
 			}
-			OutputStream rdfWriterTempTriplesOut = new BufferedOutputStream(new FileOutputStream(file, isRestarting));
-			this.rdfWriterTempTriples = graph ? new NQuadsWriter(rdfWriterTempTriplesOut)
-					: new NTriplesWriter(rdfWriterTempTriplesOut);
-			this.rdfWriterTempTriples.startRDF();
+			this.tempDeleteLog = new MergeDeleteLog(Path.of(endpointFiles.getTempDeleteLog()), isRestarting,
+					(int) spec.getInt(OPTION_QENDPOINT_MERGE_DELETE_LOG_GROUP_SIZE, MergeDeleteLog.DEFAULT_GROUP_SIZE));
 		} catch (IOException e) {
 			e.printStackTrace();
 		}
 	}
 
+	/**
+	 * mark a triple of the HDT as deleted during a merge
+	 *
+	 * @param order    order of the bitmap
+	 * @param layer    graph layer
+	 * @param position triple position in the order
+	 */
+	public void markTempDeleted(TripleComponentOrder order, long layer, long position) {
+		synchronized (tempdeleteBitMap) {
+			MultiLayerBitmapWrapper.MultiLayerModBitmapWrapper bitmap = tempdeleteBitMap[order.ordinal()];
+			bitmap.set(layer, position, true);
+			if (deleteArrayBuilder != null && order == TripleComponentOrder.SPO) {
+				deleteArrayBuilder.addLateDelete(bitmap.getLayersCount() * position + layer);
+			}
+		}
+	}
+
+	/**
+	 * translate the triples deleted during the merge into delete bitmaps for
+	 * the new HDT, the triples deleted after this call are tracked and
+	 * translated by {@link #resetDeleteArray(HDT)}. Can be called while the
+	 * connections are reading and updating the store.
+	 *
+	 * @param newHdt the new HDT
+	 * @throws IOException bitmap creation exception
+	 */
+	public void prepareDeleteArray(HDT newHdt) throws IOException {
+		MultiLayerBitmapWrapper.MultiLayerModBitmapWrapper tempDeleteBitMap = tempdeleteBitMap[TripleComponentOrder.SPO
+				.ordinal()];
+		MergeDeleteArrayBuilder builder = new MergeDeleteArrayBuilder(hdt, newHdt, validOrders,
+				tempDeleteBitMap.getLayersCount(), getGraphsCount(newHdt));
+		BitArrayDisk copy;
+		synchronized (tempdeleteBitMap) {
+			// the deletes after the copy are late deletes of the builder
+			copy = tempDeleteBitMap.<BitArrayDisk>getHandle().copyInMemory();
+			Closer.closeSingle(deleteArrayBuilder);
+			deleteArrayBuilder = builder;
+		}
+		builder.translateAll(copy);
+	}
+
 	// creates a new array that marks the deleted triples in the new HDT file
 	public void resetDeleteArray(HDT newHdt) throws IOException {
 		// delete array created at merge time
+		MergeDeleteArrayBuilder builder;
+		synchronized (tempdeleteBitMap) {
+			builder = deleteArrayBuilder;
+			deleteArrayBuilder = null;
+		}
 
-		long graphs = getGraphsCount(newHdt);
-		MultiLayerBitmapWrapper.MultiLayerModBitmapWrapper[] newDeleteArray = new MultiLayerBitmapWrapper.MultiLayerModBitmapWrapper[TripleComponentOrder
-				.values().length];
-		for (TripleComponentOrder order : validOrders) {
-			newDeleteArray[order.ordinal()] = MultiLayerBitmapWrapper
-					.of(new BitArrayDisk(newHdt.getTriples().getNumberOfElements() * graphs), graphs);
-		}
-
-		long lastOldSubject = -2;
-		long lastNewSubject = -2;
-
-		long lastOldPredicate = -2;
-		long lastNewPredicate = -2;
-
-		long lastOldObject = -2;
-		long lastNewObject = -2;
-
-		long lastOldGraph = -2;
-		long lastNewGraph = -2;
-
-		// iterate over the temp array, convert the triples and mark it as
-		// deleted in the new HDT file
-		MultiLayerBitmap tempDeleteBitMap = getTempDeleteBitMap(TripleComponentOrder.SPO);
-
-		long triples = hdt.getTriples().getNumberOfElements();
-		for (long i = 0; i < triples; i++) {
-			for (int graphId = 0; graphId < graphs; graphId++) {
-				if (tempDeleteBitMap.access(graphId, i)) { // means that a
-															// triple has been
-					// deleted during merge
-					// find the deleted triple in the old HDT index
-					TripleID tripleID = this.hdt.getTriples().findTriple(i);
-					if (tripleID.isValid()) {
-						long oldSubject = tripleID.getSubject();
-						long oldPredicate = tripleID.getPredicate();
-						long oldObject = tripleID.getObject();
-
-						// check if the last subject was this subject
-
-						long subject;
-
-						if (oldSubject != lastOldSubject) {
-							subject = newHdt.getDictionary().stringToId(
-									this.hdt.getDictionary().idToString(oldSubject, TripleComponentRole.SUBJECT),
-									TripleComponentRole.SUBJECT);
-							lastNewSubject = subject;
-							lastOldSubject = oldSubject;
-						} else {
-							subject = lastNewSubject;
-						}
-
-						// check if the last predicate was this predicate
-
-						long predicate;
-
-						if (oldPredicate != lastOldPredicate) {
-							predicate = newHdt.getDictionary().stringToId(
-									this.hdt.getDictionary().idToString(oldPredicate, TripleComponentRole.PREDICATE),
-									TripleComponentRole.PREDICATE);
-							lastNewPredicate = predicate;
-							lastOldPredicate = oldPredicate;
-						} else {
-							predicate = lastNewPredicate;
-						}
-
-						// check if the last object was this object
-
-						long object;
-
-						if (oldObject != lastOldObject) {
-							object = newHdt.getDictionary().stringToId(
-									this.hdt.getDictionary().idToString(oldObject, TripleComponentRole.OBJECT),
-									TripleComponentRole.OBJECT);
-							lastNewObject = object;
-							lastOldObject = oldObject;
-						} else {
-							object = lastNewObject;
-						}
-
-						// search over the given triple with the ID so that we
-						// can
-						// mark the new array.
-						TripleID triple;
-
-						if (hdt.getDictionary().supportGraphs()) {
-							long graph;
-							long oldGraph = tripleID.getGraph();
-
-							if (oldGraph != lastOldGraph) {
-								graph = newHdt.getDictionary().stringToId(
-										this.hdt.getDictionary().idToString(graphId + 1, TripleComponentRole.GRAPH),
-										TripleComponentRole.GRAPH);
-								lastNewGraph = graph;
-								lastOldGraph = oldGraph;
-							} else {
-								graph = lastNewGraph;
-							}
-							triple = new TripleID(subject, predicate, object, graph);
-						} else {
-							triple = new TripleID(subject, predicate, object);
-						}
-
-						if (!triple.isNoMatch()) {
-							for (TripleComponentOrder sorder : validOrders) {
-								IteratorTripleID next = newHdt.getTriples().search(triple, sorder.mask);
-								if (next.hasNext()) {
-									assert next.getOrder() == sorder : "invalid order";
-									TripleID tid = next.next();
-
-									long newIndex = next.getLastTriplePosition();
-									long graph;
-									if (newHdt.getDictionary().supportGraphs()) {
-										graph = tid.getGraph();
-									} else {
-										graph = 1;
-									}
-									newDeleteArray[sorder.ordinal()].set(graph - 1, newIndex, true);
-								}
-							}
-						}
-					}
-				}
+		if (builder != null && builder.getNewHdt() == newHdt) {
+			// only translate the triples deleted since the preparation
+			builder.translateLateDeletes();
+		} else {
+			Closer.closeSingle(builder);
+			MultiLayerBitmapWrapper.MultiLayerModBitmapWrapper tempDeleteBitMap = tempdeleteBitMap[TripleComponentOrder.SPO
+					.ordinal()];
+			builder = new MergeDeleteArrayBuilder(hdt, newHdt, validOrders, tempDeleteBitMap.getLayersCount(),
+					getGraphsCount(newHdt));
+			BitArrayDisk copy;
+			synchronized (tempdeleteBitMap) {
+				copy = tempDeleteBitMap.<BitArrayDisk>getHandle().copyInMemory();
 			}
+			builder.translateAll(copy);
 		}
 
-		Closer.closeSingle(getDeleteBitMaps());
+		MultiLayerBitmapWrapper.MultiLayerModBitmapWrapper[] newDeleteArray = builder.getNewDeleteArray();
+		// still read by the current generation
+		MultiLayerBitmapWrapper.MultiLayerModBitmapWrapper[] oldDeleteArray = getDeleteBitMaps().clone();
+		retire(() -> Closer.closeSingle(oldDeleteArray));
 		try {
 			for (TripleComponentOrder sorder : validOrders) {
 				newDeleteArray[sorder.ordinal()].<BitArrayDisk>getHandle()
@@ -846,70 +1307,76 @@ public class EndpointStore extends AbstractNotifyingSail {
 			}
 		} catch (Throwable t) {
 			try {
-				Closer.closeSingle(newDeleteArray);
+				builder.close();
 			} catch (Throwable t2) {
 				t.addSuppressed(t2);
 			}
 			throw t;
 		}
+		// the versions of the current generation are still used by its
+		// readers
+		this.deleteVersions = new DeleteBitmapVersions();
 		this.setDeleteBitMap(newDeleteArray);
 	}
 
+	/**
+	 * close the temp triples file and read the triples deleted while merging
+	 *
+	 * @param action action to run on each deleted triple
+	 * @throws IOException read exception
+	 */
+	private void forEachDeletedTempTriple(Consumer<Statement> action) throws IOException {
+		this.tempDeleteLog.forEach(SimpleValueFactory.getInstance(), action);
+	}
+
+	/**
+	 * mark the triples deleted while merging as deleted in the delta layers,
+	 * used at the end of a tiered merge
+	 *
+	 * @throws IOException read exception
+	 */
+	public void markDeletedTempTriplesLayers() throws IOException {
+		forEachDeletedTempTriple(st -> {
+			if (st.getContext() != null) {
+				layers.markDeleted(st.getSubject(), st.getPredicate(), st.getObject(), st.getContext());
+			} else {
+				layers.markDeleted(st.getSubject(), st.getPredicate(), st.getObject());
+			}
+		});
+	}
+
 	public void markDeletedTempTriples() throws IOException {
 		Dictionary dictionary = this.hdt.getDictionary();
-		boolean graph = dictionary.supportGraphs();
-		this.rdfWriterTempTriples.endRDF();
-		this.rdfWriterTempTriples.getWriter().close();
-		try (InputStream inputStream = new FileInputStream(endpointFiles.getTempTriples(graph))) {
-			RDFParser rdfParser = Rio.createParser(graph ? RDFFormat.NQUADS : RDFFormat.NTRIPLES);
-			rdfParser.getParserConfig().set(BasicParserSettings.VERIFY_URI_SYNTAX, false);
-			try (GraphQueryResult res = QueryResults.parseGraphBackground(inputStream, null, rdfParser)) {
-				while (res.hasNext()) {
-					Statement st = res.next();
-
-					TripleID searchId;
-					long pid = dictionary.stringToId(st.getPredicate().toString(), TripleComponentRole.PREDICATE);
-					long sid = pid < 0 ? pid
-							: dictionary.stringToId(st.getSubject().toString(), TripleComponentRole.SUBJECT);
-					long oid = sid < 0 ? sid
-							: dictionary.stringToId(st.getObject().toString(), TripleComponentRole.OBJECT);
-
-					if (dictionary.supportGraphs()) {
-						long gid = oid < 0 ? oid
-								: st.getContext() == null ? getHdtProps().getDefaultGraph()
-										: dictionary.stringToId(st.getContext().toString(), TripleComponentRole.GRAPH);
-						searchId = new TripleID(sid, pid, oid, gid);
-					} else {
-						searchId = new TripleID(sid, pid, oid);
-					}
+		List<TripleID> batch = new ArrayList<>();
+		forEachDeletedTempTriple(st -> {
+			TripleID searchId;
+			long pid = dictionary.stringToId(st.getPredicate().toString(), TripleComponentRole.PREDICATE);
+			long sid = pid < 0 ? pid : dictionary.stringToId(st.getSubject().toString(), TripleComponentRole.SUBJECT);
+			long oid = sid < 0 ? sid : dictionary.stringToId(st.getObject().toString(), TripleComponentRole.OBJECT);
+
+			if (dictionary.supportGraphs()) {
+				long gid = oid < 0 ? oid
+						: st.getContext() == null ? getHdtProps().getDefaultGraph()
+								: dictionary.stringToId(st.getContext().toString(), TripleComponentRole.GRAPH);
+				searchId = new TripleID(sid, pid, oid, gid);
+			} else {
+				searchId = new TripleID(sid, pid, oid);
+			}
 
-					logger.info("search triple {}", searchId);
-					IteratorTripleID search = this.hdt.getTriples().search(searchId);
-					while (search.hasNext()) {
-						TripleID ts = search.next();
-						logger.info("-> {}", ts);
-						long index = search.getLastTriplePosition();
-						if (index >= 0) {
-							TripleComponentOrder order;
-							if (search.isLastTriplePositionBoundToOrder()) {
-								order = search.getOrder();
-							} else {
-								order = TripleComponentOrder.SPO;
-							}
-							long graphId;
-
-							if (dictionary.supportGraphs()) {
-								graphId = ts.getGraph();
-							} else {
-								graphId = 1;
-							}
-
-							this.deleteBitMap[order.ordinal()].set(graphId - 1, index, true);
-						}
-					}
-				}
+			if (searchId.isNoMatch()) {
+				return;
 			}
-		}
+
+			logger.debug("search triple {}", searchId);
+			batch.add(searchId);
+			if (batch.size() >= MergeDeleteArrayBuilder.BATCH_SIZE) {
+				MergeDeleteArrayBuilder.markDeleted(hdt, validOrders, deleteBitMap, batch);
+				batch.clear();
+			}
+		});
+		// mark the triples in every order, not only the best one for the search
+		MergeDeleteArrayBuilder.markDeleted(hdt, validOrders, deleteBitMap, batch);
+		countDeletedTriples();
 	}
 
 	// called from a locked block
@@ -930,6 +1397,26 @@ public class EndpointStore extends AbstractNotifyingSail {
 		}
 	}
 
+	// called from a locked block
+	private void initDeltaPatternFilter() {
+		logger.debug("Resetting delta pattern filter");
+		HDTConverter converter = new HDTConverter(this);
+		// the filter isn't stored on disk, we fill it with both stores in case
+		// a merge was running
+		for (Sail store : List.of(nativeStoreA, nativeStoreB)) {
+			try (RepositoryConnection connection = new SailRepository(store).getConnection();
+					RepositoryResult<Statement> statements = connection.getStatements(null, null, null)) {
+				for (Statement statement : statements) {
+					long subject = converter.subjectToID(converter.rdf4jToHdtIDsubject(statement.getSubject()));
+					long predicate = converter
+							.predicateToID(converter.rdf4jToHdtIDpredicate(statement.getPredicate()));
+					long object = converter.objectToID(converter.rdf4jToHdtIDobject(statement.getObject()));
+					this.deltaPatternFilter.add(subject, predicate, object);
+				}
+			}
+		}
+	}
+
 	public void modifyBitmaps(Resource subject, IRI predicate, Value object) {
 		// mark in HDT the store the subject, predicate, objects that are used
 		// in rdf4j
@@ -964,12 +1451,27 @@ public class EndpointStore extends AbstractNotifyingSail {
 
 		if (object != -1 && object != 0) {
 			if (object <= this.hdt.getDictionary().getNshared()) {
-				return this.getBitX().access(object - 1);
-			} else {
-				return this.getBitZ().access(object - hdt.getDictionary().getNshared() - 1);
+				if (!this.getBitX().access(object - 1)) {
+					return false;
+				}
+			} else if (!this.getBitZ().access(object - hdt.getDictionary().getNshared() - 1)) {
+				return false;
 			}
 		}
-		return true;
+		return deltaPatternMightContain(subject, predicate, object);
+	}
+
+	/**
+	 * test the delta pattern filter, if enabled
+	 *
+	 * @param subject   subject id, -1 or 0 for a variable
+	 * @param predicate predicate id, -1 or 0 for a variable
+	 * @param object    object id, -1 or 0 for a variable
+	 * @return false if the pattern can't have results in the delta store
+	 */
+	public boolean deltaPatternMightContain(long subject, long predicate, long object) {
+		DeltaPatternFilter filter = this.deltaPatternFilter;
+		return filter == null || filter.mightContain(subject, predicate, object);
 	}
 
 	public void modifyBitmaps(long subject, long predicate, long object) {
@@ -988,6 +1490,10 @@ public class EndpointStore extends AbstractNotifyingSail {
 				this.getBitZ().set(object - hdt.getDictionary().getNshared() - 1, true);
 			}
 		}
+		DeltaPatternFilter filter = this.deltaPatternFilter;
+		if (filter != null) {
+			filter.add(subject, predicate, object);
+		}
 	}
 
 	/**
@@ -1057,14 +1563,26 @@ public class EndpointStore extends AbstractNotifyingSail {
 	// starts the merging process to merge the delta into HDT
 
 	/**
-	 * merge the store if required, would not do anything if
-	 * {@link #getThreshold()} returns a non-positive number
+	 * merge the store if required by the {@link MergeScheduler}, would not do
+	 * anything if {@link #getThreshold()} returns a negative number
 	 */
 	public void mergeIfRequired() {
 		logger.debug("--------------: triplesCount=" + triplesCount);
-		// Merge only if threshold in native store exceeded and not merging with
-		// hdt
-		if (getThreshold() >= 0 && triplesCount >= getThreshold()) {
+		if (getThreshold() < 0 || isMergeTriggered) {
+			return;
+		}
+		double deleteRatio = 0;
+		if (mergeScheduler.isAdaptive() && !deleteDisabled) {
+			long hdtTriples = hdt.getTriples().getNumberOfElements();
+			if (hdtTriples != 0) {
+				// counting the bitmap here would rebuild its rank index on
+				// each transaction
+				deleteRatio = (double) getDeletedTriplesCount() / hdtTriples;
+			}
+		}
+		// Merge only if the scheduler accepts it and not merging with hdt
+		if (mergeScheduler.shouldMerge(triplesCount, getThreshold(), deleteRatio, System.currentTimeMillis(),
+				LocalTime.now().getHour())) {
 			try {
 				mergeStore(false, false);
 			} catch (MergeStartException e) {
@@ -1120,8 +1638,9 @@ public class EndpointStore extends AbstractNotifyingSail {
 				b.<BitArrayDisk>getHandle().force(true);
 			}
 		}
+		layers.flushWrites();
 		if (isMerging()) {
-			getRdfWriterTempTriples().getWriter().flush();
+			getTempDeleteLog().flush();
 			for (MultiLayerBitmapWrapper.MultiLayerModBitmapWrapper b : tempdeleteBitMap) {
 				if (b != null) {
 					b.<BitArrayDisk>getHandle().force(true);
@@ -1131,6 +1650,13 @@ public class EndpointStore extends AbstractNotifyingSail {
 		logger.debug("Writes completed");
 	}
 
+	/**
+	 * @return the policy of the automatic merge
+	 */
+	public MergeScheduler getMergeScheduler() {
+		return mergeScheduler;
+	}
+
 	public HDTConverter getHdtConverter() {
 		return hdtConverter;
 	}
@@ -1219,6 +1745,21 @@ public class EndpointStore extends AbstractNotifyingSail {
 		return debugId;
 	}
 
+	/**
+	 * @return the delta HDT layers written by the tiered merges
+	 */
+	public EndpointStoreLayers getLayers() {
+		return layers;
+	}
+
+	/**
+	 * @return if the merges are writing delta HDT layers
+	 * @see #OPTION_QENDPOINT_MERGE_TIERED
+	 */
+	public boolean isTieredMerge() {
+		return spec.getBoolean(OPTION_QENDPOINT_MERGE_TIERED, false);
+	}
+
 	public EnumSet<TripleComponentOrder> getValidOrders() {
 		return validOrders;
 	}
@@ -17,7 +17,6 @@ import org.eclipse.rdf4j.query.Dataset;
 import org.eclipse.rdf4j.query.algebra.TupleExpr;
 import org.eclipse.rdf4j.query.algebra.evaluation.impl.StrictEvaluationStrategyFactory;
 import org.eclipse.rdf4j.query.explanation.Explanation;
-import org.eclipse.rdf4j.rio.ntriples.NTriplesWriter;
 import org.eclipse.rdf4j.sail.NotifyingSailConnection;
 import org.eclipse.rdf4j.sail.SailConnection;
 import org.eclipse.rdf4j.sail.SailConnectionListener;
@@ -29,16 +28,21 @@ import org.eclipse.rdf4j.sail.base.SailSourceConnection;
 import com.the_qa_company.qendpoint.core.enums.TripleComponentRole;
 import com.the_qa_company.qendpoint.core.triples.IteratorTripleID;
 import com.the_qa_company.qendpoint.core.triples.TripleID;
+import com.the_qa_company.qendpoint.core.util.BitUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Timer;
 import java.util.TimerTask;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.ToLongFunction;
 
 public class EndpointStoreConnection extends SailSourceConnection implements ConfigSailConnection {
 	private static final Timer TIMEOUT_TIMER = new Timer("EndpointStoreConnectionTimer", true);
@@ -48,6 +52,8 @@ public class EndpointStoreConnection extends SailSourceConnection implements Con
 	private final EndpointTripleSource tripleSource;
 	private final EndpointStoreQueryPreparer queryPreparer;
 	private boolean isWriteConnection = false;
+	// if the current transaction wrote in the store
+	private boolean wroteInTransaction;
 	private final EndpointStore endpoint;
 	NotifyingSailConnection connA_read;
 	NotifyingSailConnection connB_read;
@@ -56,29 +62,68 @@ public class EndpointStoreConnection extends SailSourceConnection implements Con
 	private final long debugId;
 	private final Lock connectionLock;
 	private Lock updateLock;
+	// lock of the current transaction, the merge can't publish a new
+	// generation while it is held, null outside of a transaction
+	private Lock transactionLock;
+	// generation pinned while the connection is open, its changing store is
+	// the sail store of the connection
+	private final EndpointStoreGeneration baseGeneration;
+	// generation read by the connection, renewed at the start of a
+	// transaction
+	private volatile EndpointStoreGeneration generation;
+	// snapshot of the HDT deletes seen by the reads of the current
+	// transaction, null outside of a transaction
+	private DeleteBitmapVersions.Snapshot readSnapshot;
+	// number of HDT deletes made by this connection, read by its iterators
+	private volatile long hdtDeletes;
 	private CloseTask closeTask;
 	private final AtomicBoolean timeout = new AtomicBoolean();
 	private final Map<String, String> config = new HashMap<>();
 
 	public EndpointStoreConnection(EndpointStore endpoint) throws InterruptedException {
-		super(endpoint, endpoint.getCurrentSailStore(), new StrictEvaluationStrategyFactory());
+		this(endpoint, endpoint.acquireGeneration());
+	}
+
+	private EndpointStoreConnection(EndpointStore endpoint, EndpointStoreGeneration generation)
+			throws InterruptedException {
+		super(endpoint, generation.getChangingSailStore(), new StrictEvaluationStrategyFactory());
 		this.debugId = DEBUG_ID_STORE.getAndIncrement();
 		this.endpoint = endpoint;
-		EndpointStoreUtils.openConnection(this);
-		// lock logic is here so that the connections is blocked
-		this.endpoint.lockToPreventNewConnections.waitForActiveLocks();
-		if (MergeRunnableStopPoint.disableRequest) {
-			throw new MergeRunnableStopPoint.MergeRunnableException("connections request disabled");
+		this.baseGeneration = generation;
+		this.generation = generation;
+		try {
+			EndpointStoreUtils.openConnection(this);
+			// lock logic is here so that the connections is blocked
+			this.endpoint.lockToPreventNewConnections.waitForActiveLocks();
+			if (MergeRunnableStopPoint.disableRequest) {
+				throw new MergeRunnableStopPoint.MergeRunnableException("connections request disabled");
+			}
+			this.connectionLock = this.endpoint.locksHoldByConnections.createLock("connection-lock");
+
+			openStoreConnections();
+		} catch (Throwable t) {
+			generation.close();
+			throw t;
 		}
-		this.connectionLock = this.endpoint.locksHoldByConnections.createLock("connection-lock");
 
-		this.connA_read = endpoint.getNativeStoreA().getConnection();
+		// each endpointStoreConnection has a triple source ( ideally it should
+		// be in the query preparer as in rdf4j..)
+		this.tripleSource = new EndpointTripleSource(this, endpoint);
+		this.queryPreparer = new EndpointStoreQueryPreparer(endpoint, tripleSource, this);
+	}
+
+	/**
+	 * open the connections to the delta stores of the generation
+	 */
+	private void openStoreConnections() {
+		EndpointStoreGeneration generation = this.generation;
+		this.connA_read = generation.getNativeStoreA().getConnection();
 		try {
-			this.connB_read = endpoint.getNativeStoreB().getConnection();
+			this.connB_read = generation.getNativeStoreB().getConnection();
 			try {
-				this.connA_write = endpoint.getNativeStoreA().getConnection();
+				this.connA_write = generation.getNativeStoreA().getConnection();
 				try {
-					this.connB_write = endpoint.getNativeStoreB().getConnection();
+					this.connB_write = generation.getNativeStoreB().getConnection();
 				} catch (Throwable t) {
 					try {
 						connA_write.close();
@@ -110,11 +155,79 @@ public class EndpointStoreConnection extends SailSourceConnection implements Con
 		this.connA_write.addConnectionListener(listener);
 		this.connB_read.addConnectionListener(listener);
 		this.connB_write.addConnectionListener(listener);
+	}
 
-		// each endpointStoreConnection has a triple source ( ideally it should
-		// be in the query preparer as in rdf4j..)
-		this.tripleSource = new EndpointTripleSource(this, endpoint);
-		this.queryPreparer = new EndpointStoreQueryPreparer(endpoint, tripleSource, this);
+	private void closeStoreConnections() {
+		this.connA_read.close();
+		this.connB_read.close();
+		this.connA_write.close();
+		this.connB_write.close();
+	}
+
+	/**
+	 * read the latest generation of the store if a new one was published,
+	 * must be called with the transaction lock
+	 */
+	private void renewGeneration() {
+		EndpointStoreGeneration old = generation;
+		if (endpoint.getGeneration() == old) {
+			return;
+		}
+		closeStoreConnections();
+		generation = endpoint.acquireGeneration();
+		if (old != baseGeneration) {
+			old.close();
+		}
+		openStoreConnections();
+	}
+
+	/**
+	 * wait for the merge to allow the updates and lock them for the
+	 * transaction
+	 */
+	private void acquireTransactionLock() {
+		try {
+			while (true) {
+				endpoint.lockToPreventNewUpdate.waitForActiveLocks();
+				Lock lock = endpoint.locksHoldByUpdates.createLock("transaction #" + debugId);
+				if (!endpoint.lockToPreventNewUpdate.isActiveLock()) {
+					transactionLock = lock;
+					return;
+				}
+				// the merge locked the updates before our lock, let it wait
+				// for the other updates
+				lock.release();
+			}
+		} catch (InterruptedException e) {
+			throw new SailException(e);
+		}
+	}
+
+	private void releaseTransactionLock() {
+		if (transactionLock != null) {
+			transactionLock.release();
+			transactionLock = null;
+		}
+	}
+
+	/**
+	 * wait for the merge to allow the updates and lock them, outside of a
+	 * transaction
+	 *
+	 * @param name lock name
+	 * @return the lock, null if the transaction lock is held
+	 */
+	private Lock lockUpdate(String name) {
+		if (transactionLock != null) {
+			// the transaction already locks the updates
+			return null;
+		}
+		try {
+			endpoint.lockToPreventNewUpdate.waitForActiveLocks();
+		} catch (InterruptedException e) {
+			throw new SailException(e);
+		}
+		return endpoint.locksHoldByUpdates.createLock(name);
 	}
 
 	@Override
@@ -146,6 +259,17 @@ public class EndpointStoreConnection extends SailSourceConnection implements Con
 		super.begin();
 
 		endpoint.mergeIfRequired();
+		// the transaction updates the latest generation, it can't be replaced
+		// before the end of the transaction
+		acquireTransactionLock();
+		try {
+			renewGeneration();
+		} catch (Throwable t) {
+			releaseTransactionLock();
+			throw t;
+		}
+		// the transaction reads the deletes committed before it
+		renewReadSnapshot();
 
 		this.connA_write.begin();
 		this.connB_write.begin();
@@ -241,7 +365,7 @@ public class EndpointStoreConnection extends SailSourceConnection implements Con
 		if (MergeRunnableStopPoint.disableRequest)
 			throw new MergeRunnableStopPoint.MergeRunnableException("connections request disabled");
 
-		isWriteConnection = true;
+		markWrite();
 
 		// System.out.println(subj.stringValue()+" - "+ pred.stringValue() + " -
 		// "+ obj.stringValue());
@@ -274,7 +398,7 @@ public class EndpointStoreConnection extends SailSourceConnection implements Con
 			// IRIs, depending if the resource is in
 			// HDT or not
 			TripleID tripleID = new TripleID(subjectID, predicateID, objectID);
-			if (tripleDoesntExistInHDT(tripleID)) {
+			if (tripleDoesntExistInHDT(tripleID) && !endpoint.getLayers().contains(subj, pred, obj)) {
 				// check if we need to search over the other native connection
 				if (endpoint.isMerging()) {
 					if (endpoint.shouldSearchOverRDF4J(subjectID, predicateID, objectID)) {
@@ -294,45 +418,11 @@ public class EndpointStoreConnection extends SailSourceConnection implements Con
 				// increase the number of statements
 				this.endpoint.triplesCount++;
 			}
-		} else if (contexts.length <= 1) {
-			long graphID;
-
-			if (contexts.length != 0) {
-				graphID = this.endpoint.getHdtConverter().subjectToID(contexts[0]);
-			} else {
-				graphID = this.endpoint.getHdtProps().getDefaultGraph();
-			}
-
-			Resource[] newGraph;
-			if (graphID == -1) {
-				newGraph = contexts;
-			} else {
-				newGraph = new Resource[] { this.endpoint.getHdtConverter().graphIdToIRI(graphID) };
-			}
-			TripleID tripleID = new TripleID(subjectID, predicateID, objectID, graphID);
-			if (quadDoesntExistInHDT(tripleID)) {
-				// check if we need to search over the other native connection
-				if (endpoint.isMerging()) {
-					if (endpoint.shouldSearchOverRDF4J(subjectID, predicateID, objectID)) {
-						try (CloseableIteration<? extends Statement> other = getOtherConnectionRead()
-								.getStatements(newSubj, newPred, newObj, false, newGraph)) {
-							if (other.hasNext()) {
-								return;
-							}
-						}
-					}
-				}
-				// here we need uris using the internal IDs
-				getCurrentConnectionWrite().addStatement(newSubj, newPred, newObj, newGraph);
-
-				// modify the bitmaps if the IRIs used are in HDT
-				this.endpoint.modifyBitmaps(subjectID, predicateID, objectID);
-				// increase the number of statements
-				this.endpoint.triplesCount++;
-			}
 		} else {
+			// a statement without context is added to the default graph
+			Resource[] graphs = contexts.length == 0 ? new Resource[] { null } : contexts;
 			Resource[] newGraph = new Resource[] { null };
-			for (Resource context : contexts) {
+			for (Resource context : graphs) {
 				long graphID;
 				if (context != null) {
 					graphID = this.endpoint.getHdtConverter().subjectToID(context);
@@ -346,7 +436,7 @@ public class EndpointStoreConnection extends SailSourceConnection implements Con
 					newGraph[0] = this.endpoint.getHdtConverter().graphIdToIRI(graphID);
 				}
 				TripleID tripleID = new TripleID(subjectID, predicateID, objectID, graphID);
-				if (quadDoesntExistInHDT(tripleID)) {
+				if (quadDoesntExistInHDT(tripleID) && !endpoint.getLayers().contains(subj, pred, obj, context)) {
 					// check if we need to search over the other native
 					// connection
 					if (endpoint.isMerging()) {
@@ -391,6 +481,7 @@ public class EndpointStoreConnection extends SailSourceConnection implements Con
 
 	@Override
 	protected void clearInternal(Resource... contexts) throws SailException {
+		markWrite();
 		getCurrentConnectionWrite().clear(contexts);
 	}
 
@@ -404,11 +495,100 @@ public class EndpointStoreConnection extends SailSourceConnection implements Con
 		return getCurrentConnectionRead().getNamespace(prefix);
 	}
 
+	@Override
+	protected void startTransactionInternal() throws SailException {
+		super.startTransactionInternal();
+		wroteInTransaction = false;
+	}
+
 	@Override
 	protected void commitInternal() throws SailException {
-		super.commitInternal();
-		this.connA_write.commit();
-		this.connB_write.commit();
+		try {
+			super.commitInternal();
+			this.connA_write.commit();
+			this.connB_write.commit();
+			endDeleteTransaction();
+			invalidateResults();
+		} finally {
+			releaseTransactionLock();
+		}
+	}
+
+	/**
+	 * mark this connection and its current transaction as writing in the
+	 * store
+	 */
+	private void markWrite() {
+		isWriteConnection = true;
+		wroteInTransaction = true;
+	}
+
+	/**
+	 * invalidate the cached query results if the transaction wrote in the
+	 * store, should be called after the changes are visible
+	 */
+	private void invalidateResults() {
+		QueryResultCache resultCache = endpoint.getQueryResultCache();
+		if (wroteInTransaction && resultCache != null) {
+			resultCache.invalidate();
+		}
+		wroteInTransaction = false;
+	}
+
+	/**
+	 * replace the read snapshot by a snapshot of the latest published deletes,
+	 * the iterations using the old snapshot keep their reference
+	 */
+	private void renewReadSnapshot() {
+		DeleteBitmapVersions.Snapshot old = readSnapshot;
+		readSnapshot = generation.getDeleteVersions().createSnapshot(debugId);
+		if (old != null) {
+			old.close();
+		}
+	}
+
+	/**
+	 * publish the HDT deletes of this connection and release its read snapshot
+	 */
+	private void endDeleteTransaction() {
+		generation.getDeleteVersions().publish(debugId);
+		if (readSnapshot != null) {
+			readSnapshot.close();
+			readSnapshot = null;
+		}
+	}
+
+	/**
+	 * get a reference to the snapshot of the HDT deletes seen by the reads of
+	 * this connection, the snapshot of the transaction or a snapshot of the
+	 * latest published deletes outside of a transaction
+	 *
+	 * @return snapshot, should be closed after usage
+	 */
+	public DeleteBitmapVersions.Snapshot acquireReadSnapshot() {
+		if (readSnapshot != null) {
+			return readSnapshot.retain();
+		}
+		return generation.getDeleteVersions().createSnapshot(debugId);
+	}
+
+	/**
+	 * test if a triple of the HDT is deleted for the reads of this connection
+	 *
+	 * @param order    order of the bitmap
+	 * @param layer    layer of the triple
+	 * @param position position of the triple in the order
+	 * @return if the triple is deleted
+	 */
+	private boolean isDeletedInHDT(TripleComponentOrder order, long layer, long position) {
+		EndpointStoreGeneration generation = this.generation;
+		MultiLayerBitmapWrapper.MultiLayerModBitmapWrapper dbm = generation.getDeleteBitMap(order);
+		if (dbm == null) {
+			return false;
+		}
+		try (DeleteBitmapVersions.Snapshot snapshot = acquireReadSnapshot()) {
+			return generation.getDeleteVersions().isDeleted(snapshot, dbm, order, layer, position);
+		}
 	}
 
 	@Override
@@ -439,17 +619,12 @@ public class EndpointStoreConnection extends SailSourceConnection implements Con
 		this.connB_write.startUpdate(op);
 		this.connA_read.close();
 		this.connB_read.close();
-		this.connA_read = endpoint.getNativeStoreA().getConnection();
-		this.connB_read = endpoint.getNativeStoreB().getConnection();
+		this.connA_read = generation.getNativeStoreA().getConnection();
+		this.connB_read = generation.getNativeStoreB().getConnection();
 
 		logger.debug("Update started");
-		try {
-			endpoint.lockToPreventNewUpdate.waitForActiveLocks();
-		} catch (InterruptedException e) {
-			throw new SailException(e);
-		}
 		if (op != null) {
-			updateLock = endpoint.locksHoldByUpdates.createLock("update #" + debugId);
+			updateLock = lockUpdate("update #" + debugId);
 		}
 	}
 
@@ -459,14 +634,22 @@ public class EndpointStoreConnection extends SailSourceConnection implements Con
 		this.connA_write.endUpdate(op);
 		this.connB_write.endUpdate(op);
 		logger.debug("Update ended");
-		if (op != null) {
+		if (op != null && updateLock != null) {
 			updateLock.release();
+			updateLock = null;
 		}
 	}
 
 	@Override
 	protected void rollbackInternal() throws SailException {
-		getCurrentConnectionWrite().rollback();
+		try {
+			getCurrentConnectionWrite().rollback();
+			// the bits set in the HDT delete bitmaps aren't rolled back
+			endDeleteTransaction();
+			invalidateResults();
+		} finally {
+			releaseTransactionLock();
+		}
 	}
 
 	@Override
@@ -480,15 +663,18 @@ public class EndpointStoreConnection extends SailSourceConnection implements Con
 			}
 		}
 		super.closeInternal();
+		endDeleteTransaction();
 		// this.nativeStoreConnection.close();
-		this.connA_read.close();
-		this.connB_read.close();
-		this.connA_write.close();
-		this.connB_write.close();
+		closeStoreConnections();
 		if (closeTask != null) {
 			closeTask.cancel();
 		}
 		this.connectionLock.release();
+		releaseTransactionLock();
+		if (generation != baseGeneration) {
+			generation.close();
+		}
+		baseGeneration.close();
 		EndpointStoreUtils.closeConnection(this);
 	}
 
@@ -500,19 +686,31 @@ public class EndpointStoreConnection extends SailSourceConnection implements Con
 	@Override
 	protected long sizeInternal(Resource... contexts) throws SailException {
 		// return endpoint.getNativeStoreConnection().size(contexts);
+		EndpointStoreGeneration generation = this.generation;
 		long sizeNativeA = connA_read.size(contexts);
 		long sizeNativeB = connB_read.size(contexts);
-		long sizeHdt = this.endpoint.getHdt().getTriples().getNumberOfElements();
+		long sizeHdt = generation.getHdt().getTriples().getNumberOfElements();
 
-		long sizeDeleted = endpoint.isDeleteDisabled() ? 0
-				: this.endpoint.getDeleteBitMap(TripleComponentOrder.SPO).getHandle().countOnes();
+		long sizeDeleted;
+		if (endpoint.isDeleteDisabled()) {
+			sizeDeleted = 0;
+		} else {
+			// the counter contains the deletes not yet visible to this
+			// connection
+			try (DeleteBitmapVersions.Snapshot snapshot = acquireReadSnapshot()) {
+				sizeDeleted = generation.getDeletedTriplesCount()
+						- generation.getDeleteVersions().countHidden(snapshot, TripleComponentOrder.SPO);
+			}
+		}
+		long sizeLayers = EndpointStoreLayers.size(generation.getLayers());
 		logger.info("---------------------------");
 		logger.info("Size native A:" + sizeNativeA);
 		logger.info("Size native B:" + sizeNativeB);
 		logger.info("Size deleted:" + sizeDeleted);
 		logger.info("Size size HDT:" + sizeHdt);
+		logger.info("Size layers:" + sizeLayers);
 		logger.info("---------------------------");
-		return sizeHdt + sizeNativeA + sizeNativeB - sizeDeleted;
+		return sizeHdt + sizeNativeA + sizeNativeB + sizeLayers - sizeDeleted;
 	}
 
 	@Override
@@ -525,7 +723,7 @@ public class EndpointStoreConnection extends SailSourceConnection implements Con
 			throw new SailException("This sail doesn't support deletion");
 		}
 
-		isWriteConnection = true;
+		markWrite();
 
 		Resource newSubj;
 		IRI newPred;
@@ -562,6 +760,7 @@ public class EndpointStoreConnection extends SailSourceConnection implements Con
 			}
 
 			assignBitMapDeletes(tid, subj, pred, obj, contexts, null);
+			assignLayersDeletes(subj, pred, obj, contexts);
 		} else {
 			long[] contextIds = new long[contexts.length];
 			Resource[] newcontexts = this.endpoint.getHdtConverter().graphIdToIRI(contexts, contextIds);
@@ -575,6 +774,246 @@ public class EndpointStoreConnection extends SailSourceConnection implements Con
 			}
 
 			assignBitMapDeletes(tid, subj, pred, obj, contexts, contextIds);
+			assignLayersDeletes(subj, pred, obj, contexts);
+		}
+	}
+
+	/**
+	 * apply a changeset to the store, the deletes are applied before the
+	 * inserts. Unlike the per statement add/remove methods, the update lock is
+	 * taken once for the whole changeset, the HDT ids of each term are resolved
+	 * once and the deletes are sorted in each order of the HDT, the sorted
+	 * deletes sharing an adjacency list are merged with it, so the delete
+	 * bitmaps are updated one order after the other. A transaction must be
+	 * active, the native store writes are part of it.
+	 * <p>
+	 * The quad datasets are using the per statement methods.
+	 *
+	 * @param deletes the statements to delete
+	 * @param inserts the statements to insert
+	 * @throws SailException store exception
+	 */
+	public void applyChangeset(Collection<? extends Statement> deletes, Collection<? extends Statement> inserts)
+			throws SailException {
+		if (MergeRunnableStopPoint.disableRequest)
+			throw new MergeRunnableStopPoint.MergeRunnableException("connections request disabled");
+
+		if (!deletes.isEmpty() && endpoint.isDeleteDisabled()) {
+			throw new SailException("This sail doesn't support deletion");
+		}
+
+		verifyIsOpen();
+		verifyIsActive();
+
+		if (this.endpoint.getHdt().getDictionary().supportGraphs()) {
+			for (Statement st : deletes) {
+				removeStatement(null, st.getSubject(), st.getPredicate(), st.getObject(), contextsOf(st));
+			}
+			for (Statement st : inserts) {
+				addStatement(null, st.getSubject(), st.getPredicate(), st.getObject(), contextsOf(st));
+			}
+			return;
+		}
+
+		markWrite();
+
+		Lock changesetLock = lockUpdate("changeset #" + debugId);
+		try {
+			ChangesetResolver resolver = new ChangesetResolver();
+			if (!deletes.isEmpty()) {
+				removeChangeset(resolver.resolve(deletes));
+			}
+			if (!inserts.isEmpty()) {
+				addChangeset(resolver.resolve(inserts));
+			}
+		} finally {
+			if (changesetLock != null) {
+				changesetLock.release();
+			}
+		}
+	}
+
+	private static Resource[] contextsOf(Statement st) {
+		return st.getContext() == null ? new Resource[0] : new Resource[] { st.getContext() };
+	}
+
+	private void removeChangeset(ChangesetTriple[] triples) {
+		for (ChangesetTriple triple : triples) {
+			// remove statement from both stores... A and B
+			if (endpoint.isMergeTriggered) {
+				this.connA_write.removeStatement(null, triple.subj(), triple.pred(), triple.obj());
+				this.connB_write.removeStatement(null, triple.subj(), triple.pred(), triple.obj());
+			} else {
+				this.getCurrentConnectionWrite().removeStatement(null, triple.subj(), triple.pred(), triple.obj());
+			}
+		}
+
+		boolean[] foundInHDT = new boolean[triples.length];
+		for (TripleComponentOrder order : endpoint.getValidOrders()) {
+			// sort the triples in the order of the bitmap to update it
+			// sequentially
+			Integer[] sorted = new Integer[triples.length];
+			for (int i = 0; i < sorted.length; i++) {
+				sorted[i] = i;
+			}
+			Arrays.sort(sorted,
+					Comparator.<Integer>comparingLong(i -> order.getSubjectFunction().applyAsLong(triples[i].id()))
+							.thenComparingLong(i -> order.getPredicateFunction().applyAsLong(triples[i].id()))
+							.thenComparingLong(i -> order.getObjectFunction().applyAsLong(triples[i].id())));
+
+			MultiLayerBitmapWrapper.MultiLayerModBitmapWrapper deleteBitMap = this.endpoint.getDeleteBitMap(order);
+			ToLongFunction<TripleID> first = order.getSubjectFunction();
+			ToLongFunction<TripleID> second = order.getPredicateFunction();
+			int start = 0;
+			while (start < sorted.length) {
+				// group of the triples sharing the adjacency list of the order
+				TripleID id = triples[sorted[start]].id();
+				int end = start + 1;
+				while (end < sorted.length && first.applyAsLong(triples[sorted[end]].id()) == first.applyAsLong(id)
+						&& second.applyAsLong(triples[sorted[end]].id()) == second.applyAsLong(id)) {
+					end++;
+				}
+				// the unknown terms are sorted first, the third one is checked
+				// with the list
+				if (first.applyAsLong(id) != -1 && second.applyAsLong(id) != -1) {
+					removeChangesetList(order, deleteBitMap, triples, sorted, start, end, foundInHDT);
+				}
+				start = end;
+			}
+		}
+
+		for (int i = 0; i < triples.length; i++) {
+			Statement st = triples[i].statement();
+			if (!foundInHDT[i]) {
+				writeTempDeleted(st.getSubject(), st.getPredicate(), st.getObject(), new Resource[0]);
+			}
+			assignLayersDeletes(st.getSubject(), st.getPredicate(), st.getObject(), new Resource[0]);
+		}
+	}
+
+	/**
+	 * mark the triples of a changeset group sharing the same adjacency list of
+	 * an order as deleted. The list is read once with the sorted group if the
+	 * group is large compared to the list, otherwise each triple is searched.
+	 */
+	private void removeChangesetList(TripleComponentOrder order,
+			MultiLayerBitmapWrapper.MultiLayerModBitmapWrapper deleteBitMap, ChangesetTriple[] triples,
+			Integer[] sorted, int start, int end, boolean[] foundInHDT) {
+		ToLongFunction<TripleID> third = order.getObjectFunction();
+		TripleID pattern = triples[sorted[start]].id().clone();
+		TripleComponentOrder.setRole(order.getObjectMapping(), pattern, 0);
+		IteratorTripleID list = endpoint.getHdt().getTriples().search(pattern, order.mask);
+		long listSize = list.estimatedNumResults();
+
+		if ((long) (end - start) * (BitUtil.log2(listSize) + 1) < listSize) {
+			// small group, search each triple
+			for (int k = start; k < end; k++) {
+				int i = sorted[k];
+				TripleID id = triples[i].id();
+				if (third.applyAsLong(id) == -1) {
+					continue;
+				}
+				IteratorTripleID iter = endpoint.getHdt().getTriples().search(id, order.mask);
+				if (iter.hasNext()) {
+					iter.next();
+					foundInHDT[i] = true;
+					assert iter.isLastTriplePositionBoundToOrder();
+					assert iter.getOrder() == order;
+					markChangesetDeleted(order, deleteBitMap, triples[i], iter.getLastTriplePosition());
+				}
+			}
+			return;
+		}
+
+		// merge the sorted group with the list
+		int k = start;
+		while (k < end && list.hasNext()) {
+			long value = third.applyAsLong(list.next());
+			while (k < end && third.applyAsLong(triples[sorted[k]].id()) < value) {
+				k++;
+			}
+			if (k < end && third.applyAsLong(triples[sorted[k]].id()) == value) {
+				foundInHDT[sorted[k]] = true;
+				assert list.isLastTriplePositionBoundToOrder();
+				assert list.getOrder() == order;
+				markChangesetDeleted(order, deleteBitMap, triples[sorted[k]], list.getLastTriplePosition());
+				k++;
+			}
+		}
+	}
+
+	private void markChangesetDeleted(TripleComponentOrder order,
+			MultiLayerBitmapWrapper.MultiLayerModBitmapWrapper deleteBitMap, ChangesetTriple triple, long index) {
+		if (setDeleted(order, deleteBitMap, 0, index) && order == TripleComponentOrder.SPO) {
+			Statement st = triple.statement();
+			notifyStatementRemoved(this.endpoint.getValueFactory().createStatement(st.getSubject(),
+					st.getPredicate(), st.getObject()));
+		}
+	}
+
+	private void addChangeset(ChangesetTriple[] triples) {
+		Arrays.sort(triples, Comparator.comparingLong((ChangesetTriple t) -> t.id().getSubject())
+				.thenComparingLong(t -> t.id().getPredicate()).thenComparingLong(t -> t.id().getObject()));
+
+		SailConnection writeConnection = getCurrentConnectionWrite();
+		for (ChangesetTriple triple : triples) {
+			TripleID id = triple.id();
+			Statement st = triple.statement();
+			if (!tripleDoesntExistInHDT(id)
+					|| endpoint.getLayers().contains(st.getSubject(), st.getPredicate(), st.getObject())) {
+				continue;
+			}
+			// check if we need to search over the other native connection
+			if (endpoint.isMerging() && endpoint.shouldSearchOverRDF4J(id.getSubject(), id.getPredicate(),
+					id.getObject())) {
+				try (CloseableIteration<? extends Statement> other = getOtherConnectionRead()
+						.getStatements(triple.subj(), triple.pred(), triple.obj(), false)) {
+					if (other.hasNext()) {
+						continue;
+					}
+				}
+			}
+			writeConnection.addStatement(triple.subj(), triple.pred(), triple.obj());
+
+			this.endpoint.modifyBitmaps(id.getSubject(), id.getPredicate(), id.getObject());
+			this.endpoint.triplesCount++;
+		}
+	}
+
+	/**
+	 * statement of a changeset with its HDT ids and the values to use in the
+	 * native store
+	 */
+	private record ChangesetTriple(Statement statement, TripleID id, Resource subj, IRI pred, Value obj) {}
+
+	/**
+	 * resolve the HDT ids of the changeset terms, a term is only searched once
+	 * in the dictionary
+	 */
+	private class ChangesetResolver {
+		private final Map<Value, Long> subjects = new HashMap<>();
+		private final Map<Value, Long> predicates = new HashMap<>();
+		private final Map<Value, Long> objects = new HashMap<>();
+
+		ChangesetTriple[] resolve(Collection<? extends Statement> statements) {
+			HDTConverter converter = endpoint.getHdtConverter();
+			ChangesetTriple[] triples = new ChangesetTriple[statements.size()];
+			int i = 0;
+			for (Statement st : statements) {
+				long subjectID = subjects.computeIfAbsent(st.getSubject(),
+						v -> converter.subjectToID((Resource) v));
+				long predicateID = predicates.computeIfAbsent(st.getPredicate(),
+						v -> converter.predicateToID((IRI) v));
+				long objectID = objects.computeIfAbsent(st.getObject(), converter::objectToID);
+
+				Resource newSubj = subjectID == -1 ? st.getSubject() : converter.subjectIdToIRI(subjectID);
+				IRI newPred = predicateID == -1 ? st.getPredicate() : converter.predicateIdToIRI(predicateID);
+				Value newObj = objectID == -1 ? st.getObject() : converter.objectIdToIRI(objectID);
+
+				triples[i++] = new ChangesetTriple(st, new TripleID(subjectID, predicateID, objectID), newSubj,
+						newPred, newObj);
+			}
+			return triples;
 		}
 	}
 
@@ -595,11 +1034,12 @@ public class EndpointStoreConnection extends SailSourceConnection implements Con
 				return false;
 			}
 			long index = iter.getLastTriplePosition();
-			MultiLayerBitmapWrapper.MultiLayerModBitmapWrapper dbm = this.endpoint.getDeleteBitMap(
-					iter.isLastTriplePositionBoundToOrder() ? iter.getOrder() : TripleComponentOrder.SPO);
-			return dbm != null && dbm.access(endpoint.getHdt().getDictionary().supportGraphs()
-					? (tid.isQuad() ? tid.getGraph() : endpoint.getHdtProps().getDefaultGraph()) - 1
-					: 0, index);
+			return isDeletedInHDT(
+					iter.isLastTriplePositionBoundToOrder() ? iter.getOrder() : TripleComponentOrder.SPO,
+					endpoint.getHdt().getDictionary().supportGraphs()
+							? (tid.isQuad() ? tid.getGraph() : endpoint.getHdtProps().getDefaultGraph()) - 1
+							: 0,
+					index);
 		}
 		return true;
 	}
@@ -613,10 +1053,38 @@ public class EndpointStoreConnection extends SailSourceConnection implements Con
 				return false;
 			}
 			long index = iter.getLastTriplePosition();
-			return this.endpoint
-					.getDeleteBitMap(
-							iter.isLastTriplePositionBoundToOrder() ? iter.getOrder() : TripleComponentOrder.SPO)
-					.access((tid.isQuad() ? tid.getGraph() : endpoint.getHdtProps().getDefaultGraph()) - 1, index);
+			return isDeletedInHDT(
+					iter.isLastTriplePositionBoundToOrder() ? iter.getOrder() : TripleComponentOrder.SPO,
+					(tid.isQuad() ? tid.getGraph() : endpoint.getHdtProps().getDefaultGraph()) - 1, index);
+		}
+		return true;
+	}
+
+	/**
+	 * mark a triple of the HDT as deleted, the delete is pending until the end
+	 * of the transaction
+	 *
+	 * @param order    order of the bitmap
+	 * @param bitmap   delete bitmap of the order
+	 * @param layer    graph layer
+	 * @param position triple position in the order
+	 * @return false if the triple was already deleted
+	 */
+	private boolean setDeleted(TripleComponentOrder order, MultiLayerBitmapWrapper.MultiLayerModBitmapWrapper bitmap,
+			long layer, long position) {
+		if (bitmap.access(layer, position)) {
+			return false;
+		}
+		// the other readers shouldn't see the bit before the commit
+		generation.getDeleteVersions().markPending(order, bitmap.getLayersCount() * position + layer, debugId);
+		if (order == TripleComponentOrder.SPO) {
+			// counted while pending, the size hides it from the other readers
+			endpoint.notifyTripleDeleted();
+		}
+		bitmap.set(layer, position, true);
+		hdtDeletes++;
+		if (this.endpoint.isMerging()) {
+			this.endpoint.markTempDeleted(order, layer, position);
 		}
 		return true;
 	}
@@ -632,6 +1100,7 @@ public class EndpointStoreConnection extends SailSourceConnection implements Con
 
 		TripleID tripleID = new TripleID(s, p, o);
 		boolean supportGraphs = endpoint.getHdt().getDictionary().supportGraphs();
+		boolean foundInHDT = false;
 		if (s != -1 && p != -1 && o != -1) {
 			if (contexts.length == 0 || !supportGraphs) {
 				if (supportGraphs) {
@@ -643,6 +1112,7 @@ public class EndpointStoreConnection extends SailSourceConnection implements Con
 					while (iter.hasNext()) {
 						TripleID removedId = iter.next();
 						long index = iter.getLastTriplePosition();
+						foundInHDT = true;
 
 						assert iter.isLastTriplePositionBoundToOrder();
 						TripleComponentOrder sorder = iter.getOrder();
@@ -656,11 +1126,7 @@ public class EndpointStoreConnection extends SailSourceConnection implements Con
 							layer = 0;
 						}
 
-						if (!this.endpoint.getDeleteBitMap(sorder).access(layer, index)) {
-							this.endpoint.getDeleteBitMap(sorder).set(layer, index, true);
-							if (this.endpoint.isMerging()) {
-								this.endpoint.getTempDeleteBitMap(sorder).set(layer, index, true);
-							}
+						if (setDeleted(sorder, this.endpoint.getDeleteBitMap(sorder), layer, index)) {
 							if (order == TripleComponentOrder.SPO) {
 								notifyStatementRemoved(
 										this.endpoint.getValueFactory().createStatement(subj, pred, obj));
@@ -681,16 +1147,13 @@ public class EndpointStoreConnection extends SailSourceConnection implements Con
 						if (iter.hasNext()) {
 							TripleID removedId = iter.next();
 							long index = iter.getLastTriplePosition();
+							foundInHDT = true;
 
 							assert iter.isLastTriplePositionBoundToOrder();
 							TripleComponentOrder sorder = iter.getOrder();
 
-							if (!this.endpoint.getDeleteBitMap(sorder).access(removedId.getGraph() - 1, index)) {
-								this.endpoint.getDeleteBitMap(sorder).set(removedId.getGraph() - 1, index, true);
-								if (this.endpoint.isMerging()) {
-									this.endpoint.getTempDeleteBitMap(sorder).set(removedId.getGraph() - 1, index,
-											true);
-								}
+							if (setDeleted(sorder, this.endpoint.getDeleteBitMap(sorder), removedId.getGraph() - 1,
+									index)) {
 								if (order == TripleComponentOrder.SPO) {
 									notifyStatementRemoved(
 											this.endpoint.getValueFactory().createStatement(subj, pred, obj, context));
@@ -700,33 +1163,59 @@ public class EndpointStoreConnection extends SailSourceConnection implements Con
 					}
 				}
 			}
-		} else {
+		}
+		if (!foundInHDT) {
 			// @todo: why is this important?
 			// means that the triple doesn't exist in HDT - we have to dump it
 			// while merging, this triple might be in
 			// the newly generated HDT
-			if (this.endpoint.isMerging()) {
-				NTriplesWriter writer = this.endpoint.getRdfWriterTempTriples();
-				if (writer != null) {
-					synchronized (writer) {
-						if (contexts.length == 0 || !supportGraphs) {
-							writer.handleStatement(this.endpoint.getValueFactory().createStatement(subj, pred, obj));
-						} else {
-							for (Resource ctx : contexts) {
-								writer.handleStatement(
-										this.endpoint.getValueFactory().createStatement(subj, pred, obj, ctx));
-							}
+			writeTempDeleted(subj, pred, obj, contexts);
+		}
+	}
+
+	/**
+	 * write a deleted triple in the merge delete log if the store is merging
+	 *
+	 * @param subj     subject
+	 * @param pred     predicate
+	 * @param obj      object
+	 * @param contexts contexts
+	 */
+	private void writeTempDeleted(Resource subj, IRI pred, Value obj, Resource[] contexts) {
+		if (this.endpoint.isMerging()) {
+			boolean supportGraphs = endpoint.getHdt().getDictionary().supportGraphs();
+			MergeDeleteLog log = this.endpoint.getTempDeleteLog();
+			if (log != null) {
+				try {
+					if (contexts.length == 0 || !supportGraphs) {
+						log.append(subj, pred, obj, null);
+					} else {
+						for (Resource ctx : contexts) {
+							log.append(subj, pred, obj, ctx);
 						}
 					}
-				} else {
-					logger.error("Writer is null!!");
+				} catch (IOException e) {
+					throw new SailException("Can't write the merge delete log", e);
 				}
+			} else {
+				logger.error("Writer is null!!");
 			}
 		}
 	}
 
+	private void assignLayersDeletes(Resource subj, IRI pred, Value obj, Resource[] contexts) {
+		if (endpoint.getLayers().isEmpty()) {
+			return;
+		}
+		if (endpoint.getLayers().markDeleted(subj, pred, obj, contexts) != 0) {
+			// the layers might be merged into the new HDT
+			writeTempDeleted(subj, pred, obj, contexts);
+			notifyStatementRemoved(this.endpoint.getValueFactory().createStatement(subj, pred, obj));
+		}
+	}
+
 	public SailConnection getCurrentConnectionRead() {
-		if (endpoint.switchStore) {
+		if (generation.isSwitchStore()) {
 			// logger.debug("STORE B");
 			return connB_read;
 		} else {
@@ -736,7 +1225,7 @@ public class EndpointStoreConnection extends SailSourceConnection implements Con
 	}
 
 	public SailConnection getCurrentConnectionWrite() {
-		if (endpoint.switchStore) {
+		if (generation.isSwitchStore()) {
 			// logger.debug("STORE B");
 			return connB_write;
 		} else {
@@ -746,7 +1235,7 @@ public class EndpointStoreConnection extends SailSourceConnection implements Con
 	}
 
 	public SailConnection getOtherConnectionRead() {
-		if (!endpoint.switchStore) {
+		if (!generation.isSwitchStore()) {
 			// logger.debug("STORE B");
 			return connB_read;
 		} else {
@@ -756,7 +1245,7 @@ public class EndpointStoreConnection extends SailSourceConnection implements Con
 	}
 
 	public SailConnection getOtherConnectionWrite() {
-		if (!endpoint.switchStore) {
+		if (!generation.isSwitchStore()) {
 			// logger.debug("STORE B");
 			return connB_write;
 		} else {
@@ -814,10 +1303,39 @@ public class EndpointStoreConnection extends SailSourceConnection implements Con
 		return endpoint;
 	}
 
+	/**
+	 * @return the generation of the store read by this connection
+	 */
+	public EndpointStoreGeneration getGeneration() {
+		return generation;
+	}
+
+	/**
+	 * get a reference to the generation read by this connection, used by the
+	 * iterations to read it after the end of the transaction
+	 *
+	 * @return generation, should be closed after usage
+	 */
+	EndpointStoreGeneration acquireGeneration() {
+		EndpointStoreGeneration generation = this.generation;
+		if (!generation.retain()) {
+			throw new IllegalStateException("generation " + generation.getId() + " already released");
+		}
+		return generation;
+	}
+
 	long getDebugId() {
 		return debugId;
 	}
 
+	/**
+	 * @return the number of HDT triples deleted by this connection, used by
+	 *         its iterators to know if their view of the bitmaps is outdated
+	 */
+	long getHDTDeleteCount() {
+		return hdtDeletes;
+	}
+
 	private class CloseTask extends TimerTask {
 		@Override
 		public void run() {
@@ -1,5 +1,6 @@
 package com.the_qa_company.qendpoint.store;
 
+import org.eclipse.rdf4j.query.algebra.Join;
 import org.eclipse.rdf4j.query.algebra.StatementPattern;
 import org.eclipse.rdf4j.query.algebra.evaluation.impl.EvaluationStatistics;
 
@@ -19,6 +20,11 @@ public class EndpointStoreEvaluationStatistics extends EvaluationStatistics {
 		return new CombinedCardinalityCalculator();
 	}
 
+	@Override
+	public boolean supportsJoinEstimation() {
+		return endpointStoreEvaluationStatisticsHDT.supportsJoinEstimation();
+	}
+
 	private class CombinedCardinalityCalculator extends CardinalityCalculator {
 		@Override
 		protected double getCardinality(StatementPattern sp) {
@@ -28,6 +34,18 @@ public class EndpointStoreEvaluationStatistics extends EvaluationStatistics {
 				hdtCard = 0;
 			return hdtCard + nativeCard;
 		}
+
+		@Override
+		public void meet(Join node) {
+			if (!endpointStoreEvaluationStatisticsHDT.supportsJoinEstimation()) {
+				super.meet(node);
+				return;
+			}
+			// the delta is small compared to the HDT, its join is estimated
+			// apart
+			cardinality = endpointStoreEvaluationStatisticsHDT.getCardinality(node)
+					+ nativeEvaluationStatistics.getCardinality(node);
+		}
 	}
 
 }
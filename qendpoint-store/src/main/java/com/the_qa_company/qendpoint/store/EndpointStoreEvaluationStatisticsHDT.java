@@ -3,10 +3,16 @@ package com.the_qa_company.qendpoint.store;
 import org.eclipse.rdf4j.model.IRI;
 import org.eclipse.rdf4j.model.Resource;
 import org.eclipse.rdf4j.model.Value;
+import org.eclipse.rdf4j.query.algebra.Join;
 import org.eclipse.rdf4j.query.algebra.StatementPattern;
 import org.eclipse.rdf4j.query.algebra.Var;
 import org.eclipse.rdf4j.query.algebra.evaluation.impl.EvaluationStatistics;
-import com.the_qa_company.qendpoint.core.triples.TripleID;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 public class EndpointStoreEvaluationStatisticsHDT extends EvaluationStatistics {
 	private final EndpointStore endpoint;
@@ -20,6 +26,48 @@ public class EndpointStoreEvaluationStatisticsHDT extends EvaluationStatistics {
 		return new HDTCardinalityCalculator();
 	}
 
+	@Override
+	public boolean supportsJoinEstimation() {
+		return endpoint.getJoinStatistics() != null;
+	}
+
+	/**
+	 * estimated result of a join, with the number of distinct values of its
+	 * variables
+	 */
+	private static class JoinRelation {
+		double cardinality;
+		final Map<String, Double> distinct = new HashMap<>();
+
+		JoinRelation(double cardinality) {
+			this.cardinality = cardinality;
+		}
+
+		void addVar(Var var, double distinctValues) {
+			if (var != null && !var.hasValue()) {
+				distinct.merge(var.getName(), Math.min(cardinality, distinctValues), Math::min);
+			}
+		}
+
+		JoinRelation join(JoinRelation other) {
+			JoinRelation result = new JoinRelation(cardinality * other.cardinality);
+			result.distinct.putAll(distinct);
+			for (Map.Entry<String, Double> e : other.distinct.entrySet()) {
+				Double d = distinct.get(e.getKey());
+				if (d == null) {
+					result.distinct.put(e.getKey(), e.getValue());
+					continue;
+				}
+				// each value of the smallest domain is assumed to match
+				double max = Math.max(d, e.getValue());
+				result.cardinality = max == 0 ? 0 : result.cardinality / max;
+				result.distinct.put(e.getKey(), Math.min(d, e.getValue()));
+			}
+			result.distinct.replaceAll((name, d) -> Math.min(d, result.cardinality));
+			return result;
+		}
+	}
+
 	protected class HDTCardinalityCalculator extends CardinalityCalculator {
 
 		@Override
@@ -28,7 +76,7 @@ public class EndpointStoreEvaluationStatisticsHDT extends EvaluationStatistics {
 			Value predicate = getConstantValue(sp.getPredicateVar());
 			Value object = getConstantValue(sp.getObjectVar());
 
-			HDTConverter hdtConverter = new HDTConverter(endpoint);
+			HDTConverter hdtConverter = endpoint.getHdtConverter();
 			long subId = hdtConverter.subjectToID((Resource) subject);
 			long predId = hdtConverter.predicateToID((IRI) predicate);
 			long objId = hdtConverter.objectToID(object);
@@ -44,12 +92,84 @@ public class EndpointStoreEvaluationStatisticsHDT extends EvaluationStatistics {
 				 */
 				cardinality = Double.MAX_VALUE;
 			} else {
-				cardinality = endpoint.getHdt().getTriples().search(new TripleID(subId, predId, objId))
-						.estimatedNumResults();
+				cardinality = endpoint.getCardinalityCache().getCardinality(subId, predId, objId);
 			}
 			return cardinality;
 		}
 
+		@Override
+		public void meet(Join node) {
+			HDTJoinStatistics stats = endpoint.getJoinStatistics();
+			List<StatementPattern> patterns = new ArrayList<>();
+			if (stats == null || !IdJoinEvaluationStep.collectPatterns(node, patterns)) {
+				super.meet(node);
+				return;
+			}
+
+			// the patterns with a constant predicate are grouped in stars by
+			// subject variable, estimated with the characteristic sets
+			Map<String, List<StatementPattern>> stars = new LinkedHashMap<>();
+			List<JoinRelation> relations = new ArrayList<>();
+			for (StatementPattern sp : patterns) {
+				if (!sp.getSubjectVar().hasValue() && sp.getPredicateVar().hasValue()) {
+					stars.computeIfAbsent(sp.getSubjectVar().getName(), k -> new ArrayList<>()).add(sp);
+				} else {
+					relations.add(patternRelation(stats, sp));
+				}
+			}
+			for (List<StatementPattern> star : stars.values()) {
+				relations.add(star.size() == 1 ? patternRelation(stats, star.get(0)) : starRelation(stats, star));
+			}
+
+			JoinRelation result = relations.get(0);
+			for (int i = 1; i < relations.size(); i++) {
+				result = result.join(relations.get(i));
+			}
+			cardinality = result.cardinality;
+		}
+
+		private long predicateId(StatementPattern sp) {
+			Value predicate = getConstantValue(sp.getPredicateVar());
+			return predicate instanceof IRI iri ? endpoint.getHdtConverter().predicateToID(iri) : 0;
+		}
+
+		private JoinRelation patternRelation(HDTJoinStatistics stats, StatementPattern sp) {
+			double card = getCardinality(sp);
+			JoinRelation relation = new JoinRelation(card == Double.MAX_VALUE ? stats.getTriples() : card);
+			long predId = predicateId(sp);
+			boolean known = predId > 0 && predId <= stats.getPredicates();
+			relation.addVar(sp.getSubjectVar(), known ? stats.getPredicateSubjects(predId) : stats.getSubjects());
+			relation.addVar(sp.getPredicateVar(), stats.getPredicates());
+			relation.addVar(sp.getObjectVar(), known ? stats.getPredicateObjects(predId) : stats.getObjects());
+			return relation;
+		}
+
+		private JoinRelation starRelation(HDTJoinStatistics stats, List<StatementPattern> star) {
+			long[] predicates = new long[star.size()];
+			for (int i = 0; i < predicates.length; i++) {
+				predicates[i] = predicateId(star.get(i));
+				if (predicates[i] <= 0) {
+					// not in the HDT
+					return new JoinRelation(0);
+				}
+			}
+			double card = stats.getStarCardinality(predicates);
+			for (int i = 0; i < predicates.length; i++) {
+				StatementPattern sp = star.get(i);
+				if (sp.getObjectVar().hasValue()) {
+					// selectivity of the object in the predicate
+					long triples = stats.getPredicateTriples(predicates[i]);
+					card *= triples == 0 ? 0 : Math.min(1, getCardinality(sp) / triples);
+				}
+			}
+			JoinRelation relation = new JoinRelation(card);
+			relation.addVar(star.get(0).getSubjectVar(), stats.getStarSubjects(predicates));
+			for (int i = 0; i < predicates.length; i++) {
+				relation.addVar(star.get(i).getObjectVar(), stats.getPredicateObjects(predicates[i]));
+			}
+			return relation;
+		}
+
 		protected Value getConstantValue(Var var) {
 			if (var != null) {
 				return var.getValue();
@@ -0,0 +1,52 @@
+package com.the_qa_company.qendpoint.store;
+
+import org.eclipse.rdf4j.query.Dataset;
+import org.eclipse.rdf4j.query.QueryEvaluationException;
+import org.eclipse.rdf4j.query.algebra.Join;
+import org.eclipse.rdf4j.query.algebra.evaluation.QueryEvaluationContext;
+import org.eclipse.rdf4j.query.algebra.evaluation.QueryEvaluationStep;
+import org.eclipse.rdf4j.query.algebra.evaluation.federation.FederatedServiceResolver;
+import org.eclipse.rdf4j.query.algebra.evaluation.impl.EvaluationStatistics;
+import org.eclipse.rdf4j.query.algebra.evaluation.impl.ExtendedEvaluationStrategy;
+
+/**
+ * evaluation strategy of the endpoint store, evaluate the joins of triple
+ * patterns over the HDT ids if enabled
+ *
+ * @see IdJoinEvaluationStep
+ */
+public class EndpointStoreEvaluationStrategy extends ExtendedEvaluationStrategy {
+	private final EndpointTripleSource tripleSource;
+	private final Dataset dataset;
+	private final boolean idJoin;
+
+	/**
+	 * create the strategy
+	 *
+	 * @param tripleSource                triple source
+	 * @param dataset                     dataset of the query
+	 * @param serviceResolver             federated service resolver
+	 * @param iterationCacheSyncThreshold iteration cache sync threshold
+	 * @param evaluationStatistics        evaluation statistics
+	 * @param idJoin                      evaluate the joins over the HDT ids
+	 */
+	public EndpointStoreEvaluationStrategy(EndpointTripleSource tripleSource, Dataset dataset,
+			FederatedServiceResolver serviceResolver, long iterationCacheSyncThreshold,
+			EvaluationStatistics evaluationStatistics, boolean idJoin) {
+		super(tripleSource, dataset, serviceResolver, iterationCacheSyncThreshold, evaluationStatistics);
+		this.tripleSource = tripleSource;
+		this.dataset = dataset;
+		this.idJoin = idJoin;
+	}
+
+	@Override
+	protected QueryEvaluationStep prepare(Join node, QueryEvaluationContext context)
+			throws QueryEvaluationException {
+		QueryEvaluationStep step = super.prepare(node, context);
+		if (!idJoin || dataset != null) {
+			return step;
+		}
+		IdJoinEvaluationStep idStep = IdJoinEvaluationStep.of(node, tripleSource, step);
+		return idStep != null ? idStep : step;
+	}
+}
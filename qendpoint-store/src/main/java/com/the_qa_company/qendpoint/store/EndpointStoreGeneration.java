@@ -0,0 +1,281 @@
+package com.the_qa_company.qendpoint.store;
+
+import com.the_qa_company.qendpoint.core.compact.bitmap.MultiLayerBitmapWrapper;
+import com.the_qa_company.qendpoint.core.enums.TripleComponentOrder;
+import com.the_qa_company.qendpoint.core.hdt.HDT;
+import com.the_qa_company.qendpoint.core.util.io.Closer;
+import com.the_qa_company.qendpoint.model.EndpointStoreValueFactory;
+import com.the_qa_company.qendpoint.utils.BitArrayDisk;
+import com.the_qa_company.qendpoint.utils.DeltaPatternFilter;
+import com.the_qa_company.qendpoint.utils.rdf.HDTValueSerializer;
+import org.eclipse.rdf4j.sail.base.SailStore;
+import org.eclipse.rdf4j.sail.helpers.AbstractNotifyingSail;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * snapshot of the HDT, the delete bitmaps, the delta layers and the delta
+ * stores of an {@link EndpointStore}, a new generation is published by the
+ * end of a merge.
+ * <p>
+ * A generation is reference counted, the store holds a reference while the
+ * generation is the current one and each connection holds a reference while
+ * it is reading it. The resources replaced by the next generation are closed
+ * when the last reference is released.
+ */
+public class EndpointStoreGeneration implements Closeable {
+	private static final Logger logger = LoggerFactory.getLogger(EndpointStoreGeneration.class);
+	private final EndpointStore endpoint;
+	private final long id;
+	private final HDT hdt;
+	private final HDTProps hdtProps;
+	private final HDTConverter hdtConverter;
+	private final EndpointStoreValueFactory valueFactory;
+	// null if disabled
+	private final HDTValueSerializer valueSerializer;
+	// null if disabled
+	private final QueryPlanCache queryPlanCache;
+	// null if disabled
+	private final QueryResultCache queryResultCache;
+	private final MultiLayerBitmapWrapper.MultiLayerModBitmapWrapper[] deleteBitMaps;
+	private final DeleteBitmapVersions deleteVersions;
+	private final BitArrayDisk bitX;
+	private final BitArrayDisk bitY;
+	private final BitArrayDisk bitZ;
+	// null if disabled
+	private final DeltaPatternFilter deltaPatternFilter;
+	private final List<EndpointStoreLayers.Layer> layers;
+	private final AbstractNotifyingSail nativeStoreA;
+	private final AbstractNotifyingSail nativeStoreB;
+	// the store holds the first reference
+	private final AtomicInteger references = new AtomicInteger(1);
+	// resources replaced by the next generation, guarded by this
+	private List<Closeable> retired = List.of();
+	// state of the store when the generation was replaced, written before
+	// replaced
+	private boolean replacedSwitchStore;
+	private long replacedDeletedTriplesCount;
+	private volatile boolean replaced;
+
+	EndpointStoreGeneration(EndpointStore endpoint, long id) {
+		this.endpoint = endpoint;
+		this.id = id;
+		this.hdt = endpoint.getHdt();
+		this.hdtProps = endpoint.getHdtProps();
+		this.hdtConverter = endpoint.getHdtConverter();
+		this.valueFactory = endpoint.getValueFactory();
+		this.valueSerializer = endpoint.getValueSerializer();
+		this.queryPlanCache = endpoint.getQueryPlanCache();
+		this.queryResultCache = endpoint.getQueryResultCache();
+		this.deleteBitMaps = endpoint.getDeleteBitMaps().clone();
+		this.deleteVersions = endpoint.getDeleteVersions();
+		this.bitX = endpoint.getBitX();
+		this.bitY = endpoint.getBitY();
+		this.bitZ = endpoint.getBitZ();
+		this.deltaPatternFilter = endpoint.getDeltaPatternFilter();
+		this.layers = endpoint.getLayers().getLayers();
+		this.nativeStoreA = endpoint.nativeStoreA;
+		this.nativeStoreB = endpoint.nativeStoreB;
+	}
+
+	/**
+	 * add a reference to this generation
+	 *
+	 * @return false if the generation was already released by all its
+	 *         references
+	 */
+	boolean retain() {
+		while (true) {
+			int count = references.get();
+			if (count == 0) {
+				return false;
+			}
+			if (references.compareAndSet(count, count + 1)) {
+				return true;
+			}
+		}
+	}
+
+	/**
+	 * set the resources to close after the last reference of this generation
+	 *
+	 * @param resources the resources
+	 */
+	synchronized void retire(List<Closeable> resources) {
+		this.retired = resources;
+	}
+
+	/**
+	 * mark this generation as replaced, the state of the store is frozen for
+	 * the readers of this generation
+	 */
+	void markReplaced() {
+		replacedSwitchStore = endpoint.switchStore;
+		replacedDeletedTriplesCount = endpoint.getDeletedTriplesCount();
+		replaced = true;
+	}
+
+	/**
+	 * release a reference of this generation, the replaced resources are
+	 * closed after the last one
+	 */
+	@Override
+	public void close() {
+		int count = references.decrementAndGet();
+		if (count > 0) {
+			return;
+		}
+		if (count < 0) {
+			throw new IllegalStateException("generation " + id + " already released");
+		}
+		List<Closeable> resources;
+		synchronized (this) {
+			resources = retired;
+			retired = List.of();
+		}
+		if (resources.isEmpty()) {
+			return;
+		}
+		logger.debug("Closing the resources of the generation {}", id);
+		try {
+			Closer.closeAll(resources);
+		} catch (IOException | RuntimeException e) {
+			logger.warn("Can't close the resources of the generation {}", id, e);
+		}
+	}
+
+	/**
+	 * @return the id of the generation
+	 */
+	public long getId() {
+		return id;
+	}
+
+	/**
+	 * @return if a newer generation was published
+	 */
+	public boolean isReplaced() {
+		return replaced;
+	}
+
+	/**
+	 * @return if both delta stores should be read
+	 */
+	public boolean isMergeTriggered() {
+		// the delta of a replaced generation is still split in 2 stores
+		return replaced || endpoint.isMergeTriggered;
+	}
+
+	/**
+	 * @return if the changing store is the store B
+	 */
+	public boolean isSwitchStore() {
+		return replaced ? replacedSwitchStore : endpoint.switchStore;
+	}
+
+	/**
+	 * @return the number of HDT triples marked as deleted
+	 */
+	public long getDeletedTriplesCount() {
+		return replaced ? replacedDeletedTriplesCount : endpoint.getDeletedTriplesCount();
+	}
+
+	public HDT getHdt() {
+		return hdt;
+	}
+
+	public HDTProps getHdtProps() {
+		return hdtProps;
+	}
+
+	public HDTConverter getHdtConverter() {
+		return hdtConverter;
+	}
+
+	public EndpointStoreValueFactory getValueFactory() {
+		return valueFactory;
+	}
+
+	/**
+	 * @return the serializer of the HDT values, null if disabled
+	 */
+	public HDTValueSerializer getValueSerializer() {
+		return valueSerializer;
+	}
+
+	/**
+	 * @return the cache of the optimized query plans, null if disabled
+	 */
+	public QueryPlanCache getQueryPlanCache() {
+		return queryPlanCache;
+	}
+
+	/**
+	 * @return the cache of the query results, null if disabled
+	 */
+	public QueryResultCache getQueryResultCache() {
+		return queryResultCache;
+	}
+
+	public MultiLayerBitmapWrapper.MultiLayerModBitmapWrapper getDeleteBitMap(TripleComponentOrder order) {
+		return deleteBitMaps[order.ordinal()];
+	}
+
+	/**
+	 * @return the versions of the delete bitmaps
+	 */
+	public DeleteBitmapVersions getDeleteVersions() {
+		return deleteVersions;
+	}
+
+	/**
+	 * @return the delta HDT layers of this generation
+	 */
+	public List<EndpointStoreLayers.Layer> getLayers() {
+		return layers;
+	}
+
+	public AbstractNotifyingSail getNativeStoreA() {
+		return nativeStoreA;
+	}
+
+	public AbstractNotifyingSail getNativeStoreB() {
+		return nativeStoreB;
+	}
+
+	/**
+	 * @return the sail store of the changing store
+	 */
+	SailStore getChangingSailStore() {
+		return EndpointStore.getSailStore(isSwitchStore() ? nativeStoreB : nativeStoreA);
+	}
+
+	public BitArrayDisk getBitX() {
+		return bitX;
+	}
+
+	public BitArrayDisk getBitY() {
+		return bitY;
+	}
+
+	public BitArrayDisk getBitZ() {
+		return bitZ;
+	}
+
+	/**
+	 * test the delta pattern filter, if enabled
+	 *
+	 * @param subject   subject id, -1 or 0 for a variable
+	 * @param predicate predicate id, -1 or 0 for a variable
+	 * @param object    object id, -1 or 0 for a variable
+	 * @return false if the pattern can't have results in the delta stores
+	 */
+	public boolean deltaPatternMightContain(long subject, long predicate, long object) {
+		return deltaPatternFilter == null || deltaPatternFilter.mightContain(subject, predicate, object);
+	}
+}
@@ -0,0 +1,699 @@
+package com.the_qa_company.qendpoint.store;
+
+import com.the_qa_company.qendpoint.core.compact.bitmap.MultiLayerBitmapWrapper;
+import com.the_qa_company.qendpoint.core.dictionary.Dictionary;
+import com.the_qa_company.qendpoint.core.enums.TripleComponentRole;
+import com.the_qa_company.qendpoint.core.hdt.HDT;
+import com.the_qa_company.qendpoint.core.hdt.HDTManager;
+import com.the_qa_company.qendpoint.core.options.HDTOptions;
+import com.the_qa_company.qendpoint.core.options.HDTOptionsKeys;
+import com.the_qa_company.qendpoint.core.triples.IteratorTripleID;
+import com.the_qa_company.qendpoint.core.triples.TripleID;
+import com.the_qa_company.qendpoint.core.util.io.Closer;
+import com.the_qa_company.qendpoint.utils.BitArrayDisk;
+import com.the_qa_company.qendpoint.utils.RDFStreamUtils;
+import org.eclipse.rdf4j.common.iteration.CloseableIteration;
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.Resource;
+import org.eclipse.rdf4j.model.Statement;
+import org.eclipse.rdf4j.model.Value;
+import org.eclipse.rdf4j.model.ValueFactory;
+import org.eclipse.rdf4j.model.impl.SimpleValueFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.stream.Collectors;
+
+/**
+ * Delta HDT layers of a tiered endpoint store. With
+ * {@link EndpointStore#OPTION_QENDPOINT_MERGE_TIERED}, a merge writes the
+ * frozen delta into a new small HDT layer queried alongside the base HDT
+ * instead of rewriting the whole base index. The layers are compacted together
+ * by size ratio and folded back into the base HDT when they become too large.
+ * <br>
+ * The layers are immutable, a deleted layer triple is marked in the layer
+ * delete bitmap (SPO positions).
+ */
+public class EndpointStoreLayers implements Closeable {
+	private static final Logger logger = LoggerFactory.getLogger(EndpointStoreLayers.class);
+
+	/**
+	 * A delta HDT layer
+	 */
+	public static class Layer implements Closeable {
+		private final long id;
+		private final HDT hdt;
+		private final MultiLayerBitmapWrapper.MultiLayerModBitmapWrapper deleteBitMap;
+
+		private Layer(long id, HDT hdt, MultiLayerBitmapWrapper.MultiLayerModBitmapWrapper deleteBitMap) {
+			this.id = id;
+			this.hdt = hdt;
+			this.deleteBitMap = deleteBitMap;
+		}
+
+		/**
+		 * @return the layer id
+		 */
+		public long getId() {
+			return id;
+		}
+
+		/**
+		 * @return the layer HDT
+		 */
+		public HDT getHdt() {
+			return hdt;
+		}
+
+		/**
+		 * @return the layer delete bitmap
+		 */
+		public MultiLayerBitmapWrapper.MultiLayerModBitmapWrapper getDeleteBitMap() {
+			return deleteBitMap;
+		}
+
+		/**
+		 * @return the number of triples in the layer HDT, deleted or not
+		 */
+		public long getNumberOfElements() {
+			return hdt.getTriples().getNumberOfElements();
+		}
+
+		/**
+		 * @return the number of deleted triples in this layer
+		 */
+		public long countDeleted() {
+			return deleteBitMap.<BitArrayDisk>getHandle().countOnes();
+		}
+
+		/**
+		 * test if a triple of this layer was deleted
+		 *
+		 * @param tid      the triple
+		 * @param position the SPO position of the triple
+		 * @return true if the triple was deleted
+		 */
+		public boolean isDeleted(TripleID tid, long position) {
+			return deleteBitMap.access(tid.isQuad() ? tid.getGraph() - 1 : 0, position);
+		}
+
+		@Override
+		public void close() throws IOException {
+			Closer.closeAll(hdt, deleteBitMap);
+		}
+	}
+
+	private final EndpointStore endpoint;
+	private final EndpointFiles files;
+	// immutable list, replaced when the layers are modified
+	private volatile List<Layer> layers = List.of();
+
+	public EndpointStoreLayers(EndpointStore endpoint) {
+		this.endpoint = endpoint;
+		this.files = endpoint.getEndpointFiles();
+	}
+
+	/**
+	 * load the layers previously written by a tiered merge
+	 *
+	 * @throws IOException error while reading the layers
+	 */
+	public void load() throws IOException {
+		// remove the result of an interrupted compaction
+		Files.deleteIfExists(Path.of(files.getHDTCompactLayer()));
+		Path layersFile = Path.of(files.getHDTLayersFile());
+		if (!Files.exists(layersFile)) {
+			return;
+		}
+		List<Layer> loaded = new ArrayList<>();
+		try {
+			for (String line : Files.readAllLines(layersFile)) {
+				if (line.isBlank()) {
+					continue;
+				}
+				Layer layer = openLayer(Long.parseLong(line.trim()));
+				if (layer != null) {
+					loaded.add(layer);
+				}
+			}
+		} catch (Throwable t) {
+			try {
+				Closer.closeAll(loaded);
+			} catch (Throwable t2) {
+				t.addSuppressed(t2);
+			}
+			throw t;
+		}
+		layers = Collections.unmodifiableList(loaded);
+		logger.info("Loaded {} delta layer(s) with {} triple(s)", loaded.size(), getNumberOfElements());
+	}
+
+	/**
+	 * open a layer
+	 *
+	 * @param id the layer id
+	 * @return the layer, null if the layer is empty
+	 * @throws IOException can't open the layer
+	 */
+	private Layer openLayer(long id) throws IOException {
+		// the layers are small, we only need the default indexes, the delete
+		// bitmap is using the SPO positions
+		HDTOptions spec = endpoint.getHDTSpec().pushTop();
+		spec.set(HDTOptionsKeys.BITMAPTRIPLES_INDEX_OTHERS, "");
+		HDT hdt = HDTManager.mapIndexedHDT(files.getHDTLayer(id), spec, null);
+		try {
+			long triples = hdt.getTriples().getNumberOfElements();
+			if (triples == 0) {
+				// nothing to query
+				hdt.close();
+				return null;
+			}
+			long graphs = hdt.getDictionary().supportGraphs() ? hdt.getDictionary().getNgraphs() : 1;
+			MultiLayerBitmapWrapper.MultiLayerModBitmapWrapper deleteBitMap = MultiLayerBitmapWrapper
+					.of(new BitArrayDisk(triples * graphs, new File(files.getLayerDeleteArr(id))), graphs);
+			return new Layer(id, hdt, deleteBitMap);
+		} catch (Throwable t) {
+			try {
+				hdt.close();
+			} catch (Throwable t2) {
+				t.addSuppressed(t2);
+			}
+			throw t;
+		}
+	}
+
+	private void save(List<Layer> newLayers) throws IOException {
+		Path layersFile = Path.of(files.getHDTLayersFile());
+		Path tmp = layersFile.resolveSibling(layersFile.getFileName() + ".tmp");
+		Files.writeString(tmp,
+				newLayers.stream().map(l -> String.valueOf(l.getId())).collect(Collectors.joining("\n")));
+		Files.move(tmp, layersFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		layers = Collections.unmodifiableList(newLayers);
+	}
+
+	/**
+	 * @return the layers, from the oldest to the newest
+	 */
+	public List<Layer> getLayers() {
+		return layers;
+	}
+
+	/**
+	 * @return if the store doesn't have any layer
+	 */
+	public boolean isEmpty() {
+		return layers.isEmpty();
+	}
+
+	/**
+	 * @return the number of triples in the layers, deleted or not
+	 */
+	public long getNumberOfElements() {
+		long count = 0;
+		for (Layer layer : layers) {
+			count += layer.getNumberOfElements();
+		}
+		return count;
+	}
+
+	/**
+	 * @return the number of non-deleted triples in the layers
+	 */
+	public long size() {
+		return size(layers);
+	}
+
+	/**
+	 * @param layers the layers
+	 * @return the number of non-deleted triples in the layers
+	 */
+	public static long size(List<Layer> layers) {
+		long count = 0;
+		for (Layer layer : layers) {
+			count += layer.getNumberOfElements() - layer.countDeleted();
+		}
+		return count;
+	}
+
+	/**
+	 * @param id the layer id
+	 * @return if the layer is registered
+	 */
+	public boolean containsLayer(long id) {
+		for (Layer layer : layers) {
+			if (layer.getId() == id) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @return an id not used by a registered layer
+	 */
+	public long getNextLayerId() {
+		long max = -1;
+		for (Layer layer : layers) {
+			max = Math.max(max, layer.getId());
+		}
+		return max + 1;
+	}
+
+	/**
+	 * register a new layer, the layer HDT should be at
+	 * {@link EndpointFiles#getHDTLayer(long)}, must be called with the
+	 * connections locked.
+	 *
+	 * @param id the layer id
+	 * @throws IOException can't open the layer
+	 */
+	public void addLayer(long id) throws IOException {
+		Files.deleteIfExists(Path.of(files.getLayerDeleteArr(id)));
+		Layer layer = openLayer(id);
+		if (layer == null) {
+			deleteLayerFiles(id);
+			return;
+		}
+		List<Layer> newLayers = new ArrayList<>(layers);
+		newLayers.add(layer);
+		save(newLayers);
+	}
+
+	/**
+	 * replace the newest layers by a compacted layer, must be called with the
+	 * updates locked. The layers are compacted with the copies of their
+	 * delete bitmaps created by {@link #copyDeleteBitMaps(List)}, the deletes
+	 * made in the replaced layers after the copy are applied to the compacted
+	 * layer.
+	 *
+	 * @param count the number of newest layers to replace
+	 * @param id    the compacted layer id, the layer HDT should be at
+	 *              {@link EndpointFiles#getHDTLayer(long)}
+	 * @throws IOException can't open the layer
+	 */
+	public void replaceNewestLayers(int count, long id) throws IOException {
+		List<Layer> current = layers;
+		List<Layer> newLayers = new ArrayList<>(current.subList(0, current.size() - count));
+		List<Layer> removed = current.subList(current.size() - count, current.size());
+		Files.deleteIfExists(Path.of(files.getLayerDeleteArr(id)));
+		Layer layer = openLayer(id);
+		if (layer != null) {
+			for (Layer old : removed) {
+				transferDeletesSinceCopy(old, layer);
+			}
+			newLayers.add(layer);
+		}
+		save(newLayers);
+		for (Layer old : removed) {
+			// still read by the current generation, the files are deleted now
+			// to never reuse their ids
+			endpoint.retire(old);
+			deleteLayerFiles(old.getId());
+		}
+		if (layer == null) {
+			deleteLayerFiles(id);
+		}
+	}
+
+	/**
+	 * mark in a layer the triples deleted in another layer after the copy of
+	 * its delete bitmap
+	 *
+	 * @param old    the layer with the deletes
+	 * @param target the layer to mark
+	 * @throws IOException can't read the delete bitmap copy
+	 */
+	private void transferDeletesSinceCopy(Layer old, Layer target) throws IOException {
+		long graphs = endpoint.getGraphsCount(old.getHdt());
+		Dictionary oldDict = old.getHdt().getDictionary();
+		Dictionary targetDict = target.getHdt().getDictionary();
+		BitArrayDisk copyBits = new BitArrayDisk(old.getNumberOfElements() * graphs,
+				new File(files.getLayerDeleteCopyArr(old.getId())));
+		try (MultiLayerBitmapWrapper copy = MultiLayerBitmapWrapper.of(copyBits, graphs)) {
+			IteratorTripleID it = old.getHdt().getTriples().search(new TripleID());
+			while (it.hasNext()) {
+				TripleID tid = it.next();
+				long position = it.getLastTriplePosition();
+				long graph = tid.isQuad() ? tid.getGraph() - 1 : 0;
+				if (!old.isDeleted(tid, position) || copy.access(graph, position)) {
+					continue;
+				}
+				long s = targetDict.stringToId(oldDict.idToString(tid.getSubject(), TripleComponentRole.SUBJECT),
+						TripleComponentRole.SUBJECT);
+				long p = targetDict.stringToId(oldDict.idToString(tid.getPredicate(), TripleComponentRole.PREDICATE),
+						TripleComponentRole.PREDICATE);
+				long o = targetDict.stringToId(oldDict.idToString(tid.getObject(), TripleComponentRole.OBJECT),
+						TripleComponentRole.OBJECT);
+				TripleID pattern;
+				if (tid.isQuad()) {
+					long g = targetDict.stringToId(oldDict.idToString(tid.getGraph(), TripleComponentRole.GRAPH),
+							TripleComponentRole.GRAPH);
+					pattern = new TripleID(s, p, o, g);
+				} else {
+					pattern = new TripleID(s, p, o);
+				}
+				if (pattern.getSubject() <= 0 || pattern.getPredicate() <= 0 || pattern.getObject() <= 0
+						|| (pattern.isQuad() && pattern.getGraph() <= 0)) {
+					// not in the compacted layer, nothing to delete
+					continue;
+				}
+				IteratorTripleID targetIt = target.getHdt().getTriples().search(pattern);
+				if (targetIt.hasNext()) {
+					TripleID targetTid = targetIt.next();
+					target.getDeleteBitMap().set(targetTid.isQuad() ? targetTid.getGraph() - 1 : 0,
+							targetIt.getLastTriplePosition(), true);
+				}
+			}
+		}
+		target.getDeleteBitMap().<BitArrayDisk>getHandle().force(true);
+	}
+
+	/**
+	 * remove all the layers, used after their fold into the base HDT, must be
+	 * called with the updates locked.
+	 *
+	 * @throws IOException can't delete the layers
+	 */
+	public void clear() throws IOException {
+		List<Layer> removed = layers;
+		if (removed.isEmpty()) {
+			return;
+		}
+		save(new ArrayList<>());
+		for (Layer old : removed) {
+			endpoint.retire(old);
+			deleteLayerFiles(old.getId());
+		}
+	}
+
+	/**
+	 * delete the files of a non registered layer
+	 *
+	 * @param id the layer id
+	 * @throws IOException can't delete the files
+	 */
+	public void deleteLayerFiles(long id) throws IOException {
+		Files.deleteIfExists(Path.of(files.getHDTLayer(id)));
+		for (String index : files.getHDTLayerNames(id)) {
+			Files.deleteIfExists(Path.of(index));
+		}
+		Files.deleteIfExists(Path.of(files.getLayerDeleteArr(id)));
+		Files.deleteIfExists(Path.of(files.getLayerDeleteCopyArr(id)));
+	}
+
+	/**
+	 * copy the delete bitmaps of the layers to use them in a merge
+	 *
+	 * @throws IOException copy error
+	 */
+	public void copyDeleteBitMaps() throws IOException {
+		copyDeleteBitMaps(layers);
+	}
+
+	/**
+	 * copy the delete bitmaps of some layers to use them in a merge or a
+	 * compaction, must be called without active updates.
+	 *
+	 * @param toCopy the layers
+	 * @throws IOException copy error
+	 */
+	public void copyDeleteBitMaps(List<Layer> toCopy) throws IOException {
+		for (Layer layer : toCopy) {
+			layer.getDeleteBitMap().<BitArrayDisk>getHandle().force(true);
+			Files.copy(Path.of(files.getLayerDeleteArr(layer.getId())),
+					Path.of(files.getLayerDeleteCopyArr(layer.getId())), StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	/**
+	 * flush the layer delete bitmaps
+	 *
+	 * @throws IOException flush error
+	 */
+	public void flushWrites() throws IOException {
+		for (Layer layer : layers) {
+			layer.getDeleteBitMap().<BitArrayDisk>getHandle().force(true);
+		}
+	}
+
+	/**
+	 * convert a value to a layer id
+	 *
+	 * @param dict  layer dictionary
+	 * @param value value, null for a wildcard
+	 * @param role  role of the value
+	 * @return id, 0 for wildcard, -1 if the value isn't in the layer
+	 */
+	private static long toLayerId(Dictionary dict, Value value, TripleComponentRole role) {
+		if (value == null) {
+			return 0;
+		}
+		return dict.stringToId(value.toString(), role);
+	}
+
+	private static long contextToLayerId(Dictionary dict, Resource context) {
+		if (context == null) {
+			// default graph
+			long id = dict.stringToId("", TripleComponentRole.GRAPH);
+			return id <= 0 ? -1 : id;
+		}
+		return dict.stringToId(context.toString(), TripleComponentRole.GRAPH);
+	}
+
+	/**
+	 * create the layer search patterns for a query
+	 *
+	 * @return the patterns, empty if the layer can't match
+	 */
+	private static List<TripleID> createPatterns(Dictionary dict, Resource subj, IRI pred, Value obj,
+			Resource... contexts) {
+		long s = toLayerId(dict, subj, TripleComponentRole.SUBJECT);
+		long p = s == -1 ? -1 : toLayerId(dict, pred, TripleComponentRole.PREDICATE);
+		long o = p == -1 ? -1 : toLayerId(dict, obj, TripleComponentRole.OBJECT);
+		if (s == -1 || p == -1 || o == -1) {
+			return List.of();
+		}
+		if (!dict.supportGraphs() || contexts.length == 0) {
+			return List.of(new TripleID(s, p, o));
+		}
+		List<TripleID> patterns = new ArrayList<>(contexts.length);
+		for (Resource context : contexts) {
+			long g = contextToLayerId(dict, context);
+			if (g != -1) {
+				patterns.add(new TripleID(s, p, o, g));
+			}
+		}
+		return patterns;
+	}
+
+	/**
+	 * search the non-deleted statements of the layers
+	 *
+	 * @param subj     subject, null for wildcard
+	 * @param pred     predicate, null for wildcard
+	 * @param obj      object, null for wildcard
+	 * @param contexts contexts
+	 * @return iteration
+	 */
+	public CloseableIteration<Statement> getStatements(Resource subj, IRI pred, Value obj, Resource... contexts) {
+		List<Layer> current = layers;
+		if (current.isEmpty()) {
+			return EndpointTripleSource.EMPTY_ITERATION;
+		}
+		return new LayersIteration(current, endpoint.getHdtConverter(), endpoint.getHdt(), subj, pred, obj,
+				contexts);
+	}
+
+	/**
+	 * search the non-deleted statements of the layers of a generation
+	 *
+	 * @param generation the generation
+	 * @param subj       subject, null for wildcard
+	 * @param pred       predicate, null for wildcard
+	 * @param obj        object, null for wildcard
+	 * @param contexts   contexts
+	 * @return iteration
+	 */
+	public static CloseableIteration<Statement> getStatements(EndpointStoreGeneration generation, Resource subj,
+			IRI pred, Value obj, Resource... contexts) {
+		List<Layer> current = generation.getLayers();
+		if (current.isEmpty()) {
+			return EndpointTripleSource.EMPTY_ITERATION;
+		}
+		return new LayersIteration(current, generation.getHdtConverter(), generation.getHdt(), subj, pred, obj,
+				contexts);
+	}
+
+	/**
+	 * test if a statement is in the layers and not deleted
+	 *
+	 * @param subj     subject
+	 * @param pred     predicate
+	 * @param obj      object
+	 * @param contexts contexts
+	 * @return true if the statement is in the layers
+	 */
+	public boolean contains(Resource subj, IRI pred, Value obj, Resource... contexts) {
+		if (layers.isEmpty()) {
+			return false;
+		}
+		try (CloseableIteration<Statement> it = getStatements(subj, pred, obj, contexts)) {
+			return it.hasNext();
+		}
+	}
+
+	/**
+	 * mark the statements matching a pattern as deleted in the layers
+	 *
+	 * @param subj     subject, null for wildcard
+	 * @param pred     predicate, null for wildcard
+	 * @param obj      object, null for wildcard
+	 * @param contexts contexts
+	 * @return the number of statements deleted
+	 */
+	public long markDeleted(Resource subj, IRI pred, Value obj, Resource... contexts) {
+		long deleted = 0;
+		for (Layer layer : layers) {
+			for (TripleID pattern : createPatterns(layer.getHdt().getDictionary(), subj, pred, obj, contexts)) {
+				IteratorTripleID it = layer.getHdt().getTriples().search(pattern);
+				while (it.hasNext()) {
+					TripleID tid = it.next();
+					long position = it.getLastTriplePosition();
+					if (!layer.isDeleted(tid, position)) {
+						layer.getDeleteBitMap().set(tid.isQuad() ? tid.getGraph() - 1 : 0, position, true);
+						deleted++;
+					}
+				}
+			}
+		}
+		return deleted;
+	}
+
+	@Override
+	public void close() throws IOException {
+		List<Layer> old = layers;
+		layers = List.of();
+		Closer.closeAll(old);
+	}
+
+	/**
+	 * iteration over the non-deleted statements of the layers, the components
+	 * in the base HDT are converted to HDT values.
+	 */
+	private static class LayersIteration implements CloseableIteration<Statement> {
+		private final ValueFactory vf = SimpleValueFactory.getInstance();
+		private final List<Layer> layers;
+		private final Resource subj;
+		private final IRI pred;
+		private final Value obj;
+		private final Resource[] contexts;
+		private final HDTConverter converter;
+		// dictionary of the base HDT of the converter
+		private final Dictionary baseDict;
+		private int layerIndex;
+		private Layer layer;
+		private List<TripleID> patterns = List.of();
+		private int patternIndex;
+		private IteratorTripleID iterator;
+		private Statement next;
+
+		private LayersIteration(List<Layer> layers, HDTConverter converter, HDT baseHdt, Resource subj, IRI pred,
+				Value obj, Resource[] contexts) {
+			this.layers = layers;
+			this.converter = converter;
+			this.baseDict = baseHdt.getDictionary();
+			this.subj = subj;
+			this.pred = pred;
+			this.obj = obj;
+			this.contexts = contexts;
+		}
+
+		private Value toValue(CharSequence seq, TripleComponentRole role) {
+			String str = seq.toString();
+			long id = baseDict.stringToId(str, role);
+			if (id > 0) {
+				return switch (role) {
+				case SUBJECT -> converter.idToSubjectHDTResource(id);
+				case PREDICATE -> converter.idToPredicateHDTResource(id);
+				case OBJECT -> converter.idToObjectHDTResource(id);
+				case GRAPH -> converter.idToGraphHDTResource(id);
+				};
+			}
+			return RDFStreamUtils.convertCharSequence(vf, str);
+		}
+
+		private Statement convert(Layer layer, TripleID tid) {
+			Dictionary dict = layer.getHdt().getDictionary();
+			Resource s = (Resource) toValue(dict.idToString(tid.getSubject(), TripleComponentRole.SUBJECT),
+					TripleComponentRole.SUBJECT);
+			IRI p = (IRI) toValue(dict.idToString(tid.getPredicate(), TripleComponentRole.PREDICATE),
+					TripleComponentRole.PREDICATE);
+			Value o = toValue(dict.idToString(tid.getObject(), TripleComponentRole.OBJECT), TripleComponentRole.OBJECT);
+			if (tid.isQuad()) {
+				Resource g = (Resource) toValue(dict.idToString(tid.getGraph(), TripleComponentRole.GRAPH),
+						TripleComponentRole.GRAPH);
+				return vf.createStatement(s, p, o, g);
+			}
+			return vf.createStatement(s, p, o);
+		}
+
+		@Override
+		public boolean hasNext() {
+			if (next != null) {
+				return true;
+			}
+			while (true) {
+				if (iterator != null) {
+					while (iterator.hasNext()) {
+						TripleID tid = iterator.next();
+						if (!layer.isDeleted(tid, iterator.getLastTriplePosition())) {
+							next = convert(layer, tid);
+							return true;
+						}
+					}
+					iterator = null;
+				}
+				if (patternIndex < patterns.size()) {
+					iterator = layer.getHdt().getTriples().search(patterns.get(patternIndex++));
+					continue;
+				}
+				if (layerIndex >= layers.size()) {
+					return false;
+				}
+				layer = layers.get(layerIndex++);
+				patterns = createPatterns(layer.getHdt().getDictionary(), subj, pred, obj, contexts);
+				patternIndex = 0;
+			}
+		}
+
+		@Override
+		public Statement next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			Statement stm = next;
+			next = null;
+			return stm;
+		}
+
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public void close() {
+			// nothing to close, the layers are closed with the store
+		}
+	}
+}
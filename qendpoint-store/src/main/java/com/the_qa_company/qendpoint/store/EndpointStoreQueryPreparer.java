@@ -20,7 +20,6 @@ import org.eclipse.rdf4j.query.algebra.evaluation.AbstractQueryPreparer;
 import org.eclipse.rdf4j.query.algebra.evaluation.EvaluationStrategy;
 import org.eclipse.rdf4j.query.algebra.evaluation.QueryEvaluationStep;
 import org.eclipse.rdf4j.query.algebra.evaluation.impl.EvaluationStatistics;
-import org.eclipse.rdf4j.query.algebra.evaluation.impl.ExtendedEvaluationStrategy;
 import org.eclipse.rdf4j.query.algebra.evaluation.optimizer.BindingAssignerOptimizer;
 import org.eclipse.rdf4j.query.algebra.evaluation.optimizer.CompareOptimizer;
 import org.eclipse.rdf4j.query.algebra.evaluation.optimizer.ConjunctiveConstraintSplitterOptimizer;
@@ -33,6 +32,7 @@ import org.eclipse.rdf4j.query.algebra.evaluation.optimizer.QueryJoinOptimizer;
 import org.eclipse.rdf4j.query.algebra.evaluation.optimizer.QueryModelNormalizerOptimizer;
 import org.eclipse.rdf4j.query.algebra.evaluation.optimizer.SameTermFilterOptimizer;
 import org.eclipse.rdf4j.query.explanation.Explanation;
+import org.eclipse.rdf4j.query.impl.EmptyBindingSet;
 import org.eclipse.rdf4j.query.impl.IteratingTupleQueryResult;
 import org.eclipse.rdf4j.query.parser.ParsedTupleQuery;
 import org.eclipse.rdf4j.query.parser.impl.AbstractParserQuery;
@@ -50,6 +50,7 @@ public class EndpointStoreQueryPreparer extends AbstractQueryPreparer {
 	private boolean cloneTupleExpression;
 	private boolean trackTime;
 	private final EndpointStoreConnection conn;
+	private final boolean idJoinEnabled;
 
 	public EndpointStoreQueryPreparer(EndpointStore endpoint, EndpointTripleSource tripleSource,
 			EndpointStoreConnection conn) {
@@ -58,6 +59,7 @@ public class EndpointStoreQueryPreparer extends AbstractQueryPreparer {
 		this.endpoint = endpoint;
 		this.conn = conn;
 		cloneTupleExpression = true;
+		idJoinEnabled = endpoint.getHDTSpec().getBoolean(EndpointStore.OPTION_QENDPOINT_ID_JOIN, false);
 
 		evaluationStatistics = new EndpointStoreEvaluationStatistics(new EndpointStoreEvaluationStatisticsHDT(endpoint),
 				endpoint.getCurrentSailStore().getEvaluationStatistics());
@@ -99,16 +101,27 @@ public class EndpointStoreQueryPreparer extends AbstractQueryPreparer {
 	protected CloseableIteration<? extends BindingSet> evaluate(TupleExpr tupleExpr, Dataset dataset,
 			BindingSet bindings, boolean includeInferred, int maxExecutionTime) throws QueryEvaluationException {
 
-		if (this.cloneTupleExpression) {
-			tupleExpr = tupleExpr.clone();
-		}
-		if (!(tupleExpr instanceof QueryRoot)) {
-			tupleExpr = new QueryRoot(tupleExpr);
+		// the caches of the HDT read by the connection
+		EndpointStoreGeneration generation = conn.getGeneration();
+		QueryResultCache resultCache = generation.getQueryResultCache();
+		QueryResultCache.Key resultKey = null;
+		// the connection changes aren't visible to the other connections
+		if (this.cloneTupleExpression && resultCache != null && !conn.isActive()
+				&& QueryResultCache.isCacheable(tupleExpr)) {
+			resultKey = resultCache.createKey(tupleExpr, dataset, bindings,
+					conn.getConfig(EndpointStore.QUERY_CONFIG_USER_LOCALES));
+			CloseableIteration<BindingSet> cached = resultCache.get(resultKey);
+			if (cached != null) {
+				return cached;
+			}
 		}
-		EvaluationStrategy strategy = new ExtendedEvaluationStrategy(getTripleSource(), dataset,
+
+		// the id joins replace the join nodes, they can't be explained
+		boolean idJoin = idJoinEnabled && !trackResultSize && !trackTime;
+		EvaluationStrategy strategy = new EndpointStoreEvaluationStrategy(getTripleSource(), dataset,
 				new SPARQLServiceWikibaseLabelResolver(tripleSource,
 						conn.getConfig(EndpointStore.QUERY_CONFIG_USER_LOCALES)),
-				0L, evaluationStatistics);
+				0L, evaluationStatistics, idJoin);
 
 		if (this.trackResultSize) {
 			strategy.setTrackResultSize(this.trackResultSize);
@@ -118,9 +131,36 @@ public class EndpointStoreQueryPreparer extends AbstractQueryPreparer {
 			strategy.setTrackTime(this.trackTime);
 		}
 
-		new VariableToIdSubstitution(endpoint).optimize(tupleExpr, dataset, bindings);
+		boolean optimized = !conn.hasConfig(EndpointStore.QUERY_CONFIG_NO_OPTIMIZER);
+		QueryPlanCache planCache = generation.getQueryPlanCache();
+		if (this.cloneTupleExpression && planCache != null && QueryPlanCache.isCacheable(tupleExpr)) {
+			// the binding values are resolved by the evaluation
+			tupleExpr = planCache.getPlan(tupleExpr, dataset, bindings, optimized,
+					plan -> optimize(plan, dataset, EmptyBindingSet.getInstance(), strategy, optimized));
+		} else {
+			if (this.cloneTupleExpression) {
+				tupleExpr = tupleExpr.clone();
+			}
+			tupleExpr = optimize(tupleExpr, dataset, bindings, strategy, optimized);
+		}
+
+		QueryEvaluationStep precompile = strategy.precompile(tupleExpr);
+
+		if (resultKey != null) {
+			return resultCache.record(resultKey, precompile.evaluate(bindings));
+		}
+		return precompile.evaluate(bindings);
+	}
+
+	private TupleExpr optimize(TupleExpr tupleExpr, Dataset dataset, BindingSet bindings,
+			EvaluationStrategy strategy, boolean optimized) {
+		if (!(tupleExpr instanceof QueryRoot)) {
+			tupleExpr = new QueryRoot(tupleExpr);
+		}
 
-		if (!conn.hasConfig(EndpointStore.QUERY_CONFIG_NO_OPTIMIZER)) {
+		new VariableToIdSubstitution(conn.getGeneration()).optimize(tupleExpr, dataset, bindings);
+
+		if (optimized) {
 			new BindingAssignerOptimizer().optimize(tupleExpr, dataset, bindings);
 			new ConstantOptimizer(strategy).optimize(tupleExpr, dataset, bindings);
 			new CompareOptimizer().optimize(tupleExpr, dataset, bindings);
@@ -135,10 +175,7 @@ public class EndpointStoreQueryPreparer extends AbstractQueryPreparer {
 		}
 
 		new ServiceClauseOptimizer().optimize(tupleExpr, dataset, bindings);
-
-		QueryEvaluationStep precompile = strategy.precompile(tupleExpr);
-
-		return precompile.evaluate(bindings);
+		return tupleExpr;
 	}
 
 	// @todo: this looks wrong, apperently if one wraps around the store
@@ -12,7 +12,7 @@ import org.eclipse.rdf4j.model.Statement;
 import org.eclipse.rdf4j.model.Value;
 import org.eclipse.rdf4j.query.QueryInterruptedException;
 import com.the_qa_company.qendpoint.core.triples.IteratorTripleID;
-import com.the_qa_company.qendpoint.core.triples.TripleID;
+import com.the_qa_company.qendpoint.core.triples.TripleIDBatch;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -21,13 +21,37 @@ import java.util.concurrent.atomic.AtomicBoolean;
 
 public class EndpointStoreTripleIterator implements CloseableIteration<Statement>, IndexReportingIterator {
 	private static final Logger logger = LoggerFactory.getLogger(EndpointStoreTripleIterator.class);
+	/**
+	 * number of HDT triples read with the first batch, the next batches are
+	 * bigger, a small result or a consumer stopping early doesn't decode too
+	 * many triples
+	 */
+	private static final int MIN_BATCH_SIZE = 8;
+	/**
+	 * maximum number of HDT triples read at once
+	 */
+	private static final int MAX_BATCH_SIZE = 256;
 
 	private final AtomicBoolean closed = new AtomicBoolean();
 	private final EndpointStore endpoint;
 	private final EndpointStoreConnection connection;
+	// generation read by the iterator, pinned until it is closed
+	private final EndpointStoreGeneration generation;
 	private final EndpointTripleSource endpointTripleSource;
 	private final IteratorTripleID iterator;
 	private final CloseableIteration<? extends Statement> repositoryResult;
+	private final DeleteBitmapVersions.Snapshot snapshot;
+	private final TripleIDBatch batch;
+	// the positions are increasing, the deletes can be found with the bitmap
+	// words
+	private final boolean sequential;
+	private int batchIndex;
+	// range of positions without delete
+	private long cleanStart;
+	private long cleanEnd;
+	// deletes of the connection when the range was computed, its own deletes
+	// are visible in the snapshot
+	private long cleanDeletes;
 	private Statement next;
 
 	public EndpointStoreTripleIterator(EndpointStoreConnection connection, EndpointTripleSource endpointTripleSource,
@@ -37,6 +61,13 @@ public class EndpointStoreTripleIterator implements CloseableIteration<Statement
 		this.endpointTripleSource = Objects.requireNonNull(endpointTripleSource, "endpointTripleSource can't be null!");
 		this.iterator = Objects.requireNonNull(iter, "iter can't be null!");
 		this.repositoryResult = Objects.requireNonNull(repositoryResult, "repositoryResult can't be null!");
+		// pinned until the iterator is closed, even after the transaction end
+		this.generation = connection.acquireGeneration();
+		this.snapshot = connection.acquireReadSnapshot();
+		// the positions are only used to find the deletes
+		this.batch = new TripleIDBatch(MAX_BATCH_SIZE, !endpoint.isDeleteDisabled());
+		this.batch.setLimit(MIN_BATCH_SIZE);
+		this.sequential = iter.getOrder() != TripleComponentOrder.Unknown;
 	}
 
 	@Override
@@ -50,41 +81,47 @@ public class EndpointStoreTripleIterator implements CloseableIteration<Statement
 		if (connection.isTimeout()) {
 			throw new EndpointTimeoutException();
 		}
-		boolean supportGraphs = endpoint.getHdt().getDictionary().supportGraphs();
+		boolean supportGraphs = generation.getHdt().getDictionary().supportGraphs();
 		// iterate over the result of hdt
-		while (iterator.hasNext()) {
-			TripleID tripleID = iterator.next();
-			TripleComponentOrder order = iterator.isLastTriplePositionBoundToOrder() ? iterator.getOrder()
-					: TripleComponentOrder.SPO;
-			MultiLayerBitmapWrapper.MultiLayerModBitmapWrapper dbm = endpoint.getDeleteBitMap(order);
-			if (endpoint.isDeleteDisabled() || dbm == null || dbm.<BitArrayDisk>getHandle().getMaxNumBits() == 0
-					|| !dbm.access(tripleID.isQuad() ? tripleID.getGraph() - 1 : 0, iterator.getLastTriplePosition())) {
-				Resource subject = endpoint.getHdtConverter().idToSubjectHDTResource(tripleID.getSubject());
-				IRI predicate = endpoint.getHdtConverter().idToPredicateHDTResource(tripleID.getPredicate());
-				Value object = endpoint.getHdtConverter().idToObjectHDTResource(tripleID.getObject());
-				if (logger.isTraceEnabled()) {
-					logger.trace("From HDT   {} {} {} ", subject, predicate, object);
+		while (true) {
+			if (batchIndex == batch.size()) {
+				if (batch.size() != 0 && batch.isFull()) {
+					// the previous batch was consumed, read more triples
+					batch.setLimit(Math.min(MAX_BATCH_SIZE, batch.capacity() * 2));
 				}
-				if (supportGraphs) {
-					Resource ctx = tripleID.isQuad()
-							? endpoint.getHdtConverter().idToGraphHDTResource(tripleID.getGraph())
-							: null;
-					next = endpointTripleSource.getValueFactory().createStatement(subject, predicate, object, ctx);
-				} else {
-					next = endpointTripleSource.getValueFactory().createStatement(subject, predicate, object);
+				if (iterator.nextBatch(batch) == 0) {
+					break;
 				}
-				return true;
+				batchIndex = 0;
 			}
+			int i = batchIndex++;
+			long graph = batch.getGraphs()[i];
+			if (isDeleted(graph == 0 ? 0 : graph - 1, batch.getPositions()[i])) {
+				continue;
+			}
+			Resource subject = generation.getHdtConverter().idToSubjectHDTResource(batch.getSubjects()[i]);
+			IRI predicate = generation.getHdtConverter().idToPredicateHDTResource(batch.getPredicates()[i]);
+			Value object = generation.getHdtConverter().idToObjectHDTResource(batch.getObjects()[i]);
+			if (logger.isTraceEnabled()) {
+				logger.trace("From HDT   {} {} {} ", subject, predicate, object);
+			}
+			if (supportGraphs) {
+				Resource ctx = graph != 0 ? generation.getHdtConverter().idToGraphHDTResource(graph) : null;
+				next = generation.getValueFactory().createStatement(subject, predicate, object, ctx);
+			} else {
+				next = generation.getValueFactory().createStatement(subject, predicate, object);
+			}
+			return true;
 		}
 		// iterate over the result of rdf4j
 		if (this.repositoryResult.hasNext()) {
 			Statement stm = repositoryResult.next();
-			Resource newSubj = endpoint.getHdtConverter().rdf4jToHdtIDsubject(stm.getSubject());
-			IRI newPred = endpoint.getHdtConverter().rdf4jToHdtIDpredicate(stm.getPredicate());
-			Value newObject = endpoint.getHdtConverter().rdf4jToHdtIDobject(stm.getObject());
-			Resource newContext = endpoint.getHdtConverter().rdf4jToHdtIDcontext(stm.getContext());
+			Resource newSubj = generation.getHdtConverter().rdf4jToHdtIDsubject(stm.getSubject());
+			IRI newPred = generation.getHdtConverter().rdf4jToHdtIDpredicate(stm.getPredicate());
+			Value newObject = generation.getHdtConverter().rdf4jToHdtIDobject(stm.getObject());
+			Resource newContext = generation.getHdtConverter().rdf4jToHdtIDcontext(stm.getContext());
 
-			next = endpointTripleSource.getValueFactory().createStatement(newSubj, newPred, newObject, newContext);
+			next = generation.getValueFactory().createStatement(newSubj, newPred, newObject, newContext);
 			if (logger.isTraceEnabled()) {
 				logger.trace("From RDF4j {} {} {}", next.getSubject(), next.getPredicate(), next.getObject());
 			}
@@ -93,6 +130,34 @@ public class EndpointStoreTripleIterator implements CloseableIteration<Statement
 		return false;
 	}
 
+	private boolean isDeleted(long layer, long position) {
+		if (endpoint.isDeleteDisabled()) {
+			return false;
+		}
+		if (position >= cleanStart && position < cleanEnd && cleanDeletes == connection.getHDTDeleteCount()) {
+			// no delete in this range of the bitmap
+			return false;
+		}
+		TripleComponentOrder order = iterator.isLastTriplePositionBoundToOrder() ? iterator.getOrder()
+				: TripleComponentOrder.SPO;
+		MultiLayerBitmapWrapper.MultiLayerModBitmapWrapper dbm = generation.getDeleteBitMap(order);
+		if (dbm == null || dbm.<BitArrayDisk>getHandle().getMaxNumBits() == 0) {
+			return false;
+		}
+		if (sequential) {
+			// skip the positions before the next delete without reading them,
+			// a delete of a newer version is checked with the snapshot
+			cleanDeletes = connection.getHDTDeleteCount();
+			long nextDelete = dbm.selectNextPosition1(position);
+			cleanStart = position;
+			cleanEnd = nextDelete == -1 ? Long.MAX_VALUE : nextDelete;
+			if (position < cleanEnd) {
+				return false;
+			}
+		}
+		return generation.getDeleteVersions().isDeleted(snapshot, dbm, order, layer, position);
+	}
+
 	@Override
 	public Statement next() {
 		if (!hasNext()) {
@@ -114,7 +179,15 @@ public class EndpointStoreTripleIterator implements CloseableIteration<Statement
 			try {
 				closed.set(true);
 			} finally {
-				repositoryResult.close();
+				try {
+					repositoryResult.close();
+				} finally {
+					try {
+						snapshot.close();
+					} finally {
+						generation.close();
+					}
+				}
 			}
 		}
 	}
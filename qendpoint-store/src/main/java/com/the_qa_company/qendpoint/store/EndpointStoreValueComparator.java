@@ -0,0 +1,167 @@
+package com.the_qa_company.qendpoint.store;
+
+import com.the_qa_company.qendpoint.core.dictionary.Dictionary;
+import com.the_qa_company.qendpoint.core.enums.TripleComponentRole;
+import com.the_qa_company.qendpoint.core.util.LRUCache;
+import com.the_qa_company.qendpoint.model.HDTValue;
+import com.the_qa_company.qendpoint.model.SimpleIRIHDT;
+import org.eclipse.rdf4j.model.BNode;
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.Literal;
+import org.eclipse.rdf4j.model.Resource;
+import org.eclipse.rdf4j.model.Value;
+
+import java.util.Comparator;
+import java.util.Map;
+
+/**
+ * Total order of the values of the endpoint, used to read the statements in
+ * order for the merge joins.
+ * <p>
+ * A term has the same key whatever the role it was read with: a value of the
+ * HDT is keyed by its id in the shared, subject or object section if it is in
+ * one of them, then by its predicate or graph id. The keys are ordered like
+ * the ids of the HDT indexes: the shared section, then the subjects, the
+ * objects, the predicates and the graphs, so the subject and object orders of
+ * the HDT are preserved. The values only stored in the delta are ordered after
+ * them by type and string value, null is the first value.
+ */
+public class EndpointStoreValueComparator implements Comparator<Value> {
+	private static final int SHARED = 0;
+	private static final int SUBJECT = 1;
+	private static final int OBJECT = 2;
+	private static final int PREDICATE = 3;
+	private static final int GRAPH = 4;
+	private static final int DELTA = 5;
+	/**
+	 * number of canonical values of the non subject/object values cached by
+	 * the comparator
+	 */
+	private static final int CACHE_SIZE = 10_000;
+
+	private final EndpointStoreGeneration generation;
+	private final long nshared;
+	// canonical values of the values requiring a dictionary search
+	private final Map<Value, Value> cache = new LRUCache<>(CACHE_SIZE);
+
+	public EndpointStoreValueComparator(EndpointStoreGeneration generation) {
+		this.generation = generation;
+		this.nshared = generation.getHdt().getDictionary().getNshared();
+	}
+
+	private static boolean isSubjectOrObject(Value value) {
+		if (!(value instanceof HDTValue hdtValue) || !hdtValue.isValidHDTId()) {
+			return false;
+		}
+		int position = hdtValue.getHDTPosition();
+		return position != SimpleIRIHDT.PREDICATE_POS && position != SimpleIRIHDT.GRAPH_POS;
+	}
+
+	/**
+	 * convert a value to the value used to order it, a value of the HDT
+	 * subject or object sections if the term is in them, then a value of the
+	 * HDT predicate or graph sections, the value itself otherwise
+	 *
+	 * @param value value
+	 * @return canonical value, equal to the value
+	 */
+	public Value canonical(Value value) {
+		if (value == null || isSubjectOrObject(value)) {
+			return value;
+		}
+		synchronized (cache) {
+			Value canonical = cache.get(value);
+			if (canonical != null) {
+				return canonical;
+			}
+		}
+		Value canonical = searchCanonical(value);
+		synchronized (cache) {
+			cache.put(value, canonical);
+		}
+		return canonical;
+	}
+
+	private Value searchCanonical(Value value) {
+		Dictionary dictionary = generation.getHdt().getDictionary();
+		HDTConverter converter = generation.getHdtConverter();
+		String str = value.toString();
+		if (value instanceof Resource) {
+			// shared or subject
+			long id = dictionary.stringToId(str, TripleComponentRole.SUBJECT);
+			if (id > 0) {
+				return converter.idToSubjectHDTResource(id);
+			}
+		}
+		long id = dictionary.stringToId(str, TripleComponentRole.OBJECT);
+		if (id > 0) {
+			return converter.idToObjectHDTResource(id);
+		}
+		if (value instanceof IRI) {
+			id = dictionary.stringToId(str, TripleComponentRole.PREDICATE);
+			if (id > 0) {
+				return converter.idToPredicateHDTResource(id);
+			}
+		}
+		if (value instanceof Resource && dictionary.supportGraphs()) {
+			id = dictionary.stringToId(str, TripleComponentRole.GRAPH);
+			if (id > 0 && id != generation.getHdtProps().getDefaultGraph()) {
+				return converter.idToGraphHDTResource(id);
+			}
+		}
+		// only in the delta
+		return value;
+	}
+
+	private int section(Value value) {
+		if (!(value instanceof HDTValue hdtValue) || !hdtValue.isValidHDTId()) {
+			return DELTA;
+		}
+		return switch (hdtValue.getHDTPosition()) {
+		case SimpleIRIHDT.PREDICATE_POS -> PREDICATE;
+		case SimpleIRIHDT.GRAPH_POS -> GRAPH;
+		default -> {
+			if (hdtValue.getHDTId() <= nshared) {
+				yield SHARED;
+			}
+			yield hdtValue.getHDTPosition() == SimpleIRIHDT.SUBJECT_POS ? SUBJECT : OBJECT;
+		}
+		};
+	}
+
+	private static int typeOrder(Value value) {
+		if (value instanceof IRI) {
+			return 0;
+		}
+		if (value instanceof BNode) {
+			return 1;
+		}
+		if (value instanceof Literal) {
+			return 2;
+		}
+		return 3;
+	}
+
+	@Override
+	public int compare(Value o1, Value o2) {
+		if (o1 == null || o2 == null) {
+			return o1 == null ? (o2 == null ? 0 : -1) : 1;
+		}
+		Value c1 = canonical(o1);
+		Value c2 = canonical(o2);
+		int s1 = section(c1);
+		int c = Integer.compare(s1, section(c2));
+		if (c != 0) {
+			return c;
+		}
+		if (s1 != DELTA) {
+			return Long.compare(((HDTValue) c1).getHDTId(), ((HDTValue) c2).getHDTId());
+		}
+		c = Integer.compare(typeOrder(c1), typeOrder(c2));
+		if (c != 0) {
+			return c;
+		}
+		// the string of a literal contains its language or datatype
+		return c1.toString().compareTo(c2.toString());
+	}
+}
@@ -6,10 +6,11 @@ import com.the_qa_company.qendpoint.core.iterator.utils.GraphFilteringTripleId;
 import com.the_qa_company.qendpoint.core.triples.IteratorTripleID;
 import com.the_qa_company.qendpoint.core.triples.TripleID;
 import com.the_qa_company.qendpoint.core.triples.impl.EmptyTriplesIterator;
-import com.the_qa_company.qendpoint.model.HDTValue;
 import com.the_qa_company.qendpoint.store.exception.EndpointTimeoutException;
 import com.the_qa_company.qendpoint.utils.CombinedNativeStoreResult;
+import com.the_qa_company.qendpoint.utils.OrderedCombinedStatementResult;
 import org.eclipse.rdf4j.common.iteration.CloseableIteration;
+import org.eclipse.rdf4j.common.iteration.ConvertingIteration;
 import org.eclipse.rdf4j.common.iteration.EmptyIteration;
 import org.eclipse.rdf4j.common.order.StatementOrder;
 import org.eclipse.rdf4j.model.IRI;
@@ -39,7 +40,6 @@ public class EndpointTripleSource implements TripleSource {
 	private static final Logger logger = LoggerFactory.getLogger(EndpointTripleSource.class);
 	public static final EmptyIteration<Statement> EMPTY_ITERATION = new EmptyIteration<>();
 	private final EndpointStore endpoint;
-	private long numberOfCurrentTriples;
 	// count the number of times rdf4j is called within a triple pattern..
 	// only for debugging ...
 	private long count = 0;
@@ -48,13 +48,8 @@ public class EndpointTripleSource implements TripleSource {
 
 	public EndpointTripleSource(EndpointStoreConnection endpointStoreConnection, EndpointStore endpoint) {
 		this.endpoint = endpoint;
-		this.numberOfCurrentTriples = endpoint.getHdt().getTriples().getNumberOfElements();
 		this.endpointStoreConnection = endpointStoreConnection;
-		this.enableMergeJoin = endpoint.getHDTSpec().getBoolean(EndpointStore.OPTION_QENDPOINT_MERGE_JOIN, false);
-	}
-
-	private void initHDTIndex() {
-		this.numberOfCurrentTriples = this.endpoint.getHdt().getTriples().getNumberOfElements();
+		this.enableMergeJoin = endpoint.getHDTSpec().getBoolean(EndpointStore.OPTION_QENDPOINT_MERGE_JOIN, true);
 	}
 
 	@Override
@@ -86,20 +81,16 @@ public class EndpointTripleSource implements TripleSource {
 			throw new EndpointTimeoutException();
 		}
 
-		// @todo: should we not move this to the EndpointStore in the resetHDT
-		// function?
-		// check if the index changed, then refresh it
-		if (this.numberOfCurrentTriples != this.endpoint.getHdt().getTriples().getNumberOfElements()) {
-			initHDTIndex();
-		}
-
-		boolean graph = endpoint.getHdt().getDictionary().supportGraphs();
+		// the HDT and the delta read by the connection
+		EndpointStoreGeneration generation = endpointStoreConnection.getGeneration();
+		HDTConverter converter = generation.getHdtConverter();
+		boolean graph = generation.getHdt().getDictionary().supportGraphs();
 
 		// convert uris into ids if needed
 
-		long subjectID = this.endpoint.getHdtConverter().subjectToID(subj);
-		long predicateID = this.endpoint.getHdtConverter().predicateToID(pred);
-		long objectID = this.endpoint.getHdtConverter().objectToID(obj);
+		long subjectID = converter.subjectToID(subj);
+		long predicateID = converter.predicateToID(pred);
+		long objectID = converter.objectToID(obj);
 		long[] graphID;
 
 		if (graph) {
@@ -110,8 +101,15 @@ public class EndpointTripleSource implements TripleSource {
 
 		// logger.debug("SEARCH {} {} {}", newSubj, newPred, newObj);
 
-		var nativeStoreRepoResults = getNativeStoreIterator(statementOrder, subj, pred, obj, contexts, subjectID,
-				predicateID, objectID, graph, graphID);
+		CloseableIteration<? extends Statement> nativeStoreRepoResults = getNativeStoreIterator(generation,
+				statementOrder, subj, pred, obj, contexts, subjectID, predicateID, objectID, graph, graphID);
+
+		// add the delta HDT layers of the tiered merges, with an order they
+		// are sorted with the delta
+		if (!generation.getLayers().isEmpty()) {
+			nativeStoreRepoResults = new CombinedNativeStoreResult(
+					EndpointStoreLayers.getStatements(generation, subj, pred, obj, contexts), nativeStoreRepoResults);
+		}
 
 		// iterate over the HDT file
 		IteratorTripleID iterator;
@@ -122,33 +120,33 @@ public class EndpointTripleSource implements TripleSource {
 
 			if (graph && contexts.length > 1) {
 				if (statementOrder != null) {
-					int indexMaskMatchingStatementOrder = getIndexMaskMatchingStatementOrder(statementOrder, subj, pred,
-							obj, t);
+					int indexMaskMatchingStatementOrder = getIndexMaskMatchingStatementOrder(generation,
+							statementOrder, subj, pred, obj, t);
 
 					// search with the ID to check if the triples has been
 					// deleted
 					iterator = new GraphFilteringTripleId(
-							this.endpoint.getHdt().getTriples().search(t, indexMaskMatchingStatementOrder), graphID);
+							generation.getHdt().getTriples().search(t, indexMaskMatchingStatementOrder), graphID);
 				} else {
 					// search with the ID to check if the triples has been
 					// deleted
-					iterator = new GraphFilteringTripleId(this.endpoint.getHdt().getTriples().search(t), graphID);
+					iterator = new GraphFilteringTripleId(generation.getHdt().getTriples().search(t), graphID);
 				}
 			} else {
 				if (graph && contexts.length == 1) {
 					t.setGraph(graphID[0]);
 				}
 				if (statementOrder != null) {
-					int indexMaskMatchingStatementOrder = getIndexMaskMatchingStatementOrder(statementOrder, subj, pred,
-							obj, t);
+					int indexMaskMatchingStatementOrder = getIndexMaskMatchingStatementOrder(generation,
+							statementOrder, subj, pred, obj, t);
 
 					// search with the ID to check if the triples has been
 					// deleted
-					iterator = this.endpoint.getHdt().getTriples().search(t, indexMaskMatchingStatementOrder);
+					iterator = generation.getHdt().getTriples().search(t, indexMaskMatchingStatementOrder);
 				} else {
 					// search with the ID to check if the triples has been
 					// deleted
-					iterator = this.endpoint.getHdt().getTriples().search(t);
+					iterator = generation.getHdt().getTriples().search(t);
 				}
 			}
 
@@ -156,17 +154,72 @@ public class EndpointTripleSource implements TripleSource {
 			iterator = new EmptyTriplesIterator(TripleComponentOrder.SPO);
 		}
 
+		if (statementOrder != null && nativeStoreRepoResults != EMPTY_ITERATION) {
+			// the delta and the layers can't be read in order, sort their
+			// triples with the canonical keys of the comparator and merge them
+			// with the ordered hdt result
+			EndpointStoreValueComparator valueComparator = getComparator();
+			Comparator<Statement> comparator = Comparator.comparing(st -> getOrderedValue(statementOrder, st),
+					valueComparator);
+			EndpointStoreTripleIterator deltaIterator = new EndpointStoreTripleIterator(endpointStoreConnection, this,
+					new EmptyTriplesIterator(TripleComponentOrder.SPO), nativeStoreRepoResults);
+			CloseableIteration<Statement> delta = new ConvertingIteration<Statement, Statement>(deltaIterator) {
+				@Override
+				protected Statement convert(Statement statement) {
+					// the same term can be read in another role in the
+					// joined patterns
+					return setOrderedValue(statementOrder, statement,
+							valueComparator.canonical(getOrderedValue(statementOrder, statement)));
+				}
+			};
+			int chunkSize = (int) endpoint.getHDTSpec().getInt(EndpointStore.OPTION_QENDPOINT_MERGE_JOIN_SORT_CHUNK,
+					EndpointStore.DEFAULT_MERGE_JOIN_SORT_CHUNK);
+			return new OrderedCombinedStatementResult(
+					new EndpointStoreTripleIterator(endpointStoreConnection, this, iterator, EMPTY_ITERATION),
+					new SortedDeltaResult(delta, comparator, converter, chunkSize,
+							endpoint.getEndpointFiles().getLocationNativePath()),
+					comparator);
+		}
+
 		// iterate over hdt result, delete the triples marked as deleted and add
 		// the triples from the delta
 		return new EndpointStoreTripleIterator(endpointStoreConnection, this, iterator, nativeStoreRepoResults);
 	}
 
-	private CloseableIteration<? extends Statement> getNativeStoreIterator(StatementOrder statementOrder, Resource subj,
-			IRI pred, Value obj, Resource[] contexts, long subjectID, long predicateID, long objectID, boolean graph,
-			long[] graphID) {
+	private static Value getOrderedValue(StatementOrder statementOrder, Statement statement) {
+		return switch (statementOrder) {
+		case S -> statement.getSubject();
+		case P -> statement.getPredicate();
+		case O -> statement.getObject();
+		case C -> statement.getContext();
+		};
+	}
+
+	private Statement setOrderedValue(StatementOrder statementOrder, Statement statement, Value value) {
+		if (value == getOrderedValue(statementOrder, statement)) {
+			return statement;
+		}
+		ValueFactory vf = getValueFactory();
+		return switch (statementOrder) {
+		case S -> vf.createStatement((Resource) value, statement.getPredicate(), statement.getObject(),
+				statement.getContext());
+		case P -> vf.createStatement(statement.getSubject(), (IRI) value, statement.getObject(),
+				statement.getContext());
+		case O -> vf.createStatement(statement.getSubject(), statement.getPredicate(), value,
+				statement.getContext());
+		case C -> vf.createStatement(statement.getSubject(), statement.getPredicate(), statement.getObject(),
+				(Resource) value);
+		};
+	}
+
+	private CloseableIteration<? extends Statement> getNativeStoreIterator(EndpointStoreGeneration generation,
+			StatementOrder statementOrder, Resource subj, IRI pred, Value obj, Resource[] contexts, long subjectID,
+			long predicateID, long objectID, boolean graph, long[] graphID) {
 		// check if we need to search over the delta and if yes, search
 		CloseableIteration<? extends Statement> repositoryResult;
-		if (shouldSearchOverNativeStore(subjectID, predicateID, objectID)) {
+		boolean searchDelta = shouldSearchOverNativeStore(generation, subjectID, predicateID, objectID);
+		endpoint.getMergeScheduler().recordSearch(searchDelta);
+		if (searchDelta) {
 			Resource newSubj;
 			IRI newPred;
 			Value newObj;
@@ -174,32 +227,28 @@ public class EndpointTripleSource implements TripleSource {
 			if (subjectID == 0 || subjectID == -1) {
 				newSubj = subj;
 			} else {
-				newSubj = this.endpoint.getHdtConverter().subjectIdToIRI(subjectID);
+				newSubj = generation.getHdtConverter().subjectIdToIRI(subjectID);
 			}
 			if (predicateID == 0 || predicateID == -1) {
 				newPred = pred;
 			} else {
-				newPred = this.endpoint.getHdtConverter().predicateIdToIRI(predicateID);
+				newPred = generation.getHdtConverter().predicateIdToIRI(predicateID);
 			}
 			if (objectID == 0 || objectID == -1) {
 				newObj = obj;
 			} else {
-				newObj = this.endpoint.getHdtConverter().objectIdToIRI(objectID);
+				newObj = generation.getHdtConverter().objectIdToIRI(objectID);
 			}
 
 			if (graph) {
-				newContextes = this.endpoint.getHdtConverter().graphIdToIRI(contexts, graphID);
+				newContextes = generation.getHdtConverter().graphIdToIRI(contexts, graphID);
 			} else {
 				newContextes = contexts;
 			}
 
-			if (statementOrder != null) {
-				throw new UnsupportedOperationException(
-						"Statement ordering is not supported when searching over the native store");
-			}
 			logger.debug("Searching over native store");
 			count++;
-			if (endpoint.isMergeTriggered) {
+			if (generation.isMergeTriggered()) {
 				// query both native stores
 				logger.debug("Query both RDF4j stores!");
 				CloseableIteration<? extends Statement> repositoryResult1 = this.endpointStoreConnection.getConnA_read()
@@ -223,65 +272,74 @@ public class EndpointTripleSource implements TripleSource {
 	// this function determines if a triple pattern should be searched over the
 	// native store. This is only
 	// the case if the subject, predicate and object were marked as used in the
-	// bitmaps
-	private boolean shouldSearchOverNativeStore(long subject, long predicate, long object) {
+	// bitmaps and if the delta pattern filter accepts their pairs
+	boolean shouldSearchOverNativeStore(EndpointStoreGeneration generation, long subject, long predicate,
+			long object) {
 		if (logger.isDebugEnabled()) {
 			boolean containsSubject = true;
 			boolean containsPredicate = true;
 			boolean containsObject = true;
 
 			if (subject != 0 && subject != -1) {
-				containsSubject = this.endpoint.getBitX().access(subject - 1);
+				containsSubject = generation.getBitX().access(subject - 1);
 			}
 			if (predicate != 0 && predicate != -1) {
-				containsPredicate = this.endpoint.getBitY().access(predicate - 1);
+				containsPredicate = generation.getBitY().access(predicate - 1);
 			}
 			if (object != 0 && object != -1) {
-				if (object <= this.endpoint.getHdt().getDictionary().getNshared()) {
-					containsObject = this.endpoint.getBitX().access(object - 1);
+				if (object <= generation.getHdt().getDictionary().getNshared()) {
+					containsObject = generation.getBitX().access(object - 1);
 				} else {
-					containsObject = this.endpoint.getBitZ()
-							.access(object - this.endpoint.getHdt().getDictionary().getNshared() - 1);
+					containsObject = generation.getBitZ()
+							.access(object - generation.getHdt().getDictionary().getNshared() - 1);
 				}
 			}
-			logger.debug("Search over native store? {} {} {}", containsSubject, containsPredicate, containsObject);
-			return containsSubject && containsPredicate && containsObject;
+			boolean containsPattern = generation.deltaPatternMightContain(subject, predicate, object);
+			logger.debug("Search over native store? {} {} {} {}", containsSubject, containsPredicate, containsObject,
+					containsPattern);
+			return containsSubject && containsPredicate && containsObject && containsPattern;
 		} else {
-			if (subject != 0 && subject != -1 && !this.endpoint.getBitX().access(subject - 1)) {
+			if (subject != 0 && subject != -1 && !generation.getBitX().access(subject - 1)) {
 				return false;
 			}
-			if (predicate != 0 && predicate != -1 && !this.endpoint.getBitY().access(predicate - 1)) {
+			if (predicate != 0 && predicate != -1 && !generation.getBitY().access(predicate - 1)) {
 				return false;
 			}
 			if (object != 0 && object != -1) {
-				if (object <= this.endpoint.getHdt().getDictionary().getNshared()) {
-					return this.endpoint.getBitX().access(object - 1);
-				} else {
-					return this.endpoint.getBitZ()
-							.access(object - this.endpoint.getHdt().getDictionary().getNshared() - 1);
+				if (object <= generation.getHdt().getDictionary().getNshared()) {
+					if (!generation.getBitX().access(object - 1)) {
+						return false;
+					}
+				} else if (!generation.getBitZ()
+						.access(object - generation.getHdt().getDictionary().getNshared() - 1)) {
+					return false;
 				}
 			}
 		}
-		return true;
+		// the bitmaps only know the components, check the pairs
+		return generation.deltaPatternMightContain(subject, predicate, object);
 	}
 
 	@Override
 	public ValueFactory getValueFactory() {
-		return endpoint.getValueFactory();
+		return endpointStoreConnection.getGeneration().getValueFactory();
 	}
 
 	public EndpointStore getEndpointStore() {
 		return endpoint;
 	}
 
+	public EndpointStoreConnection getEndpointStoreConnection() {
+		return endpointStoreConnection;
+	}
+
 	public long getCount() {
 		return count;
 	}
 
-	private int getIndexMaskMatchingStatementOrder(StatementOrder statementOrder, Resource subj, IRI pred, Value obj,
-			TripleID t) {
-		List<TripleComponentOrder> tripleComponentOrder = this.endpoint.getHdt().getTriples()
-				.getTripleComponentOrder(t);
+	private int getIndexMaskMatchingStatementOrder(EndpointStoreGeneration generation, StatementOrder statementOrder,
+			Resource subj, IRI pred, Value obj, TripleID t) {
+		List<TripleComponentOrder> tripleComponentOrder = generation.getHdt().getTriples().getTripleComponentOrder(t);
 
 		if (subj != null && pred != null && obj != null) {
 			if (!tripleComponentOrder.isEmpty()) {
@@ -356,57 +414,48 @@ public class EndpointTripleSource implements TripleSource {
 			throw new EndpointTimeoutException();
 		}
 
-		// @todo: should we not move this to the EndpointStore in the resetHDT
-		// function?
-		// check if the index changed, then refresh it
-		if (this.numberOfCurrentTriples != this.endpoint.getHdt().getTriples().getNumberOfElements()) {
-			initHDTIndex();
-		}
+		EndpointStoreGeneration generation = endpointStoreConnection.getGeneration();
+		HDTConverter converter = generation.getHdtConverter();
 
 		// convert uris into ids if needed
 		Resource newSubj;
 		IRI newPred;
 		Value newObj;
-		long subjectID = this.endpoint.getHdtConverter().subjectToID(subj);
-		long predicateID = this.endpoint.getHdtConverter().predicateToID(pred);
-		long objectID = this.endpoint.getHdtConverter().objectToID(obj);
+		long subjectID = converter.subjectToID(subj);
+		long predicateID = converter.predicateToID(pred);
+		long objectID = converter.objectToID(obj);
 
 		if (subjectID == 0 || subjectID == -1) {
 			newSubj = subj;
 		} else {
-			newSubj = this.endpoint.getHdtConverter().subjectIdToIRI(subjectID);
+			newSubj = converter.subjectIdToIRI(subjectID);
 		}
 		if (predicateID == 0 || predicateID == -1) {
 			newPred = pred;
 		} else {
-			newPred = this.endpoint.getHdtConverter().predicateIdToIRI(predicateID);
+			newPred = converter.predicateIdToIRI(predicateID);
 		}
 		if (objectID == 0 || objectID == -1) {
 			newObj = obj;
 		} else {
-			newObj = this.endpoint.getHdtConverter().objectIdToIRI(objectID);
+			newObj = converter.objectIdToIRI(objectID);
 		}
 
 		logger.debug("getSupportedOrders {} {} {}", newSubj, newPred, newObj);
 
-		// check if we need to search over the delta, in which case the
-		// statements can not be ordered
-		if (shouldSearchOverNativeStore(subjectID, predicateID, objectID)) {
-			return Set.of();
-		}
-
 		// iterate over the HDT file
 		if (subjectID != -1 && predicateID != -1 && objectID != -1) {
 			TripleID t = new TripleID(subjectID, predicateID, objectID);
 			// search with the ID to check if the triples has been deleted
-			List<TripleComponentOrder> tripleComponentOrder = this.endpoint.getHdt().getTriples()
+			List<TripleComponentOrder> tripleComponentOrder = generation.getHdt().getTriples()
 					.getTripleComponentOrder(t);
 
 			var orders = tripleComponentOrder.stream()
 					.map(o -> getStatementOrder(o, subj != null, pred != null, obj != null)).flatMap(Collection::stream)
-					.filter(p -> p != StatementOrder.P)
-					// we do not support predicate ordering since it doesn't use
-					// the same IDs as other IRIs
+					.filter(p -> p == StatementOrder.S || p == StatementOrder.O)
+					// we do not support predicate or graph ordering since the
+					// comparator keys their terms by their subject or object
+					// ids when they exist, the HDT order would be lost
 					.collect(Collectors.toSet());
 
 			if (logger.isDebugEnabled()) {
@@ -423,16 +472,7 @@ public class EndpointTripleSource implements TripleSource {
 	}
 
 	@Override
-	public Comparator<Value> getComparator() {
-		return (o1, o2) -> {
-			if (o1 instanceof HDTValue && o2 instanceof HDTValue) {
-				assert ((HDTValue) o1).getHDTPosition() != 2 : "o1 is in predicate position";
-				assert ((HDTValue) o2).getHDTPosition() != 2 : "o2 is in predicate position";
-
-				return Long.compare(((HDTValue) o1).getHDTId(), ((HDTValue) o2).getHDTId());
-			}
-			throw new UnsupportedOperationException(
-					"Cannot compare values of type " + o1.getClass() + " and " + o2.getClass());
-		};
+	public EndpointStoreValueComparator getComparator() {
+		return new EndpointStoreValueComparator(endpointStoreConnection.getGeneration());
 	}
 }
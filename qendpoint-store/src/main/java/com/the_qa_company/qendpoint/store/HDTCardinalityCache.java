@@ -0,0 +1,94 @@
+package com.the_qa_company.qendpoint.store;
+
+import com.the_qa_company.qendpoint.core.hdt.HDT;
+import com.the_qa_company.qendpoint.core.triples.TripleID;
+import com.the_qa_company.qendpoint.core.util.LRUCache;
+
+import java.util.Map;
+
+/**
+ * Cache of the cardinality estimates of the triple patterns of an HDT, shared
+ * by the queries.
+ * <p>
+ * The patterns with only a predicate are read from a table computed with the
+ * cache, the other patterns are kept in a bounded LRU cache. The estimates
+ * don't depend on the deletes, a new cache is created when the HDT is replaced
+ * by a merge.
+ */
+public class HDTCardinalityCache {
+	/**
+	 * default number of patterns in the cache
+	 */
+	public static final int DEFAULT_SIZE = 10_000;
+
+	private record PatternKey(long subject, long predicate, long object) {}
+
+	private final HDT hdt;
+	private final long[] predicateCounts;
+	private final Map<PatternKey, Double> cache;
+
+	/**
+	 * create the cache of an HDT
+	 *
+	 * @param hdt        HDT
+	 * @param statistics join statistics of the HDT to read the predicate
+	 *                   counts, null to search them
+	 * @param size       maximum number of patterns in the cache, 0 to disable
+	 *                   the cache
+	 */
+	public HDTCardinalityCache(HDT hdt, HDTJoinStatistics statistics, int size) {
+		this.hdt = hdt;
+		predicateCounts = new long[(int) hdt.getDictionary().getNpredicates()];
+		for (int p = 1; p <= predicateCounts.length; p++) {
+			predicateCounts[p - 1] = statistics != null ? statistics.getPredicateTriples(p)
+					: hdt.getTriples().search(new TripleID(0, p, 0)).estimatedNumResults();
+		}
+		cache = size > 0 ? new LRUCache<>(size) : null;
+	}
+
+	/**
+	 * estimate the number of triples matching a pattern, the pattern should
+	 * have at least one bound component
+	 *
+	 * @param subject   subject id, 0 for a variable
+	 * @param predicate predicate id, 0 for a variable
+	 * @param object    object id, 0 for a variable
+	 * @return estimated cardinality
+	 */
+	public double getCardinality(long subject, long predicate, long object) {
+		if (subject == 0 && object == 0 && predicate > 0 && predicate <= predicateCounts.length) {
+			return predicateCounts[(int) predicate - 1];
+		}
+		if (cache == null) {
+			return estimate(subject, predicate, object);
+		}
+		PatternKey key = new PatternKey(subject, predicate, object);
+		Double cardinality;
+		synchronized (cache) {
+			cardinality = cache.get(key);
+		}
+		if (cardinality == null) {
+			cardinality = estimate(subject, predicate, object);
+			synchronized (cache) {
+				cache.put(key, cardinality);
+			}
+		}
+		return cardinality;
+	}
+
+	private double estimate(long subject, long predicate, long object) {
+		return hdt.getTriples().search(new TripleID(subject, predicate, object)).estimatedNumResults();
+	}
+
+	/**
+	 * @return the number of patterns in the cache
+	 */
+	public int size() {
+		if (cache == null) {
+			return 0;
+		}
+		synchronized (cache) {
+			return cache.size();
+		}
+	}
+}
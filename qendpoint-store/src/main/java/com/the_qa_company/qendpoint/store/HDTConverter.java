@@ -27,11 +27,15 @@ public class HDTConverter {
 	public static final String HDT_URI = "http://hdt.org/";
 	private final EndpointStore endpoint;
 	private final HDT hdt;
+	// props of the HDT, captured with it so a converter keeps reading the HDT
+	// it was created with after a merge
+	private final HDTProps hdtProps;
 	private final ValueFactory valueFactory = SimpleValueFactory.getInstance();
 
 	public HDTConverter(EndpointStore endpoint) {
 		this.endpoint = endpoint;
-		this.hdt = endpoint.getHdt();
+		this.hdt = endpoint.getValueHdt();
+		this.hdtProps = hdtProps;
 	}
 
 	// method to get the ID of a resource
@@ -85,7 +89,7 @@ public class HDTConverter {
 
 	public long contextToID(Resource context) {
 		if (context == null) {
-			return endpoint.getHdtProps().getDefaultGraph();
+			return hdtProps.getDefaultGraph();
 		}
 
 		if (!(context instanceof HDTValue hdtval && hdtval.getHDTPosition() == SimpleIRIHDT.GRAPH_POS)) {
@@ -218,7 +222,7 @@ public class HDTConverter {
 
 	public long rdf4jContextToHdtID(Resource ctx) {
 		if (ctx == null) {
-			return endpoint.getHdtProps().getDefaultGraph();
+			return hdtProps.getDefaultGraph();
 		}
 		String iriString = ctx.stringValue();
 		if (iriString.startsWith((HDT_URI))) {
@@ -235,10 +239,9 @@ public class HDTConverter {
 			RDFNodeType nodeType = dict.nodeTypeOfId(role, id);
 			boolean shared = id <= dict.getNshared();
 			return switch (nodeType) {
-			case IRI ->
-				new SimpleIRIHDT(endpoint.getHdt(), SimpleIRIHDT.getPos(role.asDictionarySectionRole(shared)), id);
+			case IRI -> new SimpleIRIHDT(hdt, SimpleIRIHDT.getPos(role.asDictionarySectionRole(shared)), id);
 			case BLANK_NODE -> new SimpleBNodeHDT(hdt, SimpleIRIHDT.getPos(role.asDictionarySectionRole(shared)), id);
-			case LITERAL -> new SimpleLiteralHDT(endpoint.getHdt(), id, valueFactory);
+			case LITERAL -> new SimpleLiteralHDT(hdt, id, valueFactory);
 			};
 		}
 		return switch (role) {
@@ -254,10 +257,10 @@ public class HDTConverter {
 	}
 
 	private Resource idToSubjectHDTResource0(long subjectID) {
-		if ((subjectID >= endpoint.getHdtProps().getStartBlankShared()
-				&& subjectID <= endpoint.getHdtProps().getEndBlankShared())
-				|| (subjectID >= endpoint.getHdtProps().getStartBlankSubjects()
-						&& subjectID <= endpoint.getHdtProps().getEndBlankSubjects())) {
+		if ((subjectID >= hdtProps.getStartBlankShared()
+				&& subjectID <= hdtProps.getEndBlankShared())
+				|| (subjectID >= hdtProps.getStartBlankSubjects()
+						&& subjectID <= hdtProps.getEndBlankSubjects())) {
 			if (subjectID <= hdt.getDictionary().getNshared()) {
 				return new SimpleBNodeHDT(hdt, SimpleIRIHDT.SHARED_POS, subjectID);
 			} else {
@@ -273,7 +276,7 @@ public class HDTConverter {
 	}
 
 	public IRI idToPredicateHDTResource(long predicateId) {
-		return new SimpleIRIHDT(endpoint.getHdt(), SimpleIRIHDT.PREDICATE_POS, predicateId);
+		return new SimpleIRIHDT(hdt, SimpleIRIHDT.PREDICATE_POS, predicateId);
 	}
 
 	public Value idToObjectHDTResource(long objectID) {
@@ -281,33 +284,33 @@ public class HDTConverter {
 	}
 
 	private Value idToObjectHDTResource0(long objectID) {
-		if (objectID >= endpoint.getHdtProps().getStartLiteral()
-				&& objectID <= endpoint.getHdtProps().getEndLiteral()) {
-			return new SimpleLiteralHDT(endpoint.getHdt(), objectID, valueFactory);
-		} else if ((objectID >= endpoint.getHdtProps().getStartBlankObjects()
-				&& objectID <= endpoint.getHdtProps().getEndBlankObjects())
-				|| (objectID >= endpoint.getHdtProps().getStartBlankShared()
-						&& objectID <= endpoint.getHdtProps().getEndBlankShared())) {
+		if (objectID >= hdtProps.getStartLiteral()
+				&& objectID <= hdtProps.getEndLiteral()) {
+			return new SimpleLiteralHDT(hdt, objectID, valueFactory);
+		} else if ((objectID >= hdtProps.getStartBlankObjects()
+				&& objectID <= hdtProps.getEndBlankObjects())
+				|| (objectID >= hdtProps.getStartBlankShared()
+						&& objectID <= hdtProps.getEndBlankShared())) {
 			if (objectID <= hdt.getDictionary().getNshared()) {
 				return new SimpleBNodeHDT(hdt, SimpleIRIHDT.SHARED_POS, objectID);
 			} else {
 				return new SimpleBNodeHDT(hdt, SimpleIRIHDT.OBJECT_POS, objectID);
 			}
 		} else {
-			if (objectID <= endpoint.getHdt().getDictionary().getNshared()) {
-				return new SimpleIRIHDT(endpoint.getHdt(), SimpleIRIHDT.SHARED_POS, objectID);
+			if (objectID <= hdt.getDictionary().getNshared()) {
+				return new SimpleIRIHDT(hdt, SimpleIRIHDT.SHARED_POS, objectID);
 			} else {
-				return new SimpleIRIHDT(endpoint.getHdt(), SimpleIRIHDT.OBJECT_POS, objectID);
+				return new SimpleIRIHDT(hdt, SimpleIRIHDT.OBJECT_POS, objectID);
 			}
 		}
 	}
 
 	public Resource idToGraphHDTResource(long graphID) {
-		if (graphID == endpoint.getHdtProps().getDefaultGraph()) {
+		if (graphID == hdtProps.getDefaultGraph()) {
 			return null;
 		}
-		if ((graphID >= endpoint.getHdtProps().getStartBlankGraph()
-				&& graphID <= endpoint.getHdtProps().getEndBlankGraph())) {
+		if ((graphID >= hdtProps.getStartBlankGraph()
+				&& graphID <= hdtProps.getEndBlankGraph())) {
 			return new SimpleBNodeHDT(hdt, SimpleIRIHDT.GRAPH_POS, graphID);
 		}
 		return new SimpleIRIHDT(hdt, SimpleIRIHDT.GRAPH_POS, graphID);
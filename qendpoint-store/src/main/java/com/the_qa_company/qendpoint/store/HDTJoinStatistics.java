@@ -0,0 +1,433 @@
+package com.the_qa_company.qendpoint.store;
+
+import com.the_qa_company.qendpoint.core.compact.integer.VByte;
+import com.the_qa_company.qendpoint.core.dictionary.Dictionary;
+import com.the_qa_company.qendpoint.core.enums.TripleComponentOrder;
+import com.the_qa_company.qendpoint.core.exceptions.CRCException;
+import com.the_qa_company.qendpoint.core.hdt.HDT;
+import com.the_qa_company.qendpoint.core.triples.IteratorTripleID;
+import com.the_qa_company.qendpoint.core.triples.TripleID;
+import com.the_qa_company.qendpoint.core.triples.Triples;
+import com.the_qa_company.qendpoint.core.util.crc.CRC32;
+import com.the_qa_company.qendpoint.core.util.crc.CRCInputStream;
+import com.the_qa_company.qendpoint.core.util.crc.CRCOutputStream;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Join statistics of an HDT, used to estimate the cardinality of the joins.
+ * <p>
+ * The statistics contain the characteristic sets of the HDT, the sets of
+ * predicates used by a subject, with their number of subjects and of triples by
+ * predicate, and the number of distinct subjects and objects of each
+ * predicate. The subjects of the less used sets are only kept by predicate,
+ * their star joins are estimated as if the predicates were independent.
+ */
+public class HDTJoinStatistics {
+	/**
+	 * default maximum number of characteristic sets
+	 */
+	public static final int DEFAULT_MAX_SETS = 10_000;
+	private static final int VERSION = 1;
+
+	/**
+	 * characteristic set
+	 *
+	 * @param predicates sorted ids of the predicates of the set
+	 * @param subjects   number of subjects with this set
+	 * @param triples    number of triples of the subjects by predicate
+	 */
+	public record CharacteristicSet(long[] predicates, long subjects, long[] triples) {}
+
+	private record PredicateSet(long[] predicates) {
+		@Override
+		public boolean equals(Object o) {
+			return o instanceof PredicateSet other && Arrays.equals(predicates, other.predicates);
+		}
+
+		@Override
+		public int hashCode() {
+			return Arrays.hashCode(predicates);
+		}
+	}
+
+	private static class SetCount {
+		long subjects;
+		final long[] triples;
+
+		SetCount(int size) {
+			triples = new long[size];
+		}
+	}
+
+	/**
+	 * compute the statistics of an HDT, the HDT should be sorted by subject
+	 * and indexed by object
+	 *
+	 * @param hdt     HDT
+	 * @param maxSets maximum number of characteristic sets to keep
+	 * @return statistics
+	 */
+	public static HDTJoinStatistics compute(HDT hdt, int maxSets) {
+		return compute(hdt, maxSets, () -> false);
+	}
+
+	/**
+	 * compute the statistics of an HDT, the HDT should be sorted by subject
+	 * and indexed by object
+	 *
+	 * @param hdt       HDT
+	 * @param maxSets   maximum number of characteristic sets to keep
+	 * @param cancelled tested while reading the HDT to stop the computation
+	 * @return statistics
+	 * @throws CancellationException if the computation was cancelled
+	 */
+	public static HDTJoinStatistics compute(HDT hdt, int maxSets, BooleanSupplier cancelled) {
+		Dictionary dictionary = hdt.getDictionary();
+		Triples triples = hdt.getTriples();
+		HDTJoinStatistics stats = new HDTJoinStatistics(triples.getNumberOfElements(), dictionary.getNsubjects(),
+				(int) dictionary.getNpredicates(), dictionary.getNobjects(), dictionary.getNshared());
+
+		IteratorTripleID it = triples.searchAll();
+		if (it.getOrder() != TripleComponentOrder.SPO) {
+			throw new IllegalArgumentException("Can't compute the statistics of an HDT in order " + it.getOrder());
+		}
+
+		// characteristic sets, read from the triples grouped by subject
+		Map<PredicateSet, SetCount> sets = new HashMap<>();
+		long subject = 0;
+		int size = 0;
+		long[] predicates = new long[16];
+		long[] counts = new long[16];
+		while (it.hasNext()) {
+			TripleID triple = it.next();
+			long s = triple.getSubject();
+			long p = triple.getPredicate();
+			if (s != subject) {
+				if (cancelled.getAsBoolean()) {
+					throw new CancellationException("join statistics computation cancelled");
+				}
+				if (size != 0) {
+					stats.addSet(sets, predicates, counts, size, maxSets);
+				}
+				subject = s;
+				size = 0;
+			}
+			stats.predicateTriples[(int) p - 1]++;
+			if (size != 0 && predicates[size - 1] == p) {
+				counts[size - 1]++;
+				continue;
+			}
+			if (size == predicates.length) {
+				predicates = Arrays.copyOf(predicates, size * 2);
+				counts = Arrays.copyOf(counts, size * 2);
+			}
+			predicates[size] = p;
+			counts[size] = 1;
+			size++;
+			stats.predicateSubjects[(int) p - 1]++;
+		}
+		if (size != 0) {
+			stats.addSet(sets, predicates, counts, size, maxSets);
+		}
+		stats.pruneSets(sets, maxSets);
+		sets.forEach((key, count) -> stats.sets
+				.add(new CharacteristicSet(key.predicates, count.subjects, count.triples)));
+
+		// distinct objects by predicate, read with the object index
+		long[] lastObject = new long[stats.predicateObjects.length];
+		for (long o = 1; o <= stats.objects; o++) {
+			if (cancelled.getAsBoolean()) {
+				throw new CancellationException("join statistics computation cancelled");
+			}
+			IteratorTripleID oit = triples.search(new TripleID(0, 0, o));
+			while (oit.hasNext()) {
+				int p = (int) oit.next().getPredicate() - 1;
+				if (lastObject[p] != o) {
+					lastObject[p] = o;
+					stats.predicateObjects[p]++;
+				}
+			}
+		}
+		return stats;
+	}
+
+	/**
+	 * load statistics saved with {@link #save(Path)}
+	 *
+	 * @param file file
+	 * @return statistics
+	 * @throws IOException read exception
+	 */
+	public static HDTJoinStatistics load(Path file) throws IOException {
+		try (InputStream stream = new BufferedInputStream(Files.newInputStream(file))) {
+			CRCInputStream is = new CRCInputStream(stream, new CRC32());
+			long version = VByte.decode(is);
+			if (version != VERSION) {
+				throw new IOException("Unknown join statistics version: " + version);
+			}
+			HDTJoinStatistics stats = new HDTJoinStatistics(VByte.decode(is), VByte.decode(is),
+					(int) VByte.decode(is), VByte.decode(is), VByte.decode(is));
+			stats.otherSubjects = VByte.decode(is);
+			for (int p = 0; p < stats.predicateTriples.length; p++) {
+				stats.predicateTriples[p] = VByte.decode(is);
+				stats.predicateSubjects[p] = VByte.decode(is);
+				stats.predicateObjects[p] = VByte.decode(is);
+				stats.otherPredicateTriples[p] = VByte.decode(is);
+			}
+			long count = VByte.decode(is);
+			for (long i = 0; i < count; i++) {
+				int size = (int) VByte.decode(is);
+				long[] predicates = new long[size];
+				long[] triples = new long[size];
+				long last = 0;
+				for (int j = 0; j < size; j++) {
+					predicates[j] = last += VByte.decode(is);
+					triples[j] = VByte.decode(is);
+				}
+				stats.sets.add(new CharacteristicSet(predicates, VByte.decode(is), triples));
+			}
+			if (!is.readCRCAndCheck()) {
+				throw new CRCException("CRC Error while reading the join statistics.");
+			}
+			return stats;
+		}
+	}
+
+	private final long triples;
+	private final long subjects;
+	private final long objects;
+	private final long shared;
+	private final long[] predicateTriples;
+	private final long[] predicateSubjects;
+	private final long[] predicateObjects;
+	// triples by predicate of the subjects in the pruned sets
+	private final long[] otherPredicateTriples;
+	private long otherSubjects;
+	private final List<CharacteristicSet> sets = new ArrayList<>();
+
+	private HDTJoinStatistics(long triples, long subjects, int predicates, long objects, long shared) {
+		this.triples = triples;
+		this.subjects = subjects;
+		this.objects = objects;
+		this.shared = shared;
+		this.predicateTriples = new long[predicates];
+		this.predicateSubjects = new long[predicates];
+		this.predicateObjects = new long[predicates];
+		this.otherPredicateTriples = new long[predicates];
+	}
+
+	private void addSet(Map<PredicateSet, SetCount> sets, long[] predicates, long[] counts, int size, int maxSets) {
+		SetCount count = sets.computeIfAbsent(new PredicateSet(Arrays.copyOf(predicates, size)),
+				key -> new SetCount(size));
+		count.subjects++;
+		for (int i = 0; i < size; i++) {
+			count.triples[i] += counts[i];
+		}
+		if (sets.size() > maxSets * 2L) {
+			pruneSets(sets, maxSets);
+		}
+	}
+
+	private void pruneSets(Map<PredicateSet, SetCount> sets, int maxSets) {
+		if (sets.size() <= maxSets) {
+			return;
+		}
+		List<Map.Entry<PredicateSet, SetCount>> entries = new ArrayList<>(sets.entrySet());
+		entries.sort(Comparator.comparingLong(e -> -e.getValue().subjects));
+		for (Map.Entry<PredicateSet, SetCount> e : entries.subList(maxSets, entries.size())) {
+			long[] predicates = e.getKey().predicates;
+			SetCount count = e.getValue();
+			otherSubjects += count.subjects;
+			for (int i = 0; i < predicates.length; i++) {
+				otherPredicateTriples[(int) predicates[i] - 1] += count.triples[i];
+			}
+			sets.remove(e.getKey());
+		}
+	}
+
+	/**
+	 * save the statistics
+	 *
+	 * @param file file
+	 * @throws IOException write exception
+	 */
+	public void save(Path file) throws IOException {
+		try (OutputStream stream = new BufferedOutputStream(Files.newOutputStream(file))) {
+			CRCOutputStream os = new CRCOutputStream(stream, new CRC32());
+			VByte.encode(os, VERSION);
+			VByte.encode(os, triples);
+			VByte.encode(os, subjects);
+			VByte.encode(os, predicateTriples.length);
+			VByte.encode(os, objects);
+			VByte.encode(os, shared);
+			VByte.encode(os, otherSubjects);
+			for (int p = 0; p < predicateTriples.length; p++) {
+				VByte.encode(os, predicateTriples[p]);
+				VByte.encode(os, predicateSubjects[p]);
+				VByte.encode(os, predicateObjects[p]);
+				VByte.encode(os, otherPredicateTriples[p]);
+			}
+			VByte.encode(os, sets.size());
+			for (CharacteristicSet set : sets) {
+				VByte.encode(os, set.predicates.length);
+				long last = 0;
+				for (int j = 0; j < set.predicates.length; j++) {
+					VByte.encode(os, set.predicates[j] - last);
+					VByte.encode(os, set.triples[j]);
+					last = set.predicates[j];
+				}
+				VByte.encode(os, set.subjects);
+			}
+			os.writeCRC();
+		}
+	}
+
+	/**
+	 * test if these statistics were computed for an HDT
+	 *
+	 * @param hdt HDT
+	 * @return true if the sizes of the HDT match the statistics
+	 */
+	public boolean isComputedFor(HDT hdt) {
+		Dictionary dictionary = hdt.getDictionary();
+		return hdt.getTriples().getNumberOfElements() == triples && dictionary.getNsubjects() == subjects
+				&& dictionary.getNpredicates() == predicateTriples.length && dictionary.getNobjects() == objects
+				&& dictionary.getNshared() == shared;
+	}
+
+	/**
+	 * estimate the number of results of a star join over constant predicates
+	 * and variable objects
+	 *
+	 * @param predicates predicate id of each pattern of the star
+	 * @return cardinality
+	 */
+	public double getStarCardinality(long[] predicates) {
+		return star(predicates, false);
+	}
+
+	/**
+	 * estimate the number of subjects of a star join over constant predicates
+	 *
+	 * @param predicates predicate id of each pattern of the star
+	 * @return number of subjects
+	 */
+	public double getStarSubjects(long[] predicates) {
+		return star(predicates, true);
+	}
+
+	private double star(long[] predicates, boolean subjectsOnly) {
+		long[] distinct = Arrays.stream(predicates).distinct().sorted().toArray();
+		for (long p : distinct) {
+			if (p <= 0 || p > predicateTriples.length) {
+				return 0;
+			}
+		}
+		double result = 0;
+		for (CharacteristicSet set : sets) {
+			int[] indexes = new int[predicates.length];
+			boolean contains = true;
+			for (int i = 0; i < predicates.length; i++) {
+				indexes[i] = Arrays.binarySearch(set.predicates, predicates[i]);
+				if (indexes[i] < 0) {
+					contains = false;
+					break;
+				}
+			}
+			if (!contains) {
+				continue;
+			}
+			double card = set.subjects;
+			if (!subjectsOnly) {
+				for (int index : indexes) {
+					card *= (double) set.triples[index] / set.subjects;
+				}
+			}
+			result += card;
+		}
+		if (otherSubjects != 0) {
+			// the pruned sets, the predicates are considered independent
+			double card = otherSubjects;
+			for (long p : subjectsOnly ? distinct : predicates) {
+				double triplesBySubject = (double) otherPredicateTriples[(int) p - 1] / otherSubjects;
+				card *= subjectsOnly ? Math.min(1, triplesBySubject) : triplesBySubject;
+			}
+			result += card;
+		}
+		return result;
+	}
+
+	/**
+	 * @return the number of triples
+	 */
+	public long getTriples() {
+		return triples;
+	}
+
+	/**
+	 * @return the number of subjects
+	 */
+	public long getSubjects() {
+		return subjects;
+	}
+
+	/**
+	 * @return the number of objects
+	 */
+	public long getObjects() {
+		return objects;
+	}
+
+	/**
+	 * @return the number of predicates
+	 */
+	public long getPredicates() {
+		return predicateTriples.length;
+	}
+
+	/**
+	 * @param predicate predicate id
+	 * @return the number of triples of the predicate
+	 */
+	public long getPredicateTriples(long predicate) {
+		return predicateTriples[(int) predicate - 1];
+	}
+
+	/**
+	 * @param predicate predicate id
+	 * @return the number of distinct subjects of the predicate
+	 */
+	public long getPredicateSubjects(long predicate) {
+		return predicateSubjects[(int) predicate - 1];
+	}
+
+	/**
+	 * @param predicate predicate id
+	 * @return the number of distinct objects of the predicate
+	 */
+	public long getPredicateObjects(long predicate) {
+		return predicateObjects[(int) predicate - 1];
+	}
+
+	/**
+	 * @return the characteristic sets
+	 */
+	public List<CharacteristicSet> getCharacteristicSets() {
+		return sets;
+	}
+}
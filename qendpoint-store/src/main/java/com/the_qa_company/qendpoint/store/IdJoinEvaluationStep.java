@@ -0,0 +1,320 @@
+package com.the_qa_company.qendpoint.store;
+
+import com.the_qa_company.qendpoint.core.compact.bitmap.MultiLayerBitmapWrapper;
+import com.the_qa_company.qendpoint.core.enums.TripleComponentOrder;
+import com.the_qa_company.qendpoint.core.enums.TripleComponentRole;
+import com.the_qa_company.qendpoint.core.triples.IteratorTripleID;
+import com.the_qa_company.qendpoint.core.triples.TripleID;
+import com.the_qa_company.qendpoint.store.exception.EndpointTimeoutException;
+import com.the_qa_company.qendpoint.utils.BitArrayDisk;
+import org.eclipse.rdf4j.common.iteration.CloseableIteration;
+import org.eclipse.rdf4j.common.iteration.LookAheadIteration;
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.Resource;
+import org.eclipse.rdf4j.model.Value;
+import org.eclipse.rdf4j.query.BindingSet;
+import org.eclipse.rdf4j.query.algebra.Join;
+import org.eclipse.rdf4j.query.algebra.StatementPattern;
+import org.eclipse.rdf4j.query.algebra.TupleExpr;
+import org.eclipse.rdf4j.query.algebra.Var;
+import org.eclipse.rdf4j.query.algebra.evaluation.QueryBindingSet;
+import org.eclipse.rdf4j.query.algebra.evaluation.QueryEvaluationStep;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Evaluation of a join of triple patterns over the HDT ids. The patterns are
+ * evaluated with nested loops over {@link IteratorTripleID}, the variables are
+ * bound to ids and the RDF4J values are only created for the result binding
+ * sets.
+ * <p>
+ * The step can only be used if the delta can't contain a triple matching one
+ * of the patterns, see
+ * {@link #of(Join, EndpointTripleSource, QueryEvaluationStep)}.
+ */
+public class IdJoinEvaluationStep implements QueryEvaluationStep {
+	/**
+	 * create an id join step for a join node
+	 *
+	 * @param join         join node
+	 * @param tripleSource triple source of the connection
+	 * @param fallback     step to use if the input bindings bind a variable of
+	 *                     the join
+	 * @return the step, null if the join can't be evaluated over the HDT ids
+	 */
+	public static IdJoinEvaluationStep of(Join join, EndpointTripleSource tripleSource,
+			QueryEvaluationStep fallback) {
+		EndpointStoreGeneration generation = tripleSource.getEndpointStoreConnection().getGeneration();
+		if (generation.getHdt().getDictionary().supportGraphs() || !generation.getLayers().isEmpty()) {
+			return null;
+		}
+		List<StatementPattern> patterns = new ArrayList<>();
+		if (!collectPatterns(join, patterns)) {
+			return null;
+		}
+
+		HDTConverter converter = generation.getHdtConverter();
+		Map<String, Integer> slots = new HashMap<>();
+		List<String> slotNames = new ArrayList<>();
+		List<TripleComponentRole> slotRoles = new ArrayList<>();
+		Pattern[] compiled = new Pattern[patterns.size()];
+		for (int i = 0; i < compiled.length; i++) {
+			StatementPattern sp = patterns.get(i);
+			if (sp.getContextVar() != null || sp.getScope() != StatementPattern.Scope.DEFAULT_CONTEXTS) {
+				return null;
+			}
+			Var[] vars = { sp.getSubjectVar(), sp.getPredicateVar(), sp.getObjectVar() };
+			long[] constants = new long[3];
+			int[] patternSlots = new int[3];
+			for (int pos = 0; pos < 3; pos++) {
+				Var var = vars[pos];
+				TripleComponentRole role = TripleComponentRole.values()[pos];
+				patternSlots[pos] = -1;
+				if (var.hasValue()) {
+					long id = constantToId(converter, var.getValue(), role);
+					if (id <= 0) {
+						// not in the HDT, the delta might have it
+						return null;
+					}
+					constants[pos] = id;
+				} else {
+					Integer slot = slots.get(var.getName());
+					if (slot == null) {
+						slot = slotNames.size();
+						slots.put(var.getName(), slot);
+						slotNames.add(var.getName());
+						slotRoles.add(role);
+					} else if ((slotRoles.get(slot) == TripleComponentRole.PREDICATE)
+							!= (role == TripleComponentRole.PREDICATE)) {
+						// the predicate ids aren't in the same space
+						return null;
+					}
+					patternSlots[pos] = slot;
+				}
+			}
+			// the pattern should be answered by the HDT alone
+			if (tripleSource.shouldSearchOverNativeStore(generation, constants[0], constants[1], constants[2])) {
+				return null;
+			}
+			compiled[i] = new Pattern(constants, patternSlots);
+		}
+		return new IdJoinEvaluationStep(tripleSource, generation.getId(), compiled, slotNames.toArray(String[]::new),
+				fallback);
+	}
+
+	/**
+	 * collect the patterns of a join of triple patterns
+	 *
+	 * @param expr     join
+	 * @param patterns list to fill
+	 * @return false if the join contains another expression
+	 */
+	static boolean collectPatterns(TupleExpr expr, List<StatementPattern> patterns) {
+		if (expr instanceof StatementPattern sp) {
+			patterns.add(sp);
+			return true;
+		}
+		if (expr instanceof Join join) {
+			return collectPatterns(join.getLeftArg(), patterns) && collectPatterns(join.getRightArg(), patterns);
+		}
+		return false;
+	}
+
+	private static long constantToId(HDTConverter converter, Value value, TripleComponentRole role) {
+		return switch (role) {
+		case SUBJECT -> value instanceof Resource res ? converter.subjectToID(res) : -1;
+		case PREDICATE -> value instanceof IRI iri ? converter.predicateToID(iri) : -1;
+		case OBJECT -> converter.objectToID(value);
+		case GRAPH -> -1;
+		};
+	}
+
+	/**
+	 * triple pattern with the constants ids and the variable slots
+	 *
+	 * @param constants id of the constants, 0 for a variable
+	 * @param slots     slot of the variables, -1 for a constant
+	 */
+	private record Pattern(long[] constants, int[] slots) {}
+
+	private final EndpointTripleSource tripleSource;
+	private final EndpointStore endpoint;
+	// generation of the ids of the patterns
+	private final long generationId;
+	private final Pattern[] patterns;
+	private final String[] slotNames;
+	private final QueryEvaluationStep fallback;
+
+	private IdJoinEvaluationStep(EndpointTripleSource tripleSource, long generationId, Pattern[] patterns,
+			String[] slotNames, QueryEvaluationStep fallback) {
+		this.tripleSource = tripleSource;
+		this.endpoint = tripleSource.getEndpointStore();
+		this.generationId = generationId;
+		this.patterns = patterns;
+		this.slotNames = slotNames;
+		this.fallback = fallback;
+	}
+
+	@Override
+	public CloseableIteration<BindingSet> evaluate(BindingSet bindings) {
+		for (String name : slotNames) {
+			if (bindings.hasBinding(name)) {
+				// the ids of the bound values would have to be resolved
+				return fallback.evaluate(bindings);
+			}
+		}
+		if (tripleSource.getEndpointStoreConnection().getGeneration().getId() != generationId) {
+			// the ids of the constants were computed with a replaced HDT
+			return fallback.evaluate(bindings);
+		}
+		return new IdJoinIteration(bindings);
+	}
+
+	private class IdJoinIteration extends LookAheadIteration<BindingSet> {
+		private final BindingSet parent;
+		private final EndpointStoreConnection connection = tripleSource.getEndpointStoreConnection();
+		private final EndpointStoreGeneration generation = connection.acquireGeneration();
+		private final DeleteBitmapVersions.Snapshot snapshot = connection.acquireReadSnapshot();
+		private final long nshared = generation.getHdt().getDictionary().getNshared();
+		private final IteratorTripleID[] iterators = new IteratorTripleID[patterns.length];
+		// id bound to each slot, with its role and the level binding it
+		private final long[] values = new long[slotNames.length];
+		private final TripleComponentRole[] roles = new TripleComponentRole[slotNames.length];
+		private final int[] boundAt = new int[slotNames.length];
+		private boolean started;
+		private int level;
+
+		IdJoinIteration(BindingSet parent) {
+			this.parent = parent;
+			Arrays.fill(boundAt, -1);
+		}
+
+		/**
+		 * convert an id to another role
+		 *
+		 * @return the id, -1 if the id can't be used in this role
+		 */
+		private long convert(long id, TripleComponentRole from, TripleComponentRole to) {
+			if (from == to) {
+				return id;
+			}
+			// subjects and objects only share the shared section
+			return id <= nshared ? id : -1;
+		}
+
+		private IteratorTripleID search(int index) {
+			Pattern pattern = patterns[index];
+			long[] ids = new long[3];
+			for (int pos = 0; pos < 3; pos++) {
+				int slot = pattern.slots[pos];
+				if (slot == -1) {
+					ids[pos] = pattern.constants[pos];
+				} else if (boundAt[slot] != -1) {
+					long id = convert(values[slot], roles[slot], TripleComponentRole.values()[pos]);
+					if (id == -1) {
+						return null;
+					}
+					ids[pos] = id;
+				}
+			}
+			return generation.getHdt().getTriples().search(new TripleID(ids[0], ids[1], ids[2]));
+		}
+
+		private boolean isDeleted(IteratorTripleID iterator) {
+			if (endpoint.isDeleteDisabled()) {
+				return false;
+			}
+			TripleComponentOrder order = iterator.isLastTriplePositionBoundToOrder() ? iterator.getOrder()
+					: TripleComponentOrder.SPO;
+			MultiLayerBitmapWrapper.MultiLayerModBitmapWrapper dbm = generation.getDeleteBitMap(order);
+			return dbm != null && dbm.<BitArrayDisk>getHandle().getMaxNumBits() != 0 && generation.getDeleteVersions()
+					.isDeleted(snapshot, dbm, order, 0, iterator.getLastTriplePosition());
+		}
+
+		private void unbind(int index) {
+			for (int slot = 0; slot < boundAt.length; slot++) {
+				if (boundAt[slot] == index) {
+					boundAt[slot] = -1;
+				}
+			}
+		}
+
+		private boolean bind(int index, TripleID triple) {
+			Pattern pattern = patterns[index];
+			for (int pos = 0; pos < 3; pos++) {
+				int slot = pattern.slots[pos];
+				if (slot == -1) {
+					continue;
+				}
+				TripleComponentRole role = TripleComponentRole.values()[pos];
+				long id = switch (pos) {
+				case 0 -> triple.getSubject();
+				case 1 -> triple.getPredicate();
+				default -> triple.getObject();
+				};
+				if (boundAt[slot] == -1) {
+					values[slot] = id;
+					roles[slot] = role;
+					boundAt[slot] = index;
+				} else if (convert(values[slot], roles[slot], role) != id) {
+					// variable used twice in the same pattern
+					return false;
+				}
+			}
+			return true;
+		}
+
+		private BindingSet createBindingSet() {
+			QueryBindingSet set = new QueryBindingSet(parent);
+			HDTConverter converter = generation.getHdtConverter();
+			for (int slot = 0; slot < slotNames.length; slot++) {
+				set.addBinding(slotNames[slot], converter.idToValue(roles[slot], values[slot]));
+			}
+			return set;
+		}
+
+		@Override
+		protected BindingSet getNextElement() {
+			if (!started) {
+				started = true;
+				iterators[0] = search(0);
+			}
+			while (level >= 0) {
+				if (connection.isTimeout()) {
+					throw new EndpointTimeoutException();
+				}
+				IteratorTripleID iterator = iterators[level];
+				unbind(level);
+				if (iterator == null || !iterator.hasNext()) {
+					level--;
+					continue;
+				}
+				TripleID triple = iterator.next();
+				if (isDeleted(iterator) || !bind(level, triple)) {
+					continue;
+				}
+				if (level == patterns.length - 1) {
+					return createBindingSet();
+				}
+				level++;
+				iterators[level] = search(level);
+			}
+			return null;
+		}
+
+		@Override
+		protected void handleClose() {
+			// the HDT iterators are in memory, only the snapshot and the
+			// generation are pinned
+			try {
+				snapshot.close();
+			} finally {
+				generation.close();
+			}
+		}
+	}
+}
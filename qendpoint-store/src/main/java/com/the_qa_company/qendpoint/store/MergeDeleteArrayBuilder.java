@@ -0,0 +1,347 @@
+package com.the_qa_company.qendpoint.store;
+
+import com.the_qa_company.qendpoint.core.compact.bitmap.MultiLayerBitmap;
+import com.the_qa_company.qendpoint.core.compact.bitmap.MultiLayerBitmapWrapper;
+import com.the_qa_company.qendpoint.core.enums.TripleComponentOrder;
+import com.the_qa_company.qendpoint.core.enums.TripleComponentRole;
+import com.the_qa_company.qendpoint.core.hdt.HDT;
+import com.the_qa_company.qendpoint.core.triples.IteratorTripleID;
+import com.the_qa_company.qendpoint.core.triples.TripleID;
+import com.the_qa_company.qendpoint.core.triples.impl.BitmapQuadTriples;
+import com.the_qa_company.qendpoint.core.triples.impl.BitmapTriples;
+import com.the_qa_company.qendpoint.core.util.concurrent.ExceptionThread;
+import com.the_qa_company.qendpoint.core.util.io.Closer;
+import com.the_qa_company.qendpoint.store.exception.EndpointStoreException;
+import com.the_qa_company.qendpoint.utils.BitArrayDisk;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Builder to translate the triples deleted from the old HDT during a merge into
+ * the delete bitmaps of the new HDT. The translation is split in two passes,
+ * {@link #translateAll(BitArrayDisk)} can run on a copy of the temp delete
+ * bitmap while the connections are still reading the old HDT, the triples
+ * deleted after the copy are recorded with {@link #addLateDelete(long)} and
+ * translated by {@link #translateLateDeletes()} once the connections are
+ * locked.
+ * <p>
+ * The deleted triples are translated in batches, the bitmap of each order is
+ * then filled by its own thread with the positions read in the indexes of the
+ * new HDT.
+ */
+class MergeDeleteArrayBuilder implements Closeable {
+	/**
+	 * number of translated triples to search at once in the new HDT
+	 */
+	static final int BATCH_SIZE = 1 << 16;
+	/**
+	 * position of a triple with wildcards, searched in each order
+	 */
+	private static final long SEARCH = -2;
+
+	/**
+	 * mark deleted triples in the delete bitmaps, one thread per order
+	 * <p>
+	 * The position of a bound triple is read once in the main index of the
+	 * HDT, the triples missing from the HDT are dropped, the position in the
+	 * other orders is then read with the adjacency lists of their index
+	 * instead of a search per order. The triples with wildcards are searched
+	 * in each order.
+	 *
+	 * @param hdt         the HDT of the bitmaps
+	 * @param validOrders the orders to mark
+	 * @param deleteArray the delete bitmaps, indexed by order ordinal
+	 * @param triples     the triples to delete, they can contain wildcards
+	 */
+	static void markDeleted(HDT hdt, Set<TripleComponentOrder> validOrders,
+			MultiLayerBitmapWrapper.MultiLayerModBitmapWrapper[] deleteArray, List<TripleID> triples) {
+		if (triples.isEmpty()) {
+			return;
+		}
+		long[] positions = findMainPositions(hdt, triples);
+		if (validOrders.size() == 1) {
+			for (TripleComponentOrder order : validOrders) {
+				markDeleted(hdt, order, deleteArray[order.ordinal()], triples, positions);
+			}
+			return;
+		}
+		ExceptionThread threads = null;
+		for (TripleComponentOrder order : validOrders) {
+			ExceptionThread thread = new ExceptionThread(
+					() -> markDeleted(hdt, order, deleteArray[order.ordinal()], triples, positions),
+					"MarkDeleted" + order);
+			threads = threads == null ? thread : threads.attach(thread);
+		}
+		try {
+			threads.startAll().joinAndCrashIfRequired();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new EndpointStoreException("Interrupted while marking the deleted triples", e);
+		}
+	}
+
+	/**
+	 * search deleted triples in each order, the path used for the triples
+	 * with wildcards
+	 *
+	 * @param hdt         the HDT of the bitmaps
+	 * @param validOrders the orders to mark
+	 * @param deleteArray the delete bitmaps, indexed by order ordinal
+	 * @param triples     the triples to delete
+	 */
+	static void markDeletedSearch(HDT hdt, Set<TripleComponentOrder> validOrders,
+			MultiLayerBitmapWrapper.MultiLayerModBitmapWrapper[] deleteArray, List<TripleID> triples) {
+		for (TripleComponentOrder order : validOrders) {
+			for (TripleID triple : triples) {
+				markDeletedSearch(hdt, order, deleteArray[order.ordinal()], triple);
+			}
+		}
+	}
+
+	/**
+	 * find the positions of the bound triples in the main index of the HDT
+	 *
+	 * @param hdt     the HDT
+	 * @param triples the triples
+	 * @return the positions, {@link #SEARCH} for the triples to search, -1 for
+	 *         the triples missing from the HDT, null if the triples of the HDT
+	 *         aren't bitmap triples
+	 */
+	private static long[] findMainPositions(HDT hdt, List<TripleID> triples) {
+		if (!(hdt.getTriples() instanceof BitmapTriples bitmapTriples)) {
+			return null;
+		}
+		boolean supportGraphs = hdt.getDictionary().supportGraphs();
+		long[] positions = new long[triples.size()];
+		for (int i = 0; i < positions.length; i++) {
+			TripleID triple = triples.get(i);
+			if (!triple.isValid() || (supportGraphs && !triple.isQuad())) {
+				positions[i] = SEARCH;
+			} else {
+				positions[i] = bitmapTriples.findTriplePosition(triple, bitmapTriples.getOrder());
+			}
+		}
+		return positions;
+	}
+
+	private static void markDeleted(HDT hdt, TripleComponentOrder order,
+			MultiLayerBitmapWrapper.MultiLayerModBitmapWrapper deleteBitMap, List<TripleID> triples,
+			long[] positions) {
+		if (positions == null) {
+			for (TripleID triple : triples) {
+				markDeletedSearch(hdt, order, deleteBitMap, triple);
+			}
+			return;
+		}
+		BitmapTriples bitmapTriples = (BitmapTriples) hdt.getTriples();
+		MultiLayerBitmap quadInfo = bitmapTriples instanceof BitmapQuadTriples quadTriples
+				? quadTriples.getQuadInfoAG()
+				: null;
+		boolean supportGraphs = hdt.getDictionary().supportGraphs();
+		for (int i = 0; i < positions.length; i++) {
+			TripleID triple = triples.get(i);
+			long position = positions[i];
+			if (position == SEARCH) {
+				markDeletedSearch(hdt, order, deleteBitMap, triple);
+				continue;
+			}
+			if (position == -1) {
+				// not in the HDT
+				continue;
+			}
+			if (order != bitmapTriples.getOrder()) {
+				position = bitmapTriples.findTriplePosition(triple, order);
+				if (position == -1) {
+					// no index for this order
+					markDeletedSearch(hdt, order, deleteBitMap, triple);
+					continue;
+				}
+			}
+			long graph = supportGraphs ? triple.getGraph() : 1;
+			if (quadInfo != null && !quadInfo.access(graph - 1, position)) {
+				// not in this graph
+				continue;
+			}
+			deleteBitMap.set(graph - 1, position, true);
+		}
+	}
+
+	private static void markDeletedSearch(HDT hdt, TripleComponentOrder order,
+			MultiLayerBitmapWrapper.MultiLayerModBitmapWrapper deleteBitMap, TripleID triple) {
+		boolean supportGraphs = hdt.getDictionary().supportGraphs();
+		IteratorTripleID next = hdt.getTriples().search(triple, order.mask);
+		while (next.hasNext()) {
+			TripleID tid = next.next();
+			assert next.isLastTriplePositionBoundToOrder() && next.getOrder() == order : "invalid order";
+
+			long newIndex = next.getLastTriplePosition();
+			long graph;
+			if (supportGraphs) {
+				graph = tid.getGraph();
+			} else {
+				graph = 1;
+			}
+			deleteBitMap.set(graph - 1, newIndex, true);
+		}
+	}
+
+	private final HDT oldHdt;
+	private final HDT newHdt;
+	private final Set<TripleComponentOrder> validOrders;
+	private final MultiLayerBitmapWrapper.MultiLayerModBitmapWrapper[] newDeleteArray;
+	private final boolean supportGraphs;
+	private final long oldGraphs;
+	private final List<Long> lateDeletes = new ArrayList<>();
+
+	private long lastOldSubject = -2;
+	private long lastNewSubject = -2;
+	private long lastOldPredicate = -2;
+	private long lastNewPredicate = -2;
+	private long lastOldObject = -2;
+	private long lastNewObject = -2;
+	private long lastOldGraph = -2;
+	private long lastNewGraph = -2;
+
+	MergeDeleteArrayBuilder(HDT oldHdt, HDT newHdt, Set<TripleComponentOrder> validOrders, long oldGraphs,
+			long newGraphs) throws IOException {
+		this.oldHdt = oldHdt;
+		this.newHdt = newHdt;
+		this.validOrders = validOrders;
+		this.oldGraphs = oldGraphs;
+		this.supportGraphs = oldHdt.getDictionary().supportGraphs();
+		newDeleteArray = new MultiLayerBitmapWrapper.MultiLayerModBitmapWrapper[TripleComponentOrder.values().length];
+		try {
+			for (TripleComponentOrder order : validOrders) {
+				newDeleteArray[order.ordinal()] = MultiLayerBitmapWrapper
+						.of(new BitArrayDisk(newHdt.getTriples().getNumberOfElements() * newGraphs), newGraphs);
+			}
+		} catch (Throwable t) {
+			try {
+				Closer.closeSingle(newDeleteArray);
+			} catch (Throwable t2) {
+				t.addSuppressed(t2);
+			}
+			throw t;
+		}
+	}
+
+	/**
+	 * @return the new HDT
+	 */
+	public HDT getNewHdt() {
+		return newHdt;
+	}
+
+	/**
+	 * @return the delete bitmaps of the new HDT
+	 */
+	public MultiLayerBitmapWrapper.MultiLayerModBitmapWrapper[] getNewDeleteArray() {
+		return newDeleteArray;
+	}
+
+	/**
+	 * translate all the deleted triples of a temp delete bitmap copy
+	 *
+	 * @param handle copy of the SPO temp delete bitmap of the old HDT, not
+	 *               modified during the translation
+	 */
+	public void translateAll(BitArrayDisk handle) {
+		List<TripleID> batch = new ArrayList<>();
+		long index = handle.selectNext1(0);
+		while (index != -1) {
+			translate(index, batch);
+			if (batch.size() >= BATCH_SIZE) {
+				markDeleted(newHdt, validOrders, newDeleteArray, batch);
+				batch.clear();
+			}
+			index = handle.selectNext1(index + 1);
+		}
+		markDeleted(newHdt, validOrders, newDeleteArray, batch);
+	}
+
+	/**
+	 * record a triple deleted after the copy given to
+	 * {@link #translateAll(BitArrayDisk)}
+	 *
+	 * @param index index in the SPO temp delete bitmap
+	 */
+	public synchronized void addLateDelete(long index) {
+		lateDeletes.add(index);
+	}
+
+	/**
+	 * translate the triples recorded with {@link #addLateDelete(long)}
+	 */
+	public synchronized void translateLateDeletes() {
+		List<TripleID> batch = new ArrayList<>(lateDeletes.size());
+		for (long index : lateDeletes) {
+			translate(index, batch);
+		}
+		markDeleted(newHdt, validOrders, newDeleteArray, batch);
+		lateDeletes.clear();
+	}
+
+	private void translate(long index, List<TripleID> batch) {
+		long position = index / oldGraphs;
+		long layer = index % oldGraphs;
+
+		// find the deleted triple in the old HDT index
+		TripleID tripleID = oldHdt.getTriples().findTriple(position);
+		if (!tripleID.isValid()) {
+			return;
+		}
+		long oldSubject = tripleID.getSubject();
+		long oldPredicate = tripleID.getPredicate();
+		long oldObject = tripleID.getObject();
+
+		if (oldSubject != lastOldSubject) {
+			lastNewSubject = newHdt.getDictionary().stringToId(
+					oldHdt.getDictionary().idToString(oldSubject, TripleComponentRole.SUBJECT),
+					TripleComponentRole.SUBJECT);
+			lastOldSubject = oldSubject;
+		}
+		if (oldPredicate != lastOldPredicate) {
+			lastNewPredicate = newHdt.getDictionary().stringToId(
+					oldHdt.getDictionary().idToString(oldPredicate, TripleComponentRole.PREDICATE),
+					TripleComponentRole.PREDICATE);
+			lastOldPredicate = oldPredicate;
+		}
+		if (oldObject != lastOldObject) {
+			lastNewObject = newHdt.getDictionary().stringToId(
+					oldHdt.getDictionary().idToString(oldObject, TripleComponentRole.OBJECT),
+					TripleComponentRole.OBJECT);
+			lastOldObject = oldObject;
+		}
+
+		// search over the given triple with the ID so that we can mark the
+		// new array.
+		TripleID triple;
+		if (supportGraphs) {
+			long oldGraph = layer + 1;
+			if (oldGraph != lastOldGraph) {
+				lastNewGraph = newHdt.getDictionary().stringToId(
+						oldHdt.getDictionary().idToString(oldGraph, TripleComponentRole.GRAPH),
+						TripleComponentRole.GRAPH);
+				lastOldGraph = oldGraph;
+			}
+			triple = new TripleID(lastNewSubject, lastNewPredicate, lastNewObject, lastNewGraph);
+		} else {
+			triple = new TripleID(lastNewSubject, lastNewPredicate, lastNewObject);
+		}
+
+		if (triple.isNoMatch()) {
+			return;
+		}
+
+		batch.add(triple);
+	}
+
+	@Override
+	public void close() throws IOException {
+		Closer.closeSingle(newDeleteArray);
+	}
+}
@@ -0,0 +1,295 @@
+package com.the_qa_company.qendpoint.store;
+
+import com.the_qa_company.qendpoint.core.util.crc.CRC32;
+import com.the_qa_company.qendpoint.core.util.crc.CRCInputStream;
+import com.the_qa_company.qendpoint.core.util.crc.CRCOutputStream;
+import com.the_qa_company.qendpoint.core.util.io.IOUtil;
+import org.eclipse.rdf4j.model.BNode;
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.Literal;
+import org.eclipse.rdf4j.model.Resource;
+import org.eclipse.rdf4j.model.Statement;
+import org.eclipse.rdf4j.model.Triple;
+import org.eclipse.rdf4j.model.Value;
+import org.eclipse.rdf4j.model.ValueFactory;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+
+/**
+ * Binary log of the triples deleted during a merge, replayed at the end of the
+ * merge to delete them from the new HDT.
+ * <p>
+ * The records are written in groups, a group is committed with one write and
+ * one fsync, so the concurrent deletes waiting for the same flush share it.
+ * Each group is written as
+ *
+ * <pre>
+ * [int size][records (size bytes)][CRC32 of the size and the records]
+ * </pre>
+ * <p>
+ * A group with a bad size or a bad CRC is a write interrupted by a crash, it
+ * ends the log and is truncated when the log is reopened.
+ */
+public class MergeDeleteLog implements Closeable {
+	/**
+	 * default size of a group before it is committed without waiting for a
+	 * flush
+	 */
+	public static final int DEFAULT_GROUP_SIZE = 1 << 20;
+
+	private static final byte FLAG_CONTEXT = 1;
+	private static final byte TERM_IRI = 0;
+	private static final byte TERM_BNODE = 1;
+	private static final byte TERM_LITERAL = 2;
+	private static final byte TERM_LANG_LITERAL = 3;
+	private static final byte TERM_TRIPLE = 4;
+
+	private final Path file;
+	private final FileChannel channel;
+	private final int groupSize;
+	private final ByteArrayOutputStream group = new ByteArrayOutputStream();
+	private long records;
+	private long groups;
+
+	/**
+	 * open a log with the default group size
+	 *
+	 * @param file   log file
+	 * @param append keep the valid groups of a previous log, otherwise the log
+	 *               is cleared
+	 * @throws IOException open exception
+	 */
+	public MergeDeleteLog(Path file, boolean append) throws IOException {
+		this(file, append, DEFAULT_GROUP_SIZE);
+	}
+
+	/**
+	 * open a log
+	 *
+	 * @param file      log file
+	 * @param append    keep the valid groups of a previous log, otherwise the
+	 *                  log is cleared
+	 * @param groupSize size of a group before it is committed without waiting
+	 *                  for a flush
+	 * @throws IOException open exception
+	 */
+	public MergeDeleteLog(Path file, boolean append, int groupSize) throws IOException {
+		this.file = file;
+		this.groupSize = groupSize;
+		channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+				StandardOpenOption.WRITE);
+		try {
+			long end = append ? scan(null, null) : 0;
+			if (channel.size() != end) {
+				// remove the groups of a crashed write
+				channel.truncate(end);
+				channel.force(true);
+			}
+			channel.position(end);
+		} catch (Throwable t) {
+			try {
+				channel.close();
+			} catch (Throwable t2) {
+				t.addSuppressed(t2);
+			}
+			throw t;
+		}
+	}
+
+	/**
+	 * add a deleted triple to the log, the triple is durable after the next
+	 * {@link #flush()}
+	 *
+	 * @param subject   subject
+	 * @param predicate predicate
+	 * @param object    object
+	 * @param context   context, null for the default graph
+	 * @throws IOException write exception
+	 */
+	public synchronized void append(Resource subject, IRI predicate, Value object, Resource context)
+			throws IOException {
+		group.write(context != null ? FLAG_CONTEXT : 0);
+		writeTerm(subject);
+		writeTerm(predicate);
+		writeTerm(object);
+		if (context != null) {
+			writeTerm(context);
+		}
+		records++;
+		if (group.size() >= groupSize) {
+			commitGroup();
+		}
+	}
+
+	/**
+	 * commit the pending triples
+	 *
+	 * @throws IOException write exception
+	 */
+	public synchronized void flush() throws IOException {
+		if (group.size() != 0) {
+			commitGroup();
+		}
+	}
+
+	private void commitGroup() throws IOException {
+		ByteArrayOutputStream buffer = new ByteArrayOutputStream(group.size() + 8);
+		CRCOutputStream out = new CRCOutputStream(buffer, new CRC32());
+		IOUtil.writeInt(out, group.size());
+		group.writeTo(out);
+		out.writeCRC();
+		group.reset();
+
+		ByteBuffer data = ByteBuffer.wrap(buffer.toByteArray());
+		while (data.hasRemaining()) {
+			channel.write(data);
+		}
+		channel.force(false);
+		groups++;
+	}
+
+	private void writeTerm(Value value) throws IOException {
+		if (value instanceof IRI iri) {
+			group.write(TERM_IRI);
+			IOUtil.writeSizedString(group, iri.toString(), null);
+		} else if (value instanceof BNode bnode) {
+			group.write(TERM_BNODE);
+			IOUtil.writeSizedString(group, bnode.getID(), null);
+		} else if (value instanceof Literal literal) {
+			if (literal.getLanguage().isPresent()) {
+				group.write(TERM_LANG_LITERAL);
+				IOUtil.writeSizedString(group, literal.getLabel(), null);
+				IOUtil.writeSizedString(group, literal.getLanguage().get(), null);
+			} else {
+				group.write(TERM_LITERAL);
+				IOUtil.writeSizedString(group, literal.getLabel(), null);
+				IOUtil.writeSizedString(group, literal.getDatatype().toString(), null);
+			}
+		} else if (value instanceof Triple triple) {
+			group.write(TERM_TRIPLE);
+			writeTerm(triple.getSubject());
+			writeTerm(triple.getPredicate());
+			writeTerm(triple.getObject());
+		} else {
+			throw new IllegalArgumentException("Can't write value of type " + value.getClass());
+		}
+	}
+
+	private static Value readTerm(InputStream in, ValueFactory vf) throws IOException {
+		int type = in.read();
+		return switch (type) {
+		case TERM_IRI -> vf.createIRI(IOUtil.readSizedString(in, null));
+		case TERM_BNODE -> vf.createBNode(IOUtil.readSizedString(in, null));
+		case TERM_LITERAL -> {
+			String label = IOUtil.readSizedString(in, null);
+			yield vf.createLiteral(label, vf.createIRI(IOUtil.readSizedString(in, null)));
+		}
+		case TERM_LANG_LITERAL -> {
+			String label = IOUtil.readSizedString(in, null);
+			yield vf.createLiteral(label, IOUtil.readSizedString(in, null));
+		}
+		case TERM_TRIPLE -> vf.createTriple((Resource) readTerm(in, vf), (IRI) readTerm(in, vf), readTerm(in, vf));
+		case -1 -> throw new EOFException();
+		default -> throw new IOException("Bad term type in merge delete log: " + type);
+		};
+	}
+
+	/**
+	 * read the valid groups of the log file
+	 *
+	 * @param vf     value factory to create the read triples, can be null if
+	 *               action is null
+	 * @param action action to run over the triples, null to only scan the
+	 *               groups
+	 * @return the end of the last valid group
+	 * @throws IOException read exception
+	 */
+	private long scan(ValueFactory vf, Consumer<Statement> action) throws IOException {
+		long end = 0;
+		long fileSize = Files.size(file);
+		try (InputStream stream = new BufferedInputStream(Files.newInputStream(file))) {
+			CRCInputStream in = new CRCInputStream(stream, new CRC32());
+			while (end + 8 <= fileSize) {
+				in.setCRC(new CRC32());
+				int size = IOUtil.readInt(in);
+				if (size < 0 || end + 8 + size > fileSize) {
+					// partial group
+					break;
+				}
+				byte[] records = IOUtil.readBuffer(in, size, null);
+				if (!in.readCRCAndCheck()) {
+					break;
+				}
+				if (action != null) {
+					readRecords(records, vf, action);
+				}
+				end += 8 + size;
+			}
+		}
+		return end;
+	}
+
+	private static void readRecords(byte[] records, ValueFactory vf, Consumer<Statement> action) throws IOException {
+		InputStream in = new ByteArrayInputStream(records);
+		int flags;
+		while ((flags = in.read()) != -1) {
+			Resource subject = (Resource) readTerm(in, vf);
+			IRI predicate = (IRI) readTerm(in, vf);
+			Value object = readTerm(in, vf);
+			if ((flags & FLAG_CONTEXT) != 0) {
+				action.accept(vf.createStatement(subject, predicate, object, (Resource) readTerm(in, vf)));
+			} else {
+				action.accept(vf.createStatement(subject, predicate, object));
+			}
+		}
+	}
+
+	/**
+	 * commit the pending triples and read all the triples of the log, the log
+	 * is read sequentially without parsing
+	 *
+	 * @param vf     value factory to create the triples
+	 * @param action action to run over the triples
+	 * @throws IOException read exception
+	 */
+	public synchronized void forEach(ValueFactory vf, Consumer<Statement> action) throws IOException {
+		flush();
+		scan(vf, action);
+	}
+
+	/**
+	 * @return the number of triples added since the log was opened
+	 */
+	public synchronized long getRecords() {
+		return records;
+	}
+
+	/**
+	 * @return the number of groups committed since the log was opened
+	 */
+	public synchronized long getGroups() {
+		return groups;
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		try {
+			flush();
+		} finally {
+			channel.close();
+		}
+	}
+
+}
@@ -16,29 +16,29 @@ import org.eclipse.rdf4j.model.Statement;
 import org.eclipse.rdf4j.model.Value;
 import org.eclipse.rdf4j.repository.RepositoryConnection;
 import org.eclipse.rdf4j.repository.RepositoryResult;
-import org.eclipse.rdf4j.rio.RDFFormat;
-import org.eclipse.rdf4j.rio.RDFWriter;
-import org.eclipse.rdf4j.rio.Rio;
+import com.the_qa_company.qendpoint.core.compact.bitmap.Bitmap;
 import com.the_qa_company.qendpoint.core.compact.bitmap.BitmapFactory;
-import com.the_qa_company.qendpoint.core.enums.RDFNotation;
 import com.the_qa_company.qendpoint.core.enums.TripleComponentRole;
 import com.the_qa_company.qendpoint.core.exceptions.ParserException;
 import com.the_qa_company.qendpoint.core.hdt.HDT;
 import com.the_qa_company.qendpoint.core.hdt.HDTManager;
+import com.the_qa_company.qendpoint.core.iterator.utils.MapIterator;
 import com.the_qa_company.qendpoint.core.options.HDTOptionsKeys;
+import com.the_qa_company.qendpoint.core.quad.QuadString;
+import com.the_qa_company.qendpoint.core.triples.TripleString;
 import com.the_qa_company.qendpoint.core.util.StopWatch;
+import com.the_qa_company.qendpoint.core.util.io.Closer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.BufferedOutputStream;
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.OpenOption;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
 
@@ -406,21 +406,6 @@ public class MergeRunnable {
 		this.endpointFiles = endpoint.getEndpointFiles();
 	}
 
-	/**
-	 * create a lock to prevent new connection
-	 *
-	 * @return the {@link Lock}
-	 */
-	private Lock createConnectionLock() {
-		Lock l = endpoint.lockToPreventNewConnections.createLock("translate-lock");
-
-		if (MergeRunnableStopPoint.debug) {
-			MergeRunnableStopPoint.setLastLock(l);
-		}
-
-		return l;
-	}
-
 	/**
 	 * create a lock to prevent new update
 	 *
@@ -459,17 +444,6 @@ public class MergeRunnable {
 
 	}
 
-	/**
-	 * wait all active connection locks
-	 *
-	 * @throws InterruptedException in case of interruption
-	 */
-	private void waitForActiveConnections() throws InterruptedException {
-		logger.info("Waiting for connections...");
-		endpoint.locksHoldByConnections.waitForActiveLocks();
-		logger.info("All connections completed.");
-	}
-
 	/**
 	 * wait all active updates locks
 	 *
@@ -502,6 +476,8 @@ public class MergeRunnable {
 				new MergeThread<>(((restarting, data) -> step2(restarting, data, null)), this::reloadDataFromStep2));
 		case 3 -> Optional.of(new MergeThread<>(this::preloadStep3, (restarting, data) -> step3(restarting, data, null),
 				this::reloadDataFromStep3));
+		case 4 -> Optional.of(new MergeThread<>(this::step2Layer, this::reloadDataFromStep2));
+		case 5 -> Optional.of(new MergeThread<>(this::step3Layer, this::reloadDataFromStep3));
 		default -> Optional.empty();
 		};
 	}
@@ -611,6 +587,9 @@ public class MergeRunnable {
 
 		debugStepPoint(MergeRunnableStopPoint.STEP1_TEST_SELECT3);
 
+		// the number of triples we are about to merge
+		long deltaTriples = this.endpoint.triplesCount;
+
 		// switch the store to freeze it
 		this.endpoint.switchStore = !this.endpoint.switchStore;
 
@@ -622,20 +601,26 @@ public class MergeRunnable {
 		sleep(extendsTimeMergeBeginningAfterSwitch, "extendsTimeMergeBeginningAfterSwitch");
 		debugStepPoint(MergeRunnableStopPoint.STEP1_OLD_SLEEP_AFTER_SWITCH);
 
-		// make a copy of the delete array so that the merge thread doesn't
-		// interfere with the store data access @todo:
-		// a lock is needed here
-		if (restarting) {
-			// delete previous array in case of restart
+		EndpointStoreDump dumpInfo = endpoint.getDumpRef().getAndSet(null);
+		boolean layerMerge = shouldMergeIntoLayer(dumpInfo, deltaTriples);
+
+		if (!layerMerge) {
+			// make a copy of the delete array so that the merge thread doesn't
+			// interfere with the store data access @todo:
+			// a lock is needed here
+			if (restarting) {
+				// delete previous array in case of restart
+				for (TripleComponentOrder order : endpoint.getValidOrders()) {
+					Files.deleteIfExists(Path.of(endpointFiles.getTripleDeleteCopyArr(order)));
+				}
+			}
 			for (TripleComponentOrder order : endpoint.getValidOrders()) {
-				Files.deleteIfExists(Path.of(endpointFiles.getTripleDeleteCopyArr(order)));
+				Files.copy(Path.of(endpointFiles.getTripleDeleteArr(order)),
+						Path.of(endpointFiles.getTripleDeleteCopyArr(order)), StandardCopyOption.REPLACE_EXISTING);
 			}
+			// the layers are folded into the new HDT
+			endpoint.getLayers().copyDeleteBitMaps();
 		}
-		for (TripleComponentOrder order : endpoint.getValidOrders()) {
-			Files.copy(Path.of(endpointFiles.getTripleDeleteArr(order)),
-					Path.of(endpointFiles.getTripleDeleteCopyArr(order)), StandardCopyOption.REPLACE_EXISTING);
-		}
-		EndpointStoreDump dumpInfo = endpoint.getDumpRef().getAndSet(null);
 
 		// #391: stop the lucene updates
 		if (dumpInfo != null) {
@@ -654,8 +639,34 @@ public class MergeRunnable {
 		// write the switchStore value to disk in case, something crash we can
 		// recover
 		this.endpoint.writeWhichStore();
-		markRestartStepCompleted(2);
-		step2(false, null, dumpInfo);
+		if (layerMerge) {
+			markRestartStepCompleted(4);
+			step2Layer(false, null);
+		} else {
+			markRestartStepCompleted(2);
+			step2(false, null, dumpInfo);
+		}
+	}
+
+	/**
+	 * test if a merge should write a new delta HDT layer instead of rewriting
+	 * the base HDT
+	 *
+	 * @param dumpInfo     dump info (if any)
+	 * @param deltaTriples the number of triples to merge
+	 * @return true to write a new layer, false to merge into the base HDT
+	 * @see EndpointStore#OPTION_QENDPOINT_MERGE_TIERED
+	 */
+	private boolean shouldMergeIntoLayer(EndpointStoreDump dumpInfo, long deltaTriples) {
+		if (!endpoint.isTieredMerge() || dumpInfo != null) {
+			// the dump requires a full HDT
+			return false;
+		}
+		long baseTriples = endpoint.getHdt().getTriples().getNumberOfElements();
+		long layersTriples = endpoint.getLayers().getNumberOfElements() + deltaTriples;
+		int maxRatio = endpoint.getHDTSpec().getInt32(EndpointStore.OPTION_QENDPOINT_MERGE_TIERED_MAX_RATIO, 10);
+		// fold the layers into the base HDT if they are too big
+		return layersTriples * maxRatio < baseTriples;
 	}
 
 	/**
@@ -684,15 +695,12 @@ public class MergeRunnable {
 			throws InterruptedException, IOException {
 		debugStepPoint(MergeRunnableStopPoint.STEP2_START);
 		// diff hdt indexes...
-		logger.debug("Dump all triples from the native store to file");
+		logger.debug("Create HDT index from the native store triples");
 		boolean graph = endpoint.getHdt().getDictionary().supportGraphs();
 		try (RepositoryConnection nativeStoreConnection = endpoint.getConnectionToFreezedStore()) {
-			writeTempFile(nativeStoreConnection, endpointFiles.getRDFTempOutput(graph), graph);
+			createHDTDump(nativeStoreConnection, endpointFiles.getHDTTempOutput(), graph);
 			nativeStoreConnection.commit();
 		}
-
-		logger.debug("Create HDT index from dumped file");
-		createHDTDump(endpointFiles.getRDFTempOutput(graph), endpointFiles.getHDTTempOutput());
 		// cat the original index and the temp index
 		logger.debug("HDT diffcat");
 		catDiffIndexes(endpointFiles.getHDTIndex(), endpointFiles.getTripleDeleteCopyArr(TripleComponentOrder.SPO),
@@ -709,12 +717,14 @@ public class MergeRunnable {
 
 		// delete the file after the mark if the shutdown occurs during the
 		// deletes
-		delete(endpointFiles.getRDFTempOutput(graph));
 		delete(endpointFiles.getHDTTempOutput());
 		for (TripleComponentOrder order : endpoint.getValidOrders()) {
 			delete(endpointFiles.getTripleDeleteCopyArr(order));
 			delete(endpointFiles.getTripleDeleteArr(order));
 		}
+		for (EndpointStoreLayers.Layer layer : endpoint.getLayers().getLayers()) {
+			deleteIfExists(endpointFiles.getLayerDeleteCopyArr(layer.getId()));
+		}
 
 		logger.info("End merge step 2");
 
@@ -805,7 +815,7 @@ public class MergeRunnable {
 		endpoint.initTempDeleteArray();
 		endpoint.setMerging(true);
 
-		return createConnectionLock();
+		return createUpdateLock();
 	}
 
 	/**
@@ -831,22 +841,39 @@ public class MergeRunnable {
 				endpoint.setDumping(endpoint.getDumpRef().get() != null);
 			}
 			graph = newHdt.getDictionary().supportGraphs();
+			// compute the join statistics before locking the connections,
+			// they are loaded with the new HDT
+			try {
+				endpoint.computeJoinStatistics(newHdt);
+			} catch (IOException | RuntimeException e) {
+				logger.warn("Can't compute the join statistics of the new HDT", e);
+			}
 			// convert all triples added to the merge store to new IDs of the
 			// new
 			// generated HDT
 			logger.debug("ID conversion");
-			// create a lock so that new incoming connections don't do anything
+			// create a lock so that new incoming updates don't do anything
 			if (!restarting) {
-				translateLock = createConnectionLock();
+				// translate the deletes while the connections are still using
+				// the old HDT, only the late deletes are translated under the
+				// lock. The readers aren't drained: they keep the generation
+				// of the old HDT and its delta stores until they release it,
+				// only the updates are waited before the swap.
+				this.endpoint.prepareDeleteArray(newHdt);
+				translateLock = createUpdateLock();
 				// wait for all running updates to finish
-				waitForActiveConnections();
+				waitForActiveUpdates();
 			} else {
 				translateLock = lock;
 			}
 
+			// the next changes are only visible to the new generation
+			this.endpoint.markGenerationReplaced();
 			this.endpoint.setFreezeNotifications(true);
 
 			this.endpoint.resetDeleteArray(newHdt);
+			// the layers are now in the new HDT
+			this.endpoint.getLayers().clear();
 		}
 
 		if (!endpoint.getHDTSpec().getBoolean(HDTOptionsKeys.BITMAPTRIPLES_INDEX_NO_FOQ, false)) {
@@ -885,6 +912,9 @@ public class MergeRunnable {
 		// mark the triples as deleted from the temp file stored while merge
 		this.endpoint.markDeletedTempTriples();
 		this.endpoint.setFreezeNotifications(false);
+		// the new connections read the new HDT, the old one is closed with
+		// the last reader of the previous generation
+		this.endpoint.publishGeneration();
 		logger.debug("Releasing lock for ID conversion ....");
 
 		boolean restartAnother = endpoint.getDumpRef().get() != null;
@@ -918,6 +948,201 @@ public class MergeRunnable {
 		}
 	}
 
+	/**
+	 * start the merge at step2 of a tiered merge, the frozen store is written
+	 * into a new delta HDT layer
+	 *
+	 * @param restarting if we are restarting from step 2 or not
+	 * @param lock       the return value or {@link #reloadDataFromStep2()}
+	 * @throws InterruptedException for wait exception
+	 * @throws IOException          for file exception
+	 */
+	private synchronized void step2Layer(boolean restarting, Lock lock) throws InterruptedException, IOException {
+		debugStepPoint(MergeRunnableStopPoint.STEP2_START);
+		logger.debug("Create HDT layer from the native store triples");
+		boolean graph = endpoint.getHdt().getDictionary().supportGraphs();
+		try (RepositoryConnection nativeStoreConnection = endpoint.getConnectionToFreezedStore()) {
+			createHDTDump(nativeStoreConnection, endpointFiles.getHDTNewLayer(), graph);
+			nativeStoreConnection.commit();
+		}
+
+		debugStepPoint(MergeRunnableStopPoint.STEP2_END);
+		markRestartStepCompleted(5);
+
+		logger.info("End merge step 2");
+
+		step3Layer(false, null);
+	}
+
+	/**
+	 * start the merge at step3 of a tiered merge, the new layer is added to the
+	 * store
+	 *
+	 * @param restarting if we are restarting from step 3 or not
+	 * @param lock       the return value or {@link #reloadDataFromStep3()}
+	 * @throws InterruptedException for wait exception
+	 * @throws IOException          for file exception
+	 */
+	private synchronized void step3Layer(boolean restarting, Lock lock) throws InterruptedException, IOException {
+		logger.debug("Start Step 3");
+		debugStepPoint(MergeRunnableStopPoint.STEP3_START);
+
+		Lock translateLock;
+		if (!restarting) {
+			translateLock = createUpdateLock();
+			// wait for all running updates to finish
+			waitForActiveUpdates();
+		} else {
+			translateLock = lock;
+		}
+
+		this.endpoint.markGenerationReplaced();
+		this.endpoint.setFreezeNotifications(true);
+
+		EndpointStoreLayers layers = endpoint.getLayers();
+		long id = layers.getNextLayerId();
+		if (exists(endpointFiles.getHDTNewLayer())) {
+			// remove the files of a previous interrupted compaction
+			layers.deleteLayerFiles(id);
+			rename(endpointFiles.getHDTNewLayer(), endpointFiles.getHDTLayer(id));
+		}
+		debugStepPoint(MergeRunnableStopPoint.STEP3_FILES_MID1);
+		if (exists(endpointFiles.getHDTLayer(id))) {
+			layers.addLayer(id);
+		}
+		debugStepPoint(MergeRunnableStopPoint.STEP3_FILES_MID2);
+
+		// the base HDT isn't modified, the changing store IDs are still valid,
+		// we only need to clear the frozen store
+		endpoint.regenFreezedStore();
+
+		// initialize bitmaps again without the frozen store
+		Files.deleteIfExists(Path.of(endpointFiles.getHDTBitX()));
+		Files.deleteIfExists(Path.of(endpointFiles.getHDTBitY()));
+		Files.deleteIfExists(Path.of(endpointFiles.getHDTBitZ()));
+		endpoint.initNativeStoreDictionary();
+
+		// mark the triples as deleted from the temp file stored while merge,
+		// the base HDT deletes are already in the delete bitmaps
+		this.endpoint.markDeletedTempTriplesLayers();
+		this.endpoint.setFreezeNotifications(false);
+		this.endpoint.publishGeneration();
+
+		boolean restartAnother = endpoint.getDumpRef().get() != null;
+
+		if (!restartAnother) {
+			this.endpoint.setMerging(false);
+			this.endpoint.isMergeTriggered = false;
+		}
+
+		debugStepPoint(MergeRunnableStopPoint.STEP3_END);
+		completedMerge();
+		for (TripleComponentOrder order : endpoint.getValidOrders()) {
+			deleteIfExists(endpointFiles.getTripleDeleteTempArr(order));
+		}
+
+		translateLock.release();
+		logger.debug("Translate-Lock released");
+
+		debugStepPoint(MergeRunnableStopPoint.MERGE_END);
+
+		debugStepPoint(MergeRunnableStopPoint.MERGE_END_OLD_SLEEP);
+
+		logger.info("Merge finished");
+		if (restartAnother) {
+			// recurse to the step1 to dump
+			step1(false, null);
+		} else {
+			compactLayers();
+		}
+	}
+
+	/**
+	 * compact the newest delta HDT layers while a layer isn't
+	 * {@link EndpointStore#OPTION_QENDPOINT_MERGE_TIERED_RATIO} times bigger
+	 * than the next one or while the store has more than
+	 * {@link EndpointStore#OPTION_QENDPOINT_MERGE_TIERED_MAX_LAYERS} layers.
+	 *
+	 * @throws InterruptedException for wait exception
+	 * @throws IOException          for file exception
+	 */
+	private void compactLayers() throws InterruptedException, IOException {
+		EndpointStoreLayers layers = endpoint.getLayers();
+		long ratio = endpoint.getHDTSpec().getInt(EndpointStore.OPTION_QENDPOINT_MERGE_TIERED_RATIO, 4);
+		int maxLayers = endpoint.getHDTSpec().getInt32(EndpointStore.OPTION_QENDPOINT_MERGE_TIERED_MAX_LAYERS, 8);
+
+		while (true) {
+			List<EndpointStoreLayers.Layer> current = layers.getLayers();
+			int count = current.size();
+			if (count < 2) {
+				return;
+			}
+			EndpointStoreLayers.Layer previous = current.get(count - 2);
+			EndpointStoreLayers.Layer last = current.get(count - 1);
+			if (count <= maxLayers && previous.getNumberOfElements() >= ratio * last.getNumberOfElements()) {
+				return;
+			}
+			logger.info("Compacting the delta layers {} and {}", previous.getId(), last.getId());
+
+			List<EndpointStoreLayers.Layer> compacted = List.of(previous, last);
+			// copy the delete bitmaps without active updates, the deletes made
+			// during the cat are applied to the compacted layer by the swap
+			Lock updateLock = createUpdateLock();
+			try {
+				waitForActiveUpdates();
+				layers.copyDeleteBitMaps(compacted);
+			} finally {
+				updateLock.release();
+			}
+
+			String output = endpointFiles.getHDTCompactLayer();
+			File file = new File(output);
+			Path location = Path.of(file.getAbsolutePath() + "_tmp");
+			Files.createDirectories(location);
+			OverrideHDTOptions catOpt = new OverrideHDTOptions(endpoint.getHDTSpec());
+			catOpt.setOverride(HDTOptionsKeys.HDTCAT_LOCATION, location.toAbsolutePath() + File.separator);
+			catOpt.setOverride(HDTOptionsKeys.HDTCAT_FUTURE_LOCATION, file.getAbsolutePath());
+			List<MultiLayerBitmapWrapper> deleteBitmaps = new ArrayList<>();
+			try {
+				for (EndpointStoreLayers.Layer layer : compacted) {
+					long layerGraphs = endpoint.getGraphsCount(layer.getHdt());
+					BitArrayDisk copy = new BitArrayDisk(layer.getNumberOfElements() * layerGraphs,
+							new File(endpointFiles.getLayerDeleteCopyArr(layer.getId())));
+					deleteBitmaps.add(MultiLayerBitmapWrapper.of(copy, layerGraphs));
+				}
+				try (HDT hdt = HDTManager.diffBitCatHDTObject(List.of(previous.getHdt(), last.getHdt()),
+						deleteBitmaps, catOpt, null)) {
+					if (!file.exists()) {
+						hdt.saveToHDT(output, null);
+					}
+				}
+			} finally {
+				try {
+					Closer.closeAll(deleteBitmaps);
+				} finally {
+					if (Files.exists(location)) {
+						PathUtils.deleteDirectory(location);
+					}
+				}
+			}
+
+			updateLock = createUpdateLock();
+			try {
+				waitForActiveUpdates();
+				long id = layers.getNextLayerId();
+				// the readers keep the compacted layers until they release
+				// their generation
+				endpoint.markGenerationReplaced();
+				layers.deleteLayerFiles(id);
+				rename(output, endpointFiles.getHDTLayer(id));
+				layers.replaceNewestLayers(2, id);
+				endpoint.publishGeneration();
+			} finally {
+				updateLock.release();
+			}
+		}
+	}
+
 	private void catDiffIndexes(String hdtInput1, String bitArray, String hdtInput2, String hdtOutput)
 			throws IOException {
 		File file = new File(hdtOutput);
@@ -935,11 +1160,24 @@ public class MergeRunnable {
 		OverrideHDTOptions catOpt = new OverrideHDTOptions(endpoint.getHDTSpec());
 		catOpt.setOverride(HDTOptionsKeys.HDTCAT_LOCATION, location);
 		catOpt.setOverride(HDTOptionsKeys.HDTCAT_FUTURE_LOCATION, file.getAbsolutePath());
-		try (MultiLayerBitmapWrapper deleteBitmap = MultiLayerBitmapWrapper.of(
-				new BitArrayDisk(endpoint.getHdt().getTriples().getNumberOfElements() * graphs, new File(bitArray)),
-				graphs)) {
-			try (HDT hdt = HDTManager.diffBitCatHDT(List.of(hdtInput1, hdtInput2),
-					List.of(deleteBitmap, BitmapFactory.empty()), catOpt, null)) {
+		// the base HDT, the delta layers and the new delta
+		List<String> inputs = new ArrayList<>();
+		List<MultiLayerBitmapWrapper> deleteBitmaps = new ArrayList<>();
+		try {
+			inputs.add(hdtInput1);
+			deleteBitmaps.add(MultiLayerBitmapWrapper.of(
+					new BitArrayDisk(endpoint.getHdt().getTriples().getNumberOfElements() * graphs, new File(bitArray)),
+					graphs));
+			for (EndpointStoreLayers.Layer layer : endpoint.getLayers().getLayers()) {
+				long layerGraphs = endpoint.getGraphsCount(layer.getHdt());
+				inputs.add(endpointFiles.getHDTLayer(layer.getId()));
+				deleteBitmaps.add(MultiLayerBitmapWrapper.of(new BitArrayDisk(layer.getNumberOfElements() * layerGraphs,
+						new File(endpointFiles.getLayerDeleteCopyArr(layer.getId()))), layerGraphs));
+			}
+			inputs.add(hdtInput2);
+			List<Bitmap> bitmaps = new ArrayList<>(deleteBitmaps);
+			bitmaps.add(BitmapFactory.empty());
+			try (HDT hdt = HDTManager.diffBitCatHDT(inputs, bitmaps, catOpt, null)) {
 				sw = new StopWatch();
 				// useless to copy the file if it's already there (future
 				// location set)
@@ -947,12 +1185,22 @@ public class MergeRunnable {
 					hdt.saveToHDT(hdtOutput, null);
 				}
 			}
+		} finally {
+			Closer.closeAll(deleteBitmaps);
 		}
 		logger.info("HDT saved to file in: " + sw.stopAndShow());
 	}
 
-	private void createHDTDump(String rdfInput, String hdtOutput) throws IOException {
-		String baseURI = EndpointStoreUtils.baseURIFromFilename(rdfInput);
+	/**
+	 * create an HDT from the statements of a native store connection, the
+	 * statements are streamed to the disk loader without intermediate RDF file
+	 *
+	 * @param connection native store connection
+	 * @param hdtOutput  output HDT
+	 * @param graph      if the HDT should contain graphs
+	 * @throws IOException generation exception
+	 */
+	private void createHDTDump(RepositoryConnection connection, String hdtOutput, boolean graph) throws IOException {
 		StopWatch sw = new StopWatch();
 		Path location = endpointFiles.getLocationHdtPath().resolve("merger");
 
@@ -960,10 +1208,10 @@ public class MergeRunnable {
 		oopt.setOverride(HDTOptionsKeys.LOADER_TYPE_KEY, HDTOptionsKeys.LOADER_TYPE_VALUE_DISK);
 		oopt.setOverride(HDTOptionsKeys.LOADER_DISK_LOCATION_KEY, location.resolve("gen"));
 		oopt.setOverride(HDTOptionsKeys.LOADER_DISK_FUTURE_HDT_LOCATION_KEY, location.resolve("wip.hdt"));
-		try {
-			try (HDT hdt = HDTManager.generateHDT(new File(rdfInput).getAbsolutePath(), baseURI,
-					RDFNotation.guess(rdfInput), oopt, null)) {
-				logger.info("File converted in: " + sw.stopAndShow());
+		try (RepositoryResult<Statement> statements = connection.getStatements(null, null, null, false)) {
+			Iterator<TripleString> it = MapIterator.of(statements.iterator(), stm -> toTripleString(stm, graph));
+			try (HDT hdt = HDTManager.generateHDT(it, EndpointStore.BASE_URI, oopt, null)) {
+				logger.info("Native store converted in: " + sw.stopAndShow());
 				hdt.saveToHDT(hdtOutput, null);
 				logger.info("HDT saved to file in: " + sw.stopAndShow());
 			} catch (ParserException e) {
@@ -981,40 +1229,40 @@ public class MergeRunnable {
 		}
 	}
 
-	private void writeTempFile(RepositoryConnection connection, String file, boolean graph) throws IOException {
-		try (OutputStream out = new BufferedOutputStream(new FileOutputStream(file))) {
-			RDFWriter writer = Rio.createWriter(
-					endpoint.getHdt().getDictionary().supportGraphs() ? RDFFormat.NQUADS : RDFFormat.NTRIPLES, out);
-			RepositoryResult<Statement> repositoryResult = connection.getStatements(null, null, null, false);
-			writer.startRDF();
-			logger.debug("Content dumped file");
-			while (repositoryResult.hasNext()) {
-				Statement stm = repositoryResult.next();
-
-				Resource newSubjIRI = this.endpoint.getHdtConverter().rdf4jToHdtIDsubject(stm.getSubject());
-				newSubjIRI = this.endpoint.getHdtConverter().subjectHdtResourceToResource(newSubjIRI);
-
-				IRI newPredIRI = this.endpoint.getHdtConverter().rdf4jToHdtIDpredicate(stm.getPredicate());
-				newPredIRI = this.endpoint.getHdtConverter().predicateHdtResourceToResource(newPredIRI);
-
-				Value newObjIRI = this.endpoint.getHdtConverter().rdf4jToHdtIDobject(stm.getObject());
-				newObjIRI = this.endpoint.getHdtConverter().objectHdtResourceToResource(newObjIRI);
-
-				Statement stmConverted;
-				if (graph) {
-					Resource newCtxIRI = this.endpoint.getHdtConverter().rdf4jToHdtIDcontext(stm.getContext());
-					newCtxIRI = this.endpoint.getHdtConverter().subjectHdtResourceToResource(newCtxIRI);
-
-					stmConverted = this.endpoint.getValueFactory().createStatement(newSubjIRI, newPredIRI, newObjIRI,
-							newCtxIRI);
-				} else {
-					stmConverted = this.endpoint.getValueFactory().createStatement(newSubjIRI, newPredIRI, newObjIRI);
-				}
+	/**
+	 * convert a native store statement to its HDT string representation, the
+	 * HDT ids are converted back using the current HDT dictionary
+	 *
+	 * @param stm   statement
+	 * @param graph if the context should be converted
+	 * @return triple string
+	 */
+	private TripleString toTripleString(Statement stm, boolean graph) {
+		HDTConverter converter = endpoint.getHdtConverter();
+		Dictionary dict = endpoint.getHdt().getDictionary();
+
+		long sid = converter.rdf4jSubjectToHdtID(stm.getSubject());
+		CharSequence subject = sid != -1 ? dict.idToString(sid, TripleComponentRole.SUBJECT)
+				: stm.getSubject().toString();
+		long pid = converter.rdf4jPredicateToHdtID(stm.getPredicate());
+		CharSequence predicate = pid != -1 ? dict.idToString(pid, TripleComponentRole.PREDICATE)
+				: stm.getPredicate().toString();
+		long oid = converter.rdf4jObjectToHdtID(stm.getObject());
+		CharSequence object = oid != -1 ? dict.idToString(oid, TripleComponentRole.OBJECT) : stm.getObject().toString();
+
+		if (!graph) {
+			return new TripleString(subject, predicate, object);
+		}
 
-				writer.handleStatement(stmConverted);
-			}
-			writer.endRDF();
+		Resource ctx = stm.getContext();
+		CharSequence context;
+		if (ctx == null) {
+			context = "";
+		} else {
+			long gid = converter.rdf4jContextToHdtID(ctx);
+			context = gid != -1 ? dict.idToString(gid, TripleComponentRole.GRAPH) : ctx.toString();
 		}
+		return new QuadString(subject, predicate, object, context);
 	}
 
 	private void convertOldToNew(HDT newHDT, boolean graph) throws IOException {
@@ -0,0 +1,247 @@
+package com.the_qa_company.qendpoint.store;
+
+import com.the_qa_company.qendpoint.core.options.HDTOptions;
+import com.the_qa_company.qendpoint.store.exception.EndpointStoreException;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Policy deciding when the automatic merge of an {@link EndpointStore} should
+ * start.
+ * <p>
+ * With the {@link EndpointStore#MERGE_POLICY_THRESHOLD} policy, a merge
+ * starts once the delta has at least {@link EndpointStore#getThreshold()}
+ * triples.
+ * <p>
+ * With the {@link EndpointStore#MERGE_POLICY_ADAPTIVE} policy, the merge
+ * pressure is computed from:
+ * <ul>
+ * <li>the delta size, projected with the update rate, over the threshold,</li>
+ * <li>the ratio of the triple pattern searches going through the delta,</li>
+ * <li>the ratio of deleted triples in the HDT.</li>
+ * </ul>
+ * A merge starts when the pressure reaches 1 and when the store isn't in a
+ * query peak, the pressure is doubled during the quiet hours. The merge is
+ * forced once the delta reaches {@code maxdefer} times the threshold.
+ */
+public class MergeScheduler {
+	/**
+	 * time constant of the short search rate average, in milliseconds
+	 */
+	static final long SHORT_RATE_TAU = 60_000L;
+	/**
+	 * time constant of the long search rate average, in milliseconds
+	 */
+	static final long LONG_RATE_TAU = 3_600_000L;
+
+	private final boolean adaptive;
+	private final double minRatio;
+	private final double maxDefer;
+	private final double peakRatio;
+	private final double deleteWeight;
+	private final long lookahead;
+	private final int quietStart;
+	private final int quietEnd;
+
+	private final LongAdder searches = new LongAdder();
+	private final LongAdder deltaSearches = new LongAdder();
+
+	// state of the last evaluation, guarded by this
+	private long lastTime = -1;
+	private long lastSearches;
+	private long lastDeltaSearches;
+	private long lastDeltaSize;
+	private boolean ratesInitialized;
+	private double shortSearchRate;
+	private double longSearchRate;
+	private double deltaSearchRatio;
+	private double updateRate;
+
+	/**
+	 * create a scheduler from the store options
+	 *
+	 * @param spec the options
+	 * @throws EndpointStoreException if an option is invalid
+	 */
+	public MergeScheduler(HDTOptions spec) {
+		String policy = spec.get(EndpointStore.OPTION_QENDPOINT_MERGE_POLICY, EndpointStore.MERGE_POLICY_THRESHOLD);
+		adaptive = switch (policy) {
+		case EndpointStore.MERGE_POLICY_THRESHOLD -> false;
+		case EndpointStore.MERGE_POLICY_ADAPTIVE -> true;
+		default -> throw new EndpointStoreException("Unknown merge policy: " + policy);
+		};
+		minRatio = spec.getDouble(EndpointStore.OPTION_QENDPOINT_MERGE_ADAPTIVE_MIN_RATIO, 0.1);
+		maxDefer = spec.getDouble(EndpointStore.OPTION_QENDPOINT_MERGE_ADAPTIVE_MAX_DEFER, 2);
+		peakRatio = spec.getDouble(EndpointStore.OPTION_QENDPOINT_MERGE_ADAPTIVE_PEAK_RATIO, 2);
+		deleteWeight = spec.getDouble(EndpointStore.OPTION_QENDPOINT_MERGE_ADAPTIVE_DELETE_WEIGHT, 1);
+		lookahead = spec.getInt(EndpointStore.OPTION_QENDPOINT_MERGE_ADAPTIVE_LOOKAHEAD, 300) * 1000L;
+
+		String quietHours = spec.get(EndpointStore.OPTION_QENDPOINT_MERGE_ADAPTIVE_QUIET_HOURS, "");
+		if (quietHours.isEmpty()) {
+			quietStart = -1;
+			quietEnd = -1;
+		} else {
+			String[] hours = quietHours.split("-", 2);
+			try {
+				if (hours.length != 2) {
+					throw new NumberFormatException("missing end hour");
+				}
+				quietStart = Integer.parseInt(hours[0].strip());
+				quietEnd = Integer.parseInt(hours[1].strip());
+			} catch (NumberFormatException e) {
+				throw new EndpointStoreException("Bad quiet hours, should be start-end: " + quietHours, e);
+			}
+			if (quietStart < 0 || quietStart > 23 || quietEnd < 0 || quietEnd > 24) {
+				throw new EndpointStoreException("Bad quiet hours, should be between 0 and 24: " + quietHours);
+			}
+		}
+	}
+
+	/**
+	 * record a triple pattern search
+	 *
+	 * @param delta if the search went through the delta store
+	 */
+	public void recordSearch(boolean delta) {
+		if (!adaptive) {
+			return;
+		}
+		searches.increment();
+		if (delta) {
+			deltaSearches.increment();
+		}
+	}
+
+	/**
+	 * @return if the adaptive policy is used
+	 */
+	public boolean isAdaptive() {
+		return adaptive;
+	}
+
+	/**
+	 * @param hour hour of the day
+	 * @return if the hour is in the quiet hours
+	 */
+	boolean isQuietHour(int hour) {
+		if (quietStart < 0) {
+			return false;
+		}
+		if (quietStart <= quietEnd) {
+			return hour >= quietStart && hour < quietEnd;
+		}
+		// the range goes over midnight
+		return hour >= quietStart || hour < quietEnd;
+	}
+
+	/**
+	 * test if a merge should start
+	 *
+	 * @param deltaSize   number of triples in the delta
+	 * @param threshold   merge threshold of the store
+	 * @param deleteRatio ratio of the deleted triples in the HDT
+	 * @param time        current time in milliseconds
+	 * @param hour        current hour of the day
+	 * @return true if a merge should start
+	 */
+	public synchronized boolean shouldMerge(long deltaSize, long threshold, double deleteRatio, long time, int hour) {
+		if (threshold < 0) {
+			return false;
+		}
+		if (!adaptive) {
+			return deltaSize >= threshold;
+		}
+		updateRates(deltaSize, time);
+
+		if (deltaSize >= threshold * maxDefer) {
+			// we can't wait anymore
+			return true;
+		}
+		if (deltaSize < threshold * minRatio) {
+			return false;
+		}
+
+		boolean quiet = isQuietHour(hour);
+		if (!quiet && longSearchRate > 0 && shortSearchRate > longSearchRate * peakRatio) {
+			// query peak, merge later
+			return false;
+		}
+
+		double projectedSize = deltaSize + updateRate * lookahead;
+		double pressure = projectedSize / Math.max(1, threshold) + deltaSearchRatio + deleteRatio * deleteWeight;
+		if (quiet) {
+			pressure *= 2;
+		}
+		return pressure >= 1;
+	}
+
+	private void updateRates(long deltaSize, long time) {
+		long searchCount = searches.sum();
+		long deltaSearchCount = deltaSearches.sum();
+		if (lastTime < 0) {
+			lastTime = time;
+			lastSearches = searchCount;
+			lastDeltaSearches = deltaSearchCount;
+			lastDeltaSize = deltaSize;
+			return;
+		}
+		long dt = time - lastTime;
+		if (dt <= 0) {
+			return;
+		}
+		long newSearches = searchCount - lastSearches;
+		long newDeltaSearches = deltaSearchCount - lastDeltaSearches;
+		double searchRate = (double) newSearches / dt;
+		double shortAlpha = 1 - Math.exp(-(double) dt / SHORT_RATE_TAU);
+		double longAlpha = 1 - Math.exp(-(double) dt / LONG_RATE_TAU);
+
+		if (ratesInitialized) {
+			shortSearchRate += (searchRate - shortSearchRate) * shortAlpha;
+			longSearchRate += (searchRate - longSearchRate) * longAlpha;
+		} else {
+			// start from the first rate, the first hour isn't a long peak
+			shortSearchRate = searchRate;
+			longSearchRate = searchRate;
+			ratesInitialized = true;
+		}
+		if (newSearches != 0) {
+			deltaSearchRatio += ((double) newDeltaSearches / newSearches - deltaSearchRatio) * shortAlpha;
+		}
+		// the delta is reset by the merges, only count the growth
+		double deltaRate = (double) Math.max(0, deltaSize - lastDeltaSize) / dt;
+		updateRate += (deltaRate - updateRate) * shortAlpha;
+
+		lastTime = time;
+		lastSearches = searchCount;
+		lastDeltaSearches = deltaSearchCount;
+		lastDeltaSize = deltaSize;
+	}
+
+	/**
+	 * @return the short average of the searches per millisecond
+	 */
+	public synchronized double getShortSearchRate() {
+		return shortSearchRate;
+	}
+
+	/**
+	 * @return the long average of the searches per millisecond
+	 */
+	public synchronized double getLongSearchRate() {
+		return longSearchRate;
+	}
+
+	/**
+	 * @return the average ratio of the searches going through the delta
+	 */
+	public synchronized double getDeltaSearchRatio() {
+		return deltaSearchRatio;
+	}
+
+	/**
+	 * @return the average of the delta growth per millisecond
+	 */
+	public synchronized double getUpdateRate() {
+		return updateRate;
+	}
+}
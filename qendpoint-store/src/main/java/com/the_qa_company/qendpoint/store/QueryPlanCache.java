@@ -0,0 +1,153 @@
+package com.the_qa_company.qendpoint.store;
+
+import com.the_qa_company.qendpoint.core.util.LRUCache;
+import org.eclipse.rdf4j.query.BindingSet;
+import org.eclipse.rdf4j.query.Dataset;
+import org.eclipse.rdf4j.query.algebra.BNodeGenerator;
+import org.eclipse.rdf4j.query.algebra.FunctionCall;
+import org.eclipse.rdf4j.query.algebra.TupleExpr;
+import org.eclipse.rdf4j.query.algebra.helpers.AbstractQueryModelVisitor;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.UnaryOperator;
+
+/**
+ * Cache of the optimized query plans, shared by the queries.
+ * <p>
+ * The constants of the cached plans are already replaced by their HDT ids, a
+ * new cache is created when the HDT is replaced by a merge. A plan is optimized
+ * without the values of the query bindings, they are only used to evaluate it,
+ * so the executions of a prepared query with different bindings share the same
+ * plan. The plans depend on the dataset of the query, it is part of the key.
+ * <p>
+ * The key of a query is its string, computed once by parsed query, the
+ * executions of a prepared query reuse it.
+ */
+public class QueryPlanCache {
+	/**
+	 * default number of plans in the cache
+	 */
+	public static final int DEFAULT_SIZE = 1_000;
+
+	private record PlanKey(String query, String dataset, Set<String> bindingNames, boolean optimized) {}
+
+	/**
+	 * parsed query compared by identity
+	 *
+	 * @param tupleExpr query
+	 */
+	private record QueryIdentity(TupleExpr tupleExpr) {
+		@Override
+		public boolean equals(Object obj) {
+			return obj instanceof QueryIdentity other && other.tupleExpr == tupleExpr;
+		}
+
+		@Override
+		public int hashCode() {
+			return System.identityHashCode(tupleExpr);
+		}
+	}
+
+	/**
+	 * check if the plan of a query can be cached, the queries with functions
+	 * without argument (NOW(), RAND(), UUID()...) or BNODE() can't be cached
+	 * because the constant optimizer would replace them by their value.
+	 *
+	 * @param tupleExpr query
+	 * @return if the plan can be cached
+	 */
+	public static boolean isCacheable(TupleExpr tupleExpr) {
+		boolean[] cacheable = { true };
+		tupleExpr.visit(new AbstractQueryModelVisitor<RuntimeException>() {
+			@Override
+			public void meet(FunctionCall node) throws RuntimeException {
+				if (node.getArgs().isEmpty()) {
+					cacheable[0] = false;
+				}
+				super.meet(node);
+			}
+
+			@Override
+			public void meet(BNodeGenerator node) throws RuntimeException {
+				cacheable[0] = false;
+				super.meet(node);
+			}
+		});
+		return cacheable[0];
+	}
+
+	private final Map<PlanKey, TupleExpr> cache;
+	// strings of the last parsed queries, guarded by the cache
+	private final Map<QueryIdentity, String> queryStrings;
+
+	/**
+	 * create the cache
+	 *
+	 * @param size maximum number of plans in the cache
+	 */
+	public QueryPlanCache(int size) {
+		cache = new LRUCache<>(size);
+		queryStrings = new LRUCache<>(size);
+	}
+
+	/**
+	 * get the plan of a query, the plan is created with the planner if it
+	 * isn't in the cache
+	 *
+	 * @param tupleExpr the query, not modified
+	 * @param dataset   the dataset of the query, can be null
+	 * @param bindings  the bindings of the query, only their names are used
+	 * @param optimized if the plan is optimized
+	 * @param planner   function to create the plan from a copy of the query,
+	 *                  it shouldn't use the values of the bindings
+	 * @return a copy of the plan, can be modified by the evaluation
+	 */
+	public TupleExpr getPlan(TupleExpr tupleExpr, Dataset dataset, BindingSet bindings, boolean optimized,
+			UnaryOperator<TupleExpr> planner) {
+		QueryIdentity identity = new QueryIdentity(tupleExpr);
+		String query;
+		synchronized (cache) {
+			query = queryStrings.get(identity);
+		}
+		if (query == null) {
+			query = tupleExpr.toString();
+			synchronized (cache) {
+				queryStrings.put(identity, query);
+			}
+		}
+		PlanKey key = new PlanKey(query, dataset == null ? null : dataset.toString(),
+				new TreeSet<>(bindings.getBindingNames()), optimized);
+		TupleExpr plan;
+		synchronized (cache) {
+			plan = cache.get(key);
+		}
+		if (plan == null) {
+			plan = planner.apply(tupleExpr.clone());
+			synchronized (cache) {
+				cache.put(key, plan);
+			}
+		}
+		// the cached plan is never evaluated, it is only cloned
+		return plan.clone();
+	}
+
+	/**
+	 * remove the plans of the cache, the query strings are kept
+	 */
+	public void clear() {
+		synchronized (cache) {
+			cache.clear();
+		}
+	}
+
+	/**
+	 * @return the number of plans in the cache
+	 */
+	public int size() {
+		synchronized (cache) {
+			return cache.size();
+		}
+	}
+}
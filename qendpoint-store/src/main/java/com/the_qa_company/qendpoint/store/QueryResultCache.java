@@ -0,0 +1,214 @@
+package com.the_qa_company.qendpoint.store;
+
+import com.the_qa_company.qendpoint.core.util.concurrent.ClockCache;
+import com.the_qa_company.qendpoint.model.HDTValue;
+import org.eclipse.rdf4j.common.iteration.CloseableIteration;
+import org.eclipse.rdf4j.common.iteration.CloseableIteratorIteration;
+import org.eclipse.rdf4j.model.Value;
+import org.eclipse.rdf4j.query.BindingSet;
+import org.eclipse.rdf4j.query.Dataset;
+import org.eclipse.rdf4j.query.algebra.Service;
+import org.eclipse.rdf4j.query.algebra.TupleExpr;
+import org.eclipse.rdf4j.query.algebra.helpers.AbstractQueryModelVisitor;
+import org.eclipse.rdf4j.query.impl.ListBindingSet;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache of the query results, shared by the queries.
+ * <p>
+ * The results are keyed on the query algebra, the dataset and the bindings of
+ * the query. The cache is bounded by the estimated size in bytes of the
+ * results, a result bigger than the maximum result size isn't cached. The
+ * cache is invalidated when a connection commits changes in the store, a new
+ * cache is created when the HDT is replaced by a merge.
+ */
+public class QueryResultCache {
+	/**
+	 * default maximum size of a cached result, in bytes
+	 */
+	public static final long DEFAULT_MAX_RESULT_SIZE = 1024L * 1024;
+	/**
+	 * estimated size of a binding set without its values, in bytes
+	 */
+	private static final long BINDING_SET_SIZE = 64;
+	/**
+	 * estimated size of a binding without its value string, in bytes
+	 */
+	private static final long BINDING_SIZE = 48;
+	/**
+	 * estimated size of a value of the HDT, its string isn't read to avoid a
+	 * dictionary search but it is kept by the value once a reader writes it,
+	 * in bytes
+	 */
+	private static final long HDT_VALUE_SIZE = 128;
+
+	/**
+	 * key of a query result
+	 *
+	 * @param query    query algebra
+	 * @param dataset  dataset, null for the default dataset
+	 * @param bindings bindings of the query
+	 * @param locales  user locales of the query, null for none
+	 * @param version  version of the store data
+	 */
+	public record Key(String query, String dataset, String bindings, String locales, long version) {}
+
+	/**
+	 * check if the result of a query can be cached, the queries with
+	 * functions without argument (NOW(), RAND()...), BNODE() or SERVICE can't
+	 * be cached because their results don't only depend on the store.
+	 *
+	 * @param tupleExpr query
+	 * @return if the result can be cached
+	 */
+	public static boolean isCacheable(TupleExpr tupleExpr) {
+		if (!QueryPlanCache.isCacheable(tupleExpr)) {
+			return false;
+		}
+		boolean[] cacheable = { true };
+		tupleExpr.visit(new AbstractQueryModelVisitor<RuntimeException>() {
+			@Override
+			public void meet(Service node) throws RuntimeException {
+				cacheable[0] = false;
+			}
+		});
+		return cacheable[0];
+	}
+
+	private static long estimateSize(BindingSet bindingSet) {
+		long size = BINDING_SET_SIZE;
+		for (String name : bindingSet.getBindingNames()) {
+			Value value = bindingSet.getValue(name);
+			size += BINDING_SIZE + 2L * name.length();
+			if (value == null) {
+				continue;
+			}
+			if (value instanceof HDTValue hdtValue && hdtValue.isValidHDTId()) {
+				// avoid reading the dictionary for the HDT values
+				size += HDT_VALUE_SIZE;
+			} else {
+				size += 2L * value.stringValue().length();
+			}
+		}
+		return size;
+	}
+
+	private record Result(List<BindingSet> bindingSets, long size) {}
+
+	private final ClockCache<Key, Result> cache;
+	private final AtomicLong version = new AtomicLong();
+	private final long maxResultSize;
+
+	/**
+	 * create the cache
+	 *
+	 * @param maxSize       maximum size of the cache in bytes
+	 * @param maxResultSize maximum size of a cached result in bytes
+	 */
+	public QueryResultCache(long maxSize, long maxResultSize) {
+		cache = new ClockCache<>(maxSize, (key, result) -> result.size());
+		this.maxResultSize = maxResultSize;
+	}
+
+	/**
+	 * create the key of a query result with the current version of the store
+	 *
+	 * @param tupleExpr query
+	 * @param dataset   dataset
+	 * @param bindings  bindings of the query
+	 * @param locales   user locales of the query
+	 * @return key
+	 */
+	public Key createKey(TupleExpr tupleExpr, Dataset dataset, BindingSet bindings, String locales) {
+		return new Key(tupleExpr.toString(), dataset == null ? null : dataset.toString(), bindings.toString(),
+				locales, version.get());
+	}
+
+	/**
+	 * get a cached result
+	 *
+	 * @param key key
+	 * @return the result, null if it isn't in the cache
+	 */
+	public CloseableIteration<BindingSet> get(Key key) {
+		Result result = cache.get(key);
+		if (result == null) {
+			return null;
+		}
+		return new CloseableIteratorIteration<>(result.bindingSets().iterator());
+	}
+
+	/**
+	 * record a result while it is read, the result is cached if it is fully
+	 * read and if it isn't too big
+	 *
+	 * @param key    key of the result
+	 * @param result result
+	 * @return result to read
+	 */
+	public CloseableIteration<BindingSet> record(Key key, CloseableIteration<? extends BindingSet> result) {
+		return new CloseableIteration<>() {
+			private List<BindingSet> bindingSets = new ArrayList<>();
+			private long size = BINDING_SET_SIZE;
+
+			@Override
+			public boolean hasNext() {
+				boolean hasNext = result.hasNext();
+				if (!hasNext && bindingSets != null) {
+					// the same query can be recorded by several connections
+					cache.putIfAbsent(key, new Result(List.copyOf(bindingSets), size));
+					bindingSets = null;
+				}
+				return hasNext;
+			}
+
+			@Override
+			public BindingSet next() {
+				BindingSet next = result.next();
+				if (bindingSets != null) {
+					size += estimateSize(next);
+					if (size > maxResultSize) {
+						// too big
+						bindingSets = null;
+					} else {
+						// copy the binding set, it can be modified by the
+						// reader
+						List<String> names = new ArrayList<>(next.getBindingNames());
+						List<Value> values = new ArrayList<>(names.size());
+						for (String name : names) {
+							values.add(next.getValue(name));
+						}
+						bindingSets.add(new ListBindingSet(names, values));
+					}
+				}
+				return next;
+			}
+
+			@Override
+			public void close() {
+				// a result closed before its end isn't cached
+				bindingSets = null;
+				result.close();
+			}
+		};
+	}
+
+	/**
+	 * invalidate the cached results, should be called after the changes are
+	 * visible to the new queries
+	 */
+	public void invalidate() {
+		version.incrementAndGet();
+		cache.clear();
+	}
+
+	/**
+	 * @return the cache of the results, to read its metrics
+	 */
+	public ClockCache<Key, ?> getCache() {
+		return cache;
+	}
+}
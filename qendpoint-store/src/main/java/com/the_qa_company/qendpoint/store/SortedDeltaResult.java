@@ -0,0 +1,300 @@
+package com.the_qa_company.qendpoint.store;
+
+import com.the_qa_company.qendpoint.core.util.io.Closer;
+import com.the_qa_company.qendpoint.model.HDTValue;
+import org.eclipse.rdf4j.common.iteration.CloseableIteration;
+import org.eclipse.rdf4j.model.BNode;
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.Literal;
+import org.eclipse.rdf4j.model.Resource;
+import org.eclipse.rdf4j.model.Statement;
+import org.eclipse.rdf4j.model.Value;
+import org.eclipse.rdf4j.model.ValueFactory;
+import org.eclipse.rdf4j.model.impl.SimpleValueFactory;
+import org.eclipse.rdf4j.sail.SailException;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+/**
+ * Delta statements sorted with a bounded memory for the ordered reads.
+ * <p>
+ * The delta stores can't be read in the order of the HDT, the statements are
+ * sorted by chunks of a maximum size. If the delta doesn't fit in one chunk,
+ * the sorted chunks are written in temporary files and merged while iterating.
+ * The HDT values are written with their id, the other values with their
+ * string.
+ */
+class SortedDeltaResult implements CloseableIteration<Statement> {
+	private static final byte TERM_NULL = 0;
+	private static final byte TERM_HDT = 1;
+	private static final byte TERM_IRI = 2;
+	private static final byte TERM_BNODE = 3;
+	private static final byte TERM_LITERAL = 4;
+	private static final byte TERM_LANG_LITERAL = 5;
+
+	/**
+	 * sorted source of statements
+	 */
+	private interface Source extends Closeable {
+		/**
+		 * @return the current statement
+		 */
+		Statement current();
+
+		/**
+		 * move to the next statement
+		 *
+		 * @return false if the source is empty
+		 * @throws IOException read exception
+		 */
+		boolean advance() throws IOException;
+	}
+
+	private final CloseableIteration<? extends Statement> input;
+	private final Comparator<Statement> comparator;
+	private final HDTConverter converter;
+	private final int chunkSize;
+	private final Path tempDir;
+	private final ValueFactory valueFactory = SimpleValueFactory.getInstance();
+	private final List<Source> sources = new ArrayList<>();
+	private final List<Path> files = new ArrayList<>();
+	private PriorityQueue<Source> queue;
+	private boolean closed;
+
+	/**
+	 * create the sorted delta, the input is read with the first call to
+	 * {@link #hasNext()}
+	 *
+	 * @param input      delta statements, converted to the HDT values
+	 * @param comparator order of the statements
+	 * @param converter  converter to read the HDT values of the chunk files
+	 * @param chunkSize  maximum number of statements sorted in memory
+	 * @param tempDir    directory of the chunk files
+	 */
+	SortedDeltaResult(CloseableIteration<? extends Statement> input, Comparator<Statement> comparator,
+			HDTConverter converter, int chunkSize, Path tempDir) {
+		this.input = input;
+		this.comparator = comparator;
+		this.converter = converter;
+		this.chunkSize = Math.max(1, chunkSize);
+		this.tempDir = tempDir;
+	}
+
+	private void sortInput() throws IOException {
+		List<Statement> chunk = new ArrayList<>();
+		try (CloseableIteration<? extends Statement> it = input) {
+			while (it.hasNext()) {
+				chunk.add(it.next());
+				if (chunk.size() == chunkSize) {
+					chunk.sort(comparator);
+					writeChunk(chunk);
+					chunk.clear();
+				}
+			}
+		}
+		if (!chunk.isEmpty()) {
+			// the last chunk stays in memory
+			chunk.sort(comparator);
+			Iterator<Statement> it = chunk.iterator();
+			sources.add(new Source() {
+				Statement current;
+
+				@Override
+				public Statement current() {
+					return current;
+				}
+
+				@Override
+				public boolean advance() {
+					if (!it.hasNext()) {
+						return false;
+					}
+					current = it.next();
+					return true;
+				}
+
+				@Override
+				public void close() {
+					// nothing to close
+				}
+			});
+		}
+
+		queue = new PriorityQueue<>(Math.max(1, sources.size()),
+				(s1, s2) -> comparator.compare(s1.current(), s2.current()));
+		for (Source source : sources) {
+			if (source.advance()) {
+				queue.add(source);
+			}
+		}
+	}
+
+	private void writeChunk(List<Statement> chunk) throws IOException {
+		Path file = Files.createTempFile(tempDir, "ordered-delta", ".bin");
+		files.add(file);
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+			for (Statement st : chunk) {
+				writeTerm(out, st.getSubject());
+				writeTerm(out, st.getPredicate());
+				writeTerm(out, st.getObject());
+				writeTerm(out, st.getContext());
+			}
+		}
+		DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)));
+		sources.add(new Source() {
+			Statement current;
+
+			@Override
+			public Statement current() {
+				return current;
+			}
+
+			@Override
+			public boolean advance() throws IOException {
+				Value subject;
+				try {
+					subject = readTerm(in);
+				} catch (EOFException e) {
+					return false;
+				}
+				IRI predicate = (IRI) readTerm(in);
+				Value object = readTerm(in);
+				Resource context = (Resource) readTerm(in);
+				current = valueFactory.createStatement((Resource) subject, predicate, object, context);
+				return true;
+			}
+
+			@Override
+			public void close() throws IOException {
+				in.close();
+			}
+		});
+	}
+
+	private static void writeString(DataOutputStream out, String str) throws IOException {
+		byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	private static String readString(DataInputStream in) throws IOException {
+		byte[] bytes = new byte[in.readInt()];
+		in.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	private static void writeTerm(DataOutputStream out, Value value) throws IOException {
+		if (value == null) {
+			out.writeByte(TERM_NULL);
+		} else if (value instanceof HDTValue hdtValue && hdtValue.isValidHDTId()) {
+			out.writeByte(TERM_HDT);
+			out.writeByte(hdtValue.getHDTPosition());
+			out.writeLong(hdtValue.getHDTId());
+		} else if (value instanceof IRI) {
+			out.writeByte(TERM_IRI);
+			writeString(out, value.stringValue());
+		} else if (value instanceof BNode bnode) {
+			out.writeByte(TERM_BNODE);
+			writeString(out, bnode.getID());
+		} else if (value instanceof Literal literal) {
+			if (literal.getLanguage().isPresent()) {
+				out.writeByte(TERM_LANG_LITERAL);
+				writeString(out, literal.getLabel());
+				writeString(out, literal.getLanguage().get());
+			} else {
+				out.writeByte(TERM_LITERAL);
+				writeString(out, literal.getLabel());
+				writeString(out, literal.getDatatype().stringValue());
+			}
+		} else {
+			throw new IllegalArgumentException("Can't write the value " + value);
+		}
+	}
+
+	private Value readTerm(DataInputStream in) throws IOException {
+		byte type = in.readByte();
+		return switch (type) {
+		case TERM_NULL -> null;
+		case TERM_HDT -> {
+			int position = in.readByte();
+			yield converter.idToHDTValue(in.readLong(), position);
+		}
+		case TERM_IRI -> valueFactory.createIRI(readString(in));
+		case TERM_BNODE -> valueFactory.createBNode(readString(in));
+		case TERM_LITERAL -> {
+			String label = readString(in);
+			yield valueFactory.createLiteral(label, valueFactory.createIRI(readString(in)));
+		}
+		case TERM_LANG_LITERAL -> {
+			String label = readString(in);
+			yield valueFactory.createLiteral(label, readString(in));
+		}
+		default -> throw new IOException("Bad term type: " + type);
+		};
+	}
+
+	@Override
+	public boolean hasNext() {
+		if (closed) {
+			return false;
+		}
+		try {
+			if (queue == null) {
+				sortInput();
+			}
+		} catch (IOException e) {
+			throw new SailException("Can't sort the delta statements", e);
+		}
+		return !queue.isEmpty();
+	}
+
+	@Override
+	public Statement next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		Source source = queue.poll();
+		Statement statement = source.current();
+		try {
+			if (source.advance()) {
+				queue.add(source);
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return statement;
+	}
+
+	@Override
+	public void close() {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		try {
+			Closer.closeAll((Closeable) input::close, sources, (Closeable) () -> {
+				for (Path file : files) {
+					Files.deleteIfExists(file);
+				}
+			});
+		} catch (IOException e) {
+			throw new SailException("Can't delete the sorted delta files", e);
+		}
+	}
+}
@@ -85,6 +85,13 @@ public class BitArrayDisk implements ModifiableBitmap, Closeable {
 		initWordsArray(nbits);
 	}
 
+	private BitArrayDisk(BitArrayDisk other) {
+		this.numbits = other.numbits;
+		this.allBits = other.allBits;
+		this.inMemory = true;
+		this.words = other.words.clone();
+	}
+
 	/**
 	 * create a on disk bit array
 	 *
@@ -116,6 +123,17 @@ public class BitArrayDisk implements ModifiableBitmap, Closeable {
 		output.force(true);
 	}
 
+	/**
+	 * create an in memory copy of this bit array, the next sets of this array
+	 * aren't visible in the copy. The caller should prevent the concurrent
+	 * sets during the copy.
+	 *
+	 * @return the copy
+	 */
+	public BitArrayDisk copyInMemory() {
+		return new BitArrayDisk(this);
+	}
+
 	/**
 	 * write inside the output file the number of words
 	 *
@@ -310,7 +328,26 @@ public class BitArrayDisk implements ModifiableBitmap, Closeable {
 
 	@Override
 	public long selectNext1(long start) {
-		throw new RuntimeException("Not implemented");
+		if (start < 0)
+			throw new IndexOutOfBoundsException("start < 0: " + start);
+
+		long[] words = this.words;
+		int wordIndex = wordIndex(start);
+		if (wordIndex >= words.length) {
+			return -1;
+		}
+
+		long word = words[wordIndex] & (~0L << start);
+
+		while (true) {
+			if (word != 0) {
+				return ((long) wordIndex * W) + Long.numberOfTrailingZeros(word);
+			}
+			if (++wordIndex == words.length) {
+				return -1;
+			}
+			word = words[wordIndex];
+		}
 	}
 
 	@Override
@@ -0,0 +1,37 @@
+package com.the_qa_company.qendpoint.utils;
+
+import com.the_qa_company.qendpoint.core.dictionary.Dictionary;
+import com.the_qa_company.qendpoint.core.dictionary.impl.CachedDictionary;
+import com.the_qa_company.qendpoint.core.hdt.HDT;
+
+/**
+ * View of an HDT reading its dictionary with a {@link CachedDictionary}, used
+ * to create the HDT values of the store. The dictionary isn't the one of the
+ * HDT, so the view shouldn't be used to check the dictionary type.
+ */
+public class CachedDictionaryHDT extends CloseSafeHDT {
+	private final CachedDictionary dictionary;
+
+	/**
+	 * create the view
+	 *
+	 * @param hdt     hdt to wrap
+	 * @param maxSize maximum size of the dictionary cache in bytes
+	 */
+	public CachedDictionaryHDT(HDT hdt, long maxSize) {
+		super(hdt);
+		this.dictionary = new CachedDictionary(hdt.getDictionary(), maxSize);
+	}
+
+	@Override
+	public Dictionary getDictionary() {
+		return dictionary;
+	}
+
+	/**
+	 * @return the cached dictionary, to read the cache metrics
+	 */
+	public CachedDictionary getCachedDictionary() {
+		return dictionary;
+	}
+}
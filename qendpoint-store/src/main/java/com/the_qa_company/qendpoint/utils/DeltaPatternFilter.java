@@ -0,0 +1,120 @@
+package com.the_qa_company.qendpoint.utils;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Blocked Bloom filter over the (subject, predicate), (predicate, object) and
+ * (subject, object) HDT id pairs of the triples in the delta store. Only the
+ * ids of the HDT dictionary are recorded, a pair with a component outside of
+ * the HDT (id &lt;= 0) is ignored.
+ * <p>
+ * The filter can only answer false positives, it can tell that a pattern isn't
+ * in the delta, but not that it is. All the bits of a pair are in the same
+ * word, so a test costs one memory access per bound pair.
+ */
+public class DeltaPatternFilter {
+	private static final int BITS_PER_KEY = 4;
+	private static final long TAG_SP = 0x9E3779B97F4A7C15L;
+	private static final long TAG_PO = 0xC2B2AE3D27D4EB4FL;
+	private static final long TAG_SO = 0x165667B19E3779F9L;
+
+	private static long hash(long tag, long a, long b) {
+		long h = a * tag + b;
+		h ^= h >>> 33;
+		h *= 0xFF51AFD7ED558CCDL;
+		h ^= h >>> 33;
+		h *= 0xC4CEB9FE1A85EC53L;
+		h ^= h >>> 33;
+		return h;
+	}
+
+	private final AtomicLongArray words;
+	private final int wordMask;
+
+	/**
+	 * create a filter
+	 *
+	 * @param bits size of the filter in bits, rounded up to a power of 2 and at
+	 *             least 64
+	 */
+	public DeltaPatternFilter(long bits) {
+		long numWords = Math.max(1, (bits + 63) >>> 6);
+		if (numWords > 1 << 30) {
+			numWords = 1 << 30;
+		}
+		int size = Integer.highestOneBit((int) numWords);
+		if (size < numWords) {
+			size <<= 1;
+		}
+		words = new AtomicLongArray(size);
+		wordMask = size - 1;
+	}
+
+	private static long mask(long hash) {
+		long m = 0;
+		for (int i = 0; i < BITS_PER_KEY; i++) {
+			m |= 1L << (hash & 63);
+			hash >>>= 6;
+		}
+		return m;
+	}
+
+	private void add(long tag, long a, long b) {
+		if (a <= 0 || b <= 0) {
+			return;
+		}
+		long h = hash(tag, a, b);
+		int index = (int) (h >>> 32) & wordMask;
+		long m = mask(h);
+		long old;
+		do {
+			old = words.get(index);
+			if ((old & m) == m) {
+				return;
+			}
+		} while (!words.compareAndSet(index, old, old | m));
+	}
+
+	private boolean mightContain(long tag, long a, long b) {
+		if (a <= 0 || b <= 0) {
+			return true;
+		}
+		long h = hash(tag, a, b);
+		long m = mask(h);
+		return (words.get((int) (h >>> 32) & wordMask) & m) == m;
+	}
+
+	/**
+	 * record a triple of the delta
+	 *
+	 * @param subject   subject id, -1 or 0 if not in the HDT
+	 * @param predicate predicate id, -1 or 0 if not in the HDT
+	 * @param object    object id, -1 or 0 if not in the HDT
+	 */
+	public void add(long subject, long predicate, long object) {
+		add(TAG_SP, subject, predicate);
+		add(TAG_PO, predicate, object);
+		add(TAG_SO, subject, object);
+	}
+
+	/**
+	 * test if a triple pattern might have results in the delta
+	 *
+	 * @param subject   subject id, -1 or 0 for a variable
+	 * @param predicate predicate id, -1 or 0 for a variable
+	 * @param object    object id, -1 or 0 for a variable
+	 * @return false if the pattern has no result in the delta, true if it might
+	 *         have some
+	 */
+	public boolean mightContain(long subject, long predicate, long object) {
+		return mightContain(TAG_SP, subject, predicate) && mightContain(TAG_PO, predicate, object)
+				&& mightContain(TAG_SO, subject, object);
+	}
+
+	/**
+	 * @return the size of the filter in bits
+	 */
+	public long getNumBits() {
+		return (long) words.length() << 6;
+	}
+}
@@ -0,0 +1,68 @@
+package com.the_qa_company.qendpoint.utils;
+
+import org.eclipse.rdf4j.common.iteration.CloseableIteration;
+import org.eclipse.rdf4j.model.Statement;
+
+import java.util.Comparator;
+import java.util.NoSuchElementException;
+
+/**
+ * Merge two ordered statement iterations into one ordered CloseableIteration
+ */
+public class OrderedCombinedStatementResult implements CloseableIteration<Statement> {
+	private final CloseableIteration<? extends Statement> result1;
+	private final CloseableIteration<? extends Statement> result2;
+	private final Comparator<Statement> comparator;
+	private Statement next1;
+	private Statement next2;
+
+	/**
+	 * create an ordered combined CloseableIteration
+	 *
+	 * @param result1    the first ordered iteration
+	 * @param result2    the second ordered iteration
+	 * @param comparator the order of the iterations
+	 */
+	public OrderedCombinedStatementResult(CloseableIteration<? extends Statement> result1,
+			CloseableIteration<? extends Statement> result2, Comparator<Statement> comparator) {
+		this.result1 = result1;
+		this.result2 = result2;
+		this.comparator = comparator;
+	}
+
+	@Override
+	public boolean hasNext() {
+		if (next1 == null && result1.hasNext()) {
+			next1 = result1.next();
+		}
+		if (next2 == null && result2.hasNext()) {
+			next2 = result2.next();
+		}
+		return next1 != null || next2 != null;
+	}
+
+	@Override
+	public Statement next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		Statement stm;
+		if (next2 == null || (next1 != null && comparator.compare(next1, next2) <= 0)) {
+			stm = next1;
+			next1 = null;
+		} else {
+			stm = next2;
+			next2 = null;
+		}
+		return stm;
+	}
+
+	@Override
+	public void close() {
+		try {
+			result1.close();
+		} finally {
+			result2.close();
+		}
+	}
+}
@@ -4,6 +4,7 @@ import com.the_qa_company.qendpoint.core.enums.TripleComponentRole;
 import com.the_qa_company.qendpoint.core.hdt.HDT;
 import com.the_qa_company.qendpoint.model.SimpleIRIHDT;
 import com.the_qa_company.qendpoint.store.EndpointStore;
+import com.the_qa_company.qendpoint.store.EndpointStoreGeneration;
 import com.the_qa_company.qendpoint.store.HDTConverter;
 import org.eclipse.rdf4j.model.IRI;
 import org.eclipse.rdf4j.model.Resource;
@@ -36,6 +37,16 @@ public class VariableToIdSubstitution implements QueryOptimizer {
 		this.converter = store.getHdtConverter();
 	}
 
+	/**
+	 * create the optimizer
+	 *
+	 * @param generation the generation of the store to get the hdt
+	 */
+	public VariableToIdSubstitution(EndpointStoreGeneration generation) {
+		this.hdt = generation.getHdt();
+		this.converter = generation.getHdtConverter();
+	}
+
 	@Override
 	public void optimize(TupleExpr tupleExpr, Dataset dataset, BindingSet bindings) {
 		Substituor substitutor = new Substituor();
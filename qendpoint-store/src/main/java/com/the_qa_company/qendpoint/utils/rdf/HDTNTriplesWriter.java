@@ -0,0 +1,68 @@
+package com.the_qa_company.qendpoint.utils.rdf;
+
+import org.eclipse.rdf4j.model.Statement;
+import org.eclipse.rdf4j.rio.RDFHandlerException;
+import org.eclipse.rdf4j.rio.helpers.AbstractRDFHandler;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * N-Triples writer writing the terms with a {@link HDTValueSerializer}, the
+ * contexts of the statements are ignored
+ */
+public class HDTNTriplesWriter extends AbstractRDFHandler {
+	private static final byte[] END_STATEMENT = " .\n".getBytes(StandardCharsets.US_ASCII);
+	private final OutputStream out;
+	private final HDTValueSerializer serializer;
+
+	/**
+	 * create a writer
+	 *
+	 * @param out        output stream, not closed by the writer
+	 * @param serializer serializer of the terms
+	 */
+	public HDTNTriplesWriter(OutputStream out, HDTValueSerializer serializer) {
+		this.out = new BufferedOutputStream(out, 1 << 16);
+		this.serializer = serializer;
+	}
+
+	@Override
+	public void handleStatement(Statement st) throws RDFHandlerException {
+		try {
+			out.write(serializer.toNTriples(st.getSubject()));
+			out.write(' ');
+			out.write(serializer.toNTriples(st.getPredicate()));
+			out.write(' ');
+			out.write(serializer.toNTriples(st.getObject()));
+			out.write(END_STATEMENT);
+		} catch (IOException e) {
+			throw new RDFHandlerException(e);
+		}
+	}
+
+	@Override
+	public void handleComment(String comment) throws RDFHandlerException {
+		try {
+			for (String line : comment.split("\r\n|\r|\n")) {
+				out.write('#');
+				out.write(' ');
+				out.write(line.getBytes(StandardCharsets.UTF_8));
+				out.write('\n');
+			}
+		} catch (IOException e) {
+			throw new RDFHandlerException(e);
+		}
+	}
+
+	@Override
+	public void endRDF() throws RDFHandlerException {
+		try {
+			out.flush();
+		} catch (IOException e) {
+			throw new RDFHandlerException(e);
+		}
+	}
+}
@@ -0,0 +1,124 @@
+package com.the_qa_company.qendpoint.utils.rdf;
+
+import org.eclipse.rdf4j.model.Value;
+import org.eclipse.rdf4j.query.BindingSet;
+import org.eclipse.rdf4j.query.QueryResultHandlerException;
+import org.eclipse.rdf4j.query.TupleQueryResultHandler;
+import org.eclipse.rdf4j.query.TupleQueryResultHandlerException;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * SPARQL JSON results writer writing the bindings with a
+ * {@link HDTValueSerializer}, it doesn't support the header writer of
+ * {@link QEPSPARQLResultsJSONWriter}
+ */
+public class HDTSPARQLResultsJSONWriter implements TupleQueryResultHandler {
+	private final OutputStream out;
+	private final HDTValueSerializer serializer;
+	private List<String> links = List.of();
+	private List<String> bindingNames;
+	private byte[][] bindingKeys;
+	private boolean firstSolution = true;
+
+	/**
+	 * create a writer
+	 *
+	 * @param out        output stream, not closed by the writer
+	 * @param serializer serializer of the terms
+	 */
+	public HDTSPARQLResultsJSONWriter(OutputStream out, HDTValueSerializer serializer) {
+		this.out = new BufferedOutputStream(out, 1 << 16);
+		this.serializer = serializer;
+	}
+
+	@Override
+	public void handleBoolean(boolean value) throws QueryResultHandlerException {
+		try {
+			out.write(("{\"head\":{},\"boolean\":" + value + "}").getBytes(StandardCharsets.US_ASCII));
+			out.flush();
+		} catch (IOException e) {
+			throw new QueryResultHandlerException(e);
+		}
+	}
+
+	@Override
+	public void handleLinks(List<String> linkUrls) throws QueryResultHandlerException {
+		links = linkUrls;
+	}
+
+	@Override
+	public void startQueryResult(List<String> bindingNames) throws TupleQueryResultHandlerException {
+		this.bindingNames = bindingNames;
+		bindingKeys = new byte[bindingNames.size()][];
+		try {
+			out.write("{\"head\":{\"vars\":[".getBytes(StandardCharsets.US_ASCII));
+			for (int i = 0; i < bindingNames.size(); i++) {
+				if (i > 0) {
+					out.write(',');
+				}
+				byte[] name = HDTValueSerializer.toJSONString(bindingNames.get(i));
+				out.write(name);
+				bindingKeys[i] = name;
+			}
+			out.write(']');
+			if (!links.isEmpty()) {
+				out.write(",\"link\":[".getBytes(StandardCharsets.US_ASCII));
+				for (int i = 0; i < links.size(); i++) {
+					if (i > 0) {
+						out.write(',');
+					}
+					out.write(HDTValueSerializer.toJSONString(links.get(i)));
+				}
+				out.write(']');
+			}
+			out.write("},\"results\":{\"bindings\":[".getBytes(StandardCharsets.US_ASCII));
+		} catch (IOException e) {
+			throw new TupleQueryResultHandlerException(e);
+		}
+	}
+
+	@Override
+	public void handleSolution(BindingSet bindingSet) throws TupleQueryResultHandlerException {
+		try {
+			if (firstSolution) {
+				firstSolution = false;
+			} else {
+				out.write(',');
+			}
+			out.write('{');
+			boolean first = true;
+			for (int i = 0; i < bindingNames.size(); i++) {
+				Value value = bindingSet.getValue(bindingNames.get(i));
+				if (value == null) {
+					continue;
+				}
+				if (first) {
+					first = false;
+				} else {
+					out.write(',');
+				}
+				out.write(bindingKeys[i]);
+				out.write(':');
+				out.write(serializer.toJSON(value));
+			}
+			out.write('}');
+		} catch (IOException e) {
+			throw new TupleQueryResultHandlerException(e);
+		}
+	}
+
+	@Override
+	public void endQueryResult() throws TupleQueryResultHandlerException {
+		try {
+			out.write("]}}".getBytes(StandardCharsets.US_ASCII));
+			out.flush();
+		} catch (IOException e) {
+			throw new TupleQueryResultHandlerException(e);
+		}
+	}
+}
@@ -0,0 +1,87 @@
+package com.the_qa_company.qendpoint.utils.rdf;
+
+import org.eclipse.rdf4j.model.Value;
+import org.eclipse.rdf4j.query.BindingSet;
+import org.eclipse.rdf4j.query.QueryResultHandlerException;
+import org.eclipse.rdf4j.query.TupleQueryResultHandler;
+import org.eclipse.rdf4j.query.TupleQueryResultHandlerException;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * SPARQL TSV results writer writing the terms with a {@link HDTValueSerializer}
+ */
+public class HDTSPARQLResultsTSVWriter implements TupleQueryResultHandler {
+	private final OutputStream out;
+	private final HDTValueSerializer serializer;
+	private List<String> bindingNames;
+
+	/**
+	 * create a writer
+	 *
+	 * @param out        output stream, not closed by the writer
+	 * @param serializer serializer of the terms
+	 */
+	public HDTSPARQLResultsTSVWriter(OutputStream out, HDTValueSerializer serializer) {
+		this.out = new BufferedOutputStream(out, 1 << 16);
+		this.serializer = serializer;
+	}
+
+	@Override
+	public void handleBoolean(boolean value) throws QueryResultHandlerException {
+		throw new QueryResultHandlerException("Cannot handle boolean results");
+	}
+
+	@Override
+	public void handleLinks(List<String> linkUrls) throws QueryResultHandlerException {
+		// not supported by the format
+	}
+
+	@Override
+	public void startQueryResult(List<String> bindingNames) throws TupleQueryResultHandlerException {
+		this.bindingNames = bindingNames;
+		try {
+			for (int i = 0; i < bindingNames.size(); i++) {
+				if (i > 0) {
+					out.write('\t');
+				}
+				out.write('?');
+				out.write(bindingNames.get(i).getBytes(StandardCharsets.UTF_8));
+			}
+			out.write('\n');
+		} catch (IOException e) {
+			throw new TupleQueryResultHandlerException(e);
+		}
+	}
+
+	@Override
+	public void handleSolution(BindingSet bindingSet) throws TupleQueryResultHandlerException {
+		try {
+			for (int i = 0; i < bindingNames.size(); i++) {
+				if (i > 0) {
+					out.write('\t');
+				}
+				Value value = bindingSet.getValue(bindingNames.get(i));
+				if (value != null) {
+					out.write(serializer.toNTriples(value));
+				}
+			}
+			out.write('\n');
+		} catch (IOException e) {
+			throw new TupleQueryResultHandlerException(e);
+		}
+	}
+
+	@Override
+	public void endQueryResult() throws TupleQueryResultHandlerException {
+		try {
+			out.flush();
+		} catch (IOException e) {
+			throw new TupleQueryResultHandlerException(e);
+		}
+	}
+}
@@ -0,0 +1,298 @@
+package com.the_qa_company.qendpoint.utils.rdf;
+
+import com.the_qa_company.qendpoint.core.enums.TripleComponentRole;
+import com.the_qa_company.qendpoint.core.hdt.HDT;
+import com.the_qa_company.qendpoint.core.util.concurrent.ClockCache;
+import com.the_qa_company.qendpoint.core.util.string.ByteString;
+import com.the_qa_company.qendpoint.model.HDTValue;
+import com.the_qa_company.qendpoint.model.SimpleIRIHDT;
+import org.eclipse.rdf4j.model.BNode;
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.Literal;
+import org.eclipse.rdf4j.model.Triple;
+import org.eclipse.rdf4j.model.Value;
+import org.eclipse.rdf4j.model.vocabulary.XSD;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Optional;
+
+/**
+ * Serializer of the values of the query results. The terms of the HDT values
+ * are written from the bytes of the HDT dictionary without decoding them, the
+ * serialized terms of the HDT ids are kept in a cache shared by the queries.
+ * <p>
+ * The terms are serialized in the N-Triples syntax, also used by the SPARQL
+ * TSV results, or as a SPARQL JSON results binding.
+ */
+public class HDTValueSerializer {
+	/**
+	 * estimated size of a cache entry without its term, in bytes
+	 */
+	private static final long ENTRY_SIZE = 64;
+	private static final byte[] HEX = "0123456789ABCDEF".getBytes(StandardCharsets.US_ASCII);
+	private static final byte[] XSD_STRING_SUFFIX = ("^^<" + XSD.STRING + ">").getBytes(StandardCharsets.UTF_8);
+
+	private final HDT hdt;
+	private final ClockCache<Long, byte[]> cache;
+
+	/**
+	 * create a serializer
+	 *
+	 * @param hdt     the HDT of the values, its dictionary should be the
+	 *                dictionary of the HDT to read the bytes of the strings
+	 * @param maxSize maximum size of the cache in bytes
+	 */
+	public HDTValueSerializer(HDT hdt, long maxSize) {
+		this.hdt = hdt;
+		this.cache = new ClockCache<>(maxSize, (key, term) -> ENTRY_SIZE + term.length);
+	}
+
+	/**
+	 * @return the cache of the serialized terms, to read its metrics
+	 */
+	public ClockCache<Long, byte[]> getCache() {
+		return cache;
+	}
+
+	/**
+	 * serialize a value in the N-Triples syntax
+	 *
+	 * @param value value
+	 * @return the bytes of the term, shouldn't be modified
+	 */
+	public byte[] toNTriples(Value value) {
+		return serialize(value, false);
+	}
+
+	/**
+	 * serialize a value as a SPARQL JSON results binding
+	 *
+	 * @param value value
+	 * @return the bytes of the binding object, shouldn't be modified
+	 */
+	public byte[] toJSON(Value value) {
+		return serialize(value, true);
+	}
+
+	/**
+	 * serialize a string as a JSON string
+	 *
+	 * @param str string
+	 * @return the bytes of the JSON string, with its quotes
+	 */
+	public static byte[] toJSONString(String str) {
+		byte[] buffer = str.getBytes(StandardCharsets.UTF_8);
+		ByteArrayOutputStream out = new ByteArrayOutputStream(buffer.length + 2);
+		out.write('"');
+		writeJSONString(out, buffer, 0, buffer.length);
+		out.write('"');
+		return out.toByteArray();
+	}
+
+	private byte[] serialize(Value value, boolean json) {
+		if (value instanceof HDTValue hdtValue && hdtValue.isValidHDTId()) {
+			int position = hdtValue.getHDTPosition();
+			long id = hdtValue.getHDTId();
+			// 3 bits for the position and 1 bit for the syntax
+			long key = (((id << 3) | position) << 1) | (json ? 1 : 0);
+			return cache.get(key, k -> serializeHDT(value, position, id, json));
+		}
+		return serializeValue(value, json);
+	}
+
+	private byte[] serializeHDT(Value value, int position, long id, boolean json) {
+		TripleComponentRole role = switch (position) {
+		case SimpleIRIHDT.SHARED_POS, SimpleIRIHDT.SUBJECT_POS -> TripleComponentRole.SUBJECT;
+		case SimpleIRIHDT.PREDICATE_POS -> TripleComponentRole.PREDICATE;
+		case SimpleIRIHDT.OBJECT_POS -> TripleComponentRole.OBJECT;
+		case SimpleIRIHDT.GRAPH_POS -> TripleComponentRole.GRAPH;
+		default -> null;
+		};
+		CharSequence str = role == null ? null : hdt.getDictionary().idToString(id, role);
+		if (str == null) {
+			return serializeValue(value, json);
+		}
+		byte[] buffer;
+		int length;
+		if (str instanceof ByteString bs) {
+			buffer = bs.getBuffer();
+			length = bs.length();
+		} else {
+			buffer = str.toString().getBytes(StandardCharsets.UTF_8);
+			length = buffer.length;
+		}
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream(length + 32);
+		if (value instanceof IRI) {
+			writeIRI(out, buffer, 0, length, json);
+		} else if (value instanceof BNode) {
+			// the HDT blank nodes are stored with their '_:' prefix
+			int start = length >= 2 && buffer[0] == '_' && buffer[1] == ':' ? 2 : 0;
+			writeBNode(out, buffer, start, length, json);
+		} else if (value instanceof Literal && length > 0 && buffer[0] == '"') {
+			writeLiteral(out, buffer, length, json);
+		} else {
+			return serializeValue(value, json);
+		}
+		return out.toByteArray();
+	}
+
+	private byte[] serializeValue(Value value, boolean json) {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		if (value instanceof IRI iri) {
+			byte[] buffer = iri.stringValue().getBytes(StandardCharsets.UTF_8);
+			writeIRI(out, buffer, 0, buffer.length, json);
+		} else if (value instanceof BNode bnode) {
+			byte[] buffer = bnode.getID().getBytes(StandardCharsets.UTF_8);
+			writeBNode(out, buffer, 0, buffer.length, json);
+		} else if (value instanceof Literal literal) {
+			// build the dictionary syntax of the literal
+			StringBuilder raw = new StringBuilder().append('"').append(literal.getLabel()).append('"');
+			Optional<String> language = literal.getLanguage();
+			if (language.isPresent()) {
+				raw.append('@').append(language.get());
+			} else if (!XSD.STRING.equals(literal.getDatatype())) {
+				raw.append("^^<").append(literal.getDatatype().stringValue()).append('>');
+			}
+			byte[] buffer = raw.toString().getBytes(StandardCharsets.UTF_8);
+			writeLiteral(out, buffer, buffer.length, json);
+		} else if (value instanceof Triple triple) {
+			if (json) {
+				write(out, "{\"type\":\"triple\",\"value\":{\"subject\":");
+				out.writeBytes(toJSON(triple.getSubject()));
+				write(out, ",\"predicate\":");
+				out.writeBytes(toJSON(triple.getPredicate()));
+				write(out, ",\"object\":");
+				out.writeBytes(toJSON(triple.getObject()));
+				write(out, "}}");
+			} else {
+				write(out, "<< ");
+				out.writeBytes(toNTriples(triple.getSubject()));
+				out.write(' ');
+				out.writeBytes(toNTriples(triple.getPredicate()));
+				out.write(' ');
+				out.writeBytes(toNTriples(triple.getObject()));
+				write(out, " >>");
+			}
+		} else {
+			throw new IllegalArgumentException("Can't serialize value of type " + value.getClass());
+		}
+		return out.toByteArray();
+	}
+
+	private static void writeIRI(ByteArrayOutputStream out, byte[] buffer, int start, int end, boolean json) {
+		if (json) {
+			write(out, "{\"type\":\"uri\",\"value\":\"");
+			writeJSONString(out, buffer, start, end);
+			write(out, "\"}");
+		} else {
+			out.write('<');
+			for (int i = start; i < end; i++) {
+				byte b = buffer[i];
+				if ((b & 0xFF) <= 0x20 || b == '<' || b == '>' || b == '"' || b == '{' || b == '}' || b == '|'
+						|| b == '^' || b == '`' || b == '\\') {
+					writeUnicodeEscape(out, b);
+				} else {
+					out.write(b);
+				}
+			}
+			out.write('>');
+		}
+	}
+
+	private static void writeBNode(ByteArrayOutputStream out, byte[] buffer, int start, int end, boolean json) {
+		if (json) {
+			write(out, "{\"type\":\"bnode\",\"value\":\"");
+			writeJSONString(out, buffer, start, end);
+			write(out, "\"}");
+		} else {
+			write(out, "_:");
+			out.write(buffer, start, end - start);
+		}
+	}
+
+	private static void writeLiteral(ByteArrayOutputStream out, byte[] buffer, int length, boolean json) {
+		// the buffer is "label", "label"@lang or "label"^^<datatype>
+		int endLabel = length - 1;
+		while (endLabel > 0 && buffer[endLabel] != '"') {
+			endLabel--;
+		}
+		if (endLabel == 0) {
+			// no end quote
+			endLabel = length;
+		}
+		int suffixStart = Math.min(endLabel + 1, length);
+		if (length - suffixStart == XSD_STRING_SUFFIX.length
+				&& Arrays.equals(buffer, suffixStart, length, XSD_STRING_SUFFIX, 0, XSD_STRING_SUFFIX.length)) {
+			// simple literal
+			suffixStart = length;
+		}
+
+		if (json) {
+			write(out, "{\"type\":\"literal\",\"value\":\"");
+			writeJSONString(out, buffer, 1, endLabel);
+			out.write('"');
+			if (suffixStart < length && buffer[suffixStart] == '@') {
+				write(out, ",\"xml:lang\":\"");
+				writeJSONString(out, buffer, suffixStart + 1, length);
+				out.write('"');
+			} else if (suffixStart + 4 < length && buffer[suffixStart] == '^') {
+				write(out, ",\"datatype\":\"");
+				writeJSONString(out, buffer, suffixStart + 3, length - 1);
+				out.write('"');
+			}
+			out.write('}');
+		} else {
+			out.write('"');
+			for (int i = 1; i < endLabel; i++) {
+				byte b = buffer[i];
+				switch (b) {
+				case '"' -> write(out, "\\\"");
+				case '\\' -> write(out, "\\\\");
+				case '\n' -> write(out, "\\n");
+				case '\r' -> write(out, "\\r");
+				// not required by N-Triples, but by the TSV results
+				case '\t' -> write(out, "\\t");
+				default -> out.write(b);
+				}
+			}
+			out.write('"');
+			out.write(buffer, suffixStart, length - suffixStart);
+		}
+	}
+
+	private static void writeJSONString(ByteArrayOutputStream out, byte[] buffer, int start, int end) {
+		for (int i = start; i < end; i++) {
+			byte b = buffer[i];
+			switch (b) {
+			case '"' -> write(out, "\\\"");
+			case '\\' -> write(out, "\\\\");
+			case '\n' -> write(out, "\\n");
+			case '\r' -> write(out, "\\r");
+			case '\t' -> write(out, "\\t");
+			default -> {
+				if (b >= 0 && b < 0x20) {
+					writeUnicodeEscape(out, b);
+				} else {
+					// ASCII or part of an UTF-8 sequence
+					out.write(b);
+				}
+			}
+			}
+		}
+	}
+
+	private static void writeUnicodeEscape(ByteArrayOutputStream out, byte b) {
+		write(out, "\\u00");
+		out.write(HEX[(b >>> 4) & 0xF]);
+		out.write(HEX[b & 0xF]);
+	}
+
+	private static void write(ByteArrayOutputStream out, String ascii) {
+		for (int i = 0; i < ascii.length(); i++) {
+			out.write(ascii.charAt(i));
+		}
+	}
+}
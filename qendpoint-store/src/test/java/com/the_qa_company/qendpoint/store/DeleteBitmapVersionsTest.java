@@ -0,0 +1,118 @@
+package com.the_qa_company.qendpoint.store;
+
+import com.the_qa_company.qendpoint.core.compact.bitmap.Bitmap64Big;
+import com.the_qa_company.qendpoint.core.compact.bitmap.MultiLayerBitmapWrapper;
+import com.the_qa_company.qendpoint.core.enums.TripleComponentOrder;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+public class DeleteBitmapVersionsTest {
+	private static final TripleComponentOrder SPO = TripleComponentOrder.SPO;
+
+	private static void delete(DeleteBitmapVersions versions, MultiLayerBitmapWrapper.MultiLayerModBitmapWrapper bitmap,
+			long layer, long position, long writer) {
+		versions.markPending(SPO, bitmap.getLayersCount() * position + layer, writer);
+		bitmap.set(layer, position, true);
+	}
+
+	@Test
+	public void snapshotTest() {
+		DeleteBitmapVersions versions = new DeleteBitmapVersions();
+		MultiLayerBitmapWrapper.MultiLayerModBitmapWrapper bitmap = MultiLayerBitmapWrapper
+				.of(Bitmap64Big.memory(100), 2);
+
+		delete(versions, bitmap, 0, 1, 0);
+		versions.publish(0);
+		// no snapshot, the version is forgotten
+		assertEquals(0, versions.getRecentDeletes());
+
+		try (DeleteBitmapVersions.Snapshot s0 = versions.createSnapshot(0);
+				DeleteBitmapVersions.Snapshot s1 = versions.createSnapshot(1)) {
+			assertTrue(versions.isDeleted(s1, bitmap, SPO, 0, 1));
+			assertFalse(versions.isDeleted(s1, bitmap, SPO, 1, 1));
+
+			delete(versions, bitmap, 1, 1, 0);
+			delete(versions, bitmap, 0, 2, 0);
+			// pending, only the writer can see it
+			assertTrue(versions.isDeleted(s0, bitmap, SPO, 1, 1));
+			assertFalse(versions.isDeleted(s1, bitmap, SPO, 1, 1));
+			assertTrue(versions.isDeleted(null, bitmap, SPO, 1, 1));
+
+			versions.publish(0);
+			assertEquals(2, versions.getVersion());
+			// published after the snapshots
+			assertFalse(versions.isDeleted(s0, bitmap, SPO, 1, 1));
+			assertFalse(versions.isDeleted(s1, bitmap, SPO, 0, 2));
+
+			try (DeleteBitmapVersions.Snapshot s2 = versions.createSnapshot(1)) {
+				assertTrue(versions.isDeleted(s2, bitmap, SPO, 1, 1));
+				assertTrue(versions.isDeleted(s2, bitmap, SPO, 0, 2));
+			}
+			assertEquals(2, versions.getRecentDeletes());
+		}
+		assertEquals(0, versions.getRecentDeletes());
+	}
+
+	@Test
+	public void retainTest() {
+		DeleteBitmapVersions versions = new DeleteBitmapVersions();
+		MultiLayerBitmapWrapper.MultiLayerModBitmapWrapper bitmap = MultiLayerBitmapWrapper
+				.of(Bitmap64Big.memory(100), 1);
+
+		DeleteBitmapVersions.Snapshot snapshot = versions.createSnapshot(1);
+		DeleteBitmapVersions.Snapshot iteration = snapshot.retain();
+		delete(versions, bitmap, 0, 3, 0);
+		versions.publish(0);
+
+		// the transaction is closed, the iteration still uses the version
+		snapshot.close();
+		assertFalse(versions.isDeleted(iteration, bitmap, SPO, 0, 3));
+		assertEquals(1, versions.getRecentDeletes());
+
+		iteration.close();
+		assertEquals(0, versions.getRecentDeletes());
+		// closing twice doesn't release another snapshot
+		iteration.close();
+		assertThrows(IllegalStateException.class, iteration::retain);
+	}
+
+	@Test
+	public void publishWriterTest() {
+		DeleteBitmapVersions versions = new DeleteBitmapVersions();
+		MultiLayerBitmapWrapper.MultiLayerModBitmapWrapper bitmap = MultiLayerBitmapWrapper
+				.of(Bitmap64Big.memory(100), 1);
+
+		try (DeleteBitmapVersions.Snapshot s0 = versions.createSnapshot(0);
+				DeleteBitmapVersions.Snapshot s1 = versions.createSnapshot(1)) {
+			delete(versions, bitmap, 0, 1, 0);
+			delete(versions, bitmap, 0, 2, 1);
+			assertEquals(1, versions.countHidden(s0, SPO));
+			assertEquals(1, versions.countHidden(s1, SPO));
+
+			// only the deletes of the writer are published
+			versions.publish(1);
+			assertTrue(versions.isDeleted(s0, bitmap, SPO, 0, 1));
+			assertFalse(versions.isDeleted(s0, bitmap, SPO, 0, 2));
+			assertFalse(versions.isDeleted(s1, bitmap, SPO, 0, 1));
+			// published after the snapshot of the writer
+			assertFalse(versions.isDeleted(s1, bitmap, SPO, 0, 2));
+			assertEquals(1, versions.countHidden(s0, SPO));
+			assertEquals(2, versions.countHidden(s1, SPO));
+
+			try (DeleteBitmapVersions.Snapshot s2 = versions.createSnapshot(2)) {
+				assertEquals(1, versions.countHidden(s2, SPO));
+			}
+		}
+	}
+
+	@Test
+	public void publishWithoutDeleteTest() {
+		DeleteBitmapVersions versions = new DeleteBitmapVersions();
+		versions.publish(3);
+		assertEquals(0, versions.getVersion());
+	}
+}
@@ -24,6 +24,8 @@ import org.junit.rules.TemporaryFolder;
 import java.io.File;
 import java.io.IOException;
 
+import static org.junit.Assert.assertEquals;
+
 public class EndpointStoreGraphTest {
 
 	@Rule
@@ -277,4 +279,38 @@ public class EndpointStoreGraphTest {
 		}
 
 	}
+
+	@Test
+	public void multipleContextsAddTest() throws IOException {
+		HDTOptions spec = HDTOptions.of(HDTOptionsKeys.DICTIONARY_TYPE_KEY,
+				HDTOptionsKeys.DICTIONARY_TYPE_VALUE_MULTI_OBJECTS_LANG_QUAD, HDTOptionsKeys.TEMP_DICTIONARY_IMPL_KEY,
+				HDTOptionsKeys.TEMP_DICTIONARY_IMPL_VALUE_HASH_QUAD);
+		SparqlRepository sparqlRepository = CompiledSail.compiler()
+				.withEndpointFiles(new EndpointFiles(tempDir.newFolder().toPath())).withHDTSpec(spec)
+				.compileToSparqlRepository();
+		ValueFactory vf = sparqlRepository.getRepository().getValueFactory();
+		Resource g1 = vf.createIRI(Utility.EXAMPLE_NAMESPACE + "g1");
+		Resource g2 = vf.createIRI(Utility.EXAMPLE_NAMESPACE + "g2");
+		Resource g3 = vf.createIRI(Utility.EXAMPLE_NAMESPACE + "g3");
+		try {
+			try (SailRepositoryConnection conn = sparqlRepository.getConnection()) {
+				conn.begin();
+				conn.add(vf.createIRI(Utility.EXAMPLE_NAMESPACE + "s"), vf.createIRI(Utility.EXAMPLE_NAMESPACE + "p"),
+						vf.createIRI(Utility.EXAMPLE_NAMESPACE + "o"), g1, g2, g3);
+				conn.commit();
+			}
+			try (SailRepositoryConnection conn = sparqlRepository.getConnection()) {
+				for (Resource g : new Resource[] { g1, g2, g3 }) {
+					try (RepositoryResult<Statement> st = conn.getStatements(null, null, null, false, g)) {
+						assertEquals("bad count for " + g, 1, st.stream().count());
+					}
+				}
+				try (RepositoryResult<Statement> st = conn.getStatements(null, null, null, false)) {
+					assertEquals(3, st.stream().count());
+				}
+			}
+		} finally {
+			sparqlRepository.shutDown();
+		}
+	}
 }
@@ -1,5 +1,8 @@
 package com.the_qa_company.qendpoint.store;
 
+import com.the_qa_company.qendpoint.compiler.CompiledSail;
+import com.the_qa_company.qendpoint.compiler.SparqlRepository;
+import com.the_qa_company.qendpoint.core.enums.RDFNotation;
 import com.the_qa_company.qendpoint.core.exceptions.NotFoundException;
 import com.the_qa_company.qendpoint.core.exceptions.ParserException;
 import com.the_qa_company.qendpoint.core.hdt.HDT;
@@ -10,14 +13,19 @@ import com.the_qa_company.qendpoint.core.triples.IteratorTripleString;
 import com.the_qa_company.qendpoint.core.triples.TripleString;
 import com.the_qa_company.qendpoint.model.SimpleBNodeHDT;
 import com.the_qa_company.qendpoint.model.SimpleIRIHDT;
+import com.the_qa_company.qendpoint.store.exception.EndpointStoreInputException;
 import com.the_qa_company.qendpoint.utils.BitArrayDisk;
+import com.the_qa_company.qendpoint.utils.CloseSafeHDT;
 import com.the_qa_company.qendpoint.utils.VariableToIdSubstitution;
 import org.apache.commons.io.file.PathUtils;
 import org.apache.commons.lang3.time.StopWatch;
+import org.eclipse.rdf4j.common.iteration.CloseableIteration;
+import org.eclipse.rdf4j.common.order.StatementOrder;
 import org.eclipse.rdf4j.model.BNode;
 import org.eclipse.rdf4j.model.IRI;
 import org.eclipse.rdf4j.model.Resource;
 import org.eclipse.rdf4j.model.Statement;
+import org.eclipse.rdf4j.model.Value;
 import org.eclipse.rdf4j.model.ValueFactory;
 import org.eclipse.rdf4j.model.impl.SimpleValueFactory;
 import org.eclipse.rdf4j.model.vocabulary.FOAF;
@@ -45,12 +53,16 @@ import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
 import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Random;
@@ -58,6 +70,8 @@ import java.util.Set;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertThrows;
 import static org.junit.Assert.assertTrue;
 
 public class EndpointStoreTest {
@@ -404,6 +418,561 @@ public class EndpointStoreTest {
 		}
 	}
 
+	@Test
+	public void testDeltaPatternFilter() throws IOException, InterruptedException {
+		File nativeStore = tempDir.newFolder("native-store");
+		File hdtStore = tempDir.newFolder("hdt-store");
+		try (HDT hdt = Utility.createTempHdtIndex(tempDir, false, false, spec)) {
+			assert hdt != null;
+			hdt.saveToHDT(hdtStore.getAbsolutePath() + File.separatorChar + HDT_INDEX_NAME, null);
+		}
+		spec.set(EndpointStore.OPTION_QENDPOINT_DELTA_PATTERN_FILTER, 1 << 16);
+		ValueFactory vf = SimpleValueFactory.getInstance();
+		String ex = "http://example.com/";
+		IRI guo = vf.createIRI(ex, "Guo");
+		IRI ali = vf.createIRI(ex, "Ali");
+		EndpointStore store = new EndpointStore(hdtStore.getAbsolutePath() + File.separatorChar, HDT_INDEX_NAME, spec,
+				nativeStore.getAbsolutePath() + File.separatorChar, false);
+		SailRepository endpointStore = new SailRepository(store);
+		try (RepositoryConnection connection = endpointStore.getConnection()) {
+			connection.add(ali, RDF.TYPE, FOAF.PERSON);
+			connection.add(guo, FOAF.KNOWS, ali);
+			connection.add(guo, RDF.TYPE, RDF.TYPE);
+
+			assertEquals(2, connection.getStatements(null, RDF.TYPE, FOAF.PERSON, false).stream().count());
+			assertTrue(connection.hasStatement(guo, FOAF.KNOWS, ali, false));
+			assertTrue(connection.hasStatement(guo, RDF.TYPE, RDF.TYPE, false));
+			assertFalse(connection.hasStatement(ali, RDF.TYPE, RDF.TYPE, false));
+		} finally {
+			endpointStore.shutDown();
+		}
+
+		// the filter is rebuilt from the delta
+		store = new EndpointStore(hdtStore.getAbsolutePath() + File.separatorChar, HDT_INDEX_NAME, spec,
+				nativeStore.getAbsolutePath() + File.separatorChar, false);
+		endpointStore = new SailRepository(store);
+		try {
+			try (RepositoryConnection connection = endpointStore.getConnection()) {
+				assertEquals(2, connection.getStatements(null, RDF.TYPE, FOAF.PERSON, false).stream().count());
+				assertTrue(connection.hasStatement(guo, RDF.TYPE, RDF.TYPE, false));
+				assertTrue(connection.hasStatement(guo, FOAF.KNOWS, ali, false));
+			}
+			store.mergeStore();
+			MergeRunnable.debugWaitMerge();
+			// and with the new HDT ids after a merge
+			try (RepositoryConnection connection = endpointStore.getConnection()) {
+				connection.add(ali, FOAF.KNOWS, guo);
+				assertEquals(4, store.getHdt().getTriples().getNumberOfElements());
+				assertTrue(connection.hasStatement(ali, FOAF.KNOWS, guo, false));
+				assertTrue(connection.hasStatement(guo, FOAF.KNOWS, ali, false));
+				assertEquals(2, connection.getStatements(null, FOAF.KNOWS, null, false).stream().count());
+			}
+		} finally {
+			endpointStore.shutDown();
+		}
+	}
+
+	@Test
+	public void testGenerationReadDuringMerge() throws IOException, InterruptedException {
+		File nativeStore = tempDir.newFolder("native-store");
+		File hdtStore = tempDir.newFolder("hdt-store");
+		try (HDT hdt = Utility.createTempHdtIndex(tempDir, false, false, spec)) {
+			assert hdt != null;
+			hdt.saveToHDT(hdtStore.getAbsolutePath() + File.separatorChar + HDT_INDEX_NAME, null);
+		}
+		ValueFactory vf = SimpleValueFactory.getInstance();
+		String ex = "http://example.com/";
+		IRI guo = vf.createIRI(ex, "Guo");
+		IRI ali = vf.createIRI(ex, "Ali");
+		EndpointStore store = new EndpointStore(hdtStore.getAbsolutePath() + File.separatorChar, HDT_INDEX_NAME, spec,
+				nativeStore.getAbsolutePath() + File.separatorChar, false);
+		try {
+			try (NotifyingSailConnection connection = store.getConnection()) {
+				connection.begin();
+				connection.addStatement(ali, RDF.TYPE, FOAF.PERSON);
+				connection.addStatement(guo, FOAF.KNOWS, ali);
+				connection.commit();
+			}
+			long count;
+			try (NotifyingSailConnection connection = store.getConnection();
+					CloseableIteration<? extends Statement> it = connection.getStatements(null, null, null, false)) {
+				count = it.stream().count();
+			}
+
+			EndpointStoreGeneration old;
+			try (EndpointStoreConnection reader = (EndpointStoreConnection) store.getConnection()) {
+				old = reader.getGeneration();
+				CloseSafeHDT oldHdt = (CloseSafeHDT) old.getHdt();
+				try (CloseableIteration<? extends Statement> it = reader.getStatements(null, null, null, false)) {
+					// the merge doesn't wait for the open reader
+					store.mergeStore();
+					MergeRunnable.debugWaitMerge();
+
+					assertTrue(old.isReplaced());
+					assertFalse(oldHdt.isClosed());
+					try (NotifyingSailConnection connection = store.getConnection()) {
+						connection.begin();
+						connection.addStatement(guo, RDF.TYPE, FOAF.PERSON);
+						connection.commit();
+					}
+					// the reader still reads the old HDT and its delta stores
+					assertEquals(count, it.stream().count());
+				}
+				try (CloseableIteration<? extends Statement> it = reader.getStatements(null, null, null, false)) {
+					assertEquals(count, it.stream().count());
+				}
+				assertFalse(oldHdt.isClosed());
+				reader.close();
+				// released by the last reader
+				assertTrue(oldHdt.isClosed());
+			}
+
+			try (NotifyingSailConnection connection = store.getConnection();
+					CloseableIteration<? extends Statement> it = connection.getStatements(null, null, null, false)) {
+				assertEquals(count + 1, it.stream().count());
+			}
+			assertTrue(store.getGeneration().getId() > old.getId());
+		} finally {
+			store.shutDown();
+		}
+	}
+
+	@Test
+	public void testApplyChangeset() throws IOException {
+		File nativeStore = tempDir.newFolder("native-store");
+		File hdtStore = tempDir.newFolder("hdt-store");
+		try (HDT hdt = Utility.createTempHdtIndex(tempDir, false, false, spec)) {
+			assert hdt != null;
+			hdt.saveToHDT(hdtStore.getAbsolutePath() + File.separatorChar + HDT_INDEX_NAME, null);
+		}
+		EndpointStore store = new EndpointStore(hdtStore.getAbsolutePath() + File.separatorChar, HDT_INDEX_NAME, spec,
+				nativeStore.getAbsolutePath() + File.separatorChar, false);
+		SailRepository endpointStore = new SailRepository(store);
+		ValueFactory vf = SimpleValueFactory.getInstance();
+		String ex = "http://example.com/";
+		Statement guo = vf.createStatement(vf.createIRI(ex, "Guo"), RDF.TYPE, FOAF.PERSON);
+		Statement ali = vf.createStatement(vf.createIRI(ex, "Ali"), RDF.TYPE, FOAF.PERSON);
+		Statement dennis = vf.createStatement(vf.createIRI(ex, "Dennis"), RDF.TYPE, FOAF.PERSON);
+		try {
+			try (EndpointStoreConnection connection = (EndpointStoreConnection) store.getConnection()) {
+				connection.begin();
+				// delete the HDT triple and add 2 triples
+				connection.applyChangeset(List.of(guo), List.of(ali, dennis, ali));
+				connection.commit();
+			}
+			try (RepositoryConnection connection = endpointStore.getConnection()) {
+				assertEquals(2, connection.size());
+				assertFalse(connection.hasStatement(guo, false));
+				assertTrue(connection.hasStatement(ali, false));
+				assertTrue(connection.hasStatement(dennis, false));
+			}
+			try (EndpointStoreConnection connection = (EndpointStoreConnection) store.getConnection()) {
+				connection.begin();
+				// delete a delta triple and add back the HDT triple
+				connection.applyChangeset(List.of(ali), List.of(guo));
+				connection.commit();
+			}
+			try (RepositoryConnection connection = endpointStore.getConnection()) {
+				assertEquals(2, connection.size());
+				assertTrue(connection.hasStatement(guo, false));
+				assertFalse(connection.hasStatement(ali, false));
+				assertTrue(connection.hasStatement(dennis, false));
+			}
+		} finally {
+			endpointStore.shutDown();
+		}
+	}
+
+	@Test
+	public void testApplyChangesetListMerge() throws IOException, ParserException {
+		File nativeStore = tempDir.newFolder("native-store");
+		File hdtStore = tempDir.newFolder("hdt-store");
+		Path ntFile = tempDir.newFolder().toPath().resolve("data.nt");
+		String ex = "http://example.com/";
+		StringBuilder nt = new StringBuilder();
+		for (int i = 0; i < 100; i++) {
+			nt.append("<").append(ex).append("s> <").append(ex).append("p> <").append(ex).append("o").append(i)
+					.append("> .\n");
+		}
+		for (int i = 0; i < 5; i++) {
+			nt.append("<").append(ex).append("t> <").append(ex).append("p> <").append(ex).append("o").append(i)
+					.append("> .\n");
+		}
+		Files.writeString(ntFile, nt);
+		try (HDT hdt = HDTManager.generateHDT(ntFile.toAbsolutePath().toString(), ex, RDFNotation.NTRIPLES, spec,
+				null)) {
+			hdt.saveToHDT(hdtStore.getAbsolutePath() + File.separatorChar + HDT_INDEX_NAME, null);
+		}
+		EndpointStore store = new EndpointStore(hdtStore.getAbsolutePath() + File.separatorChar, HDT_INDEX_NAME, spec,
+				nativeStore.getAbsolutePath() + File.separatorChar, false);
+		SailRepository endpointStore = new SailRepository(store);
+		ValueFactory vf = SimpleValueFactory.getInstance();
+		try {
+			// large group of the s list, merged with the list, and small
+			// group of the t list
+			List<Statement> deletes = new ArrayList<>();
+			for (int i = 0; i < 100; i += 2) {
+				deletes.add(
+						vf.createStatement(vf.createIRI(ex, "s"), vf.createIRI(ex, "p"), vf.createIRI(ex, "o" + i)));
+			}
+			deletes.add(vf.createStatement(vf.createIRI(ex, "t"), vf.createIRI(ex, "p"), vf.createIRI(ex, "o3")));
+			deletes.add(vf.createStatement(vf.createIRI(ex, "s"), vf.createIRI(ex, "p"), vf.createIRI(ex, "unknown")));
+			try (EndpointStoreConnection connection = (EndpointStoreConnection) store.getConnection()) {
+				connection.begin();
+				connection.applyChangeset(deletes, List.of());
+				connection.commit();
+			}
+			// the unknown triple isn't in the HDT
+			assertEquals(51, store.getDeletedTriplesCount());
+			try (RepositoryConnection connection = endpointStore.getConnection()) {
+				assertEquals(54, connection.size());
+				for (int i = 0; i < 100; i++) {
+					assertEquals("o" + i, i % 2 == 1, connection.hasStatement(vf.createIRI(ex, "s"),
+							vf.createIRI(ex, "p"), vf.createIRI(ex, "o" + i), false));
+				}
+				assertFalse(connection.hasStatement(vf.createIRI(ex, "t"), vf.createIRI(ex, "p"),
+						vf.createIRI(ex, "o3"), false));
+				assertEquals(2, connection.getStatements(null, null, vf.createIRI(ex, "o1"), false).stream().count());
+			}
+		} finally {
+			endpointStore.shutDown();
+		}
+	}
+
+	@Test
+	public void testApplyChangesetTransaction() throws IOException {
+		SparqlRepository repository = CompiledSail.compiler()
+				.withEndpointFiles(new EndpointFiles(tempDir.newFolder().toPath())).compileToSparqlRepository();
+		try {
+			String changeset = """
+					A <http://example.com/a> <http://example.com/p> <http://example.com/b> .
+					A <http://example.com/b> <http://example.com/p> <http://example.com/c> .
+					X bad line
+					""";
+			assertThrows(EndpointStoreInputException.class, () -> repository
+					.applyChangeset(new ByteArrayInputStream(changeset.getBytes(StandardCharsets.UTF_8))));
+			try (RepositoryConnection connection = repository.getConnection()) {
+				// nothing was applied
+				assertEquals(0, connection.size());
+			}
+			assertEquals(2, repository.applyChangeset(new ByteArrayInputStream(
+					changeset.substring(0, changeset.indexOf("X")).getBytes(StandardCharsets.UTF_8))));
+			try (RepositoryConnection connection = repository.getConnection()) {
+				assertEquals(2, connection.size());
+			}
+		} finally {
+			repository.shutDown();
+		}
+	}
+
+	@Test
+	public void testIdJoin() throws IOException, ParserException {
+		File nativeStore = tempDir.newFolder("native-store");
+		File hdtStore = tempDir.newFolder("hdt-store");
+		Path ntFile = tempDir.newFolder().toPath().resolve("data.nt");
+		Files.writeString(ntFile, """
+				<http://example.com/a> <http://xmlns.com/foaf/0.1/knows> <http://example.com/b> .
+				<http://example.com/b> <http://xmlns.com/foaf/0.1/knows> <http://example.com/c> .
+				<http://example.com/c> <http://xmlns.com/foaf/0.1/knows> <http://example.com/a> .
+				<http://example.com/a> <http://www.w3.org/1999/02/22-rdf-syntax-ns#type> <http://xmlns.com/foaf/0.1/Person> .
+				<http://example.com/b> <http://www.w3.org/1999/02/22-rdf-syntax-ns#type> <http://xmlns.com/foaf/0.1/Person> .
+				""");
+		try (HDT hdt = HDTManager.generateHDT(ntFile.toAbsolutePath().toString(), "http://example.com/",
+				RDFNotation.NTRIPLES, spec, null)) {
+			hdt.saveToHDT(hdtStore.getAbsolutePath() + File.separatorChar + HDT_INDEX_NAME, null);
+		}
+		spec.set(EndpointStore.OPTION_QENDPOINT_ID_JOIN, true);
+		ValueFactory vf = SimpleValueFactory.getInstance();
+		IRI a = vf.createIRI("http://example.com/a");
+		IRI b = vf.createIRI("http://example.com/b");
+		IRI c = vf.createIRI("http://example.com/c");
+		String query = """
+				PREFIX foaf: <http://xmlns.com/foaf/0.1/>
+				SELECT ?x ?y ?z WHERE {
+				  ?x foaf:knows ?y .
+				  ?y foaf:knows ?z .
+				  ?x a foaf:Person .
+				}
+				""";
+		EndpointStore store = new EndpointStore(hdtStore.getAbsolutePath() + File.separatorChar, HDT_INDEX_NAME, spec,
+				nativeStore.getAbsolutePath() + File.separatorChar, false);
+		SailRepository endpointStore = new SailRepository(store);
+		try (RepositoryConnection connection = endpointStore.getConnection()) {
+			Set<List<Value>> results = new HashSet<>();
+			try (TupleQueryResult result = connection.prepareTupleQuery(query).evaluate()) {
+				result.forEach(bs -> results.add(List.of(bs.getValue("x"), bs.getValue("y"), bs.getValue("z"))));
+			}
+			assertEquals(Set.of(List.of(a, b, c), List.of(b, c, a)), results);
+
+			// deleted in the HDT
+			connection.remove(a, RDF.TYPE, FOAF.PERSON);
+			results.clear();
+			try (TupleQueryResult result = connection.prepareTupleQuery(query).evaluate()) {
+				result.forEach(bs -> results.add(List.of(bs.getValue("x"), bs.getValue("y"), bs.getValue("z"))));
+			}
+			assertEquals(Set.of(List.of(b, c, a)), results);
+
+			// the pattern is in the delta, the join isn't evaluated over the ids
+			connection.add(c, RDF.TYPE, FOAF.PERSON);
+			results.clear();
+			try (TupleQueryResult result = connection.prepareTupleQuery(query).evaluate()) {
+				result.forEach(bs -> results.add(List.of(bs.getValue("x"), bs.getValue("y"), bs.getValue("z"))));
+			}
+			assertEquals(Set.of(List.of(b, c, a), List.of(c, a, b)), results);
+		} finally {
+			endpointStore.shutDown();
+		}
+	}
+
+	@Test
+	public void testOrderedStatementsWithDelta() throws IOException {
+		File nativeStore = tempDir.newFolder("native-store");
+		File hdtStore = tempDir.newFolder("hdt-store");
+		try (HDT hdt = Utility.createTempHdtIndex(tempDir, false, false, spec)) {
+			assert hdt != null;
+			hdt.saveToHDT(hdtStore.getAbsolutePath() + File.separatorChar + HDT_INDEX_NAME, null);
+		}
+		spec.set(EndpointStore.OPTION_QENDPOINT_MERGE_JOIN, true);
+		ValueFactory vf = SimpleValueFactory.getInstance();
+		EndpointStore store = new EndpointStore(hdtStore.getAbsolutePath() + File.separatorChar, HDT_INDEX_NAME, spec,
+				nativeStore.getAbsolutePath() + File.separatorChar, false);
+		SailRepository endpointStore = new SailRepository(store);
+		try {
+			try (RepositoryConnection connection = endpointStore.getConnection()) {
+				connection.add(vf.createIRI("http://example.com/", "Zoe"), RDF.TYPE, FOAF.PERSON);
+				connection.add(vf.createIRI("http://example.com/", "Ali"), RDF.TYPE, FOAF.PERSON);
+				connection.add(vf.createBNode("b"), RDF.TYPE, FOAF.PERSON);
+			}
+			try (EndpointStoreConnection connection = (EndpointStoreConnection) store.getConnection()) {
+				EndpointTripleSource tripleSource = new EndpointTripleSource(connection, store);
+				// the delta is searched, but the statements can be ordered
+				assertTrue(tripleSource.getSupportedOrders(null, RDF.TYPE, FOAF.PERSON).contains(StatementOrder.S));
+
+				List<Resource> subjects = new ArrayList<>();
+				try (CloseableIteration<? extends Statement> it = tripleSource.getStatements(StatementOrder.S, null,
+						RDF.TYPE, FOAF.PERSON)) {
+					it.forEachRemaining(st -> subjects.add(st.getSubject()));
+				}
+				assertTrue(subjects.size() >= 4);
+				Comparator<Value> comparator = tripleSource.getComparator();
+				for (int i = 1; i < subjects.size(); i++) {
+					assertTrue(comparator.compare(subjects.get(i - 1), subjects.get(i)) <= 0);
+				}
+				Set<String> values = new HashSet<>();
+				subjects.forEach(subject -> values.add(subject.stringValue()));
+				assertTrue(values.containsAll(
+						Set.of("http://example.com/Guo", "http://example.com/Zoe", "http://example.com/Ali")));
+			}
+		} finally {
+			endpointStore.shutDown();
+		}
+	}
+
+	@Test
+	public void testOrderedJoinAcrossSections() throws IOException {
+		File nativeStore = tempDir.newFolder("native-store");
+		File hdtStore = tempDir.newFolder("hdt-store");
+		try (HDT hdt = Utility.createTempHdtIndex(tempDir, false, false, spec)) {
+			assert hdt != null;
+			hdt.saveToHDT(hdtStore.getAbsolutePath() + File.separatorChar + HDT_INDEX_NAME, null);
+		}
+		spec.set(EndpointStore.OPTION_QENDPOINT_MERGE_JOIN, true);
+		// sort the delta in files
+		spec.set(EndpointStore.OPTION_QENDPOINT_MERGE_JOIN_SORT_CHUNK, 1);
+		ValueFactory vf = SimpleValueFactory.getInstance();
+		String ex = "http://example.com/";
+		IRI label = vf.createIRI(ex, "label");
+		EndpointStore store = new EndpointStore(hdtStore.getAbsolutePath() + File.separatorChar, HDT_INDEX_NAME, spec,
+				nativeStore.getAbsolutePath() + File.separatorChar, false);
+		SailRepository endpointStore = new SailRepository(store);
+		try {
+			try (RepositoryConnection connection = endpointStore.getConnection()) {
+				connection.add(vf.createIRI(ex, "Zoe"), RDF.TYPE, FOAF.PERSON);
+				connection.add(vf.createIRI(ex, "Ali"), RDF.TYPE, FOAF.PERSON);
+				// foaf:Person is only an object in the HDT
+				connection.add(FOAF.PERSON, label, vf.createLiteral("person"));
+			}
+			try (EndpointStoreConnection connection = (EndpointStoreConnection) store.getConnection()) {
+				EndpointTripleSource tripleSource = new EndpointTripleSource(connection, store);
+				Value object;
+				try (CloseableIteration<? extends Statement> it = tripleSource.getStatements(StatementOrder.O, null,
+						RDF.TYPE, null)) {
+					object = it.next().getObject();
+				}
+				Value subject;
+				try (CloseableIteration<? extends Statement> it = tripleSource.getStatements(StatementOrder.S, null,
+						label, null)) {
+					subject = it.next().getSubject();
+				}
+				// the same term read as an object and as a subject
+				assertEquals(0, tripleSource.getComparator().compare(object, subject));
+			}
+			try (RepositoryConnection connection = endpointStore.getConnection()) {
+				TupleQuery query = connection.prepareTupleQuery(
+						"SELECT * { ?a a ?x . ?x <http://example.com/label> ?v }");
+				Set<String> names = new HashSet<>();
+				try (TupleQueryResult result = query.evaluate()) {
+					result.forEach(bs -> names.add(bs.getValue("a").stringValue()));
+				}
+				assertEquals(Set.of(ex + "Guo", ex + "Zoe", ex + "Ali"), names);
+			}
+		} finally {
+			endpointStore.shutDown();
+		}
+	}
+
+	@Test
+	public void testSnapshotReads() throws IOException {
+		File nativeStore = tempDir.newFolder("native-store");
+		File hdtStore = tempDir.newFolder("hdt-store");
+		try (HDT hdt = Utility.createTempHdtIndex(tempDir, false, false, spec)) {
+			assert hdt != null;
+			hdt.saveToHDT(hdtStore.getAbsolutePath() + File.separatorChar + HDT_INDEX_NAME, null);
+		}
+		ValueFactory vf = SimpleValueFactory.getInstance();
+		IRI guo = vf.createIRI("http://example.com/", "Guo");
+		EndpointStore store = new EndpointStore(hdtStore.getAbsolutePath() + File.separatorChar, HDT_INDEX_NAME, spec,
+				nativeStore.getAbsolutePath() + File.separatorChar, false);
+		SailRepository endpointStore = new SailRepository(store);
+		try (RepositoryConnection writer = endpointStore.getConnection();
+				RepositoryConnection reader = endpointStore.getConnection()) {
+			writer.begin();
+			writer.remove(guo, RDF.TYPE, FOAF.PERSON);
+			// the writer sees its delete, the reader doesn't see it before
+			// the commit
+			assertFalse(writer.hasStatement(guo, RDF.TYPE, FOAF.PERSON, false));
+			assertTrue(reader.hasStatement(guo, RDF.TYPE, FOAF.PERSON, false));
+			assertEquals(0, writer.size());
+			assertEquals(1, reader.size());
+
+			try (RepositoryResult<Statement> pinned = reader.getStatements(guo, RDF.TYPE, FOAF.PERSON, false)) {
+				// a transaction keeps its snapshot after the commit
+				reader.begin();
+				writer.commit();
+				assertTrue(reader.hasStatement(guo, RDF.TYPE, FOAF.PERSON, false));
+				reader.commit();
+
+				// the iteration keeps the snapshot it was created with
+				assertFalse(reader.hasStatement(guo, RDF.TYPE, FOAF.PERSON, false));
+				assertEquals(1, store.getDeleteVersions().getRecentDeletes());
+				assertTrue(pinned.hasNext());
+			}
+
+			// no open iteration or transaction, the idle connections don't pin
+			// a version
+			assertEquals(0, store.getDeleteVersions().getRecentDeletes());
+			assertEquals(0, reader.size());
+		} finally {
+			endpointStore.shutDown();
+		}
+	}
+
+	@Test
+	public void testDeleteWhileIterating() throws IOException, ParserException {
+		File nativeStore = tempDir.newFolder("native-store");
+		File hdtStore = tempDir.newFolder("hdt-store");
+		String ex = "http://example.com/";
+		List<TripleString> triples = new ArrayList<>();
+		for (int i = 0; i < 100; i++) {
+			triples.add(new TripleString(ex + "S", ex + "P", ex + "O" + i));
+		}
+		try (HDT hdt = HDTManager.generateHDT(triples.iterator(), ex, spec, null)) {
+			hdt.saveToHDT(hdtStore.getAbsolutePath() + File.separatorChar + HDT_INDEX_NAME, null);
+		}
+		ValueFactory vf = SimpleValueFactory.getInstance();
+		IRI s = vf.createIRI(ex, "S");
+		IRI p = vf.createIRI(ex, "P");
+		EndpointStore store = new EndpointStore(hdtStore.getAbsolutePath() + File.separatorChar, HDT_INDEX_NAME, spec,
+				nativeStore.getAbsolutePath() + File.separatorChar, false);
+		SailRepository endpointStore = new SailRepository(store);
+		try (RepositoryConnection connection = endpointStore.getConnection()) {
+			connection.begin();
+			Set<Value> objects = new HashSet<>();
+			try (RepositoryResult<Statement> it = connection.getStatements(s, p, null, false)) {
+				objects.add(it.next().getObject());
+				// the iteration sees the deletes of its connection, even in
+				// a range read without delete
+				for (int i = 0; i < 100; i++) {
+					IRI o = vf.createIRI(ex, "O" + i);
+					if (i % 2 == 0 && !objects.contains(o)) {
+						connection.remove(s, p, o);
+					}
+				}
+				it.forEachRemaining(st -> objects.add(st.getObject()));
+			}
+			connection.commit();
+			assertEquals(51, objects.size());
+			assertEquals(51, connection.size());
+		} finally {
+			endpointStore.shutDown();
+		}
+	}
+
+	@Test
+	public void testJoinStatisticsBackground() throws IOException, InterruptedException {
+		File nativeStore = tempDir.newFolder("native-store");
+		File hdtStore = tempDir.newFolder("hdt-store");
+		try (HDT hdt = Utility.createTempHdtIndex(tempDir, false, false, spec)) {
+			assert hdt != null;
+			hdt.saveToHDT(hdtStore.getAbsolutePath() + File.separatorChar + HDT_INDEX_NAME, null);
+		}
+		// the join statistics are enabled by default
+		EndpointStore store = new EndpointStore(hdtStore.getAbsolutePath() + File.separatorChar, HDT_INDEX_NAME, spec,
+				nativeStore.getAbsolutePath() + File.separatorChar, false);
+		SailRepository endpointStore = new SailRepository(store);
+		try {
+			// the missing statistics don't block the store
+			try (RepositoryConnection connection = endpointStore.getConnection()) {
+				assertEquals(1, connection.size());
+			}
+			long end = System.currentTimeMillis() + 10_000;
+			while (store.getJoinStatistics() == null && System.currentTimeMillis() < end) {
+				Thread.sleep(10);
+			}
+			assertNotNull(store.getJoinStatistics());
+			assertTrue(Files.exists(Path.of(store.getEndpointFiles().getHDTStatistics())));
+		} finally {
+			endpointStore.shutDown();
+		}
+	}
+
+	@Test
+	public void testResultCacheReadTransaction() throws IOException {
+		File nativeStore = tempDir.newFolder("native-store");
+		File hdtStore = tempDir.newFolder("hdt-store");
+		try (HDT hdt = Utility.createTempHdtIndex(tempDir, false, false, spec)) {
+			assert hdt != null;
+			hdt.saveToHDT(hdtStore.getAbsolutePath() + File.separatorChar + HDT_INDEX_NAME, null);
+		}
+		spec.set(EndpointStore.OPTION_QENDPOINT_RESULT_CACHE_SIZE, 1_000_000);
+		EndpointStore store = new EndpointStore(hdtStore.getAbsolutePath() + File.separatorChar, HDT_INDEX_NAME, spec,
+				nativeStore.getAbsolutePath() + File.separatorChar, false);
+		SailRepository endpointStore = new SailRepository(store);
+		ValueFactory vf = SimpleValueFactory.getInstance();
+		String ex = "http://example.com/";
+		try (RepositoryConnection connection = endpointStore.getConnection()) {
+			connection.add(vf.createIRI(ex, "Ali"), RDF.TYPE, FOAF.PERSON);
+			try (TupleQueryResult result = connection.prepareTupleQuery("SELECT * { ?s a ?o }").evaluate()) {
+				result.forEach(bs -> {});
+			}
+			assertEquals(1, store.getQueryResultCache().getCache().size());
+
+			// a read-only transaction after a write doesn't invalidate the
+			// results
+			connection.begin();
+			assertTrue(connection.hasStatement(vf.createIRI(ex, "Ali"), RDF.TYPE, FOAF.PERSON, false));
+			connection.commit();
+			connection.begin();
+			connection.rollback();
+			assertEquals(1, store.getQueryResultCache().getCache().size());
+
+			connection.add(vf.createIRI(ex, "Dennis"), RDF.TYPE, FOAF.PERSON);
+			assertEquals(0, store.getQueryResultCache().getCache().size());
+		} finally {
+			endpointStore.shutDown();
+		}
+	}
+
 	@Test
 	public void rdf4jUsedWorkflow() throws IOException {
 		// not really a test, more code workflow that is used internally as one
@@ -0,0 +1,58 @@
+package com.the_qa_company.qendpoint.store;
+
+import com.the_qa_company.qendpoint.core.enums.RDFNotation;
+import com.the_qa_company.qendpoint.core.enums.TripleComponentRole;
+import com.the_qa_company.qendpoint.core.exceptions.ParserException;
+import com.the_qa_company.qendpoint.core.hdt.HDT;
+import com.the_qa_company.qendpoint.core.hdt.HDTManager;
+import com.the_qa_company.qendpoint.core.options.HDTOptions;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.Assert.assertEquals;
+
+public class HDTCardinalityCacheTest {
+	@Rule
+	public TemporaryFolder tempDir = TemporaryFolder.builder().assureDeletion().build();
+
+	@Test
+	public void cacheTest() throws IOException, ParserException {
+		Path ntFile = tempDir.newFolder().toPath().resolve("data.nt");
+		Files.writeString(ntFile, """
+				<http://ex.org/a> <http://ex.org/p1> <http://ex.org/b> .
+				<http://ex.org/a> <http://ex.org/p1> <http://ex.org/c> .
+				<http://ex.org/b> <http://ex.org/p1> <http://ex.org/c> .
+				<http://ex.org/b> <http://ex.org/p2> <http://ex.org/a> .
+				""");
+		try (HDT hdt = HDTManager.indexedHDT(HDTManager.generateHDT(ntFile.toAbsolutePath().toString(),
+				"http://ex.org/", RDFNotation.NTRIPLES, HDTOptions.of(), null), null)) {
+			long p1 = hdt.getDictionary().stringToId("http://ex.org/p1", TripleComponentRole.PREDICATE);
+			long p2 = hdt.getDictionary().stringToId("http://ex.org/p2", TripleComponentRole.PREDICATE);
+			long a = hdt.getDictionary().stringToId("http://ex.org/a", TripleComponentRole.SUBJECT);
+			long b = hdt.getDictionary().stringToId("http://ex.org/b", TripleComponentRole.SUBJECT);
+
+			HDTCardinalityCache cache = new HDTCardinalityCache(hdt, null, 2);
+			// predicate table
+			assertEquals(3, cache.getCardinality(0, p1, 0), 0);
+			assertEquals(1, cache.getCardinality(0, p2, 0), 0);
+			assertEquals(0, cache.size());
+
+			assertEquals(2, cache.getCardinality(a, 0, 0), 0);
+			assertEquals(2, cache.getCardinality(b, 0, 0), 0);
+			assertEquals(1, cache.getCardinality(b, p2, 0), 0);
+			// bounded
+			assertEquals(2, cache.size());
+			assertEquals(2, cache.getCardinality(a, 0, 0), 0);
+
+			// no cache
+			HDTCardinalityCache noCache = new HDTCardinalityCache(hdt, null, 0);
+			assertEquals(1, noCache.getCardinality(b, p1, 0), 0);
+			assertEquals(0, noCache.size());
+		}
+	}
+}
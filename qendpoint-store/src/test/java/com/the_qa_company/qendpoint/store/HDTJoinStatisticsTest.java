@@ -0,0 +1,94 @@
+package com.the_qa_company.qendpoint.store;
+
+import com.the_qa_company.qendpoint.core.enums.RDFNotation;
+import com.the_qa_company.qendpoint.core.enums.TripleComponentRole;
+import com.the_qa_company.qendpoint.core.exceptions.ParserException;
+import com.the_qa_company.qendpoint.core.hdt.HDT;
+import com.the_qa_company.qendpoint.core.hdt.HDTManager;
+import com.the_qa_company.qendpoint.core.options.HDTOptions;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class HDTJoinStatisticsTest {
+	@Rule
+	public TemporaryFolder tempDir = TemporaryFolder.builder().assureDeletion().build();
+
+	private HDT createHDT() throws IOException, ParserException {
+		Path ntFile = tempDir.newFolder().toPath().resolve("data.nt");
+		Files.writeString(ntFile, """
+				<http://ex.org/a> <http://ex.org/name> "a" .
+				<http://ex.org/a> <http://ex.org/knows> <http://ex.org/b> .
+				<http://ex.org/a> <http://ex.org/knows> <http://ex.org/c> .
+				<http://ex.org/b> <http://ex.org/name> "b" .
+				<http://ex.org/b> <http://ex.org/knows> <http://ex.org/c> .
+				<http://ex.org/c> <http://ex.org/name> "c" .
+				<http://ex.org/d> <http://ex.org/age> "42" .
+				<http://ex.org/e> <http://ex.org/age> "42" .
+				""");
+		try (HDT hdt = HDTManager.generateHDT(ntFile.toAbsolutePath().toString(), "http://ex.org/",
+				RDFNotation.NTRIPLES, HDTOptions.of(), null)) {
+			return HDTManager.indexedHDT(hdt, null);
+		}
+	}
+
+	private static long predicate(HDT hdt, String iri) {
+		return hdt.getDictionary().stringToId(iri, TripleComponentRole.PREDICATE);
+	}
+
+	private static void assertStatistics(HDT hdt, HDTJoinStatistics stats) {
+		long name = predicate(hdt, "http://ex.org/name");
+		long knows = predicate(hdt, "http://ex.org/knows");
+		long age = predicate(hdt, "http://ex.org/age");
+
+		assertEquals(8, stats.getTriples());
+		assertEquals(3, stats.getPredicates());
+		assertEquals(2, stats.getPredicateSubjects(knows));
+		assertEquals(2, stats.getPredicateObjects(knows));
+		assertEquals(3, stats.getPredicateTriples(knows));
+		assertEquals(2, stats.getPredicateSubjects(age));
+		assertEquals(1, stats.getPredicateObjects(age));
+
+		// {name, knows}: a, b - {name}: c - {age}: d, e
+		assertEquals(3, stats.getCharacteristicSets().size());
+		assertEquals(2, stats.getStarSubjects(new long[] { name, knows }), 0);
+		assertEquals(3, stats.getStarCardinality(new long[] { name, knows }), 0);
+		assertEquals(3, stats.getStarSubjects(new long[] { name }), 0);
+		assertEquals(0, stats.getStarCardinality(new long[] { name, age }), 0);
+	}
+
+	@Test
+	public void computeTest() throws IOException, ParserException {
+		try (HDT hdt = createHDT()) {
+			HDTJoinStatistics stats = HDTJoinStatistics.compute(hdt, HDTJoinStatistics.DEFAULT_MAX_SETS);
+			assertStatistics(hdt, stats);
+
+			Path file = tempDir.newFolder().toPath().resolve("index.hdt.stats");
+			stats.save(file);
+			HDTJoinStatistics loaded = HDTJoinStatistics.load(file);
+			assertTrue(loaded.isComputedFor(hdt));
+			assertStatistics(hdt, loaded);
+		}
+	}
+
+	@Test
+	public void pruneTest() throws IOException, ParserException {
+		try (HDT hdt = createHDT()) {
+			HDTJoinStatistics stats = HDTJoinStatistics.compute(hdt, 2);
+			long name = predicate(hdt, "http://ex.org/name");
+			long knows = predicate(hdt, "http://ex.org/knows");
+
+			assertEquals(2, stats.getCharacteristicSets().size());
+			// the pruned subjects are estimated with independent predicates
+			assertEquals(3, stats.getStarCardinality(new long[] { name, knows }), 0);
+			assertEquals(3, stats.getStarSubjects(new long[] { name }), 0);
+		}
+	}
+}
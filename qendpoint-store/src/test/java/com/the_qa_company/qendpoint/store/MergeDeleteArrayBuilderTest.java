@@ -0,0 +1,89 @@
+package com.the_qa_company.qendpoint.store;
+
+import com.the_qa_company.qendpoint.core.compact.bitmap.Bitmap64Big;
+import com.the_qa_company.qendpoint.core.compact.bitmap.MultiLayerBitmapWrapper;
+import com.the_qa_company.qendpoint.core.compact.bitmap.MultiLayerBitmapWrapper.MultiLayerModBitmapWrapper;
+import com.the_qa_company.qendpoint.core.enums.TripleComponentOrder;
+import com.the_qa_company.qendpoint.core.exceptions.ParserException;
+import com.the_qa_company.qendpoint.core.hdt.HDT;
+import com.the_qa_company.qendpoint.core.hdt.HDTManager;
+import com.the_qa_company.qendpoint.core.listener.ProgressListener;
+import com.the_qa_company.qendpoint.core.options.HDTOptions;
+import com.the_qa_company.qendpoint.core.options.HDTOptionsKeys;
+import com.the_qa_company.qendpoint.core.triples.IteratorTripleID;
+import com.the_qa_company.qendpoint.core.triples.TripleID;
+import com.the_qa_company.qendpoint.core.util.LargeFakeDataSetStreamSupplier;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class MergeDeleteArrayBuilderTest {
+	@Rule
+	public TemporaryFolder tempDir = TemporaryFolder.builder().assureDeletion().build();
+
+	private static MultiLayerModBitmapWrapper[] createDeleteArray(HDT hdt, Set<TripleComponentOrder> orders) {
+		MultiLayerModBitmapWrapper[] deleteArray = new MultiLayerModBitmapWrapper[TripleComponentOrder.values().length];
+		for (TripleComponentOrder order : orders) {
+			deleteArray[order.ordinal()] = MultiLayerBitmapWrapper
+					.of(Bitmap64Big.memory(hdt.getTriples().getNumberOfElements()), 1);
+		}
+		return deleteArray;
+	}
+
+	@Test
+	public void markDeletedTest() throws IOException, ParserException {
+		Path root = tempDir.newFolder().toPath();
+		Path hdtPath = root.resolve("test.hdt");
+		Set<TripleComponentOrder> orders = EnumSet.of(TripleComponentOrder.SPO, TripleComponentOrder.POS,
+				TripleComponentOrder.OSP);
+		HDTOptions spec = HDTOptions.of(HDTOptionsKeys.BITMAPTRIPLES_INDEX_OTHERS, orders,
+				HDTOptionsKeys.BITMAPTRIPLES_INDEX_NO_FOQ, true);
+
+		LargeFakeDataSetStreamSupplier.createSupplierWithMaxTriples(5_000, 42).withMaxElementSplit(50)
+				.withMaxLiteralSize(20).createAndSaveFakeHDT(spec, hdtPath);
+
+		try (HDT hdt = HDTManager.mapIndexedHDT(hdtPath, spec, ProgressListener.ignore())) {
+			List<TripleID> triples = new ArrayList<>();
+			IteratorTripleID it = hdt.getTriples().searchAll();
+			long index = 0;
+			while (it.hasNext()) {
+				TripleID triple = it.next();
+				if (index++ % 7 == 0) {
+					triples.add(triple.clone());
+				}
+			}
+			TripleID first = triples.get(0);
+			// can be missing from the HDT
+			triples.add(new TripleID(first.getSubject(), first.getPredicate(),
+					hdt.getDictionary().getNobjects()));
+			// wildcards
+			triples.add(new TripleID(first.getSubject(), 0, 0));
+			triples.add(new TripleID(0, first.getPredicate(), first.getObject()));
+
+			MultiLayerModBitmapWrapper[] mapped = createDeleteArray(hdt, orders);
+			MultiLayerModBitmapWrapper[] searched = createDeleteArray(hdt, orders);
+			MergeDeleteArrayBuilder.markDeleted(hdt, orders, mapped, triples);
+			MergeDeleteArrayBuilder.markDeletedSearch(hdt, orders, searched, triples);
+
+			for (TripleComponentOrder order : orders) {
+				assertTrue(order + " not marked", mapped[order.ordinal()].countOnes() > triples.size() / 2);
+				assertEquals(order.toString(), searched[order.ordinal()].countOnes(),
+						mapped[order.ordinal()].countOnes());
+				for (long i = 0; i < hdt.getTriples().getNumberOfElements(); i++) {
+					assertEquals(order + " #" + i, searched[order.ordinal()].access(0, i),
+							mapped[order.ordinal()].access(0, i));
+				}
+			}
+		}
+	}
+}
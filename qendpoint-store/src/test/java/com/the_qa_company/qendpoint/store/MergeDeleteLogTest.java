@@ -0,0 +1,116 @@
+package com.the_qa_company.qendpoint.store;
+
+import org.eclipse.rdf4j.model.Statement;
+import org.eclipse.rdf4j.model.ValueFactory;
+import org.eclipse.rdf4j.model.impl.SimpleValueFactory;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class MergeDeleteLogTest {
+	private static final ValueFactory VF = SimpleValueFactory.getInstance();
+	@Rule
+	public TemporaryFolder tempDir = TemporaryFolder.builder().assureDeletion().build();
+
+	private static List<Statement> statements() {
+		return List.of(VF.createStatement(VF.createIRI("http://ex.org/s"), VF.createIRI("http://ex.org/p"),
+				VF.createLiteral("text")),
+				VF.createStatement(VF.createBNode("b1"), VF.createIRI("http://ex.org/p"),
+						VF.createLiteral("texte", "fr")),
+				VF.createStatement(VF.createIRI("http://ex.org/s"), VF.createIRI("http://ex.org/p"),
+						VF.createLiteral(42), VF.createIRI("http://ex.org/g")),
+				VF.createStatement(VF.createTriple(VF.createIRI("http://ex.org/s"), VF.createIRI("http://ex.org/p"),
+						VF.createIRI("http://ex.org/o")), VF.createIRI("http://ex.org/p"), VF.createLiteral("\"\n")));
+	}
+
+	private static List<Statement> read(MergeDeleteLog log) throws IOException {
+		List<Statement> read = new ArrayList<>();
+		log.forEach(VF, read::add);
+		return read;
+	}
+
+	private static void append(MergeDeleteLog log, Statement st) throws IOException {
+		log.append(st.getSubject(), st.getPredicate(), st.getObject(), st.getContext());
+	}
+
+	@Test
+	public void writeReadTest() throws IOException {
+		Path file = tempDir.newFolder().toPath().resolve("log");
+		List<Statement> statements = statements();
+		try (MergeDeleteLog log = new MergeDeleteLog(file, false)) {
+			for (Statement st : statements) {
+				append(log, st);
+			}
+			assertEquals(statements, read(log));
+			assertEquals(1, log.getGroups());
+		}
+
+		// reopen the log
+		try (MergeDeleteLog log = new MergeDeleteLog(file, true)) {
+			append(log, statements.get(0));
+			List<Statement> expected = new ArrayList<>(statements);
+			expected.add(statements.get(0));
+			assertEquals(expected, read(log));
+		}
+
+		// clear the log
+		try (MergeDeleteLog log = new MergeDeleteLog(file, false)) {
+			assertEquals(List.of(), read(log));
+		}
+	}
+
+	@Test
+	public void groupSizeTest() throws IOException {
+		Path file = tempDir.newFolder().toPath().resolve("log");
+		List<Statement> statements = statements();
+		try (MergeDeleteLog log = new MergeDeleteLog(file, false, 1)) {
+			for (Statement st : statements) {
+				append(log, st);
+			}
+			// each triple fills a group
+			assertEquals(statements.size(), log.getGroups());
+			assertEquals(statements, read(log));
+		}
+	}
+
+	@Test
+	public void crashRecoveryTest() throws IOException {
+		Path file = tempDir.newFolder().toPath().resolve("log");
+		List<Statement> statements = statements();
+		try (MergeDeleteLog log = new MergeDeleteLog(file, false)) {
+			append(log, statements.get(0));
+			log.flush();
+			append(log, statements.get(1));
+			log.flush();
+		}
+		long size = Files.size(file);
+
+		// partial group
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+			channel.truncate(size - 2);
+		}
+		try (MergeDeleteLog log = new MergeDeleteLog(file, true)) {
+			assertEquals(List.of(statements.get(0)), read(log));
+			append(log, statements.get(2));
+			assertEquals(List.of(statements.get(0), statements.get(2)), read(log));
+		}
+
+		// corrupted group
+		byte[] data = Files.readAllBytes(file);
+		data[data.length - 6] ^= 0x55;
+		Files.write(file, data);
+		try (MergeDeleteLog log = new MergeDeleteLog(file, true)) {
+			assertEquals(List.of(statements.get(0)), read(log));
+		}
+	}
+}
@@ -0,0 +1,95 @@
+package com.the_qa_company.qendpoint.store;
+
+import com.the_qa_company.qendpoint.core.options.HDTOptions;
+import com.the_qa_company.qendpoint.store.exception.EndpointStoreException;
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+public class MergeSchedulerTest {
+	private static HDTOptions adaptive(Object... options) {
+		HDTOptions spec = HDTOptions.of(EndpointStore.OPTION_QENDPOINT_MERGE_POLICY,
+				EndpointStore.MERGE_POLICY_ADAPTIVE);
+		spec.setOptions(options);
+		return spec;
+	}
+
+	@Test
+	public void thresholdPolicyTest() {
+		MergeScheduler scheduler = new MergeScheduler(HDTOptions.empty());
+		assertFalse(scheduler.isAdaptive());
+		assertFalse(scheduler.shouldMerge(99, 100, 0.9, 0, 12));
+		assertTrue(scheduler.shouldMerge(100, 100, 0, 0, 12));
+		assertFalse(scheduler.shouldMerge(100, -1, 0, 0, 12));
+	}
+
+	@Test
+	public void adaptiveSizeTest() {
+		MergeScheduler scheduler = new MergeScheduler(adaptive());
+		assertTrue(scheduler.isAdaptive());
+		// too small
+		assertFalse(scheduler.shouldMerge(5, 100, 0.9, 0, 12));
+		// not enough pressure
+		assertFalse(scheduler.shouldMerge(50, 100, 0, 0, 12));
+		// the deletes add pressure
+		assertTrue(scheduler.shouldMerge(50, 100, 0.6, 0, 12));
+		assertTrue(scheduler.shouldMerge(100, 100, 0, 0, 12));
+	}
+
+	@Test
+	public void adaptiveDeltaSearchesTest() {
+		MergeScheduler scheduler = new MergeScheduler(adaptive());
+		assertFalse(scheduler.shouldMerge(50, 100, 0, 0, 12));
+		long time = 0;
+		for (int i = 0; i < 10; i++) {
+			// every search goes through the delta
+			for (int j = 0; j < 100; j++) {
+				scheduler.recordSearch(true);
+			}
+			time += MergeScheduler.SHORT_RATE_TAU;
+			scheduler.shouldMerge(50, 100, 0, time, 12);
+		}
+		assertTrue(scheduler.getDeltaSearchRatio() > 0.9);
+		assertTrue(scheduler.shouldMerge(50, 100, 0, time, 12));
+	}
+
+	@Test
+	public void adaptivePeakTest() {
+		MergeScheduler scheduler = new MergeScheduler(adaptive(EndpointStore.OPTION_QENDPOINT_MERGE_ADAPTIVE_QUIET_HOURS,
+				"22-4", EndpointStore.OPTION_QENDPOINT_MERGE_ADAPTIVE_LOOKAHEAD, 0));
+		long time = 0;
+		scheduler.shouldMerge(0, 100, 0, time, 12);
+		// calm traffic
+		for (int i = 0; i < 60; i++) {
+			for (int j = 0; j < 10; j++) {
+				scheduler.recordSearch(false);
+			}
+			time += MergeScheduler.SHORT_RATE_TAU;
+			scheduler.shouldMerge(0, 100, 0, time, 12);
+		}
+		// peak
+		for (int j = 0; j < 1000; j++) {
+			scheduler.recordSearch(false);
+		}
+		time += MergeScheduler.SHORT_RATE_TAU;
+		assertFalse(scheduler.shouldMerge(150, 100, 0, time, 12));
+		assertTrue(scheduler.getShortSearchRate() > scheduler.getLongSearchRate() * 2);
+		// the peak is ignored during the quiet hours
+		assertTrue(scheduler.shouldMerge(150, 100, 0, time, 23));
+		assertTrue(scheduler.shouldMerge(60, 100, 0, time, 2));
+		// the merge is forced once the delta is too big
+		assertTrue(scheduler.shouldMerge(200, 100, 0, time, 12));
+	}
+
+	@Test
+	public void badOptionsTest() {
+		assertThrows(EndpointStoreException.class, () -> new MergeScheduler(
+				HDTOptions.of(EndpointStore.OPTION_QENDPOINT_MERGE_POLICY, "unknown")));
+		assertThrows(EndpointStoreException.class,
+				() -> new MergeScheduler(adaptive(EndpointStore.OPTION_QENDPOINT_MERGE_ADAPTIVE_QUIET_HOURS, "4")));
+		assertThrows(EndpointStoreException.class,
+				() -> new MergeScheduler(adaptive(EndpointStore.OPTION_QENDPOINT_MERGE_ADAPTIVE_QUIET_HOURS, "4-25")));
+	}
+}
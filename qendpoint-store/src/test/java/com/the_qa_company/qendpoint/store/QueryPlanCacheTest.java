@@ -0,0 +1,95 @@
+package com.the_qa_company.qendpoint.store;
+
+import org.eclipse.rdf4j.model.util.Values;
+import org.eclipse.rdf4j.query.Dataset;
+import org.eclipse.rdf4j.query.QueryLanguage;
+import org.eclipse.rdf4j.query.algebra.TupleExpr;
+import org.eclipse.rdf4j.query.impl.EmptyBindingSet;
+import org.eclipse.rdf4j.query.impl.MapBindingSet;
+import org.eclipse.rdf4j.query.impl.SimpleDataset;
+import org.eclipse.rdf4j.query.parser.QueryParserUtil;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+public class QueryPlanCacheTest {
+	private static TupleExpr parse(String query) {
+		return QueryParserUtil.parseTupleQuery(QueryLanguage.SPARQL, query, null).getTupleExpr();
+	}
+
+	@Test
+	public void cacheTest() {
+		QueryPlanCache cache = new QueryPlanCache(2);
+		AtomicInteger plans = new AtomicInteger();
+
+		TupleExpr query = parse("SELECT * { ?s <http://ex.org/p> ?o }");
+		MapBindingSet bindings1 = new MapBindingSet();
+		bindings1.addBinding("s", Values.iri("http://ex.org/a"));
+		MapBindingSet bindings2 = new MapBindingSet();
+		bindings2.addBinding("s", Values.iri("http://ex.org/b"));
+
+		TupleExpr plan1 = cache.getPlan(query, null, bindings1, true, expr -> {
+			plans.incrementAndGet();
+			return expr;
+		});
+		// same names, other values
+		TupleExpr plan2 = cache.getPlan(parse("SELECT * { ?s <http://ex.org/p> ?o }"), null, bindings2, true, expr -> {
+			plans.incrementAndGet();
+			return expr;
+		});
+		assertEquals(1, plans.get());
+		assertNotSame(plan1, plan2);
+		assertEquals(plan1.toString(), plan2.toString());
+		assertNotSame(query, plan1);
+
+		// other names
+		cache.getPlan(query, null, EmptyBindingSet.getInstance(), true, expr -> {
+			plans.incrementAndGet();
+			return expr;
+		});
+		assertEquals(2, plans.get());
+		assertEquals(2, cache.size());
+
+		// bounded
+		cache.getPlan(query, null, EmptyBindingSet.getInstance(), false, expr -> {
+			plans.incrementAndGet();
+			return expr;
+		});
+		assertEquals(3, plans.get());
+		assertEquals(2, cache.size());
+	}
+
+	@Test
+	public void datasetTest() {
+		QueryPlanCache cache = new QueryPlanCache(10);
+		AtomicInteger plans = new AtomicInteger();
+		TupleExpr query = parse("SELECT * { ?s <http://ex.org/p> ?o }");
+		SimpleDataset dataset1 = new SimpleDataset();
+		dataset1.addDefaultGraph(Values.iri("http://ex.org/g1"));
+		SimpleDataset dataset2 = new SimpleDataset();
+		dataset2.addDefaultGraph(Values.iri("http://ex.org/g2"));
+
+		for (Dataset dataset : new Dataset[] { null, dataset1, dataset2, dataset1 }) {
+			cache.getPlan(query, dataset, EmptyBindingSet.getInstance(), true, expr -> {
+				plans.incrementAndGet();
+				return expr;
+			});
+		}
+		// the plans of the datasets aren't shared
+		assertEquals(3, plans.get());
+		assertEquals(3, cache.size());
+	}
+
+	@Test
+	public void cacheableTest() {
+		assertTrue(QueryPlanCache.isCacheable(parse("SELECT * { ?s ?p ?o FILTER(STRLEN(STR(?o)) > 2) }")));
+		assertFalse(QueryPlanCache.isCacheable(parse("SELECT * { ?s ?p ?o BIND(NOW() AS ?now) }")));
+		assertFalse(QueryPlanCache.isCacheable(parse("SELECT * { ?s ?p ?o BIND(RAND() AS ?r) }")));
+		assertFalse(QueryPlanCache.isCacheable(parse("SELECT * { ?s ?p ?o BIND(BNODE() AS ?b) }")));
+	}
+}
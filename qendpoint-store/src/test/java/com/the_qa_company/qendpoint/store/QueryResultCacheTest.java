@@ -0,0 +1,110 @@
+package com.the_qa_company.qendpoint.store;
+
+import com.the_qa_company.qendpoint.model.SimpleIRIHDT;
+import org.eclipse.rdf4j.common.iteration.CloseableIteration;
+import org.eclipse.rdf4j.common.iteration.CloseableIteratorIteration;
+import org.eclipse.rdf4j.model.util.Values;
+import org.eclipse.rdf4j.query.BindingSet;
+import org.eclipse.rdf4j.query.QueryLanguage;
+import org.eclipse.rdf4j.query.algebra.TupleExpr;
+import org.eclipse.rdf4j.query.impl.EmptyBindingSet;
+import org.eclipse.rdf4j.query.impl.ListBindingSet;
+import org.eclipse.rdf4j.query.parser.QueryParserUtil;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class QueryResultCacheTest {
+	private static TupleExpr parse(String query) {
+		return QueryParserUtil.parseTupleQuery(QueryLanguage.SPARQL, query, null).getTupleExpr();
+	}
+
+	private static List<BindingSet> results(int count) {
+		List<BindingSet> results = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			results.add(new ListBindingSet(List.of("s"), Values.iri("http://ex.org/" + i)));
+		}
+		return results;
+	}
+
+	private static List<BindingSet> read(CloseableIteration<? extends BindingSet> it) {
+		List<BindingSet> results = new ArrayList<>();
+		try (it) {
+			while (it.hasNext()) {
+				results.add(it.next());
+			}
+		}
+		return results;
+	}
+
+	@Test
+	public void cacheTest() {
+		QueryResultCache cache = new QueryResultCache(1024 * 1024, 10_000);
+		TupleExpr query = parse("SELECT ?s { ?s ?p ?o }");
+
+		QueryResultCache.Key key = cache.createKey(query, null, EmptyBindingSet.getInstance(), null);
+		assertNull(cache.get(key));
+
+		List<BindingSet> expected = results(10);
+		assertEquals(expected, read(cache.record(key, new CloseableIteratorIteration<>(expected.iterator()))));
+		assertEquals(expected, read(cache.get(key)));
+		assertEquals(key, cache.createKey(parse("SELECT ?s { ?s ?p ?o }"), null, EmptyBindingSet.getInstance(), null));
+
+		// not fully read
+		QueryResultCache.Key key2 = cache.createKey(query, null, EmptyBindingSet.getInstance(), "fr");
+		try (CloseableIteration<BindingSet> it = cache.record(key2,
+				new CloseableIteratorIteration<>(expected.iterator()))) {
+			assertTrue(it.hasNext());
+			it.next();
+		}
+		assertNull(cache.get(key2));
+
+		// too big
+		List<BindingSet> big = results(1000);
+		QueryResultCache.Key key3 = cache.createKey(parse("SELECT ?o { ?s ?p ?o }"), null,
+				EmptyBindingSet.getInstance(), null);
+		assertEquals(big, read(cache.record(key3, new CloseableIteratorIteration<>(big.iterator()))));
+		assertNull(cache.get(key3));
+
+		// empty result
+		QueryResultCache.Key key4 = cache.createKey(parse("SELECT ?p { ?s ?p ?o }"), null,
+				EmptyBindingSet.getInstance(), null);
+		assertFalse(read(cache.record(key4, new CloseableIteratorIteration<>(List.<BindingSet>of().iterator())))
+				.iterator().hasNext());
+		assertNotNull(cache.get(key4));
+
+		// update
+		cache.invalidate();
+		assertNull(cache.get(key));
+		assertNotEquals(key, cache.createKey(query, null, EmptyBindingSet.getInstance(), null));
+	}
+
+	@Test
+	public void hdtValueSizeTest() {
+		QueryResultCache cache = new QueryResultCache(1024 * 1024, 10_000);
+		List<BindingSet> results = new ArrayList<>();
+		for (int i = 1; i <= 50; i++) {
+			results.add(new ListBindingSet(List.of("s"), new SimpleIRIHDT(null, SimpleIRIHDT.SUBJECT_POS, i)));
+		}
+		QueryResultCache.Key key = cache.createKey(parse("SELECT ?s { ?s ?p ?o }"), null,
+				EmptyBindingSet.getInstance(), null);
+		assertEquals(results, read(cache.record(key, new CloseableIteratorIteration<>(results.iterator()))));
+		// the HDT values aren't free, the result is too big
+		assertNull(cache.get(key));
+	}
+
+	@Test
+	public void cacheableTest() {
+		assertTrue(QueryResultCache.isCacheable(parse("SELECT (COUNT(*) AS ?c) { ?s ?p ?o }")));
+		assertFalse(QueryResultCache.isCacheable(parse("SELECT * { SERVICE <http://ex.org/sparql> { ?s ?p ?o } }")));
+		assertFalse(QueryResultCache.isCacheable(parse("SELECT * { ?s ?p ?o BIND(NOW() AS ?now) }")));
+	}
+}
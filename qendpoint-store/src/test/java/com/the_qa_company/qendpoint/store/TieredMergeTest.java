@@ -0,0 +1,232 @@
+package com.the_qa_company.qendpoint.store;
+
+import com.the_qa_company.qendpoint.core.hdt.HDT;
+import com.the_qa_company.qendpoint.core.options.HDTOptions;
+import com.the_qa_company.qendpoint.core.options.HDTOptionsKeys;
+import org.eclipse.rdf4j.common.iteration.CloseableIteration;
+import org.eclipse.rdf4j.common.order.StatementOrder;
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.Resource;
+import org.eclipse.rdf4j.model.Statement;
+import org.eclipse.rdf4j.model.Value;
+import org.eclipse.rdf4j.model.ValueFactory;
+import org.eclipse.rdf4j.model.impl.SimpleValueFactory;
+import org.eclipse.rdf4j.query.TupleQueryResult;
+import org.eclipse.rdf4j.repository.sail.SailRepository;
+import org.eclipse.rdf4j.repository.sail.SailRepositoryConnection;
+import org.eclipse.rdf4j.sail.SailConnection;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TieredMergeTest {
+	private static final int BASE_TRIPLES = 1000;
+	@Rule
+	public TemporaryFolder tempDir = TemporaryFolder.builder().assureDeletion().build();
+	private final ValueFactory vf = SimpleValueFactory.getInstance();
+	private File hdtStore;
+	private File nativeStore;
+	private SailRepository repository;
+	private EndpointStore store;
+
+	@Before
+	public void setup() throws IOException {
+		MergeRunnableStopPoint.debug = true;
+		File root = tempDir.newFolder();
+		nativeStore = new File(root, "native-store");
+		assertTrue(nativeStore.mkdirs());
+		hdtStore = new File(root, "hdt-store");
+		assertTrue(hdtStore.mkdirs());
+
+		try (HDT hdt = MergeRestartTest.createTestHDT(tempDir.newFile().getAbsolutePath(), spec(), BASE_TRIPLES)) {
+			hdt.saveToHDT(hdtStore.getAbsolutePath() + "/" + EndpointStoreTest.HDT_INDEX_NAME, null);
+		}
+		open(spec());
+	}
+
+	@After
+	public void complete() {
+		repository.shutDown();
+		MergeRunnableStopPoint.debug = false;
+	}
+
+	private HDTOptions spec() {
+		return HDTOptions.of(HDTOptionsKeys.DICTIONARY_TYPE_KEY, HDTOptionsKeys.DICTIONARY_TYPE_VALUE_MULTI_OBJECTS,
+				EndpointStore.OPTION_QENDPOINT_MERGE_TIERED, true);
+	}
+
+	private void open(HDTOptions spec) throws IOException {
+		store = new EndpointStore(hdtStore.getAbsolutePath() + "/", EndpointStoreTest.HDT_INDEX_NAME, spec,
+				nativeStore.getAbsolutePath() + "/", false);
+		repository = new SailRepository(store);
+		repository.init();
+	}
+
+	private void reopen(HDTOptions spec) throws IOException {
+		repository.shutDown();
+		open(spec);
+	}
+
+	private IRI iri(String name) {
+		return vf.createIRI(Utility.EXAMPLE_NAMESPACE, name);
+	}
+
+	private void add(String prefix, int count) {
+		try (SailConnection connection = store.getConnection()) {
+			connection.begin();
+			for (int i = 1; i <= count; i++) {
+				// the subject is in the base HDT, the object isn't
+				connection.addStatement(iri("testHDT" + i), iri("testP"), iri(prefix + i));
+			}
+			connection.commit();
+		}
+	}
+
+	private void merge() throws InterruptedException {
+		store.mergeStore();
+		MergeRunnable.debugWaitMerge();
+	}
+
+	private long countStatements(IRI subject, IRI object) {
+		long count = 0;
+		try (SailConnection connection = store.getConnection();
+				CloseableIteration<? extends Statement> it = connection.getStatements(subject, null, object, false)) {
+			while (it.hasNext()) {
+				it.next();
+				count++;
+			}
+		}
+		return count;
+	}
+
+	private long countJoin(String prefix) {
+		try (SailRepositoryConnection connection = repository.getConnection();
+				TupleQueryResult result = connection.prepareTupleQuery("""
+						PREFIX ex: <http://example.com/>
+						SELECT (COUNT(?s) AS ?c) {
+						  ?s ex:testP ?o .
+						  ?s ex:testP ex:Bidule .
+						  FILTER(STRSTARTS(STR(?o), "http://example.com/%s"))
+						}
+						""".formatted(prefix)).evaluate()) {
+			return Long.parseLong(result.next().getValue("c").stringValue());
+		}
+	}
+
+	@Test
+	public void layerMergeTest() throws InterruptedException, IOException {
+		add("layerA", 20);
+		merge();
+
+		assertEquals(1, store.getLayers().getLayers().size());
+		assertEquals(BASE_TRIPLES, store.getHdt().getTriples().getNumberOfElements());
+		assertFalse(store.isNativeStoreContainsAtLeast(1));
+		assertEquals(BASE_TRIPLES + 20, countStatements(null, null));
+		assertEquals(1, countStatements(null, iri("layerA5")));
+		// the layer values should join with the base values
+		assertEquals(20, countJoin("layerA"));
+
+		// delete a layer triple and a base triple
+		try (SailConnection connection = store.getConnection()) {
+			connection.begin();
+			connection.removeStatement(null, iri("testHDT5"), iri("testP"), iri("layerA5"));
+			connection.removeStatement(null, iri("testHDT6"), iri("testP"), iri("Bidule"));
+			connection.commit();
+		}
+		assertEquals(0, countStatements(null, iri("layerA5")));
+		assertEquals(BASE_TRIPLES + 18, countStatements(null, null));
+
+		// adding a layer triple shouldn't duplicate it
+		add("layerA", 5);
+		assertEquals(1, countStatements(null, iri("layerA4")));
+		// layerA5 was deleted, it is added again in the delta
+		assertEquals(1, countStatements(null, iri("layerA5")));
+
+		// the second layer is small enough to be compacted with the first one
+		add("layerB", 20);
+		merge();
+		assertEquals(1, store.getLayers().getLayers().size());
+		assertEquals(BASE_TRIPLES + 39, countStatements(null, null));
+		// testHDT6 was deleted from the base HDT
+		assertEquals(38, countJoin("layer"));
+
+		reopen(spec());
+		assertEquals(1, store.getLayers().getLayers().size());
+		assertEquals(BASE_TRIPLES + 39, countStatements(null, null));
+		assertEquals(0, countStatements(iri("testHDT6"), iri("Bidule")));
+	}
+
+	@Test
+	public void foldLayersTest() throws InterruptedException, IOException {
+		add("layerA", 20);
+		merge();
+		assertEquals(1, store.getLayers().getLayers().size());
+
+		try (SailConnection connection = store.getConnection()) {
+			connection.begin();
+			connection.removeStatement(null, iri("testHDT5"), iri("testP"), iri("layerA5"));
+			connection.commit();
+		}
+
+		// with a high max ratio, the layers are folded into the base HDT
+		HDTOptions spec = spec();
+		spec.set(EndpointStore.OPTION_QENDPOINT_MERGE_TIERED_MAX_RATIO, 1000);
+		reopen(spec);
+		add("layerB", 10);
+		merge();
+
+		assertTrue(store.getLayers().isEmpty());
+		assertEquals(BASE_TRIPLES + 29, store.getHdt().getTriples().getNumberOfElements());
+		assertEquals(BASE_TRIPLES + 29, countStatements(null, null));
+		assertEquals(0, countStatements(null, iri("layerA5")));
+		assertEquals(29, countJoin("layer"));
+	}
+
+	@Test
+	public void orderedLayerTest() throws InterruptedException, IOException {
+		HDTOptions spec = spec();
+		spec.set(EndpointStore.OPTION_QENDPOINT_MERGE_JOIN, true);
+		reopen(spec);
+		add("layerA", 20);
+
+		try (EndpointStoreConnection connection = (EndpointStoreConnection) store.getConnection()) {
+			EndpointTripleSource tripleSource = new EndpointTripleSource(connection, store);
+			// planned without layer
+			assertTrue(tripleSource.getSupportedOrders(null, iri("testP"), null).contains(StatementOrder.S));
+		}
+
+		// a layer is written between the plan and the evaluation
+		merge();
+		assertEquals(1, store.getLayers().getLayers().size());
+		add("layerB", 5);
+
+		try (EndpointStoreConnection connection = (EndpointStoreConnection) store.getConnection()) {
+			EndpointTripleSource tripleSource = new EndpointTripleSource(connection, store);
+			assertTrue(tripleSource.getSupportedOrders(null, iri("testP"), null).contains(StatementOrder.S));
+			List<Resource> subjects = new ArrayList<>();
+			try (CloseableIteration<? extends Statement> it = tripleSource.getStatements(StatementOrder.S, null,
+					iri("testP"), null)) {
+				it.forEachRemaining(st -> subjects.add(st.getSubject()));
+			}
+			assertEquals(BASE_TRIPLES + 25, subjects.size());
+			Comparator<Value> comparator = tripleSource.getComparator();
+			for (int i = 1; i < subjects.size(); i++) {
+				assertTrue(comparator.compare(subjects.get(i - 1), subjects.get(i)) <= 0);
+			}
+		}
+		// the layer values should join with the base values with a merge join
+		assertEquals(20, countJoin("layerA"));
+	}
+}
@@ -1,5 +1,6 @@
 package com.the_qa_company.qendpoint.utils;
 
+import com.the_qa_company.qendpoint.core.compact.bitmap.MultiLayerBitmapWrapper;
 import org.junit.Assert;
 import org.junit.Rule;
 import org.junit.Test;
@@ -60,6 +61,56 @@ public class BitArrayDiskTest {
 		}
 	}
 
+	@Test
+	public void testSelectNext1() throws IOException {
+		try (BitArrayDisk bitArrayDisk = new BitArrayDisk(1000, tempDir.newFile("triples-delete.arr"))) {
+			assertEquals(-1, bitArrayDisk.selectNext1(0));
+			bitArrayDisk.set(3, true);
+			bitArrayDisk.set(64, true);
+			bitArrayDisk.set(700, true);
+
+			assertEquals(3, bitArrayDisk.selectNext1(0));
+			assertEquals(3, bitArrayDisk.selectNext1(3));
+			assertEquals(64, bitArrayDisk.selectNext1(4));
+			assertEquals(700, bitArrayDisk.selectNext1(65));
+			assertEquals(-1, bitArrayDisk.selectNext1(701));
+			assertEquals(-1, bitArrayDisk.selectNext1(5000));
+		}
+	}
+
+	@Test
+	public void testSelectNextPosition1() throws IOException {
+		try (BitArrayDisk bitArrayDisk = new BitArrayDisk(1000, tempDir.newFile("triples-delete.arr"))) {
+			MultiLayerBitmapWrapper.MultiLayerModBitmapWrapper bitmap = MultiLayerBitmapWrapper.of(bitArrayDisk, 3);
+			assertEquals(-1, bitmap.selectNextPosition1(0));
+			bitmap.set(2, 5, true);
+			bitmap.set(0, 40, true);
+
+			assertEquals(5, bitmap.selectNextPosition1(0));
+			assertEquals(5, bitmap.selectNextPosition1(5));
+			assertEquals(40, bitmap.selectNextPosition1(6));
+			assertEquals(-1, bitmap.selectNextPosition1(41));
+		}
+	}
+
+	@Test
+	public void testCopyInMemory() throws IOException {
+		try (BitArrayDisk bitArrayDisk = new BitArrayDisk(1000, tempDir.newFile("triples-delete.arr"))) {
+			bitArrayDisk.set(3, true);
+			bitArrayDisk.set(700, true);
+
+			try (BitArrayDisk copy = bitArrayDisk.copyInMemory()) {
+				bitArrayDisk.set(64, true);
+				bitArrayDisk.set(3, false);
+
+				assertEquals(3, copy.selectNext1(0));
+				assertEquals(700, copy.selectNext1(4));
+				assertEquals(2, copy.countOnes());
+				assertEquals(64, bitArrayDisk.selectNext1(0));
+			}
+		}
+	}
+
 	@Test
 	public void testLog2() {
 		Assert.assertEquals(64, BitArrayDisk.log2(-1));
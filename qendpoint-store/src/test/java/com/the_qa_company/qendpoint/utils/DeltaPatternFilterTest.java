@@ -0,0 +1,57 @@
+package com.the_qa_company.qendpoint.utils;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class DeltaPatternFilterTest {
+
+	@Test
+	public void testSize() {
+		assertEquals(64, new DeltaPatternFilter(1).getNumBits());
+		assertEquals(128, new DeltaPatternFilter(100).getNumBits());
+		assertEquals(1 << 20, new DeltaPatternFilter(1 << 20).getNumBits());
+	}
+
+	@Test
+	public void testNoFalseNegative() {
+		DeltaPatternFilter filter = new DeltaPatternFilter(1 << 16);
+		Random rnd = new Random(42);
+		long[][] triples = new long[1000][];
+		for (int i = 0; i < triples.length; i++) {
+			triples[i] = new long[] { rnd.nextInt(10000) + 1, rnd.nextInt(100) + 1, rnd.nextInt(10000) + 1 };
+			filter.add(triples[i][0], triples[i][1], triples[i][2]);
+		}
+
+		for (long[] triple : triples) {
+			assertTrue(filter.mightContain(triple[0], triple[1], triple[2]));
+			assertTrue(filter.mightContain(triple[0], triple[1], 0));
+			assertTrue(filter.mightContain(0, triple[1], triple[2]));
+			assertTrue(filter.mightContain(triple[0], -1, triple[2]));
+			assertTrue(filter.mightContain(triple[0], 0, 0));
+		}
+	}
+
+	@Test
+	public void testUnknownPairs() {
+		DeltaPatternFilter filter = new DeltaPatternFilter(1 << 16);
+		for (long s = 1; s <= 100; s++) {
+			filter.add(s, 1, s);
+		}
+		int falsePositives = 0;
+		for (long s = 1; s <= 100; s++) {
+			if (filter.mightContain(s, 2, 0)) {
+				falsePositives++;
+			}
+		}
+		assertTrue("too many false positives: " + falsePositives, falsePositives < 5);
+
+		// the pairs with a component outside of the HDT aren't recorded
+		filter.add(-1, 3, 4);
+		assertTrue(filter.mightContain(0, 3, 4));
+		assertTrue(filter.mightContain(-1, 3, 0));
+	}
+}
@@ -0,0 +1,48 @@
+package com.the_qa_company.qendpoint.utils;
+
+import org.eclipse.rdf4j.common.iteration.CloseableIteratorIteration;
+import org.eclipse.rdf4j.model.Statement;
+import org.eclipse.rdf4j.model.ValueFactory;
+import org.eclipse.rdf4j.model.impl.SimpleValueFactory;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThrows;
+
+public class OrderedCombinedStatementResultTest {
+	private final ValueFactory vf = SimpleValueFactory.getInstance();
+
+	private Statement statement(int subject) {
+		return vf.createStatement(vf.createIRI("http://ex.org/s%03d".formatted(subject)),
+				vf.createIRI("http://ex.org/p"), vf.createLiteral(subject));
+	}
+
+	@Test
+	public void mergeTest() {
+		Comparator<Statement> comparator = Comparator.comparing(st -> st.getSubject().stringValue());
+		List<Statement> left = List.of(statement(1), statement(4), statement(5), statement(9));
+		List<Statement> right = List.of(statement(2), statement(3), statement(5), statement(10));
+
+		List<Statement> merged = new ArrayList<>();
+		try (OrderedCombinedStatementResult result = new OrderedCombinedStatementResult(
+				new CloseableIteratorIteration<>(left.iterator()), new CloseableIteratorIteration<>(right.iterator()),
+				comparator)) {
+			while (result.hasNext()) {
+				merged.add(result.next());
+			}
+			assertFalse(result.hasNext());
+			assertThrows(NoSuchElementException.class, result::next);
+		}
+
+		List<Statement> expected = new ArrayList<>(left);
+		expected.addAll(right);
+		expected.sort(comparator);
+		assertEquals(expected, merged);
+	}
+}
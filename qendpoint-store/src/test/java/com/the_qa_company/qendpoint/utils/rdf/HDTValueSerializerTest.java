@@ -0,0 +1,164 @@
+package com.the_qa_company.qendpoint.utils.rdf;
+
+import com.the_qa_company.qendpoint.core.enums.RDFNotation;
+import com.the_qa_company.qendpoint.core.enums.TripleComponentRole;
+import com.the_qa_company.qendpoint.core.exceptions.NotFoundException;
+import com.the_qa_company.qendpoint.core.exceptions.ParserException;
+import com.the_qa_company.qendpoint.core.hdt.HDT;
+import com.the_qa_company.qendpoint.core.hdt.HDTManager;
+import com.the_qa_company.qendpoint.core.options.HDTOptions;
+import com.the_qa_company.qendpoint.core.triples.IteratorTripleString;
+import com.the_qa_company.qendpoint.core.triples.TripleString;
+import com.the_qa_company.qendpoint.model.SimpleBNodeHDT;
+import com.the_qa_company.qendpoint.model.SimpleIRIHDT;
+import com.the_qa_company.qendpoint.model.SimpleLiteralHDT;
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.Model;
+import org.eclipse.rdf4j.model.Resource;
+import org.eclipse.rdf4j.model.Statement;
+import org.eclipse.rdf4j.model.Value;
+import org.eclipse.rdf4j.model.impl.SimpleValueFactory;
+import org.eclipse.rdf4j.model.util.Models;
+import org.eclipse.rdf4j.model.util.Values;
+import org.eclipse.rdf4j.query.BindingSet;
+import org.eclipse.rdf4j.query.TupleQueryResult;
+import org.eclipse.rdf4j.query.TupleQueryResultHandler;
+import org.eclipse.rdf4j.query.impl.ListBindingSet;
+import org.eclipse.rdf4j.query.impl.TupleQueryResultBuilder;
+import org.eclipse.rdf4j.query.resultio.QueryResultIO;
+import org.eclipse.rdf4j.query.resultio.TupleQueryResultFormat;
+import org.eclipse.rdf4j.rio.RDFFormat;
+import org.eclipse.rdf4j.rio.Rio;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class HDTValueSerializerTest {
+	@Rule
+	public TemporaryFolder tempDir = TemporaryFolder.builder().assureDeletion().build();
+
+	private static Value hdtValue(HDT hdt, CharSequence str, TripleComponentRole role, int position) {
+		long id = hdt.getDictionary().stringToId(str, role);
+		if (str.charAt(0) == '"') {
+			return new SimpleLiteralHDT(hdt, id, SimpleValueFactory.getInstance());
+		}
+		if (str.length() > 1 && str.charAt(0) == '_' && str.charAt(1) == ':') {
+			return new SimpleBNodeHDT(hdt, position, id);
+		}
+		return new SimpleIRIHDT(hdt, position, id);
+	}
+
+	private static List<Value[]> readTriples(HDT hdt) throws NotFoundException {
+		List<Value[]> triples = new ArrayList<>();
+		IteratorTripleString it = hdt.search("", "", "");
+		while (it.hasNext()) {
+			TripleString ts = it.next();
+			triples.add(new Value[] {
+					hdtValue(hdt, ts.getSubject(), TripleComponentRole.SUBJECT, SimpleIRIHDT.SUBJECT_POS),
+					hdtValue(hdt, ts.getPredicate(), TripleComponentRole.PREDICATE, SimpleIRIHDT.PREDICATE_POS),
+					hdtValue(hdt, ts.getObject(), TripleComponentRole.OBJECT, SimpleIRIHDT.OBJECT_POS) });
+		}
+		return triples;
+	}
+
+	private static void writeTuples(TupleQueryResultHandler writer, List<String> names, List<Value[]> triples) {
+		writer.startQueryResult(names);
+		for (Value[] triple : triples) {
+			writer.handleSolution(new ListBindingSet(names, triple[0], triple[1], triple[2]));
+		}
+		writer.endQueryResult();
+	}
+
+	private static void assertTuples(InputStream is, TupleQueryResultFormat format, List<String> names,
+			List<Value[]> triples) throws IOException {
+		TupleQueryResultBuilder builder = new TupleQueryResultBuilder();
+		QueryResultIO.parseTuple(is, format, builder, SimpleValueFactory.getInstance());
+		try (TupleQueryResult result = builder.getQueryResult()) {
+			assertEquals(names, result.getBindingNames());
+			for (Value[] triple : triples) {
+				assertTrue(result.hasNext());
+				BindingSet bs = result.next();
+				for (int i = 0; i < names.size(); i++) {
+					// parsed value first to use the RDF4J equals
+					assertEquals(bs.getValue(names.get(i)), triple[i]);
+				}
+			}
+			assertFalse(result.hasNext());
+		}
+	}
+
+	@Test
+	public void serializeTest() throws IOException, ParserException, NotFoundException {
+		Path ntFile = tempDir.newFolder().toPath().resolve("data.nt");
+		Files.writeString(ntFile, """
+				<http://ex.org/a> <http://ex.org/p1> <http://ex.org/b> .
+				<http://ex.org/a> <http://ex.org/p1> "simple" .
+				<http://ex.org/a> <http://ex.org/p2> "é\\"quoted\\"\\n\\ttab\\\\"@fr .
+				<http://ex.org/b> <http://ex.org/p2> "12"^^<http://www.w3.org/2001/XMLSchema#integer> .
+				<http://ex.org/b> <http://ex.org/p2> "str"^^<http://www.w3.org/2001/XMLSchema#string> .
+				_:b1 <http://ex.org/p3> <http://ex.org/a> .
+				""");
+		try (HDT hdt = HDTManager.indexedHDT(HDTManager.generateHDT(ntFile.toAbsolutePath().toString(),
+				"http://ex.org/", RDFNotation.NTRIPLES, HDTOptions.of(), null), null)) {
+			HDTValueSerializer serializer = new HDTValueSerializer(hdt, 1024 * 1024);
+			List<Value[]> triples = readTriples(hdt);
+			List<String> names = List.of("s", "p", "o");
+
+			// N-Triples
+			ByteArrayOutputStream nt = new ByteArrayOutputStream();
+			HDTNTriplesWriter ntWriter = new HDTNTriplesWriter(nt, serializer);
+			ntWriter.startRDF();
+			for (Value[] triple : triples) {
+				ntWriter.handleStatement(SimpleValueFactory.getInstance().createStatement((Resource) triple[0],
+						(IRI) triple[1], triple[2]));
+			}
+			ntWriter.endRDF();
+			Model expected;
+			try (InputStream is = Files.newInputStream(ntFile)) {
+				expected = Rio.parse(is, RDFFormat.NTRIPLES);
+			}
+			Model actual = Rio.parse(new ByteArrayInputStream(nt.toByteArray()), RDFFormat.NTRIPLES);
+			assertTrue(Models.isomorphic(expected, actual));
+			for (Statement st : actual) {
+				if (st.getSubject().isBNode()) {
+					assertEquals("b1", st.getSubject().stringValue());
+				}
+			}
+
+			// TSV
+			ByteArrayOutputStream tsv = new ByteArrayOutputStream();
+			writeTuples(new HDTSPARQLResultsTSVWriter(tsv, serializer), names, triples);
+			assertTuples(new ByteArrayInputStream(tsv.toByteArray()), TupleQueryResultFormat.TSV, names, triples);
+
+			// JSON
+			ByteArrayOutputStream json = new ByteArrayOutputStream();
+			writeTuples(new HDTSPARQLResultsJSONWriter(json, serializer), names, triples);
+			assertTuples(new ByteArrayInputStream(json.toByteArray()), TupleQueryResultFormat.JSON, names, triples);
+
+			// the ids are serialized once by syntax
+			assertTrue(serializer.getCache().getHits() > 0);
+			long size = serializer.getCache().size();
+			writeTuples(new HDTSPARQLResultsTSVWriter(new ByteArrayOutputStream(), serializer), names, triples);
+			assertEquals(size, serializer.getCache().size());
+
+			// values without id
+			assertEquals("<http://ex.org/a>", new String(serializer.toNTriples(Values.iri("http://ex.org/a"))));
+			assertEquals("\"a\\\"b\"@en", new String(serializer.toNTriples(Values.literal("a\"b", "en"))));
+			assertEquals("{\"type\":\"literal\",\"value\":\"1\",\"datatype\":\"http://www.w3.org/2001/XMLSchema#int\"}",
+					new String(serializer.toJSON(Values.literal(1))));
+		}
+	}
+}